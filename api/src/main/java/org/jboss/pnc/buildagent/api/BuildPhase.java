@@ -0,0 +1,121 @@
+package org.jboss.pnc.buildagent.api;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+
+import java.io.Serializable;
+
+/**
+ * A timed part of a Maven or Gradle build, recognized in the output of a task. A phase lasts from its header until
+ * the header of the next phase of the same type or the end of the build.
+ */
+@JsonDeserialize(builder = BuildPhase.Builder.class)
+public class BuildPhase implements Serializable {
+
+  public enum Type {
+    /**
+     * Maven reactor module, the name is the project name and the module the artifact id.
+     */
+    MODULE,
+
+    /**
+     * Maven plugin goal execution, eg. "maven-compiler-plugin:3.8.1:compile (default-compile)".
+     */
+    GOAL,
+
+    /**
+     * Gradle task, the name is the task path and the module the project path.
+     */
+    TASK
+  }
+
+  private final Type type;
+  private final String name;
+  private final String module;
+  private final long startTimestamp;
+  private final long durationMillis;
+
+  private BuildPhase(Builder builder) {
+    type = builder.type;
+    name = builder.name;
+    module = builder.module;
+    startTimestamp = builder.startTimestamp;
+    durationMillis = builder.durationMillis;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return module the phase belongs to, null when it is not known
+   */
+  public String getModule() {
+    return module;
+  }
+
+  /**
+   * @return capture time of the phase header in milliseconds
+   */
+  public long getStartTimestamp() {
+    return startTimestamp;
+  }
+
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  @JsonPOJOBuilder(withPrefix = "")
+  public static final class Builder {
+
+    private Type type;
+
+    private String name;
+
+    private String module;
+
+    private long startTimestamp;
+
+    private long durationMillis;
+
+    private Builder() {
+    }
+
+    public Builder type(Type type) {
+      this.type = type;
+      return this;
+    }
+
+    public Builder name(String name) {
+      this.name = name;
+      return this;
+    }
+
+    public Builder module(String module) {
+      this.module = module;
+      return this;
+    }
+
+    public Builder startTimestamp(long startTimestamp) {
+      this.startTimestamp = startTimestamp;
+      return this;
+    }
+
+    public Builder durationMillis(long durationMillis) {
+      this.durationMillis = durationMillis;
+      return this;
+    }
+
+    public BuildPhase build() {
+      return new BuildPhase(this);
+    }
+  }
+}
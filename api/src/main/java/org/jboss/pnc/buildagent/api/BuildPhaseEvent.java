@@ -0,0 +1,72 @@
+package org.jboss.pnc.buildagent.api;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+
+import java.io.Serializable;
+
+/**
+ * Sent on the status update channel as soon as a build phase of a running task is completed, when the build phase
+ * timing is enabled on the agent.
+ */
+@JsonDeserialize(builder = BuildPhaseEvent.Builder.class)
+public class BuildPhaseEvent implements Serializable {
+
+  private final String taskId;
+  private final Object context;
+  private final BuildPhase phase;
+
+  private BuildPhaseEvent(Builder builder) {
+    taskId = builder.taskId;
+    context = builder.context;
+    phase = builder.phase;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public String getTaskId() {
+    return taskId;
+  }
+
+  public Object getContext() {
+    return context;
+  }
+
+  public BuildPhase getPhase() {
+    return phase;
+  }
+
+  @JsonPOJOBuilder(withPrefix = "")
+  public static final class Builder {
+
+    private String taskId;
+
+    private Object context;
+
+    private BuildPhase phase;
+
+    private Builder() {
+    }
+
+    public Builder taskId(String taskId) {
+      this.taskId = taskId;
+      return this;
+    }
+
+    public Builder context(Object context) {
+      this.context = context;
+      return this;
+    }
+
+    public Builder phase(BuildPhase phase) {
+      this.phase = phase;
+      return this;
+    }
+
+    public BuildPhaseEvent build() {
+      return new BuildPhaseEvent(this);
+    }
+  }
+}
@@ -24,6 +24,56 @@ package org.jboss.pnc.buildagent.api;
 public class Constants {
     public static final String HTTP_PATH = "/";
     public static final String RUNNING_PROCESSES = "/processes";
+    public static final String OUTPUT_STATS = "/output-stats";
+    public static final String SHELL_POOL_STATS = "/shell-pool-stats";
+    public static final String COMMAND_CACHE_STATS = "/command-cache-stats";
+
+    /**
+     * Segment checksums of a task output, see {@link OutputSegments}. The task is selected with the taskId query
+     * parameter, term tasks also with the context and optionally the {@link #SUB_SESSION_PARAMETER}.
+     */
+    public static final String OUTPUT_SEGMENTS = "/output-segments";
+
+    /**
+     * Lines of the mapped or compressed file log, either the last ones with the tail query parameter or a range with
+     * the from and optional to (exclusive) parameters, lines are numbered from 0. The range returned is described by
+     * the {@link #LOG_FIRST_LINE_HEADER} and {@link #LOG_LINE_COUNT_HEADER} response headers. A range too large to
+     * be read at once is rejected with 413.
+     */
+    public static final String LOG_LINES = "/log-lines";
+    public static final String LOG_FIRST_LINE_HEADER = "X-Log-First-Line";
+
+    /**
+     * Lines in the whole log when the request was served.
+     */
+    public static final String LOG_LINE_COUNT_HEADER = "X-Log-Line-Count";
+
+    /**
+     * Segment files of the per session file log, see {@link SessionLogLayout}. The session is selected with the
+     * sessionId query parameter, without it the sessions on the disk and the disk usage are listed.
+     */
+    public static final String LOG_SEGMENTS = "/log-segments";
+
+    /**
+     * Bytes of the file log from the offset query parameter (default 0), at most limit bytes when given. With the wait
+     * parameter the request waits up to that many milliseconds for the output to grow beyond the offset. The log of a
+     * single session is read with the sessionId parameter when the file log is per session. The bytes returned are
+     * described by the {@link #LOG_START_OFFSET_HEADER} and {@link #LOG_END_OFFSET_HEADER} response headers. When the
+     * file log is compressed with gzip and the client accepts the gzip content encoding, the whole compressed blocks
+     * covering the range are returned as they are and the offsets describe the uncompressed bytes of the blocks.
+     */
+    public static final String LOG_BYTES = "/log-bytes";
+
+    /**
+     * Offset of the first byte returned, it is beyond the requested offset when the start of the log was evicted and
+     * before it when whole compressed blocks are returned.
+     */
+    public static final String LOG_START_OFFSET_HEADER = "X-Log-Start-Offset";
+
+    /**
+     * Offset after the last byte returned, the next read continues from it.
+     */
+    public static final String LOG_END_OFFSET_HEADER = "X-Log-End-Offset";
     public static final String SOCKET_PATH = "/socket";
     public static final String SERVLET_PATH = "/servlet";
     public static final String TERM_PATH = "/term";
@@ -32,6 +82,12 @@ public class Constants {
     public static final String TERM_PATH_SILENT = "/silent";
     public static final String PROCESS_UPDATES_PATH = "/process-status-updates";
 
+    /**
+     * Query parameter of the term and status update sockets selecting a named sub-session of the context. Each
+     * sub-session runs its own command concurrently with the other sub-sessions of the context.
+     */
+    public static final String SUB_SESSION_PARAMETER = "session";
+
     public static final String HTTP_INVOKER_PATH = "/http-invoker";
     public static final String HTTP_INVOKER_FULL_PATH = SERVLET_PATH + HTTP_INVOKER_PATH;
 
@@ -0,0 +1,93 @@
+package org.jboss.pnc.buildagent.api;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+
+import java.io.Serializable;
+
+/**
+ * A file holding a part of the output of a session, see {@link SessionLogLayout}.
+ */
+@JsonDeserialize(builder = LogSegment.Builder.class)
+public class LogSegment implements Serializable {
+
+  private final int index;
+  private final long offset;
+  private final long length;
+  private final String path;
+
+  private LogSegment(Builder builder) {
+    index = builder.index;
+    offset = builder.offset;
+    length = builder.length;
+    path = builder.path;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return position of the segment in the session, the indexes of the evicted segments are not reused
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * @return offset of the first byte of the segment in the session output
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * @return absolute path of the segment file on the agent, it can be fetched from {@link Constants#FILE_DOWNLOAD_PATH}
+   */
+  public String getPath() {
+    return path;
+  }
+
+  @JsonPOJOBuilder(withPrefix = "")
+  public static final class Builder {
+
+    private int index;
+
+    private long offset;
+
+    private long length;
+
+    private String path;
+
+    private Builder() {
+    }
+
+    public Builder index(int index) {
+      this.index = index;
+      return this;
+    }
+
+    public Builder offset(long offset) {
+      this.offset = offset;
+      return this;
+    }
+
+    public Builder length(long length) {
+      this.length = length;
+      return this;
+    }
+
+    public Builder path(String path) {
+      this.path = path;
+      return this;
+    }
+
+    public LogSegment build() {
+      return new LogSegment(this);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package org.jboss.pnc.buildagent.api;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+
+import java.io.Serializable;
+
+/**
+ * Sent on the status update channel as soon as a configured pattern appears in the output of a running task.
+ */
+@JsonDeserialize(builder = OutputMatchEvent.Builder.class)
+public class OutputMatchEvent implements Serializable {
+
+  private final String taskId;
+  private final Object context;
+  private final String pattern;
+  private final long outputOffset;
+
+  private OutputMatchEvent(Builder builder) {
+    taskId = builder.taskId;
+    context = builder.context;
+    pattern = builder.pattern;
+    outputOffset = builder.outputOffset;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public String getTaskId() {
+    return taskId;
+  }
+
+  public Object getContext() {
+    return context;
+  }
+
+  public String getPattern() {
+    return pattern;
+  }
+
+  /**
+   * @return number of output bytes up to the end of the match, counted from the start of the context output
+   */
+  public long getOutputOffset() {
+    return outputOffset;
+  }
+
+  @JsonPOJOBuilder(withPrefix = "")
+  public static final class Builder {
+
+    private String taskId;
+
+    private Object context;
+
+    private String pattern;
+
+    private long outputOffset;
+
+    private Builder() {
+    }
+
+    public Builder taskId(String taskId) {
+      this.taskId = taskId;
+      return this;
+    }
+
+    public Builder context(Object context) {
+      this.context = context;
+      return this;
+    }
+
+    public Builder pattern(String pattern) {
+      this.pattern = pattern;
+      return this;
+    }
+
+    public Builder outputOffset(long outputOffset) {
+      this.outputOffset = outputOffset;
+      return this;
+    }
+
+    public OutputMatchEvent build() {
+      return new OutputMatchEvent(this);
+    }
+  }
+}
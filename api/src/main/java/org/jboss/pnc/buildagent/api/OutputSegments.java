@@ -0,0 +1,129 @@
+package org.jboss.pnc.buildagent.api;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Checksums of the fixed size segments of a task output and the Merkle root over them, so a client can verify the
+ * segments it read without reading the whole output.
+ *
+ * Segment i covers the output bytes [i * segmentSize, min((i + 1) * segmentSize, outputBytes)). Every tree level is
+ * built by digesting the UTF-8 bytes of the concatenated hex checksums of two neighbours, the last node of a level
+ * with an odd number of nodes is carried to the next level as it is. The root of a single segment is its checksum,
+ * the root of an empty output is the checksum of no bytes.
+ */
+@JsonDeserialize(builder = OutputSegments.Builder.class)
+public class OutputSegments implements Serializable {
+
+  private final String algorithm;
+  private final long segmentSize;
+  private final long outputBytes;
+  private final List<String> segments;
+  private final String root;
+  private final boolean complete;
+
+  private OutputSegments(Builder builder) {
+    algorithm = builder.algorithm;
+    segmentSize = builder.segmentSize;
+    outputBytes = builder.outputBytes;
+    segments = builder.segments;
+    root = builder.root;
+    complete = builder.complete;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return algorithm of the segment and tree checksums, eg. "SHA-256"
+   */
+  public String getAlgorithm() {
+    return algorithm;
+  }
+
+  public long getSegmentSize() {
+    return segmentSize;
+  }
+
+  /**
+   * @return number of output bytes covered by the segments
+   */
+  public long getOutputBytes() {
+    return outputBytes;
+  }
+
+  /**
+   * @return hex checksums of the segments in the output order
+   */
+  public List<String> getSegments() {
+    return segments;
+  }
+
+  public String getRoot() {
+    return root;
+  }
+
+  /**
+   * @return false while the task is running, the segments then cover only the completed segments
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  @JsonPOJOBuilder(withPrefix = "")
+  public static final class Builder {
+
+    private String algorithm;
+
+    private long segmentSize;
+
+    private long outputBytes;
+
+    private List<String> segments;
+
+    private String root;
+
+    private boolean complete;
+
+    private Builder() {
+    }
+
+    public Builder algorithm(String algorithm) {
+      this.algorithm = algorithm;
+      return this;
+    }
+
+    public Builder segmentSize(long segmentSize) {
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
+    public Builder outputBytes(long outputBytes) {
+      this.outputBytes = outputBytes;
+      return this;
+    }
+
+    public Builder segments(List<String> segments) {
+      this.segments = segments;
+      return this;
+    }
+
+    public Builder root(String root) {
+      this.root = root;
+      return this;
+    }
+
+    public Builder complete(boolean complete) {
+      this.complete = complete;
+      return this;
+    }
+
+    public OutputSegments build() {
+      return new OutputSegments(this);
+    }
+  }
+}
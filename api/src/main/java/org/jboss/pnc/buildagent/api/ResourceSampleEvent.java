@@ -0,0 +1,162 @@
+package org.jboss.pnc.buildagent.api;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+
+import java.io.Serializable;
+
+/**
+ * Sent on the status update channel with every resource sample of a running task, when the sample streaming is
+ * enabled on the agent.
+ */
+@JsonDeserialize(builder = ResourceSampleEvent.Builder.class)
+public class ResourceSampleEvent implements Serializable {
+
+  private final String taskId;
+  private final Object context;
+  private final long timestamp;
+  private final long cpuTimeMillis;
+  private final long rssBytes;
+  private final int threads;
+  private final int processes;
+  private final long readBytes;
+  private final long writeBytes;
+
+  private ResourceSampleEvent(Builder builder) {
+    taskId = builder.taskId;
+    context = builder.context;
+    timestamp = builder.timestamp;
+    cpuTimeMillis = builder.cpuTimeMillis;
+    rssBytes = builder.rssBytes;
+    threads = builder.threads;
+    processes = builder.processes;
+    readBytes = builder.readBytes;
+    writeBytes = builder.writeBytes;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public String getTaskId() {
+    return taskId;
+  }
+
+  public Object getContext() {
+    return context;
+  }
+
+  /**
+   * @return sample time in milliseconds
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * @return CPU time of the process tree consumed since the task started
+   */
+  public long getCpuTimeMillis() {
+    return cpuTimeMillis;
+  }
+
+  public long getRssBytes() {
+    return rssBytes;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public int getProcesses() {
+    return processes;
+  }
+
+  /**
+   * @return bytes read from the storage since the task started
+   */
+  public long getReadBytes() {
+    return readBytes;
+  }
+
+  /**
+   * @return bytes written to the storage since the task started
+   */
+  public long getWriteBytes() {
+    return writeBytes;
+  }
+
+  @JsonPOJOBuilder(withPrefix = "")
+  public static final class Builder {
+
+    private String taskId;
+
+    private Object context;
+
+    private long timestamp;
+
+    private long cpuTimeMillis;
+
+    private long rssBytes;
+
+    private int threads;
+
+    private int processes;
+
+    private long readBytes;
+
+    private long writeBytes;
+
+    private Builder() {
+    }
+
+    public Builder taskId(String taskId) {
+      this.taskId = taskId;
+      return this;
+    }
+
+    public Builder context(Object context) {
+      this.context = context;
+      return this;
+    }
+
+    public Builder timestamp(long timestamp) {
+      this.timestamp = timestamp;
+      return this;
+    }
+
+    public Builder cpuTimeMillis(long cpuTimeMillis) {
+      this.cpuTimeMillis = cpuTimeMillis;
+      return this;
+    }
+
+    public Builder rssBytes(long rssBytes) {
+      this.rssBytes = rssBytes;
+      return this;
+    }
+
+    public Builder threads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    public Builder processes(int processes) {
+      this.processes = processes;
+      return this;
+    }
+
+    public Builder readBytes(long readBytes) {
+      this.readBytes = readBytes;
+      return this;
+    }
+
+    public Builder writeBytes(long writeBytes) {
+      this.writeBytes = writeBytes;
+      return this;
+    }
+
+    public ResourceSampleEvent build() {
+      return new ResourceSampleEvent(this);
+    }
+  }
+}
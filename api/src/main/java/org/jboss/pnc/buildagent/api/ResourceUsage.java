@@ -0,0 +1,126 @@
+package org.jboss.pnc.buildagent.api;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+
+import java.io.Serializable;
+
+/**
+ * Resources consumed by the process tree of a task, sampled periodically while the task was running. Processes which
+ * start and exit between two samples are accounted only through the CPU time of their parent.
+ */
+@JsonDeserialize(builder = ResourceUsage.Builder.class)
+public class ResourceUsage implements Serializable {
+
+  private final long cpuTimeMillis;
+  private final long peakRssBytes;
+  private final int peakThreads;
+  private final long readBytes;
+  private final long writeBytes;
+  private final int samples;
+
+  private ResourceUsage(Builder builder) {
+    cpuTimeMillis = builder.cpuTimeMillis;
+    peakRssBytes = builder.peakRssBytes;
+    peakThreads = builder.peakThreads;
+    readBytes = builder.readBytes;
+    writeBytes = builder.writeBytes;
+    samples = builder.samples;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return user and system CPU time of the process tree, including the waited for children
+   */
+  public long getCpuTimeMillis() {
+    return cpuTimeMillis;
+  }
+
+  /**
+   * @return highest sampled resident set size of the whole process tree
+   */
+  public long getPeakRssBytes() {
+    return peakRssBytes;
+  }
+
+  /**
+   * @return highest sampled number of threads of the whole process tree
+   */
+  public int getPeakThreads() {
+    return peakThreads;
+  }
+
+  /**
+   * @return bytes the processes of the tree read from the storage
+   */
+  public long getReadBytes() {
+    return readBytes;
+  }
+
+  /**
+   * @return bytes the processes of the tree wrote to the storage
+   */
+  public long getWriteBytes() {
+    return writeBytes;
+  }
+
+  public int getSamples() {
+    return samples;
+  }
+
+  @JsonPOJOBuilder(withPrefix = "")
+  public static final class Builder {
+
+    private long cpuTimeMillis;
+
+    private long peakRssBytes;
+
+    private int peakThreads;
+
+    private long readBytes;
+
+    private long writeBytes;
+
+    private int samples;
+
+    private Builder() {
+    }
+
+    public Builder cpuTimeMillis(long cpuTimeMillis) {
+      this.cpuTimeMillis = cpuTimeMillis;
+      return this;
+    }
+
+    public Builder peakRssBytes(long peakRssBytes) {
+      this.peakRssBytes = peakRssBytes;
+      return this;
+    }
+
+    public Builder peakThreads(int peakThreads) {
+      this.peakThreads = peakThreads;
+      return this;
+    }
+
+    public Builder readBytes(long readBytes) {
+      this.readBytes = readBytes;
+      return this;
+    }
+
+    public Builder writeBytes(long writeBytes) {
+      this.writeBytes = writeBytes;
+      return this;
+    }
+
+    public Builder samples(int samples) {
+      this.samples = samples;
+      return this;
+    }
+
+    public ResourceUsage build() {
+      return new ResourceUsage(this);
+    }
+  }
+}
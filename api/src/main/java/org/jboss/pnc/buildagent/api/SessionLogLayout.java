@@ -0,0 +1,83 @@
+package org.jboss.pnc.buildagent.api;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Segment files of the output of a session in the per session file log. The output is rotated into a new segment when
+ * a segment reaches the configured size, the oldest segments of all the sessions are evicted when the log exceeds the
+ * disk budget, so the segments may start after the beginning of the output.
+ */
+@JsonDeserialize(builder = SessionLogLayout.Builder.class)
+public class SessionLogLayout implements Serializable {
+
+  private final String sessionId;
+  private final long size;
+  private final List<LogSegment> segments;
+
+  private SessionLogLayout(Builder builder) {
+    sessionId = builder.sessionId;
+    size = builder.size;
+    segments = builder.segments;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * @return id of the http invoker session, or the term context and sub-session name
+   */
+  public String getSessionId() {
+    return sessionId;
+  }
+
+  /**
+   * @return bytes of output written by the session, including the evicted segments
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * @return segments still on the disk in the output order
+   */
+  public List<LogSegment> getSegments() {
+    return segments;
+  }
+
+  @JsonPOJOBuilder(withPrefix = "")
+  public static final class Builder {
+
+    private String sessionId;
+
+    private long size;
+
+    private List<LogSegment> segments;
+
+    private Builder() {
+    }
+
+    public Builder sessionId(String sessionId) {
+      this.sessionId = sessionId;
+      return this;
+    }
+
+    public Builder size(long size) {
+      this.size = size;
+      return this;
+    }
+
+    public Builder segments(List<LogSegment> segments) {
+      this.segments = segments;
+      return this;
+    }
+
+    public SessionLogLayout build() {
+      return new SessionLogLayout(this);
+    }
+  }
+}
@@ -26,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * @author <a href="mailto:matejonnet@gmail.com">Matej Lazar</a>
@@ -38,8 +39,15 @@ public class TaskStatusUpdateEvent implements Serializable {
   private final String taskId;
   private final Status newStatus;
   private final String outputChecksum;
+  private final String outputChecksumAlgorithm;
   private final String message;
   private final Object context;
+  private final long suppressedOutputBytes;
+  private final long suppressedOutputLines;
+  private final boolean cacheHit;
+  private final ResourceUsage resourceUsage;
+  private final List<BuildPhase> buildPhases;
+  private final OutputSegments outputSegments;
 
   @Deprecated
   private final Status oldStatus;
@@ -51,7 +59,14 @@ public class TaskStatusUpdateEvent implements Serializable {
     this.newStatus = newStatus;
     this.context = context;
     this.outputChecksum = outputChecksum;
+    this.outputChecksumAlgorithm = null;
     this.message = "";
+    this.suppressedOutputBytes = 0;
+    this.suppressedOutputLines = 0;
+    this.cacheHit = false;
+    this.resourceUsage = null;
+    this.buildPhases = null;
+    this.outputSegments = null;
   }
 
   @Deprecated
@@ -61,16 +76,30 @@ public class TaskStatusUpdateEvent implements Serializable {
     this.newStatus = newStatus;
     this.context = context;
     this.outputChecksum = "";
+    this.outputChecksumAlgorithm = null;
     this.message = "";
+    this.suppressedOutputBytes = 0;
+    this.suppressedOutputLines = 0;
+    this.cacheHit = false;
+    this.resourceUsage = null;
+    this.buildPhases = null;
+    this.outputSegments = null;
   }
 
   private TaskStatusUpdateEvent(Builder builder) {
     taskId = builder.taskId;
     newStatus = builder.newStatus;
     outputChecksum = builder.outputChecksum;
+    outputChecksumAlgorithm = builder.outputChecksumAlgorithm;
     message = builder.message;
     oldStatus = builder.oldStatus;
     context = builder.context;
+    suppressedOutputBytes = builder.suppressedOutputBytes;
+    suppressedOutputLines = builder.suppressedOutputLines;
+    cacheHit = builder.cacheHit;
+    resourceUsage = builder.resourceUsage;
+    buildPhases = builder.buildPhases;
+    outputSegments = builder.outputSegments;
   }
 
   public static Builder newBuilder() {
@@ -82,9 +111,16 @@ public class TaskStatusUpdateEvent implements Serializable {
     builder.taskId = copy.getTaskId();
     builder.newStatus = copy.getNewStatus();
     builder.outputChecksum = copy.getOutputChecksum();
+    builder.outputChecksumAlgorithm = copy.getOutputChecksumAlgorithm();
     builder.message = copy.getMessage();
     builder.oldStatus = copy.getOldStatus();
     builder.context = copy.getContext();
+    builder.suppressedOutputBytes = copy.getSuppressedOutputBytes();
+    builder.suppressedOutputLines = copy.getSuppressedOutputLines();
+    builder.cacheHit = copy.isCacheHit();
+    builder.resourceUsage = copy.getResourceUsage();
+    builder.buildPhases = copy.getBuildPhases();
+    builder.outputSegments = copy.getOutputSegments();
     return builder;
   }
 
@@ -109,10 +145,61 @@ public class TaskStatusUpdateEvent implements Serializable {
     return outputChecksum;
   }
 
+  /**
+   * @return algorithm of the output checksum, eg. "MD5" or "xxHash64", null when the agent does not report it
+   */
+  public String getOutputChecksumAlgorithm() {
+    return outputChecksumAlgorithm;
+  }
+
   public String getMessage() {
     return message;
   }
 
+  /**
+   * @return number of output bytes not written to a log sink because of the output limits, the highest number among
+   *         the sinks
+   */
+  public long getSuppressedOutputBytes() {
+    return suppressedOutputBytes;
+  }
+
+  /**
+   * @return number of output lines not written to a log sink because of the output limits, the highest number among
+   *         the sinks
+   */
+  public long getSuppressedOutputLines() {
+    return suppressedOutputLines;
+  }
+
+  /**
+   * @return true when the command was not executed, the output and the output files were restored from the cache
+   */
+  public boolean isCacheHit() {
+    return cacheHit;
+  }
+
+  /**
+   * @return resources consumed by the task processes, null when the resources were not sampled
+   */
+  public ResourceUsage getResourceUsage() {
+    return resourceUsage;
+  }
+
+  /**
+   * @return timeline of the Maven or Gradle build run by the task, null when the build phases were not timed
+   */
+  public List<BuildPhase> getBuildPhases() {
+    return buildPhases;
+  }
+
+  /**
+   * @return segment checksums of the output, null when the agent does not compute them
+   */
+  public OutputSegments getOutputSegments() {
+    return outputSegments;
+  }
+
   public String toString() {
     ObjectMapper mapper = new ObjectMapper();
     try {
@@ -132,12 +219,26 @@ public class TaskStatusUpdateEvent implements Serializable {
 
     private String outputChecksum;
 
+    private String outputChecksumAlgorithm;
+
     private String message;
 
     private Status oldStatus;
 
     private Object context;
 
+    private long suppressedOutputBytes;
+
+    private long suppressedOutputLines;
+
+    private boolean cacheHit;
+
+    private ResourceUsage resourceUsage;
+
+    private List<BuildPhase> buildPhases;
+
+    private OutputSegments outputSegments;
+
     private Builder() {
     }
 
@@ -156,6 +257,11 @@ public class TaskStatusUpdateEvent implements Serializable {
       return this;
     }
 
+    public Builder outputChecksumAlgorithm(String outputChecksumAlgorithm) {
+      this.outputChecksumAlgorithm = outputChecksumAlgorithm;
+      return this;
+    }
+
     public Builder message(String message) {
       this.message = message;
       return this;
@@ -166,6 +272,36 @@ public class TaskStatusUpdateEvent implements Serializable {
       return this;
     }
 
+    public Builder suppressedOutputBytes(long suppressedOutputBytes) {
+      this.suppressedOutputBytes = suppressedOutputBytes;
+      return this;
+    }
+
+    public Builder suppressedOutputLines(long suppressedOutputLines) {
+      this.suppressedOutputLines = suppressedOutputLines;
+      return this;
+    }
+
+    public Builder cacheHit(boolean cacheHit) {
+      this.cacheHit = cacheHit;
+      return this;
+    }
+
+    public Builder resourceUsage(ResourceUsage resourceUsage) {
+      this.resourceUsage = resourceUsage;
+      return this;
+    }
+
+    public Builder buildPhases(List<BuildPhase> buildPhases) {
+      this.buildPhases = buildPhases;
+      return this;
+    }
+
+    public Builder outputSegments(OutputSegments outputSegments) {
+      this.outputSegments = outputSegments;
+      return this;
+    }
+
     @Deprecated
     public Builder oldStatus(Status oldStatus) {
       this.oldStatus = oldStatus;
@@ -0,0 +1,69 @@
+package org.jboss.pnc.buildagent.api.httpinvoke;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Declares an invoked command cacheable. The result of the command is reused when the command line, the working
+ * directory and the environment of the agent and the content of the input paths did not change since a successful run.
+ *
+ * Paths are files or directories, relative paths are resolved against the working directory of the agent.
+ */
+@JsonDeserialize(builder = CacheConfig.Builder.class)
+public class CacheConfig {
+
+    /**
+     * Files and directories the result of the command depends on.
+     */
+    private final List<String> inputs;
+
+    /**
+     * Files and directories produced by the command, they are restored when the cached result is used.
+     */
+    private final List<String> outputs;
+
+    private CacheConfig(Builder builder) {
+        inputs = builder.inputs;
+        outputs = builder.outputs;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    public List<String> getInputs() {
+        return inputs;
+    }
+
+    public List<String> getOutputs() {
+        return outputs;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    public static final class Builder {
+
+        private List<String> inputs = Collections.emptyList();
+
+        private List<String> outputs = Collections.emptyList();
+
+        private Builder() {
+        }
+
+        public Builder inputs(List<String> inputs) {
+            this.inputs = inputs;
+            return this;
+        }
+
+        public Builder outputs(List<String> outputs) {
+            this.outputs = outputs;
+            return this;
+        }
+
+        public CacheConfig build() {
+            return new CacheConfig(this);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.jboss.pnc.buildagent.api.httpinvoke;
+
+/**
+ * How the invoked command is executed.
+ */
+public enum ExecutionMode {
+
+    /**
+     * The command runs in a pseudo terminal, the output is decoded and re-encoded as UTF-8.
+     */
+    PTY,
+
+    /**
+     * The command runs as a plain process, the output bytes are passed to the output channels as they are.
+     */
+    PROCESS
+}
@@ -1,5 +1,6 @@
 package org.jboss.pnc.buildagent.api.httpinvoke;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
 import org.jboss.pnc.api.dto.HeartbeatConfig;
@@ -13,6 +14,7 @@ import java.util.Collections;
  * @author <a href="mailto:matejonnet@gmail.com">Matej Lazar</a>
  */
 @JsonDeserialize(builder = InvokeRequest.Builder.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class InvokeRequest {
 
     private final String command;
@@ -24,6 +26,21 @@ public class InvokeRequest {
 
     private final HeartbeatConfig heartbeatConfig;
 
+    /**
+     * Null runs the command in {@link ExecutionMode#PTY}.
+     */
+    private final ExecutionMode executionMode;
+
+    /**
+     * Null executes the command every time.
+     */
+    private final CacheConfig cacheConfig;
+
+    /**
+     * Null uses the default algorithm of the agent, see {@link #getOutputChecksumAlgorithm()}.
+     */
+    private final String outputChecksumAlgorithm;
+
     /**
      * @deprecated use {@link InvokeRequest(String, Request )}
      */
@@ -31,6 +48,9 @@ public class InvokeRequest {
     public InvokeRequest(String command, URL callbackUrl, String callbackMethod) {
         this.command = command;
         heartbeatConfig = null;
+        executionMode = null;
+        cacheConfig = null;
+        outputChecksumAlgorithm = null;
         try {
             this.callback = new Request(Request.Method.valueOf(callbackMethod), callbackUrl.toURI(), Collections.emptyList());
         } catch (URISyntaxException e) {
@@ -42,18 +62,27 @@ public class InvokeRequest {
         this.command = command;
         this.callback = callback;
         heartbeatConfig = null;
+        executionMode = null;
+        cacheConfig = null;
+        outputChecksumAlgorithm = null;
     }
 
     public InvokeRequest(String command, Request callback, HeartbeatConfig heartbeatConfig) {
         this.command = command;
         this.callback = callback;
         this.heartbeatConfig = heartbeatConfig;
+        this.executionMode = null;
+        this.cacheConfig = null;
+        this.outputChecksumAlgorithm = null;
     }
 
     private InvokeRequest(Builder builder) {
         command = builder.command;
         callback = builder.callback;
         heartbeatConfig = builder.heartbeatConfig;
+        executionMode = builder.executionMode;
+        cacheConfig = builder.cacheConfig;
+        outputChecksumAlgorithm = builder.outputChecksumAlgorithm;
     }
 
     public static Builder builder() {
@@ -72,6 +101,21 @@ public class InvokeRequest {
         return heartbeatConfig;
     }
 
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public CacheConfig getCacheConfig() {
+        return cacheConfig;
+    }
+
+    /**
+     * @return one of MD5, SHA-256, CRC32C or xxHash64
+     */
+    public String getOutputChecksumAlgorithm() {
+        return outputChecksumAlgorithm;
+    }
+
     @JsonPOJOBuilder(withPrefix = "")
     public static final class Builder {
 
@@ -81,6 +125,12 @@ public class InvokeRequest {
 
         private HeartbeatConfig heartbeatConfig;
 
+        private ExecutionMode executionMode;
+
+        private CacheConfig cacheConfig;
+
+        private String outputChecksumAlgorithm;
+
         private Builder() {
         }
 
@@ -99,6 +149,21 @@ public class InvokeRequest {
             return this;
         }
 
+        public Builder executionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        public Builder cacheConfig(CacheConfig cacheConfig) {
+            this.cacheConfig = cacheConfig;
+            return this;
+        }
+
+        public Builder outputChecksumAlgorithm(String outputChecksumAlgorithm) {
+            this.outputChecksumAlgorithm = outputChecksumAlgorithm;
+            return this;
+        }
+
         public InvokeRequest build() {
             return new InvokeRequest(this);
         }
@@ -6,4 +6,14 @@ package org.jboss.pnc.buildagent.api.logging;
 public interface LogFormatter {
 
     String format(String message);
+
+    /**
+     * Formats a line of the output stamped at capture. Formatters not supporting the stamp format just the message.
+     *
+     * @param sequence number of the line in the session output
+     * @param timestamp capture time of the line in milliseconds
+     */
+    default String format(String message, long sequence, long timestamp) {
+        return format(message);
+    }
 }
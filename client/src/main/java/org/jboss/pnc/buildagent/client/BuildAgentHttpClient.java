@@ -4,7 +4,9 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import org.jboss.pnc.api.dto.HeartbeatConfig;
 import org.jboss.pnc.api.dto.Request;
 import org.jboss.pnc.buildagent.api.Constants;
+import org.jboss.pnc.buildagent.api.httpinvoke.CacheConfig;
 import org.jboss.pnc.buildagent.api.httpinvoke.Cancel;
+import org.jboss.pnc.buildagent.api.httpinvoke.ExecutionMode;
 import org.jboss.pnc.buildagent.api.httpinvoke.InvokeRequest;
 import org.jboss.pnc.buildagent.api.httpinvoke.InvokeResponse;
 import org.jboss.pnc.buildagent.api.httpinvoke.RetryConfig;
@@ -39,6 +41,12 @@ public class BuildAgentHttpClient extends BuildAgentClientBase implements BuildA
 
     private final Optional<HeartbeatConfig> heartbeatConfig;
 
+    private final ExecutionMode executionMode;
+
+    private final CacheConfig cacheConfig;
+
+    private final String outputChecksumAlgorithm;
+
     private String sessionId;
 
     /**
@@ -58,6 +66,9 @@ public class BuildAgentHttpClient extends BuildAgentClientBase implements BuildA
             throw new RuntimeException(e);
         }
         this.heartbeatConfig = Optional.empty();
+        this.executionMode = null;
+        this.cacheConfig = null;
+        this.outputChecksumAlgorithm = null;
         try {
             invokerUri = new URI(termBaseUrl + Constants.HTTP_INVOKER_FULL_PATH);
         } catch (URISyntaxException e) {
@@ -74,6 +85,9 @@ public class BuildAgentHttpClient extends BuildAgentClientBase implements BuildA
                 configuration.getRequestHeaders());
         this.callback = configuration.getCallback();
         this.heartbeatConfig = configuration.getHeartbeatConfig();
+        this.executionMode = configuration.getExecutionMode();
+        this.cacheConfig = configuration.getCacheConfig();
+        this.outputChecksumAlgorithm = configuration.getOutputChecksumAlgorithm();
         try {
             String agentBaseUrl = StringUtils.stripEndingSlash(configuration.getTermBaseUrl());
             invokerUri = new URI(agentBaseUrl + Constants.HTTP_INVOKER_FULL_PATH);
@@ -96,6 +110,9 @@ public class BuildAgentHttpClient extends BuildAgentClientBase implements BuildA
                 configuration.getRequestHeaders());
         this.callback = configuration.getCallback();
         this.heartbeatConfig = configuration.getHeartbeatConfig();
+        this.executionMode = configuration.getExecutionMode();
+        this.cacheConfig = configuration.getCacheConfig();
+        this.outputChecksumAlgorithm = configuration.getOutputChecksumAlgorithm();
         try {
             String agentBaseUrl = StringUtils.stripEndingSlash(configuration.getTermBaseUrl());
             invokerUri = new URI(agentBaseUrl + Constants.HTTP_INVOKER_FULL_PATH);
@@ -154,7 +171,15 @@ public class BuildAgentHttpClient extends BuildAgentClientBase implements BuildA
             return result;
         }
 
-        return asJson(new InvokeRequest(cmd, this.callback, heartbeatConfig.orElse(null)))
+        InvokeRequest invokeRequest = InvokeRequest.builder()
+                .command(cmd)
+                .callback(this.callback)
+                .heartbeatConfig(heartbeatConfig.orElse(null))
+                .executionMode(executionMode)
+                .cacheConfig(cacheConfig)
+                .outputChecksumAlgorithm(outputChecksumAlgorithm)
+                .build();
+        return asJson(invokeRequest)
                 .thenCompose(requestJson -> {
             return getHttpClient().invoke(
                     new Request(Request.Method.POST, invokerUri, requestHeaders),
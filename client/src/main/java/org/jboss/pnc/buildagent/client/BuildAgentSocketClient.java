@@ -21,6 +21,7 @@ package org.jboss.pnc.buildagent.client;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jboss.pnc.buildagent.api.Constants;
 import org.jboss.pnc.buildagent.api.ResponseMode;
 import org.jboss.pnc.buildagent.api.TaskStatusUpdateEvent;
 import org.jboss.pnc.buildagent.api.httpinvoke.RetryConfig;
@@ -65,6 +66,11 @@ public class BuildAgentSocketClient extends BuildAgentClientBase implements Buil
 
     private String commandContext;
 
+    /**
+     * Query selecting the sub-session, empty for the default session.
+     */
+    private String subSessionQuery = "";
+
     private final ResponseMode responseMode;
     private final boolean readOnly;
 
@@ -118,6 +124,7 @@ public class BuildAgentSocketClient extends BuildAgentClientBase implements Buil
                 configuration.getRetryConfig(),
                 configuration.getRequestHeaders());
         this.commandContext = formatCommandContext(configuration.getCommandContext());
+        this.subSessionQuery = formatSubSessionQuery(configuration.getSubSession());
         this.responseMode = configuration.getResponseMode();
         this.readOnly = configuration.isReadOnly();
 
@@ -147,6 +154,7 @@ public class BuildAgentSocketClient extends BuildAgentClientBase implements Buil
                 configuration.getRetryConfig(),
                 configuration.getRequestHeaders());
         this.commandContext = formatCommandContext(configuration.getCommandContext());
+        this.subSessionQuery = formatSubSessionQuery(configuration.getSubSession());
         this.responseMode = configuration.getResponseMode();
         this.readOnly = configuration.isReadOnly();
 
@@ -271,6 +279,11 @@ public class BuildAgentSocketClient extends BuildAgentClientBase implements Buil
             } catch (IOException e) {
                 log.error( "Cannot read JSON string: " + text, e);
             }
+            JsonNode action = jsonObject == null ? null : jsonObject.get("action");
+            if (action != null && !"status-update".equals(action.asText())) {
+                log.debug("Ignoring {} event.", action.asText());
+                return;
+            }
             try {
                 TaskStatusUpdateEvent taskStatusUpdateEvent = mapper.treeToValue(jsonObject.get("event"), TaskStatusUpdateEvent.class);
                 onStatusUpdate.accept(taskStatusUpdateEvent);
@@ -281,7 +294,7 @@ public class BuildAgentSocketClient extends BuildAgentClientBase implements Buil
         client.onStringMessage(responseConsumer);
 
         try {
-            String websocketUrl = stripEndingSlash(webSocketBaseUrl) + RemoteEndpoint.WEB_SOCKET_LISTENER_PATH + commandContext;
+            String websocketUrl = stripEndingSlash(webSocketBaseUrl) + RemoteEndpoint.WEB_SOCKET_LISTENER_PATH + commandContext + subSessionQuery;
             ClientEndpointConfig clientEndpointConfig = ClientEndpointConfig.Builder.create().build();
             webSocketContainer.connectToServer(client, clientEndpointConfig, new URI(websocketUrl));
         } catch (Exception e) {
@@ -315,7 +328,7 @@ public class BuildAgentSocketClient extends BuildAgentClientBase implements Buil
         }
 
         try {
-            String websocketUrl = webSocketPath + commandContext + appendReadOnly;
+            String websocketUrl = webSocketPath + commandContext + appendReadOnly + subSessionQuery;
             ClientEndpointConfig clientEndpointConfig = ClientEndpointConfig.Builder.create().build();
             webSocketContainer.connectToServer(client, clientEndpointConfig, new URI(websocketUrl));
         } catch (Exception e) {
@@ -331,6 +344,13 @@ public class BuildAgentSocketClient extends BuildAgentClientBase implements Buil
         return commandContext;
     }
 
+    private String formatSubSessionQuery(String subSession) {
+        if (subSession == null || subSession.isEmpty()) {
+            return "";
+        }
+        return "?" + Constants.SUB_SESSION_PARAMETER + "=" + subSession;
+    }
+
     private String stripEndingSlash(String path) {
         return path.replaceAll("/$", "");
     }
@@ -2,6 +2,8 @@ package org.jboss.pnc.buildagent.client;
 
 import org.jboss.pnc.api.dto.HeartbeatConfig;
 import org.jboss.pnc.api.dto.Request;
+import org.jboss.pnc.buildagent.api.httpinvoke.CacheConfig;
+import org.jboss.pnc.buildagent.api.httpinvoke.ExecutionMode;
 import org.jboss.pnc.buildagent.api.httpinvoke.RetryConfig;
 
 import java.util.Collections;
@@ -15,6 +17,9 @@ public class HttpClientConfiguration extends ClientConfigurationBase {
 
     private Request callback;
     private Optional<HeartbeatConfig> heartbeatConfig;
+    private ExecutionMode executionMode;
+    private CacheConfig cacheConfig;
+    private String outputChecksumAlgorithm;
 
     private HttpClientConfiguration(Builder builder) {
         termBaseUrl = builder.termBaseUrl;
@@ -23,6 +28,9 @@ public class HttpClientConfiguration extends ClientConfigurationBase {
         retryConfig = builder.retryConfig;
         heartbeatConfig = builder.heartbeatConfig;
         requestHeaders = builder.requestHeaders;
+        executionMode = builder.executionMode;
+        cacheConfig = builder.cacheConfig;
+        outputChecksumAlgorithm = builder.outputChecksumAlgorithm;
     }
 
     public static Builder newBuilder() {
@@ -37,6 +45,9 @@ public class HttpClientConfiguration extends ClientConfigurationBase {
         builder.retryConfig = copy.getRetryConfig();
         builder.heartbeatConfig = copy.getHeartbeatConfig();
         builder.requestHeaders = copy.getRequestHeaders();
+        builder.executionMode = copy.getExecutionMode();
+        builder.cacheConfig = copy.getCacheConfig();
+        builder.outputChecksumAlgorithm = copy.getOutputChecksumAlgorithm();
         return builder;
     }
 
@@ -48,6 +59,27 @@ public class HttpClientConfiguration extends ClientConfigurationBase {
         return heartbeatConfig;
     }
 
+    /**
+     * @return null when the agent default (PTY) is used
+     */
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * @return null when the commands are always executed
+     */
+    public CacheConfig getCacheConfig() {
+        return cacheConfig;
+    }
+
+    /**
+     * @return null when the agent default is used
+     */
+    public String getOutputChecksumAlgorithm() {
+        return outputChecksumAlgorithm;
+    }
+
     public static final class Builder {
         private String termBaseUrl;
         private Long livenessResponseTimeout = 30000L;
@@ -55,6 +87,9 @@ public class HttpClientConfiguration extends ClientConfigurationBase {
         public Optional<HeartbeatConfig> heartbeatConfig = Optional.empty();
         private RetryConfig retryConfig = new RetryConfig(10, 500L);
         private List<Request.Header> requestHeaders = Collections.emptyList();
+        private ExecutionMode executionMode;
+        private CacheConfig cacheConfig;
+        private String outputChecksumAlgorithm;
 
         private Builder() {
         }
@@ -89,6 +124,21 @@ public class HttpClientConfiguration extends ClientConfigurationBase {
             return this;
         }
 
+        public Builder executionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        public Builder cacheConfig(CacheConfig cacheConfig) {
+            this.cacheConfig = cacheConfig;
+            return this;
+        }
+
+        public Builder outputChecksumAlgorithm(String outputChecksumAlgorithm) {
+            this.outputChecksumAlgorithm = outputChecksumAlgorithm;
+            return this;
+        }
+
         public HttpClientConfiguration build() {
             return new HttpClientConfiguration(this);
         }
@@ -11,6 +11,7 @@ public class SocketClientConfiguration extends ClientConfigurationBase {
     private ResponseMode responseMode;
     private boolean readOnly;
     private String commandContext;
+    private String subSession;
 
     private SocketClientConfiguration(Builder builder) {
         termBaseUrl = builder.termBaseUrl;
@@ -18,6 +19,7 @@ public class SocketClientConfiguration extends ClientConfigurationBase {
         readOnly = builder.readOnly;
         livenessResponseTimeout = builder.livenessResponseTimeout;
         commandContext = builder.commandContext;
+        subSession = builder.subSession;
         retryConfig = builder.retryConfig;
     }
 
@@ -32,6 +34,7 @@ public class SocketClientConfiguration extends ClientConfigurationBase {
         builder.responseMode = copy.getResponseMode();
         builder.readOnly = copy.isReadOnly();
         builder.commandContext = copy.getCommandContext();
+        builder.subSession = copy.getSubSession();
         builder.retryConfig = copy.getRetryConfig();
         return builder;
     }
@@ -48,12 +51,20 @@ public class SocketClientConfiguration extends ClientConfigurationBase {
         return commandContext;
     }
 
+    /**
+     * @return name of the sub-session of the command context, null for the default session
+     */
+    public String getSubSession() {
+        return subSession;
+    }
+
     public static final class Builder {
         private String termBaseUrl;
         private Long livenessResponseTimeout = 30000L;
         private ResponseMode responseMode = ResponseMode.SILENT;
         private boolean readOnly = false;
         private String commandContext = "";
+        private String subSession;
         public RetryConfig retryConfig = new RetryConfig(10, 500L);
 
         private Builder() {
@@ -84,6 +95,15 @@ public class SocketClientConfiguration extends ClientConfigurationBase {
             return this;
         }
 
+        /**
+         * Connects to a named sub-session of the command context, which runs commands concurrently with the other
+         * sub-sessions of the context.
+         */
+        public Builder subSession(String subSession) {
+            this.subSession = subSession;
+            return this;
+        }
+
         public Builder retryConfig(RetryConfig retryConfig) {
             this.retryConfig = retryConfig;
             return this;
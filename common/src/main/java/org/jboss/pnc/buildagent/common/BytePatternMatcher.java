@@ -0,0 +1,202 @@
+package org.jboss.pnc.buildagent.common;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Finds a set of byte patterns in a stream in a single pass (Aho-Corasick). The patterns are compiled into a
+ * transition table, scanning a byte is a table lookup and does not allocate.
+ *
+ * The matcher is immutable and can be shared, the position in a stream is kept by a {@link Scanner}. Matches spanning
+ * several scanned chunks are found as well.
+ */
+public class BytePatternMatcher {
+
+    private static final int ALPHABET = 256;
+
+    private static final int NONE = -1;
+
+    private final byte[][] patterns;
+
+    /**
+     * Next state for each state and byte, indexed by state * 256 + byte.
+     */
+    private final int[] transitions;
+
+    /**
+     * Pattern ending in the state or NONE.
+     */
+    private final int[] matchedPattern;
+
+    /**
+     * Nearest state on the failure path with a matched pattern, used to report patterns which are suffixes of others.
+     */
+    private final int[] outputLink;
+
+    private final int[] depth;
+
+    /**
+     * @param patterns non empty patterns, a duplicate pattern is reported under the index of its first occurrence
+     */
+    public BytePatternMatcher(List<byte[]> patterns) {
+        this.patterns = patterns.toArray(new byte[0][]);
+        int maxStates = 1;
+        for (byte[] pattern : this.patterns) {
+            if (pattern.length == 0) {
+                throw new IllegalArgumentException("Pattern must not be empty.");
+            }
+            maxStates += pattern.length;
+        }
+        int[] transitions = new int[maxStates * ALPHABET];
+        java.util.Arrays.fill(transitions, NONE);
+        int[] matchedPattern = new int[maxStates];
+        java.util.Arrays.fill(matchedPattern, NONE);
+        int[] depth = new int[maxStates];
+
+        int states = 1;
+        for (int p = 0; p < this.patterns.length; p++) {
+            int state = 0;
+            for (byte b : this.patterns[p]) {
+                int index = state * ALPHABET + (b & 0xff);
+                if (transitions[index] == NONE) {
+                    depth[states] = depth[state] + 1;
+                    transitions[index] = states++;
+                }
+                state = transitions[index];
+            }
+            if (matchedPattern[state] == NONE) {
+                matchedPattern[state] = p;
+            }
+        }
+
+        int[] failure = new int[states];
+        int[] outputLink = new int[states];
+        java.util.Arrays.fill(outputLink, NONE);
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int b = 0; b < ALPHABET; b++) {
+                int index = state * ALPHABET + b;
+                int next = transitions[index];
+                int fallback = state == 0 ? 0 : transitions[failure[state] * ALPHABET + b];
+                if (next == NONE) {
+                    transitions[index] = fallback;
+                } else {
+                    failure[next] = fallback;
+                    outputLink[next] = matchedPattern[fallback] != NONE ? fallback : outputLink[fallback];
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.transitions = java.util.Arrays.copyOf(transitions, states * ALPHABET);
+        this.matchedPattern = java.util.Arrays.copyOf(matchedPattern, states);
+        this.outputLink = outputLink;
+        this.depth = java.util.Arrays.copyOf(depth, states);
+    }
+
+    /**
+     * Compiles UTF-8 encoded patterns.
+     */
+    public static BytePatternMatcher of(Collection<String> patterns) {
+        return new BytePatternMatcher(patterns.stream()
+                .map(p -> p.getBytes(StandardCharsets.UTF_8))
+                .collect(Collectors.toList()));
+    }
+
+    public int getPatternCount() {
+        return patterns.length;
+    }
+
+    public String getPattern(int index) {
+        return new String(patterns[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return index of the pattern equal to the whole input or -1
+     */
+    public int matchWhole(byte[] bytes) {
+        int state = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            state = transitions[state * ALPHABET + (bytes[i] & 0xff)];
+            if (depth[state] != i + 1) {
+                return NONE;
+            }
+        }
+        return bytes.length == 0 ? NONE : matchedPattern[state];
+    }
+
+    public Scanner newScanner(MatchListener listener) {
+        return new Scanner(listener);
+    }
+
+    @FunctionalInterface
+    public interface MatchListener {
+        /**
+         * @param pattern index of the matched pattern
+         * @param end stream offset following the last byte of the match
+         */
+        void onMatch(int pattern, long end);
+    }
+
+    /**
+     * Position of the matcher in a stream, not thread safe.
+     */
+    public final class Scanner {
+
+        private final MatchListener listener;
+
+        private int state;
+
+        private long position;
+
+        private Scanner(MatchListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Scans the bytes between the buffer position and limit, the buffer is not modified.
+         */
+        public void scan(ByteBuffer buffer) {
+            int limit = buffer.limit();
+            for (int i = buffer.position(); i < limit; i++) {
+                step(buffer.get(i));
+            }
+        }
+
+        public void scan(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                step(bytes[i]);
+            }
+        }
+
+        private void step(byte b) {
+            state = transitions[state * ALPHABET + (b & 0xff)];
+            position++;
+            if (matchedPattern[state] != NONE) {
+                listener.onMatch(matchedPattern[state], position);
+            }
+            for (int s = outputLink[state]; s != NONE; s = outputLink[s]) {
+                listener.onMatch(matchedPattern[s], position);
+            }
+        }
+
+        /**
+         * @return number of bytes scanned
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        public void reset() {
+            state = 0;
+            position = 0;
+        }
+    }
+}
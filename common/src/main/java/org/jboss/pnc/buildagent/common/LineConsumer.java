@@ -1,10 +1,7 @@
 package org.jboss.pnc.buildagent.common;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.function.Consumer;
 
@@ -15,13 +12,20 @@ import java.util.function.Consumer;
  */
 public class LineConsumer {
 
-    private static final Logger logger = LoggerFactory.getLogger(LineConsumer.class);
-
     private static final byte LF = 0xA;
+
+    private static final int INITIAL_CAPACITY = 512;
+
+    /**
+     * A line buffer grown over this size is not kept after the line is consumed.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
     private Consumer<String> lineConsumer;
     private Charset charset;
 
-    private ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
 
     /**
      *
@@ -38,32 +42,70 @@ public class LineConsumer {
     }
 
     public void append(byte[] bytes) {
-        for (byte b : bytes) {
-            buffer.write(b);
-            if (b == LF) {
-                try {
-                    lineConsumer.accept(buffer.toString(charset.name()));
-                } catch (UnsupportedEncodingException e) {
-                    //it must be supported, it's checked in the constructor
-                    logger.error("", e);
-                }
-                buffer.reset();
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == LF) {
+                buffer(bytes, start, i + 1 - start);
+                consumeLine();
+                start = i + 1;
             }
         }
+        buffer(bytes, start, bytes.length - start);
+    }
+
+    /**
+     * Consumes the bytes between the buffer position and limit.
+     */
+    public void append(ByteBuffer bytes) {
+        int limit = bytes.limit();
+        for (int i = bytes.position(); i < limit; i++) {
+            if (bytes.get(i) == LF) {
+                buffer(bytes, i + 1 - bytes.position());
+                consumeLine();
+            }
+        }
+        buffer(bytes, bytes.remaining());
+    }
+
+    private void buffer(byte[] bytes, int offset, int count) {
+        ensureCapacity(count);
+        System.arraycopy(bytes, offset, buffer, length, count);
+        length += count;
+    }
+
+    private void buffer(ByteBuffer bytes, int count) {
+        ensureCapacity(count);
+        bytes.get(buffer, length, count);
+        length += count;
+    }
+
+    private void ensureCapacity(int count) {
+        if (length + count > buffer.length) {
+            buffer = java.util.Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + count));
+        }
+    }
+
+    private void consumeLine() {
+        lineConsumer.accept(new String(buffer, 0, length, charset));
+        length = 0;
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * @return true when no part of a line is buffered
+     */
+    public boolean isEmpty() {
+        return length == 0;
     }
 
     /**
      * Call onLine consumer with the remaining string in the buffer.
      */
     public void flush() {
-        try {
-            if (buffer.size() > 0) { //flush if there is something in the buffer
-                lineConsumer.accept(buffer.toString(charset.name()));
-            }
-        } catch (UnsupportedEncodingException e) {
-            //it must be supported, it's checked in the constructor
-            e.printStackTrace();
+        if (length > 0) { //flush if there is something in the buffer
+            consumeLine();
         }
-        buffer.reset();
     }
 }
@@ -0,0 +1,194 @@
+package org.jboss.pnc.buildagent.common;
+
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes unicode code points (as produced by termd) directly to UTF-8 without creating intermediate objects.
+ *
+ * A high surrogate immediately followed by a low surrogate is combined into a single supplementary code point, so
+ * the result is the same as joining the chars into a String and encoding it. Lone surrogates and invalid code points
+ * are replaced with '?', which is what {@link String#getBytes(java.nio.charset.Charset)} does.
+ */
+public final class Utf8Encoder {
+
+    private static final byte REPLACEMENT = '?';
+
+    private static final int OVERFLOW = -1;
+
+    /**
+     * Code points encoded per bulk copy into a direct buffer, each takes at most 4 bytes of the scratch array.
+     */
+    private static final int SCRATCH_CODE_POINTS = 1024;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[SCRATCH_CODE_POINTS * 4]);
+
+    private Utf8Encoder() {
+    }
+
+    /**
+     * @return a new array of the exact encoded size
+     */
+    public static byte[] encode(int[] codePoints) {
+        return encode(codePoints, 0, codePoints.length);
+    }
+
+    public static byte[] encode(int[] codePoints, int offset, int length) {
+        byte[] bytes = new byte[encodedLength(codePoints, offset, length)];
+        encode(codePoints, offset, length, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * @return number of bytes required to encode the given code points
+     */
+    public static int encodedLength(int[] codePoints, int offset, int length) {
+        int end = offset + length;
+        int size = 0;
+        for (int i = offset; i < end; i++) {
+            int cp = codePoints[i];
+            if (cp < 0x80) {
+                size += 1; //ascii or invalid (negative) code point replacement
+            } else if (cp < 0x800) {
+                size += 2;
+            } else if (isHighSurrogate(cp) && i + 1 < end && isLowSurrogate(codePoints[i + 1])) {
+                size += 4;
+                i++;
+            } else if (isSurrogate(cp)) {
+                size += 1;
+            } else if (cp <= 0xFFFF) {
+                size += 3;
+            } else if (cp <= Character.MAX_CODE_POINT) {
+                size += 4;
+            } else {
+                size += 1;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Encodes into the caller supplied array.
+     *
+     * @return number of bytes written
+     * @throws ArrayIndexOutOfBoundsException if the destination is too small,
+     *          use {@link #encodedLength(int[], int, int)} to size it
+     */
+    public static int encode(int[] codePoints, int offset, int length, byte[] dest, int destOffset) {
+        int position = write(codePoints, offset, offset + length, dest, destOffset, dest.length);
+        if (position == OVERFLOW) {
+            throw new ArrayIndexOutOfBoundsException("Destination too small, " + dest.length + " bytes.");
+        }
+        return position - destOffset;
+    }
+
+    /**
+     * Encodes into the caller supplied buffer starting at its position. The position is advanced by the number of
+     * written bytes. Heap buffers are written through their backing array, direct buffers are filled by bulk copies
+     * from a per thread scratch array.
+     *
+     * @return number of bytes written
+     * @throws BufferOverflowException if there is not enough space remaining in the buffer, the buffer position is left
+     *          unchanged
+     */
+    public static int encode(int[] codePoints, int offset, int length, ByteBuffer dest) {
+        int start = dest.position();
+        if (dest.hasArray()) {
+            int base = dest.arrayOffset();
+            int position = write(codePoints, offset, offset + length, dest.array(), base + start, base + dest.limit());
+            if (position == OVERFLOW) {
+                throw new BufferOverflowException();
+            }
+            ((Buffer) dest).position(position - base);
+            return position - base - start;
+        }
+
+        byte[] scratch = SCRATCH.get();
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int sliceEnd = Math.min(end, i + SCRATCH_CODE_POINTS);
+            if (sliceEnd < end && isHighSurrogate(codePoints[sliceEnd - 1]) && isLowSurrogate(codePoints[sliceEnd])) {
+                sliceEnd--; //keep the pair together
+            }
+            int written = write(codePoints, i, sliceEnd, scratch, 0, scratch.length);
+            if (written > dest.remaining()) {
+                ((Buffer) dest).position(start);
+                throw new BufferOverflowException();
+            }
+            dest.put(scratch, 0, written);
+            i = sliceEnd;
+        }
+        return dest.position() - start;
+    }
+
+    /**
+     * Writes the code points between offset (inclusive) and end (exclusive) to dest starting at position.
+     *
+     * @return position after the last written byte or {@link #OVERFLOW} if the bytes do not fit below limit
+     */
+    private static int write(int[] codePoints, int offset, int end, byte[] dest, int position, int limit) {
+        int i = offset;
+        while (i < end) {
+            //ascii run, bounded by the room left so the bytes need no further checks
+            int asciiEnd = i + Math.min(end - i, limit - position);
+            int cp;
+            while (i < asciiEnd && (cp = codePoints[i]) >= 0 && cp < 0x80) {
+                dest[position++] = (byte) cp;
+                i++;
+            }
+            if (i == end) {
+                break;
+            }
+            cp = codePoints[i];
+            if (cp >= 0 && cp < 0x80) {
+                return OVERFLOW; //ascii run stopped at the limit
+            }
+            if (isHighSurrogate(cp) && i + 1 < end && isLowSurrogate(codePoints[i + 1])) {
+                cp = Character.toCodePoint((char) cp, (char) codePoints[++i]);
+            }
+            if (cp < 0 || cp > Character.MAX_CODE_POINT || isSurrogate(cp)) {
+                if (position == limit) {
+                    return OVERFLOW;
+                }
+                dest[position++] = REPLACEMENT;
+            } else if (cp < 0x800) {
+                if (limit - position < 2) {
+                    return OVERFLOW;
+                }
+                dest[position++] = (byte) (0xC0 | (cp >> 6));
+                dest[position++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (cp <= 0xFFFF) {
+                if (limit - position < 3) {
+                    return OVERFLOW;
+                }
+                dest[position++] = (byte) (0xE0 | (cp >> 12));
+                dest[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                dest[position++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                if (limit - position < 4) {
+                    return OVERFLOW;
+                }
+                dest[position++] = (byte) (0xF0 | (cp >> 18));
+                dest[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                dest[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                dest[position++] = (byte) (0x80 | (cp & 0x3F));
+            }
+            i++;
+        }
+        return position;
+    }
+
+    private static boolean isSurrogate(int cp) {
+        return cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE;
+    }
+
+    private static boolean isHighSurrogate(int cp) {
+        return cp >= Character.MIN_HIGH_SURROGATE && cp <= Character.MAX_HIGH_SURROGATE;
+    }
+
+    private static boolean isLowSurrogate(int cp) {
+        return cp >= Character.MIN_LOW_SURROGATE && cp <= Character.MAX_LOW_SURROGATE;
+    }
+}
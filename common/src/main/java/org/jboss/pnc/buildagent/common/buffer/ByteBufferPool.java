@@ -0,0 +1,131 @@
+package org.jboss.pnc.buildagent.common.buffer;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct buffers of a fixed size. The pool allocates at most the maximum number of direct buffers and keeps all
+ * of them for reuse, so the off-heap memory of the pool is bounded. The pool never blocks: when no pooled buffer is
+ * available and the maximum is reached, a heap buffer which is not pooled is returned and counted as a fallback.
+ * Requests for more than the pooled buffer size get a heap buffer which is not pooled.
+ */
+public class ByteBufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+
+    private final Queue<PooledByteBuffer> available = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger availableCount = new AtomicInteger();
+    private final AtomicInteger directCount = new AtomicInteger();
+
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong unpooled = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    /**
+     * @param bufferSize size of the pooled buffers in bytes
+     * @param maxPooled maximum number of direct buffers allocated by the pool
+     */
+    public ByteBufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize < 1 || maxPooled < 0) {
+            throw new IllegalArgumentException("Invalid pool size, bufferSize: " + bufferSize + ", maxPooled: " + maxPooled);
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * @return a cleared buffer with at least the required capacity, holding one reference owned by the caller
+     */
+    public PooledByteBuffer acquire(int capacity) {
+        PooledByteBuffer buffer;
+        if (capacity > bufferSize) {
+            unpooled.incrementAndGet();
+            buffer = new PooledByteBuffer(ByteBuffer.allocate(capacity), null);
+        } else {
+            buffer = available.poll();
+            if (buffer != null) {
+                availableCount.decrementAndGet();
+                reused.incrementAndGet();
+            } else if (reserveDirect()) {
+                allocated.incrementAndGet();
+                buffer = new PooledByteBuffer(ByteBuffer.allocateDirect(bufferSize), this);
+            } else {
+                fallbacks.incrementAndGet();
+                buffer = new PooledByteBuffer(ByteBuffer.allocate(bufferSize), null);
+            }
+        }
+        buffer.acquired();
+        return buffer;
+    }
+
+    /**
+     * @return a flipped buffer holding a copy of the bytes
+     */
+    public PooledByteBuffer copyOf(byte[] bytes) {
+        PooledByteBuffer buffer = acquire(bytes.length);
+        buffer.buffer().put(bytes);
+        ((Buffer) buffer.buffer()).flip();
+        return buffer;
+    }
+
+    private boolean reserveDirect() {
+        int count;
+        do {
+            count = directCount.get();
+            if (count >= maxPooled) {
+                return false;
+            }
+        } while (!directCount.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    void recycle(PooledByteBuffer buffer) {
+        availableCount.incrementAndGet();
+        available.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return number of buffers currently available for reuse
+     */
+    public int getAvailable() {
+        return availableCount.get();
+    }
+
+    /**
+     * @return number of direct buffers allocated because none was available
+     */
+    public long getAllocated() {
+        return allocated.get();
+    }
+
+    /**
+     * @return number of acquisitions served by a pooled buffer
+     */
+    public long getReused() {
+        return reused.get();
+    }
+
+    /**
+     * @return number of acquisitions larger than the pooled buffer size
+     */
+    public long getUnpooled() {
+        return unpooled.get();
+    }
+
+    /**
+     * @return number of acquisitions served by a heap buffer because all the direct buffers were in use
+     */
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+}
@@ -0,0 +1,106 @@
+package org.jboss.pnc.buildagent.common.buffer;
+
+import org.jboss.pnc.buildagent.common.concurrent.ReferenceCounted;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference counted buffer acquired from a {@link ByteBufferPool}. The owner fills the buffer, flips it and hands it
+ * over to the consumers, each of them reading it through its own {@link #view()}. The buffer returns to the pool when
+ * the last reference is released.
+ */
+public final class PooledByteBuffer implements ReferenceCounted {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Null when the buffer is not pooled.
+     */
+    private final ByteBufferPool pool;
+
+    private final AtomicInteger references = new AtomicInteger();
+
+    private long sequence;
+
+    private long timestamp;
+
+    PooledByteBuffer(ByteBuffer buffer, ByteBufferPool pool) {
+        this.buffer = buffer;
+        this.pool = pool;
+    }
+
+    /**
+     * @return the underlying buffer, to be filled by the owner before the buffer is shared
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return read-only view of the content between the buffer position and limit, with an independent position
+     */
+    public ByteBuffer view() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    public int remaining() {
+        return buffer.remaining();
+    }
+
+    public boolean isPooled() {
+        return pool != null;
+    }
+
+    /**
+     * Attaches the capture metadata, set by the owner before the buffer is shared.
+     */
+    public void stamp(long sequence, long timestamp) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return capture time in milliseconds, 0 when the buffer has not been stamped
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    void acquired() {
+        ((Buffer) buffer).clear();
+        references.set(1);
+        sequence = 0;
+        timestamp = 0;
+    }
+
+    @Override
+    public boolean tryRetain() {
+        int count;
+        do {
+            count = references.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    @Override
+    public void release() {
+        int count = references.decrementAndGet();
+        if (count == 0) {
+            if (pool != null) {
+                pool.recycle(this);
+            }
+        } else if (count < 0) {
+            references.set(0);
+            throw new IllegalStateException("Buffer has already been released.");
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package org.jboss.pnc.buildagent.common.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Ring buffer which decouples a producer from several consumers. Each subscription has its own cursor and is served
+ * by its own thread, so a slow subscriber does not block the producer nor the other subscribers.
+ *
+ * A gating subscription never misses an entry, when the buffer is full the producer waits until the slowest gating
+ * subscription catches up. A non-gating subscription which falls more than the buffer size behind skips the
+ * overwritten entries, skipped entries are counted as overflow.
+ *
+ * The buffer has a single producer, calls to {@link #publish(Object)} must not overlap. Publishing takes no lock, the
+ * producer only claims the slot it writes. Idle subscriptions park until an entry is published.
+ *
+ * {@link ReferenceCounted} entries are owned by the buffer once published. The buffer releases an entry as soon as all
+ * the subscriptions have passed it, when its slot is overwritten or when the buffer is closed, subscriptions retain the
+ * entry while they process it.
+ */
+public class FanOutRingBuffer<T> implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FanOutRingBuffer.class);
+
+    private static final long UNPUBLISHED = Long.MIN_VALUE;
+
+    /**
+     * Slot sequence while a consumed entry is being released, the producer does not claim the slot until it is done.
+     */
+    private static final long RELEASING = Long.MIN_VALUE + 1;
+    private static final int SPIN_TRIES = 16;
+
+    private final String name;
+    private final int size;
+    private final int mask;
+    private final AtomicReferenceArray<T> entries;
+    private final AtomicLongArray slotSequences;
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    /**
+     * Sequence up to which the consumed entries have been released, written under the releaseLock.
+     */
+    private volatile long released = -1;
+
+    /**
+     * Serializes the release of the consumed entries and the registration of the subscriptions, so an entry a new
+     * subscription is about to read is not released. The producer does not take it.
+     */
+    private final ReentrantLock releaseLock = new ReentrantLock();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private volatile Thread waitingProducer;
+    private volatile boolean closed;
+
+    /**
+     * @param name used to name subscriber threads
+     * @param size number of slots, must be a power of 2
+     */
+    public FanOutRingBuffer(String name, int size) {
+        if (size < 1 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Ring buffer size must be a power of 2, got: " + size);
+        }
+        this.name = name;
+        this.size = size;
+        this.mask = size - 1;
+        this.entries = new AtomicReferenceArray<>(size);
+        this.slotSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slotSequences.set(i, UNPUBLISHED);
+        }
+    }
+
+    /**
+     * Subscribes a new consumer which receives entries published from now on.
+     *
+     * @param gating when true the producer waits for this subscription instead of overwriting unconsumed entries
+     */
+    public Subscription subscribe(String subscriberName, boolean gating, Consumer<T> handler) {
+        return subscribe(subscriberName, gating, null, handler);
+    }
+
+    /**
+     * Subscribes a new consumer which receives the first entry and then the entries published from now on, all of them
+     * on the subscription thread.
+     *
+     * @param first entry delivered before the published ones, owned by the subscription, null for none
+     */
+    public Subscription subscribe(String subscriberName, boolean gating, T first, Consumer<T> handler) {
+        return subscribe(subscriberName, gating, -1, first, handler);
+    }
+
+    /**
+     * Subscribes a new consumer which receives the first entry and then the entries published after the given
+     * sequence. Does not wait for the producer.
+     *
+     * @param startAfter sequence of the last entry the subscription does not receive, the current cursor is used when
+     *         it is lower
+     */
+    public Subscription subscribe(String subscriberName, boolean gating, long startAfter, T first, Consumer<T> handler) {
+        Subscription subscription;
+        releaseLock.lock();
+        try {
+            if (closed) {
+                release(first);
+                throw new IllegalStateException("Ring buffer " + name + " is closed.");
+            }
+            long start = Math.max(startAfter, cursor.get());
+            subscription = new Subscription(subscriberName, gating, handler, start, first);
+            subscriptions.add(subscription);
+        } finally {
+            releaseLock.unlock();
+        }
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Publishes the entry to all subscriptions. Blocks only when a gating subscription is a whole buffer behind.
+     */
+    public void publish(T entry) {
+        if (closed) {
+            logger.warn("Ring buffer {} is closed, dropping entry.", name);
+            release(entry);
+            return;
+        }
+        long next = cursor.get() + 1;
+        waitForGatingSubscriptions(next - size);
+
+        int index = index(next);
+        claim(index);
+        T overwritten = entries.getAndSet(index, entry);
+        slotSequences.set(index, next);
+        cursor.set(next);
+        release(overwritten);
+        if (closed) {
+            //closed while publishing, the slots may have been cleared before the entry was written
+            releaseSlots();
+        }
+
+        for (Subscription subscription : subscriptions) {
+            subscription.wakeUp();
+        }
+        releaseConsumed();
+    }
+
+    /**
+     * Takes the slot from the consumed entry release, the entry left in the slot belongs to the caller.
+     */
+    private void claim(int index) {
+        while (true) {
+            long sequence = slotSequences.get(index);
+            if (sequence == RELEASING) {
+                Thread.yield();
+            } else if (slotSequences.compareAndSet(index, sequence, UNPUBLISHED)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Releases the entries all the subscriptions have passed, so they do not stay referenced until their slot is
+     * overwritten. Returns right away if another thread is releasing, that thread repeats the check after the release,
+     * so a subscription which has moved on in the meantime is not missed.
+     */
+    private void releaseConsumed() {
+        while (minimumSequence() > released) {
+            if (!releaseLock.tryLock()) {
+                return;
+            }
+            try {
+                long consumed = minimumSequence();
+                for (long sequence = Math.max(released + 1, consumed - size + 1); sequence <= consumed; sequence++) {
+                    int index = index(sequence);
+                    //fails when the producer has claimed the slot for a newer entry
+                    if (slotSequences.compareAndSet(index, sequence, RELEASING)) {
+                        T entry = entries.getAndSet(index, null);
+                        slotSequences.set(index, UNPUBLISHED);
+                        release(entry);
+                    }
+                }
+                released = Math.max(released, consumed);
+            } finally {
+                releaseLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return true when a publish does not wait for a gating subscription, as long as nothing else is published first
+     */
+    public boolean hasCapacity() {
+        return minimumGatingSequence() > cursor.get() - size;
+    }
+
+    /**
+     * Waits until all active subscriptions have processed the entries published before this call.
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        long target = cursor.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isDrained(target)) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    private boolean isDrained(long target) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.running && (subscription.pendingFirst || subscription.sequence.get() < target)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<Subscription> getSubscriptions() {
+        return subscriptions;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return sequence of the last published entry, -1 when nothing has been published
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Stops all subscriptions, entries which have not been consumed yet are not delivered.
+     * Use {@link #awaitDrained(long, TimeUnit)} first to deliver them.
+     */
+    @Override
+    public void close() {
+        releaseLock.lock();
+        try {
+            closed = true;
+        } finally {
+            releaseLock.unlock();
+        }
+        releaseSlots();
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    private void releaseSlots() {
+        for (int i = 0; i < size; i++) {
+            claim(i);
+            release(entries.getAndSet(i, null));
+        }
+    }
+
+    private static void release(Object entry) {
+        if (entry instanceof ReferenceCounted) {
+            ((ReferenceCounted) entry).release();
+        }
+    }
+
+    private static boolean tryRetain(Object entry) {
+        return !(entry instanceof ReferenceCounted) || ((ReferenceCounted) entry).tryRetain();
+    }
+
+    private void waitForGatingSubscriptions(long wrapPoint) {
+        int tries = 0;
+        while (minimumGatingSequence() < wrapPoint && !closed) {
+            if (tries++ < SPIN_TRIES) {
+                Thread.yield();
+            } else {
+                waitingProducer = Thread.currentThread();
+                if (minimumGatingSequence() < wrapPoint && !closed) {
+                    LockSupport.park(this);
+                }
+                waitingProducer = null;
+            }
+        }
+    }
+
+    /**
+     * @return sequence of the last entry all the subscriptions have passed
+     */
+    private long minimumSequence() {
+        long minimum = cursor.get();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.running) {
+                minimum = Math.min(minimum, subscription.sequence.get());
+            }
+        }
+        return minimum;
+    }
+
+    private long minimumGatingSequence() {
+        long minimum = Long.MAX_VALUE;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.gating && subscription.running) {
+                minimum = Math.min(minimum, subscription.sequence.get());
+            }
+        }
+        return minimum;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+
+    public class Subscription implements Closeable {
+
+        private final String name;
+        private final boolean gating;
+        private final Consumer<T> handler;
+        private final Thread thread;
+
+        /**
+         * Sequence of the last processed entry.
+         */
+        private final AtomicLong sequence;
+        private final AtomicLong overflow = new AtomicLong();
+        private final AtomicLong delivered = new AtomicLong();
+
+        private volatile boolean running = true;
+        private volatile boolean waiting;
+
+        /**
+         * Delivered before the published entries, null for none.
+         */
+        private final T first;
+        private volatile boolean pendingFirst;
+
+        private Subscription(String name, boolean gating, Consumer<T> handler, long startAfter, T first) {
+            this.name = name;
+            this.gating = gating;
+            this.handler = handler;
+            this.first = first;
+            this.pendingFirst = first != null;
+            this.sequence = new AtomicLong(startAfter);
+            this.thread = new Thread(this::run, FanOutRingBuffer.this.name + "-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            if (first != null) {
+                try {
+                    if (running) {
+                        handler.accept(first);
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("Subscription " + thread.getName() + " failed to process the first entry.", e);
+                } finally {
+                    release(first);
+                    pendingFirst = false;
+                }
+            }
+            long next = sequence.get() + 1;
+            int idleTries = 0;
+            while (running) {
+                if (next > cursor.get()) {
+                    idle(next, idleTries++);
+                    continue;
+                }
+                idleTries = 0;
+
+                int index = index(next);
+                long slotSequence = slotSequences.get(index);
+                T entry = entries.get(index);
+                if (slotSequence != next || !tryRetain(entry)) {
+                    next = skipOverwritten(next);
+                    continue;
+                }
+                if (slotSequences.get(index) != next) {
+                    //overwritten before the entry was retained
+                    release(entry);
+                    next = skipOverwritten(next);
+                    continue;
+                }
+                try {
+                    handler.accept(entry);
+                } catch (RuntimeException e) {
+                    logger.error("Subscription " + thread.getName() + " failed to process entry.", e);
+                } finally {
+                    release(entry);
+                }
+                delivered.incrementAndGet();
+                sequence.set(next);
+                next++;
+
+                Thread producer = waitingProducer;
+                if (gating && producer != null) {
+                    LockSupport.unpark(producer);
+                }
+                releaseConsumed();
+            }
+        }
+
+        /**
+         * @return the oldest entry still available
+         */
+        private long skipOverwritten(long next) {
+            if (closed) {
+                running = false;
+                return next;
+            }
+            long oldest = Math.max(next + 1, cursor.get() - size + 1);
+            overflow.addAndGet(oldest - next);
+            logger.debug("Subscription {} overflowed, skipping {} entries.", thread.getName(), oldest - next);
+            sequence.set(oldest - 1);
+            return oldest;
+        }
+
+        private void idle(long next, int tries) {
+            if (tries < SPIN_TRIES) {
+                Thread.yield();
+                return;
+            }
+            waiting = true;
+            if (running && next > cursor.get()) {
+                LockSupport.park(this);
+            }
+            waiting = false;
+        }
+
+        private void wakeUp() {
+            if (waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * @return true when the entry was handed over to this subscription as its first entry
+         */
+        public boolean owns(T entry) {
+            return entry != null && entry == first;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isGating() {
+            return gating;
+        }
+
+        /**
+         * @return number of published entries not yet processed by this subscription
+         */
+        public long getLag() {
+            return Math.max(0, cursor.get() - sequence.get());
+        }
+
+        /**
+         * @return number of entries this subscription skipped because they were overwritten
+         */
+        public long getOverflow() {
+            return overflow.get();
+        }
+
+        public long getDelivered() {
+            return delivered.get();
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        /**
+         * Stops the subscription without waiting for the pending entries.
+         */
+        @Override
+        public void close() {
+            running = false;
+            subscriptions.remove(this);
+            LockSupport.unpark(thread);
+            Thread producer = waitingProducer;
+            if (producer != null) {
+                LockSupport.unpark(producer);
+            }
+        }
+    }
+}
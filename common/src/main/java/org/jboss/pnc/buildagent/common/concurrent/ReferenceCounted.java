@@ -0,0 +1,19 @@
+package org.jboss.pnc.buildagent.common.concurrent;
+
+/**
+ * Object which is shared by several consumers and recycled when the last one releases it.
+ */
+public interface ReferenceCounted {
+
+    /**
+     * Adds a reference unless the object has already been released.
+     *
+     * @return false if the object has already been released and must not be used
+     */
+    boolean tryRetain();
+
+    /**
+     * Removes a reference, the object is recycled when the last reference is removed.
+     */
+    void release();
+}
@@ -0,0 +1,112 @@
+package org.jboss.pnc.buildagent.common.security;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli). The intrinsified java.util.zip.CRC32C is used when the runtime has it (Java 9+), otherwise a
+ * table driven implementation.
+ */
+public class Crc32c implements OutputDigest {
+
+    private static final int SCRATCH_SIZE = 8192;
+
+    private final Checksum checksum;
+
+    /**
+     * Used to pass the off-heap and read-only buffers to {@link Checksum#update(byte[], int, int)}.
+     */
+    private byte[] scratch;
+
+    public Crc32c() {
+        this.checksum = newChecksum();
+    }
+
+    Crc32c(Checksum checksum) {
+        this.checksum = checksum;
+    }
+
+    private static Checksum newChecksum() {
+        try {
+            return (Checksum) Class.forName("java.util.zip.CRC32C").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return new TableCrc32c();
+        }
+    }
+
+    @Override
+    public void add(ByteBuffer bytes) {
+        if (bytes.hasArray()) {
+            checksum.update(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            ((Buffer) bytes).position(bytes.limit());
+            return;
+        }
+        if (scratch == null) {
+            scratch = new byte[SCRATCH_SIZE];
+        }
+        while (bytes.hasRemaining()) {
+            int length = Math.min(bytes.remaining(), scratch.length);
+            bytes.get(scratch, 0, length);
+            checksum.update(scratch, 0, length);
+        }
+    }
+
+    @Override
+    public String digest() {
+        String digest = String.format("%08x", checksum.getValue());
+        checksum.reset();
+        return digest;
+    }
+
+    @Override
+    public DigestAlgorithm getAlgorithm() {
+        return DigestAlgorithm.CRC32C;
+    }
+
+    /**
+     * Byte at a time CRC-32C for the runtimes without java.util.zip.CRC32C.
+     */
+    static class TableCrc32c implements Checksum {
+
+        private static final int POLYNOMIAL = 0x82F63B78;
+
+        private static final int[] TABLE = new int[256];
+
+        static {
+            for (int i = 0; i < TABLE.length; i++) {
+                int crc = i;
+                for (int bit = 0; bit < 8; bit++) {
+                    crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+                }
+                TABLE[i] = crc;
+            }
+        }
+
+        private int crc = 0xFFFFFFFF;
+
+        @Override
+        public void update(int b) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            int value = crc;
+            for (int i = offset; i < offset + length; i++) {
+                value = (value >>> 8) ^ TABLE[(value ^ bytes[i]) & 0xFF];
+            }
+            crc = value;
+        }
+
+        @Override
+        public long getValue() {
+            return ~crc & 0xFFFFFFFFL;
+        }
+
+        @Override
+        public void reset() {
+            crc = 0xFFFFFFFF;
+        }
+    }
+}
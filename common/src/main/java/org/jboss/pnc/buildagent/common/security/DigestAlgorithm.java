@@ -0,0 +1,65 @@
+package org.jboss.pnc.buildagent.common.security;
+
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Algorithms available for the output checksum. MD5 is the default for compatibility, SHA-256 is the choice when the
+ * checksum has to be collision resistant, CRC32C and xxHash64 only detect accidental changes but are several times
+ * faster.
+ */
+public enum DigestAlgorithm {
+
+    MD5("MD5"),
+
+    SHA_256("SHA-256"),
+
+    CRC32C("CRC32C"),
+
+    XXHASH64("xxHash64");
+
+    private final String name;
+
+    DigestAlgorithm(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return name reported next to the checksum
+     */
+    public String getName() {
+        return name;
+    }
+
+    public OutputDigest newDigest() {
+        try {
+            switch (this) {
+                case MD5:
+                    return new Md5();
+                case SHA_256:
+                    return new Sha256();
+                case CRC32C:
+                    return new Crc32c();
+                case XXHASH64:
+                    return new XxHash64();
+                default:
+                    throw new IllegalStateException("Unsupported algorithm " + name + ".");
+            }
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform implements MD5 and SHA-256
+            throw new IllegalStateException("Missing algorithm " + name + ".", e);
+        }
+    }
+
+    /**
+     * @param name algorithm name, case insensitive, eg. "sha-256" or "SHA_256"
+     * @throws IllegalArgumentException when the algorithm is not supported
+     */
+    public static DigestAlgorithm fromName(String name) {
+        for (DigestAlgorithm algorithm : values()) {
+            if (algorithm.name.equalsIgnoreCase(name) || algorithm.name().equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported checksum algorithm: " + name + ".");
+    }
+}
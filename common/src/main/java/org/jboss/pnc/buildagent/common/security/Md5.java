@@ -19,13 +19,14 @@ package org.jboss.pnc.buildagent.common.security;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 /**
  * @author <a href="mailto:matejonnet@gmail.com">Matej Lazar</a>
  */
-public class Md5 {
+public class Md5 implements OutputDigest {
 
     private MessageDigest md;
 
@@ -46,8 +47,19 @@ public class Md5 {
         md.update(bytes);
     }
 
+    @Override
+    public void add(ByteBuffer bytes) {
+        md.update(bytes);
+    }
+
+    @Override
     public String digest() {
         byte[] digest = md.digest();
         return CheckSum.format(digest);
     }
+
+    @Override
+    public DigestAlgorithm getAlgorithm() {
+        return DigestAlgorithm.MD5;
+    }
 }
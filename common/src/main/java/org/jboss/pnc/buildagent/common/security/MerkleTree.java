@@ -0,0 +1,41 @@
+package org.jboss.pnc.buildagent.common.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merkle root over hex checksums. Every level is built by digesting the UTF-8 bytes of the concatenated checksums of
+ * two neighbours, the last node of a level with an odd number of nodes is carried to the next level as it is.
+ */
+public final class MerkleTree {
+
+    private MerkleTree() {
+    }
+
+    /**
+     * @param leaves hex checksums, eg. of the output segments
+     * @return the single leaf, or the checksum of no bytes when there are no leaves
+     */
+    public static String root(DigestAlgorithm algorithm, List<String> leaves) {
+        OutputDigest digest = algorithm.newDigest();
+        if (leaves.isEmpty()) {
+            return digest.digest();
+        }
+        List<String> level = leaves;
+        while (level.size() > 1) {
+            List<String> parents = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i + 1 < level.size(); i += 2) {
+                String pair = level.get(i) + level.get(i + 1);
+                digest.add(ByteBuffer.wrap(pair.getBytes(StandardCharsets.UTF_8)));
+                parents.add(digest.digest());
+            }
+            if (level.size() % 2 == 1) {
+                parents.add(level.get(level.size() - 1));
+            }
+            level = parents;
+        }
+        return level.get(0);
+    }
+}
@@ -0,0 +1,23 @@
+package org.jboss.pnc.buildagent.common.security;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental checksum of the command output, see {@link DigestAlgorithm}. Implementations are not thread safe.
+ */
+public interface OutputDigest {
+
+    /**
+     * Adds the bytes between the buffer position and limit, the position is moved to the limit.
+     */
+    void add(ByteBuffer bytes);
+
+    /**
+     * Completes the checksum and resets the digest for the next output.
+     *
+     * @return lower case hex string
+     */
+    String digest();
+
+    DigestAlgorithm getAlgorithm();
+}
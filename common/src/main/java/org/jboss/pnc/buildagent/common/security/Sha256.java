@@ -19,13 +19,14 @@ package org.jboss.pnc.buildagent.common.security;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 /**
  * @author <a href="mailto:matejonnet@gmail.com">Matej Lazar</a>
  */
-public class Sha256 {
+public class Sha256 implements OutputDigest {
 
     MessageDigest md;
 
@@ -42,11 +43,22 @@ public class Sha256 {
         md.update(message.getBytes("UTF-8"));
     }
 
+    @Override
+    public void add(ByteBuffer bytes) {
+        md.update(bytes);
+    }
+
+    @Override
     public String digest() {
         byte[] digest = md.digest();
         return CheckSum.format(digest);
     }
 
+    @Override
+    public DigestAlgorithm getAlgorithm() {
+        return DigestAlgorithm.SHA_256;
+    }
+
 
 
 }
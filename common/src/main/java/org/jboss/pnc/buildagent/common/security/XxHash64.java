@@ -0,0 +1,129 @@
+package org.jboss.pnc.buildagent.common.security;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming xxHash64 with seed 0, see https://github.com/Cyan4973/xxHash/blob/dev/doc/xxhash_spec.md. The input is
+ * consumed in 32 byte stripes, a partial stripe is kept until the next bytes or the digest. The digest is the
+ * canonical (big endian) hex form of the hash.
+ */
+public class XxHash64 implements OutputDigest {
+
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+
+    private static final int STRIPE_LENGTH = 32;
+
+    private final ByteBuffer stripe = ByteBuffer.allocate(STRIPE_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+
+    private long acc1;
+    private long acc2;
+    private long acc3;
+    private long acc4;
+    private long totalLength;
+
+    public XxHash64() {
+        reset();
+    }
+
+    private void reset() {
+        acc1 = PRIME_1 + PRIME_2;
+        acc2 = PRIME_2;
+        acc3 = 0;
+        acc4 = -PRIME_1;
+        totalLength = 0;
+        ((Buffer) stripe).clear();
+    }
+
+    @Override
+    public void add(ByteBuffer bytes) {
+        ByteBuffer input = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        ((Buffer) bytes).position(bytes.limit());
+        totalLength += input.remaining();
+
+        if (stripe.position() > 0) {
+            while (stripe.hasRemaining() && input.hasRemaining()) {
+                stripe.put(input.get());
+            }
+            if (stripe.hasRemaining()) {
+                return;
+            }
+            ((Buffer) stripe).flip();
+            consumeStripe(stripe);
+            ((Buffer) stripe).clear();
+        }
+        while (input.remaining() >= STRIPE_LENGTH) {
+            consumeStripe(input);
+        }
+        while (input.hasRemaining()) {
+            stripe.put(input.get());
+        }
+    }
+
+    private void consumeStripe(ByteBuffer input) {
+        acc1 = round(acc1, input.getLong());
+        acc2 = round(acc2, input.getLong());
+        acc3 = round(acc3, input.getLong());
+        acc4 = round(acc4, input.getLong());
+    }
+
+    @Override
+    public String digest() {
+        long hash;
+        if (totalLength >= STRIPE_LENGTH) {
+            hash = Long.rotateLeft(acc1, 1) + Long.rotateLeft(acc2, 7) + Long.rotateLeft(acc3, 12)
+                    + Long.rotateLeft(acc4, 18);
+            hash = merge(hash, acc1);
+            hash = merge(hash, acc2);
+            hash = merge(hash, acc3);
+            hash = merge(hash, acc4);
+        } else {
+            hash = PRIME_5;
+        }
+        hash += totalLength;
+
+        ((Buffer) stripe).flip();
+        while (stripe.remaining() >= 8) {
+            hash ^= round(0, stripe.getLong());
+            hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+        }
+        if (stripe.remaining() >= 4) {
+            hash ^= (stripe.getInt() & 0xFFFFFFFFL) * PRIME_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+        }
+        while (stripe.hasRemaining()) {
+            hash ^= (stripe.get() & 0xFF) * PRIME_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME_1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+
+        reset();
+        return String.format("%016x", hash);
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME_1;
+    }
+
+    private static long merge(long hash, long acc) {
+        hash ^= round(0, acc);
+        return hash * PRIME_1 + PRIME_4;
+    }
+
+    @Override
+    public DigestAlgorithm getAlgorithm() {
+        return DigestAlgorithm.XXHASH64;
+    }
+}
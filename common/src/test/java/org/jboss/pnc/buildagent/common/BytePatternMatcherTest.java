@@ -0,0 +1,73 @@
+package org.jboss.pnc.buildagent.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BytePatternMatcherTest {
+
+    @Test
+    public void shouldFindOverlappingPatterns() {
+        BytePatternMatcher matcher = BytePatternMatcher.of(Arrays.asList("he", "she", "his", "hers"));
+        List<String> matches = new ArrayList<>();
+        BytePatternMatcher.Scanner scanner = matcher.newScanner(
+                (pattern, end) -> matches.add(matcher.getPattern(pattern) + "@" + end));
+
+        byte[] text = "ushers".getBytes(StandardCharsets.UTF_8);
+        scanner.scan(text, 0, text.length);
+
+        Assert.assertEquals(Arrays.asList("she@4", "he@4", "hers@6"), matches);
+    }
+
+    @Test
+    public void shouldFindPatternSplitAcrossChunks() {
+        BytePatternMatcher matcher = BytePatternMatcher.of(Arrays.asList("BUILD FAILURE", "OutOfMemoryError"));
+        List<String> matches = new ArrayList<>();
+        BytePatternMatcher.Scanner scanner = matcher.newScanner(
+                (pattern, end) -> matches.add(matcher.getPattern(pattern) + "@" + end));
+
+        String output = "[INFO] ----\r\n[INFO] BUILD FAILURE\r\njava.lang.OutOfMemoryError: Java heap space\r\n";
+        byte[] bytes = output.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        for (int i = 0; i < bytes.length; i += 5) {
+            direct.limit(Math.min(bytes.length, i + 5)).position(i);
+            scanner.scan(direct);
+            Assert.assertEquals("Scanning must not move the buffer position.", i, direct.position());
+        }
+
+        int buildFailureEnd = output.indexOf("BUILD FAILURE") + "BUILD FAILURE".length();
+        int oomEnd = output.indexOf("OutOfMemoryError") + "OutOfMemoryError".length();
+        Assert.assertEquals(Arrays.asList("BUILD FAILURE@" + buildFailureEnd, "OutOfMemoryError@" + oomEnd), matches);
+        Assert.assertEquals(bytes.length, scanner.getPosition());
+    }
+
+    @Test
+    public void shouldMatchWholeInputOnly() {
+        BytePatternMatcher matcher = BytePatternMatcher.of(Arrays.asList("% ", "done"));
+
+        Assert.assertEquals(0, matcher.matchWhole("% ".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(1, matcher.matchWhole("done".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(-1, matcher.matchWhole("100% ".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(-1, matcher.matchWhole("% x".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(-1, matcher.matchWhole("%".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(-1, matcher.matchWhole(new byte[0]));
+    }
+
+    @Test
+    public void shouldMatchNonAsciiBytes() {
+        BytePatternMatcher matcher = new BytePatternMatcher(Arrays.asList(new byte[] {(byte) 0xff, (byte) 0x80}));
+        List<Long> ends = new ArrayList<>();
+        BytePatternMatcher.Scanner scanner = matcher.newScanner((pattern, end) -> ends.add(end));
+
+        byte[] bytes = {(byte) 0xff, (byte) 0xff, (byte) 0x80, 0};
+        scanner.scan(bytes, 0, bytes.length);
+
+        Assert.assertEquals(Arrays.asList(3L), ends);
+    }
+}
@@ -66,6 +66,27 @@ public class LineConsumerTest {
 
     }
 
+    @Test
+    public void shouldConsumeLinesFromDirectBuffers() throws UnsupportedEncodingException {
+        String input = "A home : 家\nSecond line\r\nThird Line\nAnother line\nSome more text.";
+
+        List<String> results = new ArrayList<>();
+        LineConsumer lineReader = new LineConsumer(results::add, StandardCharsets.UTF_8);
+        for (byte[] slice : slicedBytes(input, 7)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(slice.length + 2);
+            buffer.put((byte) 'x').put(slice).flip();
+            buffer.get(); //content starts at the buffer position
+            lineReader.append(buffer.asReadOnlyBuffer());
+        }
+        lineReader.flush();
+
+        Assert.assertEquals(5, results.size());
+        Assert.assertEquals("A home : 家\n", results.get(0));
+        Assert.assertEquals("Second line\r\n", results.get(1));
+        Assert.assertEquals("Some more text.", results.get(4));
+        Assert.assertEquals(input, String.join("", results));
+    }
+
     private List<byte[]> slicedBytes(String input, int sliceSize) {
         List<byte[]> inputs = new ArrayList<>();
         ByteBuffer inputBuffer = ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8));
@@ -0,0 +1,106 @@
+package org.jboss.pnc.buildagent.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class Utf8EncoderTest {
+
+    private static final String TEXT = "[INFO] x对于绑定� é 😀 done\r\n";
+
+    @Test
+    public void shouldEncodeCodePoints() {
+        int[] codePoints = TEXT.codePoints().toArray();
+
+        byte[] bytes = Utf8Encoder.encode(codePoints);
+
+        Assert.assertArrayEquals(TEXT.getBytes(StandardCharsets.UTF_8), bytes);
+    }
+
+    @Test
+    public void shouldCombineSurrogatePairsAndReplaceLoneSurrogates() {
+        String text = "a😀b\uD800c";
+        int[] chars = text.chars().toArray();
+
+        byte[] bytes = Utf8Encoder.encode(chars);
+
+        Assert.assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), bytes);
+    }
+
+    @Test
+    public void shouldEncodeToDirectBuffer() {
+        int[] codePoints = TEXT.codePoints().toArray();
+        byte[] expected = TEXT.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(expected.length + 3);
+        buffer.put((byte) 'x');
+
+        int written = Utf8Encoder.encode(codePoints, 0, codePoints.length, buffer);
+
+        Assert.assertEquals(expected.length, written);
+        buffer.flip();
+        buffer.get();
+        byte[] actual = new byte[buffer.remaining()];
+        buffer.get(actual);
+        Assert.assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void shouldLeaveBufferUnchangedOnOverflow() {
+        int[] codePoints = TEXT.codePoints().toArray();
+        ByteBuffer[] buffers = {ByteBuffer.allocate(10), ByteBuffer.allocateDirect(10)};
+        for (ByteBuffer buffer : buffers) {
+            try {
+                Utf8Encoder.encode(codePoints, 0, codePoints.length, buffer);
+                Assert.fail("Expected overflow.");
+            } catch (BufferOverflowException e) {
+                Assert.assertEquals(0, buffer.position());
+            }
+        }
+    }
+
+    @Test
+    public void shouldEncodeToSlicedHeapBufferWithinLimit() {
+        int[] codePoints = TEXT.codePoints().toArray();
+        byte[] expected = TEXT.getBytes(StandardCharsets.UTF_8);
+        byte[] array = new byte[expected.length + 8];
+        ByteBuffer buffer = ByteBuffer.wrap(array, 2, expected.length + 4).slice();
+        buffer.put((byte) 'x');
+
+        int written = Utf8Encoder.encode(codePoints, 0, codePoints.length, buffer);
+
+        Assert.assertEquals(expected.length, written);
+        Assert.assertEquals(expected.length + 1, buffer.position());
+        Assert.assertArrayEquals(expected, java.util.Arrays.copyOfRange(array, 3, 3 + expected.length));
+
+        buffer.clear();
+        buffer.limit(expected.length - 1);
+        try {
+            Utf8Encoder.encode(codePoints, 0, codePoints.length, buffer);
+            Assert.fail("Expected overflow.");
+        } catch (BufferOverflowException e) {
+            Assert.assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test
+    public void shouldEncodeToDirectBufferInSeveralSlices() {
+        StringBuilder text = new StringBuilder("a");
+        while (text.length() < 5000) {
+            text.append("😀é");
+        }
+        int[] chars = text.chars().toArray();
+        byte[] expected = text.toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(expected.length);
+
+        int written = Utf8Encoder.encode(chars, 0, chars.length, buffer);
+
+        Assert.assertEquals(expected.length, written);
+        buffer.flip();
+        byte[] actual = new byte[buffer.remaining()];
+        buffer.get(actual);
+        Assert.assertArrayEquals(expected, actual);
+    }
+}
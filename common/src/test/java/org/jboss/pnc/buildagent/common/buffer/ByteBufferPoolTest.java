@@ -0,0 +1,80 @@
+package org.jboss.pnc.buildagent.common.buffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class ByteBufferPoolTest {
+
+    @Test
+    public void shouldReuseReleasedBuffer() {
+        ByteBufferPool pool = new ByteBufferPool(16, 2);
+
+        PooledByteBuffer first = pool.acquire(10);
+        Assert.assertTrue(first.buffer().isDirect());
+        first.buffer().put((byte) 1);
+        first.release();
+        PooledByteBuffer second = pool.acquire(16);
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(0, second.buffer().position());
+        Assert.assertEquals(1, pool.getAllocated());
+        Assert.assertEquals(1, pool.getReused());
+    }
+
+    @Test
+    public void shouldRecycleOnlyAfterLastRelease() {
+        ByteBufferPool pool = new ByteBufferPool(16, 2);
+        PooledByteBuffer buffer = pool.copyOf("hello".getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertTrue(buffer.tryRetain());
+        buffer.release();
+        Assert.assertEquals(0, pool.getAvailable());
+
+        ByteBuffer view = buffer.view();
+        Assert.assertEquals("hello", StandardCharsets.UTF_8.decode(view).toString());
+        Assert.assertEquals("View must not move the buffer position.", 5, buffer.remaining());
+
+        buffer.release();
+        Assert.assertEquals(1, pool.getAvailable());
+        Assert.assertFalse("Released buffer must not be retained.", buffer.tryRetain());
+    }
+
+    @Test
+    public void shouldNotPoolOversizedBuffersNorExceedMaximum() {
+        ByteBufferPool pool = new ByteBufferPool(16, 1);
+
+        PooledByteBuffer oversized = pool.acquire(17);
+        Assert.assertFalse(oversized.isPooled());
+        Assert.assertTrue(oversized.buffer().capacity() >= 17);
+        oversized.release();
+
+        PooledByteBuffer first = pool.acquire(1);
+        PooledByteBuffer second = pool.acquire(1);
+        first.release();
+        second.release();
+
+        Assert.assertEquals(1, pool.getAvailable());
+        Assert.assertEquals(1, pool.getUnpooled());
+    }
+
+    @Test
+    public void shouldFallBackToHeapBuffersWhenAllDirectBuffersAreInUse() {
+        ByteBufferPool pool = new ByteBufferPool(16, 1);
+
+        PooledByteBuffer direct = pool.acquire(16);
+        PooledByteBuffer fallback = pool.acquire(16);
+        Assert.assertTrue(direct.buffer().isDirect());
+        Assert.assertFalse(fallback.buffer().isDirect());
+        Assert.assertFalse(fallback.isPooled());
+        Assert.assertEquals(1, pool.getAllocated());
+        Assert.assertEquals(1, pool.getFallbacks());
+
+        fallback.release();
+        direct.release();
+        Assert.assertSame(direct, pool.acquire(16));
+        Assert.assertEquals(1, pool.getAllocated());
+    }
+}
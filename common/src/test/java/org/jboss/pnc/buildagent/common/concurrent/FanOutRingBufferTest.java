@@ -0,0 +1,232 @@
+package org.jboss.pnc.buildagent.common.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class FanOutRingBufferTest {
+
+    @Test
+    public void shouldDeliverAllEntriesInOrderToGatingSubscriptions() throws InterruptedException {
+        List<Integer> fast = new CopyOnWriteArrayList<>();
+        List<Integer> slow = new CopyOnWriteArrayList<>();
+        try (FanOutRingBuffer<Integer> ringBuffer = new FanOutRingBuffer<>("test", 8)) {
+            ringBuffer.subscribe("fast", true, fast::add);
+            ringBuffer.subscribe("slow", true, i -> {
+                sleep(1);
+                slow.add(i);
+            });
+
+            for (int i = 0; i < 100; i++) {
+                ringBuffer.publish(i);
+            }
+
+            Assert.assertTrue(ringBuffer.awaitDrained(10, TimeUnit.SECONDS));
+            for (FanOutRingBuffer<Integer>.Subscription subscription : ringBuffer.getSubscriptions()) {
+                Assert.assertEquals(0, subscription.getOverflow());
+                Assert.assertEquals(100, subscription.getDelivered());
+            }
+        }
+        assertSequence(fast, 100);
+        assertSequence(slow, 100);
+    }
+
+    @Test
+    public void shouldNotBlockProducerOnNonGatingSubscription() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> gating = new CopyOnWriteArrayList<>();
+        try (FanOutRingBuffer<Integer> ringBuffer = new FanOutRingBuffer<>("test", 4)) {
+            ringBuffer.subscribe("gating", true, gating::add);
+            FanOutRingBuffer<Integer>.Subscription stuck = ringBuffer.subscribe("stuck", false, i -> await(release));
+
+            for (int i = 0; i < 100; i++) {
+                ringBuffer.publish(i); //would block forever if the stuck subscription were gating
+            }
+            Assert.assertTrue(stuck.getLag() > 4);
+
+            release.countDown();
+            Assert.assertTrue(ringBuffer.awaitDrained(10, TimeUnit.SECONDS));
+            Assert.assertTrue("Stuck subscription should have overflowed.", stuck.getOverflow() > 0);
+            Assert.assertEquals(100, stuck.getDelivered() + stuck.getOverflow());
+        }
+        assertSequence(gating, 100);
+    }
+
+    @Test
+    public void shouldReportNoCapacityWhileGatingSubscriptionIsFullBufferBehind() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        try (FanOutRingBuffer<Integer> ringBuffer = new FanOutRingBuffer<>("test", 4)) {
+            ringBuffer.subscribe("stuck", true, i -> await(release));
+            for (int i = 0; i < 4; i++) {
+                Assert.assertTrue(ringBuffer.hasCapacity());
+                ringBuffer.publish(i);
+            }
+            Assert.assertFalse(ringBuffer.hasCapacity());
+
+            release.countDown();
+            Assert.assertTrue(ringBuffer.awaitDrained(10, TimeUnit.SECONDS));
+            Assert.assertTrue(ringBuffer.hasCapacity());
+        }
+    }
+
+    @Test
+    public void shouldDeliverFirstEntryOnSubscriptionThread() throws InterruptedException {
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        try (FanOutRingBuffer<Integer> ringBuffer = new FanOutRingBuffer<>("test", 4)) {
+            ringBuffer.publish(-1);
+            ringBuffer.subscribe("late", true, 0, i -> {
+                threads.add(Thread.currentThread());
+                received.add(i);
+            });
+            for (int i = 1; i < 10; i++) {
+                ringBuffer.publish(i);
+            }
+            Assert.assertTrue(ringBuffer.awaitDrained(10, TimeUnit.SECONDS));
+        }
+        assertSequence(received, 10);
+        Assert.assertFalse(threads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void newSubscriptionShouldReceiveOnlyNewEntries() throws InterruptedException {
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        try (FanOutRingBuffer<Integer> ringBuffer = new FanOutRingBuffer<>("test", 4)) {
+            ringBuffer.publish(-1);
+            ringBuffer.subscribe("late", true, received::add);
+            for (int i = 0; i < 10; i++) {
+                ringBuffer.publish(i);
+            }
+            Assert.assertTrue(ringBuffer.awaitDrained(10, TimeUnit.SECONDS));
+        }
+        assertSequence(received, 10);
+    }
+
+    @Test
+    public void shouldStartAfterGivenSequence() throws InterruptedException {
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        try (FanOutRingBuffer<Integer> ringBuffer = new FanOutRingBuffer<>("test", 4)) {
+            ringBuffer.publish(-2);
+            ringBuffer.subscribe("ahead", true, ringBuffer.getCursor() + 1, null, received::add);
+            ringBuffer.publish(-1);
+            for (int i = 0; i < 10; i++) {
+                ringBuffer.publish(i);
+            }
+            Assert.assertTrue(ringBuffer.awaitDrained(10, TimeUnit.SECONDS));
+        }
+        assertSequence(received, 10);
+    }
+
+    @Test(timeout = 10000)
+    public void shouldSubscribeWhileProducerWaitsForGatingSubscription() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        try (FanOutRingBuffer<Integer> ringBuffer = new FanOutRingBuffer<>("test", 4)) {
+            ringBuffer.subscribe("stuck", true, i -> await(release));
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    ringBuffer.publish(i);
+                }
+            });
+            producer.start();
+            while (producer.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+
+            ringBuffer.subscribe("late", true, received::add); //must not wait for the producer
+
+            release.countDown();
+            producer.join();
+            Assert.assertTrue(ringBuffer.awaitDrained(10, TimeUnit.SECONDS));
+        }
+        Assert.assertFalse(received.isEmpty());
+        Assert.assertEquals(Integer.valueOf(9), received.get(received.size() - 1));
+        for (int i = 1; i < received.size(); i++) {
+            Assert.assertEquals(received.get(i - 1) + 1, (int) received.get(i));
+        }
+    }
+
+    @Test
+    public void shouldReleaseReferenceCountedEntriesOnceConsumed() throws InterruptedException {
+        List<CountingEntry> published = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        try (FanOutRingBuffer<CountingEntry> ringBuffer = new FanOutRingBuffer<>("test", 4)) {
+            ringBuffer.subscribe("gating", true, entry -> Assert.assertTrue(entry.references > 1));
+            for (int i = 0; i < 10; i++) {
+                CountingEntry entry = new CountingEntry();
+                published.add(entry);
+                ringBuffer.publish(entry);
+            }
+            Assert.assertTrue(ringBuffer.awaitDrained(10, TimeUnit.SECONDS));
+            for (CountingEntry entry : published) {
+                awaitReleased(entry);
+            }
+
+            ringBuffer.subscribe("stuck", false, entry -> await(release));
+            CountingEntry pending = new CountingEntry();
+            ringBuffer.publish(pending);
+            sleep(50);
+            Assert.assertTrue("Entry not consumed by all subscriptions is still referenced.", pending.getReferences() > 0);
+            release.countDown();
+            Assert.assertTrue(ringBuffer.awaitDrained(10, TimeUnit.SECONDS));
+            awaitReleased(pending);
+        }
+    }
+
+    private void awaitReleased(CountingEntry entry) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (entry.getReferences() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals("Consumed entry should be released.", 0, entry.getReferences());
+    }
+
+    private static class CountingEntry implements ReferenceCounted {
+        private int references = 1;
+
+        private synchronized int getReferences() {
+            return references;
+        }
+
+        @Override
+        public synchronized boolean tryRetain() {
+            if (references == 0) {
+                return false;
+            }
+            references++;
+            return true;
+        }
+
+        @Override
+        public synchronized void release() {
+            references--;
+        }
+    }
+
+    private void assertSequence(List<Integer> received, int count) {
+        Assert.assertEquals(count, received.size());
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(Integer.valueOf(i), received.get(i));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
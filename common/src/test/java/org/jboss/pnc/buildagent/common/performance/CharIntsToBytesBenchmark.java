@@ -0,0 +1,126 @@
+package org.jboss.pnc.buildagent.common.performance;
+
+import org.jboss.pnc.buildagent.common.Arrays;
+import org.jboss.pnc.buildagent.common.Utf8Encoder;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the stream based code point conversion (the implementation used before {@link Utf8Encoder}) with the
+ * direct encoder. Bytes per second are reported by the "bytes" counter, allocations per operation by the gc profiler
+ * (gc.alloc.rate.norm).
+ *
+ * Run with: mvn test -pl common -Dtest=CharIntsToBytesBenchmark#runBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CharIntsToBytesBenchmark {
+
+    private static final String ASCII_LINE = "[INFO] Downloaded from central: https://repo.maven.apache.org/maven2/org/"
+            + "apache/maven/maven-core/3.8.6/maven-core-3.8.6.jar (1.2 MB at 4.3 MB/s)\r\n";
+    private static final String MIXED_LINE = "[INFO] Building Ünïcödé module 对于绑定 😀 1.0.0-SNAPSHOT [3/42]\r\n";
+
+    /**
+     * Approximates a single chunk delivered by termd.
+     */
+    @Param({"ascii", "mixed"})
+    public String content;
+
+    private int[] codePoints;
+
+    private ByteBuffer reusableBuffer;
+
+    private byte[] reusableArray;
+
+    private int encodedLength;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        String line = "ascii".equals(content) ? ASCII_LINE : MIXED_LINE;
+        StringBuilder chunk = new StringBuilder();
+        while (chunk.length() < 1024) {
+            chunk.append(line);
+        }
+        codePoints = chunk.toString().codePoints().toArray();
+        encodedLength = chunk.toString().getBytes(StandardCharsets.UTF_8).length;
+        reusableBuffer = ByteBuffer.allocateDirect(encodedLength);
+        reusableArray = new byte[encodedLength];
+    }
+
+    @Benchmark
+    public byte[] legacyStreamJoin(Bytes counter) {
+        String string = IntStream.of(codePoints)
+                .mapToObj(i -> new String(Character.toChars(i)))
+                .collect(Collectors.joining());
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        counter.bytes += bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] charIntstoBytes(Bytes counter) {
+        byte[] bytes = Arrays.charIntstoBytes(codePoints, StandardCharsets.UTF_8);
+        counter.bytes += bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeToReusableBuffer(Bytes counter) {
+        reusableBuffer.clear();
+        counter.bytes += Utf8Encoder.encode(codePoints, 0, codePoints.length, reusableBuffer);
+        return reusableBuffer;
+    }
+
+    @Benchmark
+    public byte[] encodeToReusableArray(Bytes counter) {
+        counter.bytes += Utf8Encoder.encode(codePoints, 0, codePoints.length, reusableArray, 0);
+        return reusableArray;
+    }
+
+    @Test
+    public void runBenchmark() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CharIntsToBytesBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
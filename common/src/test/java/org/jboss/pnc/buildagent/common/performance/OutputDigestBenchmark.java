@@ -0,0 +1,112 @@
+package org.jboss.pnc.buildagent.common.performance;
+
+import org.jboss.pnc.buildagent.common.security.DigestAlgorithm;
+import org.jboss.pnc.buildagent.common.security.OutputDigest;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the output checksum algorithms on build log like output. The log is digested in off-heap
+ * chunks of the size used by the output capture, through read-only views as the fan-out delivers them. Bytes per second
+ * are reported by the "bytes" counter.
+ *
+ * Run with: mvn test -pl common -Dtest=OutputDigestBenchmark#runBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class OutputDigestBenchmark {
+
+    private static final int LOG_SIZE = 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final String[] LOG_LINES = {
+            "[INFO] Downloading from central: https://repo.maven.apache.org/maven2/org/apache/commons/commons-lang3/3.12.0/commons-lang3-3.12.0.pom\n",
+            "[INFO] Downloaded from central: https://repo.maven.apache.org/maven2/org/apache/commons/commons-lang3/3.12.0/commons-lang3-3.12.0.pom (31 kB at 1.2 MB/s)\n",
+            "[INFO] \u001B[1m--- \u001B[0;32mmaven-compiler-plugin:3.8.1:compile\u001B[m \u001B[1m(default-compile)\u001B[m @ \u001B[36mcore\u001B[0;1m ---\u001B[m\n",
+            "[INFO] Compiling 148 source files to /workspace/core/target/classes\n",
+            "[WARNING] /workspace/core/src/main/java/org/acme/Service.java:[42,17] deprecated API used\n",
+            "[INFO] Tests run: 12, Failures: 0, Errors: 0, Skipped: 1, Time elapsed: 0.341 s - in org.acme.ServiceTest\n",
+            "\tat org.junit.runners.ParentRunner.runLeaf(ParentRunner.java:366)\n",
+            "Progress (1): 1.2/4.5 MB\r"
+    };
+
+    @Param({"MD5", "SHA-256", "CRC32C", "xxHash64"})
+    public String algorithm;
+
+    private OutputDigest digest;
+
+    private ByteBuffer[] chunks;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        digest = DigestAlgorithm.fromName(algorithm).newDigest();
+
+        Random random = new Random(42);
+        ByteBuffer log = ByteBuffer.allocateDirect(LOG_SIZE);
+        while (log.hasRemaining()) {
+            byte[] line = LOG_LINES[random.nextInt(LOG_LINES.length)].getBytes(StandardCharsets.UTF_8);
+            log.put(line, 0, Math.min(line.length, log.remaining()));
+        }
+        chunks = new ByteBuffer[LOG_SIZE / CHUNK_SIZE];
+        for (int i = 0; i < chunks.length; i++) {
+            ((Buffer) log).limit((i + 1) * CHUNK_SIZE);
+            ((Buffer) log).position(i * CHUNK_SIZE);
+            chunks[i] = log.slice();
+        }
+    }
+
+    @Benchmark
+    public String digestLog(Bytes counter) {
+        for (ByteBuffer chunk : chunks) {
+            digest.add(chunk.asReadOnlyBuffer());
+        }
+        counter.bytes += LOG_SIZE;
+        return digest.digest();
+    }
+
+    @Test
+    public void runBenchmark() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(OutputDigestBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
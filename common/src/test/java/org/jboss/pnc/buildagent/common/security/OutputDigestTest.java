@@ -0,0 +1,87 @@
+package org.jboss.pnc.buildagent.common.security;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class OutputDigestTest {
+
+    @Test
+    public void shouldMatchReferenceValues() {
+        Assert.assertEquals("25f9e794323b453885f5181f1b624d0b", digest(DigestAlgorithm.MD5, "123456789"));
+        Assert.assertEquals(
+                "15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225",
+                digest(DigestAlgorithm.SHA_256, "123456789"));
+        Assert.assertEquals("e3069283", digest(DigestAlgorithm.CRC32C, "123456789"));
+        Assert.assertEquals("ef46db3751d8e999", digest(DigestAlgorithm.XXHASH64, ""));
+        Assert.assertEquals("44bc2cf5ad770999", digest(DigestAlgorithm.XXHASH64, "abc"));
+        Assert.assertEquals(
+                "fbcea83c8a378bf1",
+                digest(DigestAlgorithm.XXHASH64, "Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    public void shouldNotDependOnChunking() {
+        byte[] output = new byte[10000];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = (byte) (i * 31 + 7);
+        }
+        for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+            OutputDigest whole = algorithm.newDigest();
+            whole.add(ByteBuffer.wrap(output));
+            String expected = whole.digest();
+
+            OutputDigest chunked = algorithm.newDigest();
+            int offset = 0;
+            int chunk = 1;
+            while (offset < output.length) {
+                int length = Math.min(chunk, output.length - offset);
+                ByteBuffer direct = ByteBuffer.allocateDirect(length);
+                direct.put(output, offset, length);
+                ((Buffer) direct).flip();
+                //off-heap read-only views as delivered by the output fan-out
+                ByteBuffer view = direct.asReadOnlyBuffer();
+                chunked.add(view);
+                Assert.assertFalse(view.hasRemaining());
+                offset += length;
+                chunk = chunk * 3 % 97 + 1;
+            }
+            Assert.assertEquals(algorithm.getName(), expected, chunked.digest());
+
+            //the digest is reset
+            chunked.add(ByteBuffer.wrap(output));
+            Assert.assertEquals(algorithm.getName(), expected, chunked.digest());
+        }
+    }
+
+    @Test
+    public void tableCrc32cShouldMatchRuntimeImplementation() {
+        byte[] output = "[INFO] BUILD SUCCESS\n".getBytes(StandardCharsets.UTF_8);
+        Crc32c table = new Crc32c(new Crc32c.TableCrc32c());
+        table.add(ByteBuffer.wrap(output));
+        Crc32c runtime = new Crc32c();
+        runtime.add(ByteBuffer.wrap(output));
+        Assert.assertEquals(runtime.digest(), table.digest());
+    }
+
+    @Test
+    public void shouldFindAlgorithmByName() {
+        Assert.assertEquals(DigestAlgorithm.SHA_256, DigestAlgorithm.fromName("sha-256"));
+        Assert.assertEquals(DigestAlgorithm.SHA_256, DigestAlgorithm.fromName("SHA_256"));
+        Assert.assertEquals(DigestAlgorithm.XXHASH64, DigestAlgorithm.fromName("xxhash64"));
+        try {
+            DigestAlgorithm.fromName("SHA-1");
+            Assert.fail("Unsupported algorithm was accepted.");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private String digest(DigestAlgorithm algorithm, String output) {
+        OutputDigest digest = algorithm.newDigest();
+        digest.add(ByteBuffer.wrap(output.getBytes(StandardCharsets.UTF_8)));
+        return digest.digest();
+    }
+}
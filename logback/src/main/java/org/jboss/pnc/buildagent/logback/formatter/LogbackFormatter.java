@@ -31,4 +31,11 @@ public class LogbackFormatter implements LogFormatter {
         byte[] encode = appender.getEncoder().encode(logEvent);
         return new String(encode, StandardCharsets.UTF_8);
     }
+
+    @Override
+    public String format(String message, long sequence, long timestamp) {
+        ILoggingEvent logEvent = new SequencedLoggingEvent(LogbackFormatter.class.getName(), logger, Level.INFO, message, sequence, timestamp);
+        byte[] encode = appender.getEncoder().encode(logEvent);
+        return new String(encode, StandardCharsets.UTF_8);
+    }
 }
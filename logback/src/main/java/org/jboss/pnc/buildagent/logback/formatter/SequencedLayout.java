@@ -12,8 +12,15 @@ public class SequencedLayout extends CustomKeysJsonLayout {
 
     private static final AtomicLong sequence = new AtomicLong();
 
+    /**
+     * Output lines carry the sequence assigned at capture, other events are numbered by the global counter.
+     */
     protected void addCustomDataToJsonMap(Map<String, Object> map, ILoggingEvent event) {
-        map.put("sequence", sequence.getAndIncrement());
+        if (event instanceof SequencedLoggingEvent) {
+            map.put("sequence", ((SequencedLoggingEvent) event).getSequence());
+        } else {
+            map.put("sequence", sequence.getAndIncrement());
+        }
     }
 
 }
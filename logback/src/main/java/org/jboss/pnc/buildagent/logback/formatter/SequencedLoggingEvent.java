@@ -0,0 +1,23 @@
+package org.jboss.pnc.buildagent.logback.formatter;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+/**
+ * Logging event of an output line carrying the sequence assigned at capture, see {@link SequencedLayout}.
+ */
+public class SequencedLoggingEvent extends LoggingEvent {
+
+    private final long sequence;
+
+    public SequencedLoggingEvent(String fqcn, Logger logger, Level level, String message, long sequence, long timestamp) {
+        super(fqcn, logger, level, message, null, new Object[0]);
+        this.sequence = sequence;
+        setTimeStamp(timestamp);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+}
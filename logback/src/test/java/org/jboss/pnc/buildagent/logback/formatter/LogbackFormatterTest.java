@@ -36,4 +36,17 @@ public class LogbackFormatterTest {
         Assert.assertEquals("org.jboss.pnc._userlog_.build-log", map.get("loggerName"));
         Assert.assertEquals(ctx, ((Map)map.get("mapped")).get("ctx"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldUseCaptureStamp() throws IOException {
+        LogbackFormatter logbackJsonFormatter = new LogbackFormatter();
+
+        String messageJson = logbackJsonFormatter.format("captured line", 42, 1600000000000L);
+
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Object> map = mapper.readValue(messageJson, Map.class);
+
+        Assert.assertEquals(42, ((Number) map.get("sequence")).longValue());
+        Assert.assertEquals("2020-09-13T12:26:40.000", map.get("timestamp"));
+    }
+}
@@ -0,0 +1,337 @@
+package org.jboss.pnc.buildagent.server;
+
+import org.jboss.pnc.buildagent.server.logstore.LogFileWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends to a file from a dedicated writer thread. The callers copy the output to an off-heap buffer, the writer
+ * swaps it with a second one and writes everything appended since its last write with a single write call (group
+ * commit), so the number of system calls does not depend on the size of the appended chunks.
+ *
+ * The writer writes once half of the buffer is filled, on {@link #flush()} and at the latest {@link #LINGER_MILLIS}
+ * after the output was appended. The callers wait only when the buffer is full, which happens when the disk is
+ * slower than the output.
+ *
+ * The data is forced to the disk according to the {@link FsyncPolicy}, {@link #flush()} returns once the data
+ * appended before the call is on the disk (or written to the file with {@link FsyncPolicy#NONE}).
+ */
+public class AsyncFileAppender implements LogFileWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncFileAppender.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+
+    public static final long DEFAULT_FSYNC_INTERVAL_BYTES = 16 * 1024 * 1024;
+
+    static final long LINGER_MILLIS = 10;
+
+    private static final long LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos(LINGER_MILLIS);
+
+    private final FileChannel fileChannel;
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final long fsyncIntervalNanos;
+
+    private final long fsyncIntervalBytes;
+
+    private final int batchBytes;
+
+    private final Thread writer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled to the writer when a batch is ready, on flush and on close.
+     */
+    private final Condition workAvailable = lock.newCondition();
+
+    /**
+     * Signalled to the callers when the writer swapped the buffers or completed a write.
+     */
+    private final Condition progress = lock.newCondition();
+
+    /**
+     * Filled by the callers, guarded by the lock.
+     */
+    private ByteBuffer active;
+
+    /**
+     * Free buffer to swap with the active one, null while the writer is writing it.
+     */
+    private ByteBuffer spare;
+
+    private long appended;
+
+    private long written;
+
+    private long synced;
+
+    private long flushTarget;
+
+    private boolean closed;
+
+    private IOException failure;
+
+    /**
+     * Accessed by the writer thread only.
+     */
+    private long lastSyncNanos = System.nanoTime();
+
+    private final AtomicLong writes = new AtomicLong();
+
+    private final AtomicLong forces = new AtomicLong();
+
+    /**
+     * Called on the writer thread after each write, the appended bytes are not in the file before.
+     */
+    private volatile Runnable writeListener = () -> {};
+
+    /**
+     * @param bufferSize size of each of the two off-heap buffers
+     * @param fsyncIntervalMillis used with {@link FsyncPolicy#PERIODIC}
+     * @param fsyncIntervalBytes used with {@link FsyncPolicy#PERIODIC}
+     */
+    public AsyncFileAppender(
+            Path file,
+            int bufferSize,
+            FsyncPolicy fsyncPolicy,
+            long fsyncIntervalMillis,
+            long fsyncIntervalBytes) throws IOException {
+        this.fileChannel = FileChannel.open(
+                file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.fsyncIntervalBytes = fsyncIntervalBytes;
+        this.batchBytes = Math.max(1, bufferSize / 2);
+        this.active = ByteBuffer.allocateDirect(bufferSize);
+        this.spare = ByteBuffer.allocateDirect(bufferSize);
+        this.writer = new Thread(this::writeLoop, "file-appender-" + file.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void append(ByteBuffer bytes) throws IOException {
+        lock.lock();
+        try {
+            while (bytes.hasRemaining()) {
+                checkOpen();
+                if (!active.hasRemaining()) {
+                    workAvailable.signal();
+                    progress.await();
+                    continue;
+                }
+                int length = Math.min(bytes.remaining(), active.remaining());
+                ByteBuffer part = bytes.duplicate();
+                ((Buffer) part).limit(part.position() + length);
+                active.put(part);
+                ((Buffer) bytes).position(bytes.position() + length);
+                appended += length;
+            }
+            if (active.position() >= batchBytes) {
+                workAvailable.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the file writer.", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the data appended so far is on the disk, or written to the file with {@link FsyncPolicy#NONE}.
+     */
+    @Override
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            long target = appended;
+            flushTarget = Math.max(flushTarget, target);
+            workAvailable.signal();
+            while (getDurable() < target) {
+                if (failure != null) {
+                    throw new IOException("Cannot write the file.", failure);
+                }
+                if (!writer.isAlive()) {
+                    throw new IOException("The file writer is stopped.");
+                }
+                progress.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing the file.", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the appended data and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            lock.lock();
+            try {
+                closed = true;
+                workAvailable.signal();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            fileChannel.close();
+        }
+    }
+
+    /**
+     * @param writeListener called on the writer thread once the written bytes can be read from the file, it must not
+     *         block
+     */
+    public void setWriteListener(Runnable writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    /**
+     * @return number of write calls to the file
+     */
+    public long getWrites() {
+        return writes.get();
+    }
+
+    /**
+     * @return number of times the file was forced to the disk
+     */
+    public long getForces() {
+        return forces.get();
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("Cannot write the file.", failure);
+        }
+        if (closed) {
+            throw new IOException("The file is closed.");
+        }
+    }
+
+    private long getDurable() {
+        return fsyncPolicy == FsyncPolicy.NONE ? written : synced;
+    }
+
+    private void writeLoop() {
+        try {
+            boolean stop = false;
+            while (!stop) {
+                ByteBuffer batch;
+                long end;
+                boolean syncRequested;
+                lock.lock();
+                try {
+                    awaitWork();
+                    batch = active;
+                    active = spare;
+                    spare = null;
+                    end = appended;
+                    syncRequested = fsyncPolicy != FsyncPolicy.NONE && flushTarget > synced;
+                    stop = closed;
+                    progress.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+
+                ((Buffer) batch).flip();
+                boolean wrote = batch.hasRemaining();
+                if (wrote) {
+                    while (batch.hasRemaining()) {
+                        fileChannel.write(batch);
+                    }
+                    writes.incrementAndGet();
+                }
+                ((Buffer) batch).clear();
+                boolean sync = syncRequested || isPeriodicSyncDue(end);
+                if (sync) {
+                    fileChannel.force(false);
+                    forces.incrementAndGet();
+                    lastSyncNanos = System.nanoTime();
+                }
+
+                lock.lock();
+                try {
+                    spare = batch;
+                    written = end;
+                    if (sync) {
+                        synced = end;
+                    }
+                    progress.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                if (wrote) {
+                    notifyWritten();
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            log.error("File writer failed, the output is not written anymore.", e);
+            lock.lock();
+            try {
+                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                progress.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void notifyWritten() {
+        try {
+            writeListener.run();
+        } catch (RuntimeException e) {
+            log.warn("Write listener failed.", e);
+        }
+    }
+
+    /**
+     * Waits while there is neither a full batch, nor a flush, nor a periodic sync to do. Appended data waits at most
+     * the linger time.
+     */
+    private void awaitWork() throws InterruptedException {
+        while (!closed && flushTarget <= getDurable() && active.position() < batchBytes) {
+            boolean timedOut = workAvailable.awaitNanos(LINGER_NANOS) <= 0;
+            if (timedOut && (active.position() > 0 || isPeriodicSyncDue(written))) {
+                return;
+            }
+        }
+    }
+
+    private boolean isPeriodicSyncDue(long end) {
+        if (fsyncPolicy != FsyncPolicy.PERIODIC || end <= synced) {
+            return false;
+        }
+        return end - synced >= fsyncIntervalBytes || System.nanoTime() - lastSyncNanos >= fsyncIntervalNanos;
+    }
+}
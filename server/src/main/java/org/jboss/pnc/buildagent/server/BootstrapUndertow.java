@@ -18,7 +18,6 @@
 
 package org.jboss.pnc.buildagent.server;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.undertow.Handlers;
 import io.undertow.Undertow;
 import io.undertow.server.HttpHandler;
@@ -33,6 +32,7 @@ import org.jboss.pnc.buildagent.api.Constants;
 import org.jboss.pnc.buildagent.api.ResponseMode;
 import org.jboss.pnc.buildagent.api.httpinvoke.RetryConfig;
 import org.jboss.pnc.buildagent.common.BuildAgentException;
+import org.jboss.pnc.buildagent.common.BytePatternMatcher;
 import org.jboss.pnc.buildagent.common.http.HeartbeatHttpHeaderProvider;
 import org.jboss.pnc.buildagent.common.http.HttpClient;
 import org.jboss.pnc.buildagent.common.http.HeartbeatSender;
@@ -40,8 +40,22 @@ import org.jboss.pnc.buildagent.common.security.KeycloakClient;
 import org.jboss.pnc.buildagent.common.security.KeycloakClientConfiguration;
 import org.jboss.pnc.buildagent.common.security.KeycloakClientConfigurationException;
 import org.jboss.pnc.buildagent.server.httpinvoker.SessionRegistry;
+import org.jboss.pnc.buildagent.server.logstore.LogWaiters;
+import org.jboss.pnc.buildagent.server.output.OutputStages;
+import org.jboss.pnc.buildagent.server.httpinvoker.CommandCache;
+import org.jboss.pnc.buildagent.server.httpinvoker.ShellPool;
+import org.jboss.pnc.buildagent.server.output.OutputFanOutFactory;
+import org.jboss.pnc.buildagent.server.process.ResourceMonitorFactory;
+import org.jboss.pnc.buildagent.server.servlet.CommandCacheStatsHandler;
 import org.jboss.pnc.buildagent.server.servlet.Download;
+import org.jboss.pnc.buildagent.server.servlet.HandlerSupport;
 import org.jboss.pnc.buildagent.server.servlet.HttpInvoker;
+import org.jboss.pnc.buildagent.server.servlet.LogBytesHandler;
+import org.jboss.pnc.buildagent.server.servlet.LogLinesHandler;
+import org.jboss.pnc.buildagent.server.servlet.LogSegmentsHandler;
+import org.jboss.pnc.buildagent.server.servlet.OutputSegmentsHandler;
+import org.jboss.pnc.buildagent.server.servlet.OutputStatsHandler;
+import org.jboss.pnc.buildagent.server.servlet.ShellPoolStatsHandler;
 import org.jboss.pnc.buildagent.server.servlet.Terminal;
 import org.jboss.pnc.buildagent.server.servlet.Upload;
 import org.jboss.pnc.buildagent.server.servlet.Welcome;
@@ -57,18 +71,29 @@ import javax.servlet.ServletException;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Paths;
+import java.util.Deque;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.jar.Manifest;
+import java.util.regex.Pattern;
 
 import static io.undertow.servlet.Servlets.defaultContainer;
 import static io.undertow.servlet.Servlets.deployment;
 import static io.undertow.servlet.Servlets.servlet;
 import static org.jboss.pnc.buildagent.api.Constants.HTTP_INVOKER_PATH;
+import static org.jboss.pnc.buildagent.api.Constants.OUTPUT_STATS;
+import static org.jboss.pnc.buildagent.api.Constants.SHELL_POOL_STATS;
+import static org.jboss.pnc.buildagent.api.Constants.COMMAND_CACHE_STATS;
+import static org.jboss.pnc.buildagent.api.Constants.OUTPUT_SEGMENTS;
+import static org.jboss.pnc.buildagent.api.Constants.LOG_LINES;
+import static org.jboss.pnc.buildagent.api.Constants.LOG_SEGMENTS;
+import static org.jboss.pnc.buildagent.api.Constants.LOG_BYTES;
 import static org.jboss.pnc.buildagent.api.Constants.RUNNING_PROCESSES;
 import static org.keycloak.adapters.servlet.KeycloakOIDCFilter.CONFIG_FILE_PARAM;
 
@@ -80,20 +105,57 @@ public class BootstrapUndertow {
     private final Logger log = LoggerFactory.getLogger(BootstrapUndertow.class);
 
     private Undertow server;
+    private static final Pattern SUB_SESSION_NAME = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
     private final ConcurrentHashMap<String, Term> terms = new ConcurrentHashMap<>();
     private final ScheduledExecutorService executor;
     private final Set<ReadOnlyChannel> readOnlyChannels;
+    private final OutputStages outputStages;
     private final Options options;
     private HttpClient httpClient;
-
+    private final SessionRegistry sessionRegistry = new SessionRegistry();
+    private final OutputFanOutFactory outputFanOutFactory;
+    private final ResourceMonitorFactory resourceMonitorFactory;
+    private ShellPool shellPool;
+    private CommandCache commandCache;
+    private final Optional<BytePatternMatcher> outputMatcher;
+    private final Optional<IoFileLogger> fileLogger;
+    private final LogWaiters logWaiters;
+    private HttpHandler outputStatsHandler;
+    private HttpHandler shellPoolStatsHandler;
+    private HttpHandler commandCacheStatsHandler;
+    private HttpHandler outputSegmentsHandler;
+    private HttpHandler logLinesHandler;
+    private HttpHandler logSegmentsHandler;
+    private HttpHandler logBytesHandler;
+
+    /**
+     * @param fileLogger file sink, its logs are exposed
+     */
     public BootstrapUndertow(
             ScheduledExecutorService executor,
             Set<ReadOnlyChannel> ioLoggerChannels,
+            OutputStages outputStages,
+            Optional<IoFileLogger> fileLogger,
             Options options) throws BuildAgentException {
 
         this.executor = executor;
         this.readOnlyChannels = ioLoggerChannels;
+        this.outputStages = outputStages;
+        this.fileLogger = fileLogger;
+        this.logWaiters = new LogWaiters(executor);
+        fileLogger.ifPresent(logger -> logger.setAppendListener(logWaiters::appended));
         this.options = options;
+        this.outputFanOutFactory = new OutputFanOutFactory(options);
+        this.resourceMonitorFactory = new ResourceMonitorFactory(
+                executor,
+                options.getResourceSampleIntervalMillis(),
+                options.isStreamResourceSamples());
+        if (options.getOutputPatterns().isEmpty()) {
+            this.outputMatcher = Optional.empty();
+        } else {
+            this.outputMatcher = Optional.of(BytePatternMatcher.of(options.getOutputPatterns()));
+        }
 
         bootstrap();
     }
@@ -147,6 +209,16 @@ public class BootstrapUndertow {
                 }
             }
 
+            shellPool = new ShellPool(options.getShellPoolSize(), options.getShellPoolMaxAgeMillis());
+            if (!Strings.isEmpty(options.getCommandCacheDir())) {
+                try {
+                    commandCache = new CommandCache(
+                            Paths.get(options.getCommandCacheDir()),
+                            options.getCommandCacheMaxBytes());
+                } catch (IOException e) {
+                    throw new BuildAgentException("Cannot initialize command cache.", e);
+                }
+            }
             HeartbeatHttpHeaderProvider heartbeatHttpHeaderProvider = new KeycloakHeartbeatHttpHeaderProvider(keycloakClient);
             RetryConfig retryConfig = new RetryConfig(
                     options.getCallbackMaxRetries(),
@@ -156,10 +228,14 @@ public class BootstrapUndertow {
                             HttpInvoker.class,
                             new HttpInvokerFactory(readOnlyChannels,
                                     httpClient,
-                                    new SessionRegistry(),
+                                    sessionRegistry,
                                     retryConfig,
                                     new HeartbeatSender(httpClient, heartbeatHttpHeaderProvider),
-                                    keycloakClient)
+                                    keycloakClient,
+                                    outputFanOutFactory,
+                                    shellPool,
+                                    commandCache,
+                                    resourceMonitorFactory)
                     ).addMapping(HTTP_INVOKER_PATH + "/*"));
             if (!Strings.isEmpty(options.getKeycloakConfigFile())) {
                 servletBuilder.addFilterUrlMapping(KeycloakOIDCFilter.class.getSimpleName(), HTTP_INVOKER_PATH + "/*", DispatcherType.REQUEST);
@@ -168,6 +244,14 @@ public class BootstrapUndertow {
             }
         }
 
+        outputStatsHandler = new OutputStatsHandler(terms, sessionRegistry, outputFanOutFactory, outputStages);
+        shellPoolStatsHandler = new ShellPoolStatsHandler(shellPool);
+        commandCacheStatsHandler = new CommandCacheStatsHandler(commandCache);
+        outputSegmentsHandler = new OutputSegmentsHandler(terms, sessionRegistry, outputFanOutFactory.getOutputSegments());
+        logLinesHandler = new LogLinesHandler(fileLogger.flatMap(IoFileLogger::getLineReadableLog));
+        logSegmentsHandler = new LogSegmentsHandler(fileLogger.flatMap(IoFileLogger::getSessionStore));
+        logBytesHandler = new LogBytesHandler(fileLogger, logWaiters);
+
         DeploymentManager manager = defaultContainer().addDeployment(servletBuilder);
         manager.deploy();
 
@@ -202,6 +286,10 @@ public class BootstrapUndertow {
         if (server != null) {
             server.stop();
         }
+        outputFanOutFactory.close();
+        if (shellPool != null) {
+            shellPool.close();
+        }
         if (httpClient != null) {
             try {
                 httpClient.close();
@@ -252,7 +340,12 @@ public class BootstrapUndertow {
         log.debug("Computed invokerContext [{}] from requestPath [{}] and termPath [{}]", invokerContext, requestPath, termPath);
 
         boolean isReadOnly = requestPath.toLowerCase().endsWith("ro");
-        Term term = getTerm(invokerContext, readOnlyChannels);
+        Optional<String> subSession = getSubSession(exchange);
+        if (subSession.isPresent() && !isValidSubSession(subSession.get())) {
+            rejectInvalidSubSession(exchange, subSession.get());
+            return;
+        }
+        Term term = getTerm(invokerContext, subSession, readOnlyChannels);
         term.getWebSocketHandler(responseMode, isReadOnly).handleRequest(exchange);
     }
 
@@ -261,18 +354,57 @@ public class BootstrapUndertow {
         log.info("Connecting status listener ...");
         String requestPath = exchange.getRequestPath();
         String invokerContext = requestPath.replace(processUpdatePath, "");
-        Term term = getTerm(invokerContext, readOnlyChannels);
+        Optional<String> subSession = getSubSession(exchange);
+        if (subSession.isPresent() && !isValidSubSession(subSession.get())) {
+            rejectInvalidSubSession(exchange, subSession.get());
+            return;
+        }
+        Term term = getTerm(invokerContext, subSession, readOnlyChannels);
         term.webSocketStatusUpdateHandler().handleRequest(exchange);
     }
 
-    private Term getTerm(String invokerContext, Set<ReadOnlyChannel> appendReadOnlyChannels) {
-        return terms.computeIfAbsent(invokerContext, ctx -> createNewTerm(invokerContext, appendReadOnlyChannels));
+    private Optional<String> getSubSession(HttpServerExchange exchange) {
+        Deque<String> values = exchange.getQueryParameters().get(Constants.SUB_SESSION_PARAMETER);
+        if (values == null || values.isEmpty() || values.getFirst().isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(values.getFirst());
+    }
+
+    private boolean isValidSubSession(String name) {
+        return SUB_SESSION_NAME.matcher(name).matches();
+    }
+
+    private void rejectInvalidSubSession(HttpServerExchange exchange, String name) {
+        log.warn("Rejecting invalid sub-session name [{}].", name);
+        exchange.setStatusCode(400);
+        exchange.getResponseSender().send("Invalid sub-session name, allowed are up to 64 letters, digits, '.', '_' and '-'.");
+    }
+
+    /**
+     * Terms of the sub-sessions are registered as context#name.
+     */
+    private Term getTerm(String invokerContext, Optional<String> subSession, Set<ReadOnlyChannel> appendReadOnlyChannels) {
+        String termKey = subSession.map(name -> invokerContext + Term.SUB_SESSION_SEPARATOR + name).orElse(invokerContext);
+        return terms.computeIfAbsent(termKey, key -> createNewTerm(key, invokerContext, subSession, appendReadOnlyChannels));
     }
 
-    private Term createNewTerm(String invokerContext, Set<ReadOnlyChannel> appendReadOnlyChannels) {
-        log.info("Creating new term for context [{}].", invokerContext);
-        Runnable onDestroy = () -> terms.remove(invokerContext);
-        return new Term(invokerContext, onDestroy, executor, appendReadOnlyChannels);
+    private Term createNewTerm(
+            String termKey,
+            String invokerContext,
+            Optional<String> subSession,
+            Set<ReadOnlyChannel> appendReadOnlyChannels) {
+        log.info("Creating new term [{}].", termKey);
+        Runnable onDestroy = () -> terms.remove(termKey);
+        return new Term(
+                invokerContext,
+                subSession,
+                onDestroy,
+                executor,
+                appendReadOnlyChannels,
+                outputFanOutFactory,
+                outputMatcher,
+                resourceMonitorFactory);
     }
 
     public Map<String, Term> getTerms() {
@@ -294,6 +426,41 @@ public class BootstrapUndertow {
             getProcessActiveTerms().handleRequest(exchange);
             return;
         }
+        if (pathMatches(requestPath, OUTPUT_STATS)) {
+            log.debug("Output stats handler requested.");
+            outputStatsHandler.handleRequest(exchange);
+            return;
+        }
+        if (pathMatches(requestPath, SHELL_POOL_STATS)) {
+            log.debug("Shell pool stats handler requested.");
+            shellPoolStatsHandler.handleRequest(exchange);
+            return;
+        }
+        if (pathMatches(requestPath, COMMAND_CACHE_STATS)) {
+            log.debug("Command cache stats handler requested.");
+            commandCacheStatsHandler.handleRequest(exchange);
+            return;
+        }
+        if (pathMatches(requestPath, OUTPUT_SEGMENTS)) {
+            log.debug("Output segments handler requested.");
+            outputSegmentsHandler.handleRequest(exchange);
+            return;
+        }
+        if (pathMatches(requestPath, LOG_LINES)) {
+            log.debug("Log lines handler requested.");
+            logLinesHandler.handleRequest(exchange);
+            return;
+        }
+        if (pathMatches(requestPath, LOG_SEGMENTS)) {
+            log.debug("Log segments handler requested.");
+            logSegmentsHandler.handleRequest(exchange);
+            return;
+        }
+        if (pathMatches(requestPath, LOG_BYTES)) {
+            log.debug("Log bytes handler requested.");
+            logBytesHandler.handleRequest(exchange);
+            return;
+        }
         ResponseCodeHandler.HANDLE_404.handleRequest(exchange);
     }
 
@@ -302,11 +469,7 @@ public class BootstrapUndertow {
     }
 
     private HttpHandler getProcessActiveTerms() {
-        return exchange -> {
-            ObjectMapper mapper = new ObjectMapper();
-            String jsonString = mapper.writeValueAsString(getTerms().keySet());
-            exchange.getResponseSender().send(jsonString);
-        };
+        return exchange -> HandlerSupport.sendJson(exchange, getTerms().keySet());
     }
 
     private String getManifestInformation() {
@@ -19,6 +19,11 @@
 package org.jboss.pnc.buildagent.server;
 
 import org.jboss.pnc.buildagent.common.BuildAgentException;
+import org.jboss.pnc.buildagent.server.output.AnsiStrippingStage;
+import org.jboss.pnc.buildagent.server.output.OutputLimitingStage;
+import org.jboss.pnc.buildagent.server.output.OutputStages;
+import org.jboss.pnc.buildagent.server.output.ProgressLineCollapsingStage;
+import org.jboss.pnc.buildagent.server.output.StageConfig;
 import org.jboss.pnc.buildagent.server.termserver.Term;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,7 +32,9 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +43,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.stream.Stream;
 
 /**
  * @author <a href="mailto:matejonnet@gmail.com">Matej Lazar</a>
@@ -46,6 +54,7 @@ public class BuildAgentServer {
     private BootstrapUndertow undertowBootstrap;
     private final ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1);
     Set<ReadOnlyChannel> sinkChannels = new HashSet<>();
+    private final OutputStages outputStages = new OutputStages();
 
     private final Options options;
 
@@ -76,12 +85,29 @@ public class BuildAgentServer {
 
         if (IoLogLogger.processLog.isInfoEnabled()) {
             log.info("Initializing Logger sink.");
-            sinkChannels.add(new IoLogLogger(logMDC));
+            sinkChannels.add(withStages(IoLoggerName.LOG, new IoLogLogger(logMDC)));
         }
 
+        Optional<IoFileLogger> fileLogger = Optional.empty();
         if (logPath.isPresent()) {
             log.info("Initializing File sink.");
-            sinkChannels.add(new IoFileLogger(logPath.get(), isPrimary(primaryLoggers, IoLoggerName.FILE)));
+            long fileLogModes = Stream.of(
+                    options.isFileLogAsync(),
+                    options.isFileLogMapped(),
+                    options.isFileLogPerSession(),
+                    options.isFileLogCompressed())
+                    .filter(enabled -> enabled)
+                    .count();
+            if (fileLogModes > 1) {
+                throw new BuildAgentException(
+                        "Only one file log mode can be enabled.",
+                        new IllegalArgumentException("More than one of fileLogAsync, fileLogMapped, fileLogPerSession and fileLogCompressed are enabled."));
+            }
+            fileLogger = Optional.of(new IoFileLogger(
+                    logPath.get(),
+                    isPrimary(primaryLoggers, IoLoggerName.FILE),
+                    options));
+            sinkChannels.add(withStages(IoLoggerName.FILE, fileLogger.get()));
         }
 
         if (kafkaConfig.isPresent()) {
@@ -97,7 +123,9 @@ public class BuildAgentServer {
 
             try {
                 KafkaQueueAdapter kafkaQueueAdapter = new KafkaQueueAdapter(properties, queueTopic);
-                sinkChannels.add(new IoQueueLogger(kafkaQueueAdapter, isPrimary(primaryLoggers, IoLoggerName.KAFKA), flushTimeoutMillis, logMDC));
+                sinkChannels.add(withStages(
+                        IoLoggerName.KAFKA,
+                        new IoQueueLogger(kafkaQueueAdapter, isPrimary(primaryLoggers, IoLoggerName.KAFKA), flushTimeoutMillis, logMDC)));
             } catch (InstantiationException | UnsupportedEncodingException e) {
                 throw new BuildAgentException("Cannot initialize Kafka logger.", e);
             }
@@ -107,6 +135,8 @@ public class BuildAgentServer {
             undertowBootstrap = new BootstrapUndertow(
                     executor,
                     sinkChannels,
+                    outputStages,
+                    fileLogger,
                     options
             );
             log.info("Server started on " + options.getHost() + ":" + options.getPort());
@@ -115,6 +145,41 @@ public class BuildAgentServer {
         }
     }
 
+    private ReadOnlyChannel withStages(IoLoggerName name, ReadOnlyChannel sink) throws BuildAgentException {
+        try {
+            return outputStages.wrap(name.name(), sink, getStageConfigs(name));
+        } catch (IllegalArgumentException e) {
+            throw new BuildAgentException("Invalid output stages of logger " + name + ".", e);
+        }
+    }
+
+    /**
+     * Stages configured for the sink, or the stages enabled by the per feature options when there is no configuration.
+     */
+    private List<StageConfig> getStageConfigs(IoLoggerName name) {
+        List<StageConfig> configured = options.getOutputStages().get(name);
+        if (configured != null) {
+            return configured;
+        }
+        List<StageConfig> stages = new ArrayList<>();
+        if (options.getStripAnsi().contains(name)) {
+            stages.add(new StageConfig(AnsiStrippingStage.NAME));
+        }
+        if (options.getCollapseProgressLines().contains(name)) {
+            stages.add(new StageConfig(ProgressLineCollapsingStage.NAME));
+        }
+        if (options.getLimitOutput().contains(name)) {
+            Map<String, String> parameters = new HashMap<>();
+            parameters.put(OutputLimitingStage.MAX_BYTES, Long.toString(options.getOutputMaxBytes()));
+            parameters.put(OutputLimitingStage.MAX_LINES, Long.toString(options.getOutputMaxLines()));
+            parameters.put(OutputLimitingStage.RATE_LIMIT, Long.toString(options.getOutputRateLimit()));
+            parameters.put(OutputLimitingStage.RATE_BURST, Long.toString(options.getOutputRateBurst()));
+            parameters.put(OutputLimitingStage.POLICY, options.getOutputLimitPolicy().name());
+            stages.add(new StageConfig(OutputLimitingStage.NAME, parameters));
+        }
+        return stages;
+    }
+
     private boolean isPrimary(List<IoLoggerName> primaryLoggers, IoLoggerName name) {
         if (primaryLoggers.contains(name)) {
             log.info("Logger {} is primary.", name);
@@ -134,6 +199,9 @@ public class BuildAgentServer {
 
     public void stop() {
         log.info("Stopping BuildAgentServer.");
+        for (Term term : undertowBootstrap.getTerms().values()) {
+            term.close(); //delivers the buffered output before the channels are closed
+        }
         for (ReadOnlyChannel sinkChannel : sinkChannels) {
             try {
                 sinkChannel.close();
@@ -141,9 +209,6 @@ public class BuildAgentServer {
                 log.error("Cannot close ioLogger.", e);
             }
         }
-        for (Term term : undertowBootstrap.getTerms().values()) {
-            term.close();
-        }
 
         undertowBootstrap.stop();
     }
@@ -0,0 +1,24 @@
+package org.jboss.pnc.buildagent.server;
+
+/**
+ * When the output appended by the {@link AsyncFileAppender} is forced to the disk.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Never, the data is left to the OS page cache. {@link AsyncFileAppender#flush()} returns once the data is
+     * written to the file.
+     */
+    NONE,
+
+    /**
+     * On {@link AsyncFileAppender#flush()}, which is called at the command completion for the primary channels.
+     */
+    COMPLETION,
+
+    /**
+     * Also every configured interval of time or of written bytes, whichever comes first, so at most that much output
+     * is lost on a crash.
+     */
+    PERIODIC
+}
@@ -7,10 +7,13 @@ import org.jboss.pnc.buildagent.api.httpinvoke.RetryConfig;
 import org.jboss.pnc.buildagent.common.http.HttpClient;
 import org.jboss.pnc.buildagent.common.http.HeartbeatSender;
 import org.jboss.pnc.buildagent.common.security.KeycloakClient;
+import org.jboss.pnc.buildagent.server.httpinvoker.CommandCache;
 import org.jboss.pnc.buildagent.server.httpinvoker.SessionRegistry;
+import org.jboss.pnc.buildagent.server.httpinvoker.ShellPool;
+import org.jboss.pnc.buildagent.server.output.OutputFanOutFactory;
+import org.jboss.pnc.buildagent.server.process.ResourceMonitorFactory;
 import org.jboss.pnc.buildagent.server.servlet.HttpInvoker;
 
-import java.security.NoSuchAlgorithmException;
 import java.util.Set;
 
 /**
@@ -29,33 +32,49 @@ public class HttpInvokerFactory implements InstanceFactory<HttpInvoker> {
 
     private final KeycloakClient keycloakClient;
 
+    private final OutputFanOutFactory outputFanOutFactory;
+
+    private final ShellPool shellPool;
+
+    private final CommandCache commandCache;
+
+    private final ResourceMonitorFactory resourceMonitorFactory;
+
     public HttpInvokerFactory(
             Set<ReadOnlyChannel> readOnlyChannels,
             HttpClient httpClient,
             SessionRegistry sessionRegistry,
             RetryConfig retryConfig,
             HeartbeatSender heartbeat,
-            KeycloakClient keycloakClient) {
+            KeycloakClient keycloakClient,
+            OutputFanOutFactory outputFanOutFactory,
+            ShellPool shellPool,
+            CommandCache commandCache,
+            ResourceMonitorFactory resourceMonitorFactory) {
         this.readOnlyChannels = readOnlyChannels;
         this.httpClient = httpClient;
         this.sessionRegistry = sessionRegistry;
         this.retryConfig = retryConfig;
         this.heartbeat = heartbeat;
         this.keycloakClient = keycloakClient;
+        this.outputFanOutFactory = outputFanOutFactory;
+        this.shellPool = shellPool;
+        this.commandCache = commandCache;
+        this.resourceMonitorFactory = resourceMonitorFactory;
     }
 
     @Override
     public InstanceHandle<HttpInvoker> createInstance() throws InstantiationException {
-        try {
-            return new ImmediateInstanceHandle<>(new HttpInvoker(
-                    readOnlyChannels,
-                    sessionRegistry,
-                    httpClient,
-                    retryConfig,
-                    heartbeat,
-                    keycloakClient));
-        } catch (NoSuchAlgorithmException e) {
-            throw new InstantiationException("Cannot create HttpInvoker: " + e.getMessage());
-        }
+        return new ImmediateInstanceHandle<>(new HttpInvoker(
+                readOnlyChannels,
+                sessionRegistry,
+                httpClient,
+                retryConfig,
+                heartbeat,
+                keycloakClient,
+                outputFanOutFactory,
+                shellPool,
+                commandCache,
+                resourceMonitorFactory));
     }
 }
@@ -19,13 +19,24 @@
 package org.jboss.pnc.buildagent.server;
 
 import org.jboss.pnc.buildagent.common.Arrays;
+import org.jboss.pnc.buildagent.server.logstore.CompressedLogFile;
+import org.jboss.pnc.buildagent.server.logstore.FileLog;
+import org.jboss.pnc.buildagent.server.logstore.LineReadableLog;
+import org.jboss.pnc.buildagent.server.logstore.LogFileWriter;
+import org.jboss.pnc.buildagent.server.logstore.MappedLogFile;
+import org.jboss.pnc.buildagent.server.logstore.ReadableLog;
+import org.jboss.pnc.buildagent.server.logstore.SegmentedLogStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -35,41 +46,104 @@ import java.util.stream.Collectors;
 public class IoFileLogger implements ReadOnlyChannel {
 
     Logger log = LoggerFactory.getLogger(IoFileLogger.class);
+
+    /**
+     * Session output without a line end is written out anyway once it exceeds this size.
+     */
+    private static final int MAX_PENDING_LINE = 8192;
+
     private Charset charset = Charset.defaultCharset();
     private Consumer<String> inputLogger;
     private Consumer<byte[]> outputLogger;
 
     FileOutputStream stream;
 
+    /**
+     * Used instead of the stream when the file log is asynchronous, mapped, per session or compressed.
+     */
+    private LogFileWriter writer;
+
+    /**
+     * Writes each session to its own files when the file log is per session.
+     */
+    private SegmentedLogStore sessionStore;
+
+    /**
+     * Keeps the lines of the sessions together in the file.
+     */
+    private final Object writeLock = new Object();
+
     private final boolean primary;
 
+    private Path logPath;
+
+    /**
+     * Called after each append, readers waiting for new output are woken up.
+     */
+    private volatile Runnable appendListener = () -> {};
+
+    /**
+     * True when the appended bytes reach the file later, on the {@link AsyncFileAppender} thread which then calls the
+     * append listener.
+     */
+    private boolean notifiedByWriter;
+
     public IoFileLogger(Path logFolder, boolean primary) {
+        this(logFolder, primary, null);
+    }
+
+    /**
+     * @param options configures the asynchronous, mapped, per session or compressed file log, when null or all are
+     *         disabled the file is written by the calling thread
+     */
+    public IoFileLogger(Path logFolder, boolean primary, Options options) {
         this.primary = primary;
         try {
-            Path logPath = logFolder.resolve("console.log");
+            logPath = logFolder.resolve("console.log");
 
-            log.info("Opening log file {}.", logPath);
-            stream = new FileOutputStream(logPath.toFile(), true);
+            if (options != null && options.isFileLogPerSession()) {
+                Path sessionsPath = logFolder.resolve("sessions");
+                log.info("Opening session logs in {}.", sessionsPath);
+                sessionStore = new SegmentedLogStore(
+                        sessionsPath,
+                        options.getFileLogSegmentSize(),
+                        options.getFileLogMaxBytes(),
+                        options.getFileLogFsync());
+                writer = sessionStore.open(SegmentedLogStore.SHARED_SESSION);
+            } else if (options != null && options.isFileLogCompressed()) {
+                Path compressedPath = logFolder.resolve("console.log" + options.getFileLogCompressionCodec().getExtension());
+                log.info("Opening compressed log file {}.", compressedPath);
+                writer = new CompressedLogFile(
+                        compressedPath,
+                        options.getFileLogBlockSize(),
+                        options.getFileLogCompressionCodec(),
+                        options.getFileLogFsync());
+            } else if (options != null && options.isFileLogMapped()) {
+                log.info("Opening log file {}.", logPath);
+                writer = new MappedLogFile(logPath, options.getFileLogMapSize(), options.getFileLogFsync());
+            } else if (options != null && options.isFileLogAsync()) {
+                log.info("Opening log file {}.", logPath);
+                AsyncFileAppender appender = new AsyncFileAppender(
+                        logPath,
+                        options.getFileLogBufferSize(),
+                        options.getFileLogFsync(),
+                        options.getFileLogFsyncIntervalMillis(),
+                        options.getFileLogFsyncIntervalBytes());
+                appender.setWriteListener(() -> appendListener.run());
+                notifiedByWriter = true;
+                writer = appender;
+            } else {
+                log.info("Opening log file {}.", logPath);
+                stream = new FileOutputStream(logPath.toFile(), true);
+            }
 
             inputLogger = (line) -> {
-                try {
-                    String command = "% " + line + "\r\n";
-                    stream.write(command.getBytes(charset));
-                } catch (IOException e) {
-                    log.error("Cannot write command line to log file.", e);
-                }
+                String command = "% " + line + "\r\n";
+                byte[] bytes = command.getBytes(charset);
+                append(bytes, 0, bytes.length);
             };
 
-            outputLogger = (bytes) -> {
-                try {
-                    stream.write(bytes);
-                } catch (IOException e) {
-                    String bytesAsInts = java.util.Arrays.stream(Arrays.bytesToInts(bytes))
-                            .mapToObj(i -> Integer.toString(i))
-                            .collect(Collectors.joining(", "));
-                    log.error("Cannot write bytes [" + bytesAsInts + "] to file. IsPrimaryLogger: " + isPrimary() + "", e);
-                }
-            };
+            outputLogger = (bytes) -> append(bytes, 0, bytes.length);
 
         } catch (IOException e) {
             log.error("Cannot open fileChannel: ", e);
@@ -77,14 +151,126 @@ public class IoFileLogger implements ReadOnlyChannel {
     }
 
 
+    private void append(byte[] bytes, int offset, int length) {
+        try {
+            synchronized (writeLock) {
+                if (writer != null) {
+                    writer.append(ByteBuffer.wrap(bytes, offset, length));
+                } else {
+                    stream.write(bytes, offset, length);
+                }
+            }
+            appended();
+        } catch (IOException e) {
+            String bytesAsInts = java.util.Arrays.stream(Arrays.bytesToInts(bytes))
+                    .skip(offset)
+                    .limit(length)
+                    .mapToObj(i -> Integer.toString(i))
+                    .collect(Collectors.joining(", "));
+            log.error("Cannot write bytes [" + bytesAsInts + "] to file. IsPrimaryLogger: " + isPrimary() + "", e);
+        }
+    }
+
+    private void append(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        try {
+            synchronized (writeLock) {
+                if (writer != null) {
+                    writer.append(buffer);
+                } else {
+                    FileChannel fileChannel = stream.getChannel();
+                    while (buffer.hasRemaining()) {
+                        fileChannel.write(buffer);
+                    }
+                }
+            }
+            appended();
+        } catch (IOException e) {
+            log.error("Cannot write " + length + " bytes to file. IsPrimaryLogger: " + isPrimary() + "", e);
+        }
+    }
+
+    private void appended() {
+        if (!notifiedByWriter) {
+            appendListener.run();
+        }
+    }
+
+    /**
+     * With the asynchronous, mapped, per session or compressed file log it returns once the output is on the disk, see
+     * {@link FsyncPolicy}.
+     */
+    private void flushFile() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        } else {
+            stream.flush();
+        }
+    }
+
     @Override
     public void flush() throws IOException {
-        stream.flush();
+        flushFile();
     }
 
     @Override
     public void close() throws IOException {
-        stream.close();
+        if (sessionStore != null) {
+            sessionStore.close();
+        } else if (writer != null) {
+            writer.close();
+        } else {
+            stream.close();
+        }
+    }
+
+    /**
+     * @return the log file when its lines are indexed, used to read line ranges
+     */
+    public Optional<LineReadableLog> getLineReadableLog() {
+        if (writer instanceof LineReadableLog) {
+            return Optional.of((LineReadableLog) writer);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return the log file when it is compressed, it is read by offset through its blocks
+     */
+    public Optional<CompressedLogFile> getCompressedLog() {
+        if (writer instanceof CompressedLogFile) {
+            return Optional.of((CompressedLogFile) writer);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return the session logs when the file log is per session, used to expose their layout
+     */
+    public Optional<SegmentedLogStore> getSessionStore() {
+        return Optional.ofNullable(sessionStore);
+    }
+
+    /**
+     * @param sessionId the session to read when the file log is per session, the shared log when null
+     * @return the log to read by offset, empty when the session is not known or the log is compressed
+     */
+    public Optional<ReadableLog> getReadableLog(String sessionId) {
+        if (sessionStore != null) {
+            return sessionStore.get(sessionId == null ? SegmentedLogStore.SHARED_SESSION : sessionId)
+                    .map(ReadableLog.class::cast);
+        }
+        if (sessionId != null || writer instanceof CompressedLogFile) {
+            return Optional.empty();
+        }
+        if (writer instanceof ReadableLog) {
+            return Optional.of((ReadableLog) writer);
+        }
+        return Optional.of(new FileLog(logPath));
+    }
+
+    public void setAppendListener(Runnable appendListener) {
+        this.appendListener = appendListener;
     }
 
     @Override
@@ -92,8 +278,152 @@ public class IoFileLogger implements ReadOnlyChannel {
         outputLogger.accept(buffer);
     }
 
+    @Override
+    public void writeOutput(ByteBuffer buffer) {
+        append(buffer);
+    }
+
     @Override
     public boolean isPrimary() {
         return primary;
     }
+
+    @Override
+    public ReadOnlyChannel forSession(String sessionId) {
+        if (sessionStore != null) {
+            return new SegmentedSessionLogger(sessionStore.open(sessionId));
+        }
+        return new SessionFileLogger();
+    }
+
+    /**
+     * A term without a sub-session writes whole lines to the shared log, the {@link SegmentedLogStore#SHARED_SESSION}
+     * when the file log is per session.
+     */
+    @Override
+    public ReadOnlyChannel forTerm(String sessionId) {
+        return sessionId == null ? new SessionFileLogger() : forSession(sessionId);
+    }
+
+    /**
+     * Appends the output of a single session to its own segment files, see {@link SegmentedLogStore}.
+     */
+    private class SegmentedSessionLogger implements ReadOnlyChannel {
+
+        private final SegmentedLogStore.SessionLog sessionLog;
+
+        private SegmentedSessionLogger(SegmentedLogStore.SessionLog sessionLog) {
+            this.sessionLog = sessionLog;
+        }
+
+        @Override
+        public void writeOutput(byte[] buffer) {
+            writeOutput(ByteBuffer.wrap(buffer));
+        }
+
+        @Override
+        public void writeOutput(ByteBuffer buffer) {
+            int length = buffer.remaining();
+            try {
+                sessionLog.append(buffer);
+                appendListener.run();
+            } catch (IOException e) {
+                log.error("Cannot write " + length + " bytes to session file. IsPrimaryLogger: " + isPrimary() + "", e);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            sessionLog.flush();
+        }
+
+        /**
+         * Closes the session log, its segments can be evicted from now on.
+         */
+        @Override
+        public void close() {
+            sessionLog.close();
+        }
+
+        @Override
+        public boolean isPrimary() {
+            return primary;
+        }
+    }
+
+    /**
+     * Appends the output of a single session to the shared log file in whole lines, so the output of concurrent
+     * sessions is not mixed within a line.
+     */
+    private class SessionFileLogger implements ReadOnlyChannel {
+
+        /**
+         * Guarded by the writeLock, the session is flushed from another thread than the one writing its output.
+         */
+        private final ByteBuffer pendingLine = ByteBuffer.allocate(MAX_PENDING_LINE);
+
+        @Override
+        public void writeOutput(byte[] buffer) {
+            writeOutput(ByteBuffer.wrap(buffer));
+        }
+
+        @Override
+        public void writeOutput(ByteBuffer buffer) {
+            int lineEnd = lastLineEnd(buffer);
+            int complete = lineEnd < 0 ? buffer.position() : lineEnd + 1;
+            if (buffer.limit() - complete > pendingLine.remaining()) {
+                complete = buffer.limit();
+            }
+            synchronized (writeLock) {
+                if (complete > buffer.position()) {
+                    int limit = buffer.limit();
+                    ((Buffer) buffer).limit(complete);
+                    writePendingLine();
+                    append(buffer);
+                    ((Buffer) buffer).limit(limit);
+                }
+                pendingLine.put(buffer);
+            }
+        }
+
+        private int lastLineEnd(ByteBuffer buffer) {
+            for (int i = buffer.limit() - 1; i >= buffer.position(); i--) {
+                if (buffer.get(i) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void writePendingLine() {
+            if (pendingLine.position() > 0) {
+                ((Buffer) pendingLine).flip();
+                append(pendingLine);
+                ((Buffer) pendingLine).clear();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (writeLock) {
+                writePendingLine();
+            }
+            flushFile();
+        }
+
+        /**
+         * Writes the pending partial line, the log file is shared, it is closed by the {@link IoFileLogger}.
+         */
+        @Override
+        public void close() {
+            synchronized (writeLock) {
+                writePendingLine();
+            }
+        }
+
+        @Override
+        public boolean isPrimary() {
+            return primary;
+        }
+    }
 }
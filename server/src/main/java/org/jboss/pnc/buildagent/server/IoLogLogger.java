@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -34,10 +35,18 @@ public class IoLogLogger implements ReadOnlyChannel {
 
     static final Logger processLog = LoggerFactory.getLogger("org.jboss.pnc._userlog_.build-log");
     private static final Logger log = LoggerFactory.getLogger(IoLogLogger.class);
+
+    /**
+     * MDC keys of the capture stamp of the logged chunk.
+     */
+    public static final String OUTPUT_SEQUENCE_KEY = "outputSequence";
+    public static final String OUTPUT_TIMESTAMP_KEY = "outputTimestamp";
     private Charset charset = Charset.defaultCharset();
     private Consumer<byte[]> outputLogger;
+    private final Map<String, String> logMDC;
 
     public IoLogLogger(Map<String, String> logMDC) {
+        this.logMDC = logMDC;
         outputLogger = (bytes) -> {
             MDC.setContextMap(logMDC);
             processLog.info(new String(bytes, charset));
@@ -59,8 +68,32 @@ public class IoLogLogger implements ReadOnlyChannel {
         outputLogger.accept(buffer);
     }
 
+    @Override
+    public void writeOutput(ByteBuffer buffer) {
+        MDC.setContextMap(logMDC);
+        processLog.info(charset.decode(buffer).toString());
+    }
+
+    @Override
+    public void writeOutput(ByteBuffer buffer, long sequence, long timestamp) {
+        MDC.setContextMap(logMDC);
+        MDC.put(OUTPUT_SEQUENCE_KEY, Long.toString(sequence));
+        MDC.put(OUTPUT_TIMESTAMP_KEY, Long.toString(timestamp));
+        processLog.info(charset.decode(buffer).toString());
+    }
+
     @Override
     public boolean isPrimary() {
         return false;
     }
+
+    @Override
+    public ReadOnlyChannel forSession(String sessionId) {
+        return new IoLogLogger(SessionMdc.of(logMDC, sessionId));
+    }
+
+    @Override
+    public ReadOnlyChannel forTerm(String sessionId) {
+        return sessionId == null ? new IoLogLogger(logMDC) : forSession(sessionId);
+    }
 }
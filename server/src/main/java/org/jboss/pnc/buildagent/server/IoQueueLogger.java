@@ -27,6 +27,7 @@ import org.slf4j.MDC;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
@@ -62,15 +63,46 @@ public class IoQueueLogger implements ReadOnlyChannel {
 
     private final LineConsumer lineConsumer;
 
+    private final LogFormatter logFormatter;
+
+    private final Map<String, String> logMDC;
+
+    /**
+     * Session channels share the queue adapter and must not close it.
+     */
+    private final boolean sessionChannel;
+
+    /**
+     * Sequence of the next line, lines are numbered by the capture stamp of the output, see
+     * {@link ReadOnlyChannel#writeOutput(ByteBuffer, long, long)}.
+     */
+    private long lineSequence;
+
+    /**
+     * Capture time of the chunk where the current line started.
+     */
+    private long lineTimestamp;
+
+    private long chunkTimestamp;
+
     public IoQueueLogger(QueueAdapter queueAdapter, boolean primary, long flushTimeoutMillis, Map<String, String> logMDC)
             throws InstantiationException, UnsupportedEncodingException {
+        this(queueAdapter, getLogFormatter(ServiceLoader.load(LogFormatter.class).iterator()), primary, flushTimeoutMillis, logMDC, false);
+    }
+
+    private IoQueueLogger(
+            QueueAdapter queueAdapter,
+            LogFormatter logFormatter,
+            boolean primary,
+            long flushTimeoutMillis,
+            Map<String, String> logMDC,
+            boolean sessionChannel) throws UnsupportedEncodingException {
         this.primary = primary;
         this.flushTimeoutMillis = flushTimeoutMillis;
         this.queueAdapter = queueAdapter;
-
-        ServiceLoader<LogFormatter> loader = ServiceLoader.load(LogFormatter.class);
-        Iterator<LogFormatter> iterator = loader.iterator();
-        LogFormatter logFormatter = getLogFormatter(iterator);
+        this.logFormatter = logFormatter;
+        this.logMDC = logMDC;
+        this.sessionChannel = sessionChannel;
 
         Consumer<Exception> exceptionHandler = (e) -> {
             log.error("Error writing log.", e);
@@ -78,7 +110,8 @@ public class IoQueueLogger implements ReadOnlyChannel {
         };
 
         Consumer<String> onLine = (line)-> {
-            String messageJson = logFormatter.format(line);
+            String messageJson = logFormatter.format(line, lineSequence++, lineTimestamp);
+            lineTimestamp = chunkTimestamp; //the next line starts in the current chunk
             queueAdapter.send(messageJson, exceptionHandler);
         };
         lineConsumer = new LineConsumer(onLine, StandardCharsets.UTF_8);
@@ -89,7 +122,7 @@ public class IoQueueLogger implements ReadOnlyChannel {
         };
     }
 
-    private LogFormatter getLogFormatter(Iterator<LogFormatter> iterator) throws InstantiationException {
+    private static LogFormatter getLogFormatter(Iterator<LogFormatter> iterator) throws InstantiationException {
         LogFormatter logFormatter = null;
         if (iterator.hasNext()) {
             logFormatter = iterator.next();
@@ -119,24 +152,74 @@ public class IoQueueLogger implements ReadOnlyChannel {
         } catch (InterruptedException | TimeoutException | ExecutionException futureException) {
             future.cancel(true);
             throw new IOException("Unable to flush logs.", futureException);
+        } finally {
+            executorService.shutdown();
         }
     }
 
     @Override
     public void writeOutput(byte[] buffer) {
+        startChunk(lineSequence, System.currentTimeMillis());
         outputLogger.accept(buffer);
     }
 
+    @Override
+    public void writeOutput(ByteBuffer buffer) {
+        writeOutput(buffer, lineSequence, System.currentTimeMillis());
+    }
+
+    @Override
+    public void writeOutput(ByteBuffer buffer, long sequence, long timestamp) {
+        startChunk(sequence, timestamp);
+        MDC.setContextMap(logMDC);
+        lineConsumer.append(buffer);
+    }
+
+    private void startChunk(long sequence, long timestamp) {
+        lineSequence = Math.max(lineSequence, sequence); //lines dropped by a stage leave a gap
+        chunkTimestamp = timestamp > 0 ? timestamp : System.currentTimeMillis();
+        if (lineConsumer.isEmpty()) {
+            lineTimestamp = chunkTimestamp;
+        }
+    }
+
     @Override
     public boolean isPrimary() {
         return primary;
     }
 
+    @Override
+    public ReadOnlyChannel forSession(String sessionId) {
+        return sessionChannel(SessionMdc.of(logMDC, sessionId));
+    }
+
+    /**
+     * A term without a sub-session keeps the log context of this channel.
+     */
+    @Override
+    public ReadOnlyChannel forTerm(String sessionId) {
+        return sessionId == null ? sessionChannel(logMDC) : forSession(sessionId);
+    }
+
+    private IoQueueLogger sessionChannel(Map<String, String> sessionMdc) {
+        try {
+            return new IoQueueLogger(queueAdapter, logFormatter, primary, flushTimeoutMillis, sessionMdc, true);
+        } catch (UnsupportedEncodingException e) {
+            //UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
     public void close(Duration duration) throws IOException {
-        queueAdapter.close(duration);
+        if (!sessionChannel) {
+            queueAdapter.close(duration);
+        }
     }
 
     public void close() throws IOException {
+        if (sessionChannel) {
+            return;
+        }
         log.info("Closing IoQueueLogger.");
         queueAdapter.close();
     }
@@ -25,19 +25,35 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.jboss.pnc.buildagent.api.Constants;
 import org.jboss.pnc.buildagent.common.BuildAgentException;
 import org.jboss.pnc.buildagent.common.RandomUtils;
+import org.jboss.pnc.buildagent.common.security.DigestAlgorithm;
 import org.jboss.pnc.buildagent.server.logging.Mdc;
+import org.jboss.pnc.buildagent.server.logstore.CompressedLogFile;
+import org.jboss.pnc.buildagent.server.logstore.LogCodec;
+import org.jboss.pnc.buildagent.server.logstore.MappedLogFile;
+import org.jboss.pnc.buildagent.server.logstore.SegmentedLogStore;
+import org.jboss.pnc.buildagent.server.output.OutputFanOut;
+import org.jboss.pnc.buildagent.server.httpinvoker.CommandCache;
+import org.jboss.pnc.buildagent.server.httpinvoker.ShellPool;
+import org.jboss.pnc.buildagent.server.process.ResourceMonitorFactory;
+import org.jboss.pnc.buildagent.server.output.OutputFanOutFactory;
+import org.jboss.pnc.buildagent.server.output.OutputLimitPolicy;
+import org.jboss.pnc.buildagent.server.output.OutputLimitingChannel;
+import org.jboss.pnc.buildagent.server.output.StageConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -66,6 +82,44 @@ public class Main {
         options.addOption(null, "callbackWaitBeforeRetry",true, "How long to wait before completion callback retry (calculated as: attempt x duration-in-millis).");
         options.addOption(null, "keycloakConfig",true, "Path to Keycloak config file. Must be set to enable endpoint protection.");
         options.addOption(null, "keycloakClientConfig", true, "Path to Keycloak client config file. Must be set to enable callback authentication");
+        options.addOption(null, "outputBufferSize", true, "Number of output chunks buffered for slow output channels (power of 2). Default " + OutputFanOut.DEFAULT_BUFFER_SIZE + ".");
+        options.addOption(null, "recentOutputBytes", true, "Number of recent output bytes sent to a read-only connection when it connects. Default " + OutputFanOut.DEFAULT_RECENT_OUTPUT_BYTES + ", 0 to disable.");
+        options.addOption(null, "outputPoolSize", true, "Maximum number of " + OutputFanOutFactory.CHUNK_SIZE + "B off-heap output buffers, heap buffers are used beyond it. Default " + OutputFanOutFactory.DEFAULT_POOL_SIZE + ".");
+        options.addOption(null, "outputCoalesceBytes", true, "Output is coalesced into chunks of up to this size before it is written to the channels. Default " + OutputFanOutFactory.DEFAULT_COALESCE_BYTES + ".");
+        options.addOption(null, "outputCoalesceMillis", true, "Maximum time in ms the output is held back for coalescing, 0 disables coalescing. Default " + OutputFanOutFactory.DEFAULT_COALESCE_MILLIS + ".");
+        options.addOption(null, "outputCoalesceOnNewLine", true, "Write the coalesced output when a line is completed. Default true.");
+        options.addOption(null, "collapseProgressLines", true, "List of loggers which get only the final state of progress lines rewritten with a carriage return. eg. --collapseProgressLines FILE,KAFKA");
+        options.addOption(null, "stripAnsi", true, "List of loggers which get the output without ANSI escape sequences (colors, cursor movement). eg. --stripAnsi FILE,KAFKA");
+        options.addOption(null, "outputStages", true, "Output stages of the loggers, in the order the output goes through them. Overrides the per feature options of the listed loggers. eg. --outputStages \"FILE=strip-ansi,limit(maxLines=10000,policy=TRUNCATE);KAFKA=collapse-progress\"");
+        options.addOption(null, "limitOutput", true, "List of loggers to which the output limits apply. eg. --limitOutput FILE,KAFKA");
+        options.addOption(null, "outputMaxBytes", true, "Maximum number of output bytes of a command session written to the limited loggers. Default 0 (no limit).");
+        options.addOption(null, "outputMaxLines", true, "Maximum number of output lines of a command session written to the limited loggers. Default 0 (no limit).");
+        options.addOption(null, "outputRateLimit", true, "Bytes per second written to each limited logger. Default 0 (no limit).");
+        options.addOption(null, "outputRateBurst", true, "Bytes which can be written at once above the rate limit. Default is the rate limit.");
+        options.addOption(null, "outputLimitPolicy", true, "What happens to the lines over a limit: DROP, SAMPLE (write one line of " + OutputLimitingChannel.SAMPLE_EVERY + ") or TRUNCATE (write the first " + OutputLimitingChannel.TRUNCATED_LINE_LENGTH + " bytes of each line). Default DROP.");
+        options.addOption(null, "outputPatterns", true, "Comma separated list of patterns reported on the status update channel as soon as they appear in the output. eg. --outputPatterns \"BUILD FAILURE,OutOfMemoryError\"");
+        options.addOption(null, "shellPoolSize", true, "Number of shells started ahead of time for commands invoked without a PTY, 0 disables the pool. Default " + ShellPool.DEFAULT_SIZE + ".");
+        options.addOption(null, "shellPoolMaxAge", true, "Idle pooled shells older than this (in ms) are replaced. Default " + ShellPool.DEFAULT_MAX_AGE_MILLIS + ".");
+        options.addOption(null, "commandCacheDir", true, "Directory where the results of the commands invoked as cacheable are kept. Default none (cache disabled).");
+        options.addOption(null, "commandCacheMaxBytes", true, "Size of the command cache above which the least recently used results are removed. Default " + CommandCache.DEFAULT_MAX_BYTES + ".");
+        options.addOption(null, "resourceSampleInterval", true, "Time in ms between two samples of the resources used by a running command, 0 disables the sampling. Default " + ResourceMonitorFactory.DEFAULT_SAMPLE_INTERVAL_MILLIS + ".");
+        options.addOption(null, "streamResourceSamples", true, "Send the resource samples of the running commands to the status update listeners. Default false.");
+        options.addOption(null, "buildPhaseTiming", true, "Time the Maven modules and goals and the Gradle tasks recognized in the output, the timeline is sent to the status update listeners and in the completion event. Default false.");
+        options.addOption(null, "outputChecksumAlgorithm", true, "Algorithm of the output checksum when the invocation does not select one: MD5, SHA-256, CRC32C or xxHash64. Default MD5.");
+        options.addOption(null, "outputSegmentSize", true, "Also digest the output in segments of this number of bytes (eg. 1048576) and report their checksums and Merkle root, so a client can verify a part of the output. Default 0 (disabled).");
+        options.addOption(null, "fileLogAsync", true, "Write the file log from a dedicated thread in large batches. Default false.");
+        options.addOption(null, "fileLogBufferSize", true, "Size of each of the two buffers of the asynchronous file log. Default " + AsyncFileAppender.DEFAULT_BUFFER_SIZE + ".");
+        options.addOption(null, "fileLogFsync", true, "When the asynchronous file log is forced to the disk: NONE, COMPLETION (when the command completes) or PERIODIC (also every fileLogFsyncIntervalMillis or fileLogFsyncIntervalBytes). Default COMPLETION.");
+        options.addOption(null, "fileLogFsyncIntervalMillis", true, "Time between two forces of the PERIODIC file log fsync. Default " + AsyncFileAppender.DEFAULT_FSYNC_INTERVAL_MILLIS + ".");
+        options.addOption(null, "fileLogFsyncIntervalBytes", true, "Bytes written between two forces of the PERIODIC file log fsync. Default " + AsyncFileAppender.DEFAULT_FSYNC_INTERVAL_BYTES + ".");
+        options.addOption(null, "fileLogMapped", true, "Append the file log through a memory mapped window and index its lines, so the tail and line ranges can be read from " + Constants.LOG_LINES + ". Cannot be combined with fileLogAsync. Default false.");
+        options.addOption(null, "fileLogMapSize", true, "Bytes of the mapped file log mapped at once. Default " + MappedLogFile.DEFAULT_MAP_SIZE + ".");
+        options.addOption(null, "fileLogPerSession", true, "Write the output of each session to its own directory of segment files under <logPath>/sessions, the output of the terms without a sub-session goes to the \"" + SegmentedLogStore.SHARED_SESSION + "\" session. The layout is listed by " + Constants.LOG_SEGMENTS + ". Cannot be combined with fileLogAsync or fileLogMapped. Default false.");
+        options.addOption(null, "fileLogSegmentSize", true, "Size of the session log segments. Default " + SegmentedLogStore.DEFAULT_SEGMENT_SIZE + ".");
+        options.addOption(null, "fileLogMaxBytes", true, "Disk budget of all the session log segments, the oldest segments are deleted above it. Default 0 (no limit).");
+        options.addOption(null, "fileLogCompressed", true, "Store the file log in blocks compressed on their own with a block index, so it can be read by offset or line from " + Constants.LOG_BYTES + " and " + Constants.LOG_LINES + " without decompressing the whole file. Cannot be combined with the other file log modes. Default false.");
+        options.addOption(null, "fileLogCompressionCodec", true, "Codec of the compressed file log blocks: GZIP (the file is a valid gzip file and the blocks are sent to the clients accepting gzip as they are) or DEFLATE. Default GZIP.");
+        options.addOption(null, "fileLogBlockSize", true, "Uncompressed bytes in a block of the compressed file log. Default " + CompressedLogFile.DEFAULT_BLOCK_SIZE + ".");
         options.addOption("h", false, "Print this help message.");
 
         CommandLineParser parser = new DefaultParser();
@@ -133,6 +187,52 @@ public class Main {
         long callbackWaitBeforeRetry = Long.parseLong(getOption(cmd, "callbackWaitBeforeRetry", "500"));
         String keycloakConfigFile = getOption(cmd, "keycloakConfig", "");
         String keycloakClientConfigFile = getOption(cmd, "keycloakClientConfig", "");
+        int outputBufferSize = Integer.parseInt(getOption(cmd, "outputBufferSize", Integer.toString(OutputFanOut.DEFAULT_BUFFER_SIZE)));
+        int recentOutputBytes = Integer.parseInt(getOption(cmd, "recentOutputBytes", Integer.toString(OutputFanOut.DEFAULT_RECENT_OUTPUT_BYTES)));
+        int outputPoolSize = Integer.parseInt(getOption(cmd, "outputPoolSize", Integer.toString(OutputFanOutFactory.DEFAULT_POOL_SIZE)));
+        int outputCoalesceBytes = Integer.parseInt(getOption(cmd, "outputCoalesceBytes", Integer.toString(OutputFanOutFactory.DEFAULT_COALESCE_BYTES)));
+        long outputCoalesceMillis = Long.parseLong(getOption(cmd, "outputCoalesceMillis", Long.toString(OutputFanOutFactory.DEFAULT_COALESCE_MILLIS)));
+        boolean outputCoalesceOnNewLine = Boolean.parseBoolean(getOption(cmd, "outputCoalesceOnNewLine", "true"));
+        Set<IoLoggerName> collapseProgressLines = parseLoggerNames(getOption(cmd, "collapseProgressLines", ""));
+        Set<IoLoggerName> stripAnsi = parseLoggerNames(getOption(cmd, "stripAnsi", ""));
+        Set<IoLoggerName> limitOutput = parseLoggerNames(getOption(cmd, "limitOutput", ""));
+        long outputMaxBytes = Long.parseLong(getOption(cmd, "outputMaxBytes", "0"));
+        long outputMaxLines = Long.parseLong(getOption(cmd, "outputMaxLines", "0"));
+        long outputRateLimit = Long.parseLong(getOption(cmd, "outputRateLimit", "0"));
+        long outputRateBurst = Long.parseLong(getOption(cmd, "outputRateBurst", Long.toString(outputRateLimit)));
+        OutputLimitPolicy outputLimitPolicy = OutputLimitPolicy.valueOf(getOption(cmd, "outputLimitPolicy", OutputLimitPolicy.DROP.name()));
+        Map<IoLoggerName, List<StageConfig>> outputStages = new HashMap<>();
+        StageConfig.parseSinks(getOption(cmd, "outputStages", ""))
+                .forEach((sink, stages) -> outputStages.put(IoLoggerName.valueOf(sink), stages));
+        List<String> outputPatterns = new ArrayList<>();
+        String outputPatternsOption = getOption(cmd, "outputPatterns", "");
+        for (String pattern : outputPatternsOption.split(",")) {
+            if (!pattern.isEmpty()) {
+                outputPatterns.add(pattern);
+            }
+        }
+        int shellPoolSize = Integer.parseInt(getOption(cmd, "shellPoolSize", Integer.toString(ShellPool.DEFAULT_SIZE)));
+        long shellPoolMaxAge = Long.parseLong(getOption(cmd, "shellPoolMaxAge", Long.toString(ShellPool.DEFAULT_MAX_AGE_MILLIS)));
+        String commandCacheDir = getOption(cmd, "commandCacheDir", "");
+        long commandCacheMaxBytes = Long.parseLong(getOption(cmd, "commandCacheMaxBytes", Long.toString(CommandCache.DEFAULT_MAX_BYTES)));
+        long resourceSampleInterval = Long.parseLong(getOption(cmd, "resourceSampleInterval", Long.toString(ResourceMonitorFactory.DEFAULT_SAMPLE_INTERVAL_MILLIS)));
+        boolean streamResourceSamples = Boolean.parseBoolean(getOption(cmd, "streamResourceSamples", "false"));
+        boolean buildPhaseTiming = Boolean.parseBoolean(getOption(cmd, "buildPhaseTiming", "false"));
+        long outputSegmentSize = Long.parseLong(getOption(cmd, "outputSegmentSize", "0"));
+        DigestAlgorithm outputChecksumAlgorithm = DigestAlgorithm.fromName(getOption(cmd, "outputChecksumAlgorithm", DigestAlgorithm.MD5.getName()));
+        boolean fileLogAsync = Boolean.parseBoolean(getOption(cmd, "fileLogAsync", "false"));
+        int fileLogBufferSize = Integer.parseInt(getOption(cmd, "fileLogBufferSize", Integer.toString(AsyncFileAppender.DEFAULT_BUFFER_SIZE)));
+        FsyncPolicy fileLogFsync = FsyncPolicy.valueOf(getOption(cmd, "fileLogFsync", FsyncPolicy.COMPLETION.name()));
+        long fileLogFsyncIntervalMillis = Long.parseLong(getOption(cmd, "fileLogFsyncIntervalMillis", Long.toString(AsyncFileAppender.DEFAULT_FSYNC_INTERVAL_MILLIS)));
+        long fileLogFsyncIntervalBytes = Long.parseLong(getOption(cmd, "fileLogFsyncIntervalBytes", Long.toString(AsyncFileAppender.DEFAULT_FSYNC_INTERVAL_BYTES)));
+        boolean fileLogMapped = Boolean.parseBoolean(getOption(cmd, "fileLogMapped", "false"));
+        int fileLogMapSize = Integer.parseInt(getOption(cmd, "fileLogMapSize", Integer.toString(MappedLogFile.DEFAULT_MAP_SIZE)));
+        boolean fileLogPerSession = Boolean.parseBoolean(getOption(cmd, "fileLogPerSession", "false"));
+        long fileLogSegmentSize = Long.parseLong(getOption(cmd, "fileLogSegmentSize", Long.toString(SegmentedLogStore.DEFAULT_SEGMENT_SIZE)));
+        long fileLogMaxBytes = Long.parseLong(getOption(cmd, "fileLogMaxBytes", "0"));
+        boolean fileLogCompressed = Boolean.parseBoolean(getOption(cmd, "fileLogCompressed", "false"));
+        LogCodec fileLogCompressionCodec = LogCodec.valueOf(getOption(cmd, "fileLogCompressionCodec", LogCodec.GZIP.name()));
+        int fileLogBlockSize = Integer.parseInt(getOption(cmd, "fileLogBlockSize", Integer.toString(CompressedLogFile.DEFAULT_BLOCK_SIZE)));
 
         org.jboss.pnc.buildagent.server.Options buildAgentOptions = new org.jboss.pnc.buildagent.server.Options(
                 host,
@@ -144,6 +244,44 @@ public class Main {
                 callbackWaitBeforeRetry,
                 keycloakConfigFile,
                 keycloakClientConfigFile);
+        buildAgentOptions.setOutputBufferSize(outputBufferSize);
+        buildAgentOptions.setRecentOutputBytes(recentOutputBytes);
+        buildAgentOptions.setOutputPoolSize(outputPoolSize);
+        buildAgentOptions.setOutputCoalesceBytes(outputCoalesceBytes);
+        buildAgentOptions.setOutputCoalesceMillis(outputCoalesceMillis);
+        buildAgentOptions.setOutputCoalesceOnNewLine(outputCoalesceOnNewLine);
+        buildAgentOptions.setCollapseProgressLines(collapseProgressLines);
+        buildAgentOptions.setStripAnsi(stripAnsi);
+        buildAgentOptions.setLimitOutput(limitOutput);
+        buildAgentOptions.setOutputMaxBytes(outputMaxBytes);
+        buildAgentOptions.setOutputMaxLines(outputMaxLines);
+        buildAgentOptions.setOutputRateLimit(outputRateLimit);
+        buildAgentOptions.setOutputRateBurst(outputRateBurst);
+        buildAgentOptions.setOutputLimitPolicy(outputLimitPolicy);
+        buildAgentOptions.setOutputStages(outputStages);
+        buildAgentOptions.setOutputPatterns(outputPatterns);
+        buildAgentOptions.setShellPoolSize(shellPoolSize);
+        buildAgentOptions.setShellPoolMaxAgeMillis(shellPoolMaxAge);
+        buildAgentOptions.setCommandCacheDir(commandCacheDir);
+        buildAgentOptions.setCommandCacheMaxBytes(commandCacheMaxBytes);
+        buildAgentOptions.setResourceSampleIntervalMillis(resourceSampleInterval);
+        buildAgentOptions.setStreamResourceSamples(streamResourceSamples);
+        buildAgentOptions.setBuildPhaseTiming(buildPhaseTiming);
+        buildAgentOptions.setOutputChecksumAlgorithm(outputChecksumAlgorithm);
+        buildAgentOptions.setOutputSegmentSize(outputSegmentSize);
+        buildAgentOptions.setFileLogAsync(fileLogAsync);
+        buildAgentOptions.setFileLogBufferSize(fileLogBufferSize);
+        buildAgentOptions.setFileLogFsync(fileLogFsync);
+        buildAgentOptions.setFileLogFsyncIntervalMillis(fileLogFsyncIntervalMillis);
+        buildAgentOptions.setFileLogFsyncIntervalBytes(fileLogFsyncIntervalBytes);
+        buildAgentOptions.setFileLogMapped(fileLogMapped);
+        buildAgentOptions.setFileLogMapSize(fileLogMapSize);
+        buildAgentOptions.setFileLogPerSession(fileLogPerSession);
+        buildAgentOptions.setFileLogSegmentSize(fileLogSegmentSize);
+        buildAgentOptions.setFileLogMaxBytes(fileLogMaxBytes);
+        buildAgentOptions.setFileLogCompressed(fileLogCompressed);
+        buildAgentOptions.setFileLogCompressionCodec(fileLogCompressionCodec);
+        buildAgentOptions.setFileLogBlockSize(fileLogBlockSize);
 
         new BuildAgentServer(
                 logPath,
@@ -153,6 +291,13 @@ public class Main {
                 mdcMap);
     }
 
+    private static Set<IoLoggerName> parseLoggerNames(String names) {
+        return Arrays.stream(names.split(","))
+                .filter(l -> !l.isEmpty())
+                .map(l -> IoLoggerName.valueOf(l))
+                .collect(Collectors.toSet());
+    }
+
     private static String getOption(CommandLine cmd, String opt, String defaultValue) {
         if (cmd.hasOption(opt)) {
             return cmd.getOptionValue(opt);
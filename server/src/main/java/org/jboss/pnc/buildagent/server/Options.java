@@ -1,7 +1,24 @@
 package org.jboss.pnc.buildagent.server;
 
+import org.jboss.pnc.buildagent.common.security.DigestAlgorithm;
+import org.jboss.pnc.buildagent.server.httpinvoker.CommandCache;
+import org.jboss.pnc.buildagent.server.httpinvoker.ShellPool;
+import org.jboss.pnc.buildagent.server.logstore.CompressedLogFile;
+import org.jboss.pnc.buildagent.server.logstore.LogCodec;
+import org.jboss.pnc.buildagent.server.logstore.MappedLogFile;
+import org.jboss.pnc.buildagent.server.logstore.SegmentedLogStore;
+import org.jboss.pnc.buildagent.server.process.ResourceMonitorFactory;
+import org.jboss.pnc.buildagent.server.output.OutputFanOut;
+import org.jboss.pnc.buildagent.server.output.OutputFanOutFactory;
+import org.jboss.pnc.buildagent.server.output.OutputLimitPolicy;
+import org.jboss.pnc.buildagent.server.output.StageConfig;
+
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author <a href="mailto:matejonnet@gmail.com">Matej Lazar</a>
@@ -19,6 +36,82 @@ public class Options {
     private String keycloakConfigFile;
     private String keycloakClientConfigFile;
 
+    private int outputBufferSize = OutputFanOut.DEFAULT_BUFFER_SIZE;
+
+    private int recentOutputBytes = OutputFanOut.DEFAULT_RECENT_OUTPUT_BYTES;
+
+    private int outputPoolSize = OutputFanOutFactory.DEFAULT_POOL_SIZE;
+
+    private int outputCoalesceBytes = OutputFanOutFactory.DEFAULT_COALESCE_BYTES;
+
+    private long outputCoalesceMillis = OutputFanOutFactory.DEFAULT_COALESCE_MILLIS;
+
+    private boolean outputCoalesceOnNewLine = true;
+
+    private Set<IoLoggerName> collapseProgressLines = Collections.emptySet();
+
+    private Set<IoLoggerName> stripAnsi = Collections.emptySet();
+
+    private Set<IoLoggerName> limitOutput = Collections.emptySet();
+
+    private long outputMaxBytes;
+
+    private long outputMaxLines;
+
+    private long outputRateLimit;
+
+    private long outputRateBurst;
+
+    private OutputLimitPolicy outputLimitPolicy = OutputLimitPolicy.DROP;
+
+    private Map<IoLoggerName, List<StageConfig>> outputStages = Collections.emptyMap();
+
+    private List<String> outputPatterns = Collections.emptyList();
+
+    private int shellPoolSize = ShellPool.DEFAULT_SIZE;
+
+    private long shellPoolMaxAgeMillis = ShellPool.DEFAULT_MAX_AGE_MILLIS;
+
+    private String commandCacheDir = "";
+
+    private long commandCacheMaxBytes = CommandCache.DEFAULT_MAX_BYTES;
+
+    private long resourceSampleIntervalMillis = ResourceMonitorFactory.DEFAULT_SAMPLE_INTERVAL_MILLIS;
+
+    private boolean streamResourceSamples;
+
+    private boolean buildPhaseTiming;
+
+    private DigestAlgorithm outputChecksumAlgorithm = DigestAlgorithm.MD5;
+
+    private long outputSegmentSize;
+
+    private boolean fileLogAsync;
+
+    private int fileLogBufferSize = AsyncFileAppender.DEFAULT_BUFFER_SIZE;
+
+    private FsyncPolicy fileLogFsync = FsyncPolicy.COMPLETION;
+
+    private long fileLogFsyncIntervalMillis = AsyncFileAppender.DEFAULT_FSYNC_INTERVAL_MILLIS;
+
+    private long fileLogFsyncIntervalBytes = AsyncFileAppender.DEFAULT_FSYNC_INTERVAL_BYTES;
+
+    private boolean fileLogMapped;
+
+    private int fileLogMapSize = MappedLogFile.DEFAULT_MAP_SIZE;
+
+    private boolean fileLogPerSession;
+
+    private long fileLogSegmentSize = SegmentedLogStore.DEFAULT_SEGMENT_SIZE;
+
+    private long fileLogMaxBytes;
+
+    private boolean fileLogCompressed;
+
+    private LogCodec fileLogCompressionCodec = LogCodec.GZIP;
+
+    private int fileLogBlockSize = CompressedLogFile.DEFAULT_BLOCK_SIZE;
+
     public Options(
             String host,
             int bindPort,
@@ -88,4 +181,386 @@ public class Options {
     public String getKeycloakClientConfigFile() {
         return keycloakClientConfigFile;
     }
+
+    /**
+     * @return number of output chunks buffered between the process and the output channels
+     */
+    public int getOutputBufferSize() {
+        return outputBufferSize;
+    }
+
+    public void setOutputBufferSize(int outputBufferSize) {
+        this.outputBufferSize = outputBufferSize;
+    }
+
+    /**
+     * @return number of recent output bytes a read-only viewer gets when it connects, 0 to disable
+     */
+    public int getRecentOutputBytes() {
+        return recentOutputBytes;
+    }
+
+    public void setRecentOutputBytes(int recentOutputBytes) {
+        this.recentOutputBytes = recentOutputBytes;
+    }
+
+    /**
+     * @return maximum number of output chunk buffers kept for reuse, shared by all terms and sessions
+     */
+    public int getOutputPoolSize() {
+        return outputPoolSize;
+    }
+
+    public void setOutputPoolSize(int outputPoolSize) {
+        this.outputPoolSize = outputPoolSize;
+    }
+
+    /**
+     * @return size at which the coalesced output is passed to the channels
+     */
+    public int getOutputCoalesceBytes() {
+        return outputCoalesceBytes;
+    }
+
+    public void setOutputCoalesceBytes(int outputCoalesceBytes) {
+        this.outputCoalesceBytes = outputCoalesceBytes;
+    }
+
+    /**
+     * @return maximum time the output is held back for coalescing, 0 disables coalescing
+     */
+    public long getOutputCoalesceMillis() {
+        return outputCoalesceMillis;
+    }
+
+    public void setOutputCoalesceMillis(long outputCoalesceMillis) {
+        this.outputCoalesceMillis = outputCoalesceMillis;
+    }
+
+    /**
+     * @return true if the coalesced output is passed to the channels once a line is completed
+     */
+    public boolean isOutputCoalesceOnNewLine() {
+        return outputCoalesceOnNewLine;
+    }
+
+    public void setOutputCoalesceOnNewLine(boolean outputCoalesceOnNewLine) {
+        this.outputCoalesceOnNewLine = outputCoalesceOnNewLine;
+    }
+
+    public int getShellPoolSize() {
+        return shellPoolSize;
+    }
+
+    public void setShellPoolSize(int shellPoolSize) {
+        this.shellPoolSize = shellPoolSize;
+    }
+
+    public long getShellPoolMaxAgeMillis() {
+        return shellPoolMaxAgeMillis;
+    }
+
+    public void setShellPoolMaxAgeMillis(long shellPoolMaxAgeMillis) {
+        this.shellPoolMaxAgeMillis = shellPoolMaxAgeMillis;
+    }
+
+    /**
+     * @return directory of the command cache, empty when the cache is disabled
+     */
+    public String getCommandCacheDir() {
+        return commandCacheDir;
+    }
+
+    public void setCommandCacheDir(String commandCacheDir) {
+        this.commandCacheDir = commandCacheDir;
+    }
+
+    public long getCommandCacheMaxBytes() {
+        return commandCacheMaxBytes;
+    }
+
+    public void setCommandCacheMaxBytes(long commandCacheMaxBytes) {
+        this.commandCacheMaxBytes = commandCacheMaxBytes;
+    }
+
+    /**
+     * @return time between two resource samples of a running process, 0 disables the sampling
+     */
+    public long getResourceSampleIntervalMillis() {
+        return resourceSampleIntervalMillis;
+    }
+
+    public void setResourceSampleIntervalMillis(long resourceSampleIntervalMillis) {
+        this.resourceSampleIntervalMillis = resourceSampleIntervalMillis;
+    }
+
+    /**
+     * @return true if the resource samples are sent to the status update listeners
+     */
+    public boolean isStreamResourceSamples() {
+        return streamResourceSamples;
+    }
+
+    public void setStreamResourceSamples(boolean streamResourceSamples) {
+        this.streamResourceSamples = streamResourceSamples;
+    }
+
+    /**
+     * @return true if the Maven and Gradle build phases are timed from the output
+     */
+    public boolean isBuildPhaseTiming() {
+        return buildPhaseTiming;
+    }
+
+    public void setBuildPhaseTiming(boolean buildPhaseTiming) {
+        this.buildPhaseTiming = buildPhaseTiming;
+    }
+
+    /**
+     * @return algorithm of the output checksum when the invocation does not select one
+     */
+    public DigestAlgorithm getOutputChecksumAlgorithm() {
+        return outputChecksumAlgorithm;
+    }
+
+    public void setOutputChecksumAlgorithm(DigestAlgorithm outputChecksumAlgorithm) {
+        this.outputChecksumAlgorithm = outputChecksumAlgorithm;
+    }
+
+    /**
+     * @return size of the output segments digested separately, 0 when the segments are not digested
+     */
+    public long getOutputSegmentSize() {
+        return outputSegmentSize;
+    }
+
+    public void setOutputSegmentSize(long outputSegmentSize) {
+        this.outputSegmentSize = outputSegmentSize;
+    }
+
+    /**
+     * @return true when the file logger writes through an {@link AsyncFileAppender}
+     */
+    public boolean isFileLogAsync() {
+        return fileLogAsync;
+    }
+
+    public void setFileLogAsync(boolean fileLogAsync) {
+        this.fileLogAsync = fileLogAsync;
+    }
+
+    public int getFileLogBufferSize() {
+        return fileLogBufferSize;
+    }
+
+    public void setFileLogBufferSize(int fileLogBufferSize) {
+        this.fileLogBufferSize = fileLogBufferSize;
+    }
+
+    public FsyncPolicy getFileLogFsync() {
+        return fileLogFsync;
+    }
+
+    public void setFileLogFsync(FsyncPolicy fileLogFsync) {
+        this.fileLogFsync = fileLogFsync;
+    }
+
+    public long getFileLogFsyncIntervalMillis() {
+        return fileLogFsyncIntervalMillis;
+    }
+
+    public void setFileLogFsyncIntervalMillis(long fileLogFsyncIntervalMillis) {
+        this.fileLogFsyncIntervalMillis = fileLogFsyncIntervalMillis;
+    }
+
+    public long getFileLogFsyncIntervalBytes() {
+        return fileLogFsyncIntervalBytes;
+    }
+
+    public void setFileLogFsyncIntervalBytes(long fileLogFsyncIntervalBytes) {
+        this.fileLogFsyncIntervalBytes = fileLogFsyncIntervalBytes;
+    }
+
+    /**
+     * @return true when the file logger appends through a {@link MappedLogFile} indexing the lines
+     */
+    public boolean isFileLogMapped() {
+        return fileLogMapped;
+    }
+
+    public void setFileLogMapped(boolean fileLogMapped) {
+        this.fileLogMapped = fileLogMapped;
+    }
+
+    public int getFileLogMapSize() {
+        return fileLogMapSize;
+    }
+
+    public void setFileLogMapSize(int fileLogMapSize) {
+        this.fileLogMapSize = fileLogMapSize;
+    }
+
+    /**
+     * @return true when the file logger writes each session to its own segment files, see {@link SegmentedLogStore}
+     */
+    public boolean isFileLogPerSession() {
+        return fileLogPerSession;
+    }
+
+    public void setFileLogPerSession(boolean fileLogPerSession) {
+        this.fileLogPerSession = fileLogPerSession;
+    }
+
+    public long getFileLogSegmentSize() {
+        return fileLogSegmentSize;
+    }
+
+    public void setFileLogSegmentSize(long fileLogSegmentSize) {
+        this.fileLogSegmentSize = fileLogSegmentSize;
+    }
+
+    /**
+     * @return disk budget of the session log segments, 0 when it is not limited
+     */
+    public long getFileLogMaxBytes() {
+        return fileLogMaxBytes;
+    }
+
+    public void setFileLogMaxBytes(long fileLogMaxBytes) {
+        this.fileLogMaxBytes = fileLogMaxBytes;
+    }
+
+    /**
+     * @return true when the file log is stored in compressed blocks, see {@link CompressedLogFile}
+     */
+    public boolean isFileLogCompressed() {
+        return fileLogCompressed;
+    }
+
+    public void setFileLogCompressed(boolean fileLogCompressed) {
+        this.fileLogCompressed = fileLogCompressed;
+    }
+
+    public LogCodec getFileLogCompressionCodec() {
+        return fileLogCompressionCodec;
+    }
+
+    public void setFileLogCompressionCodec(LogCodec fileLogCompressionCodec) {
+        this.fileLogCompressionCodec = fileLogCompressionCodec;
+    }
+
+    /**
+     * @return uncompressed bytes in a block of the compressed file log
+     */
+    public int getFileLogBlockSize() {
+        return fileLogBlockSize;
+    }
+
+    public void setFileLogBlockSize(int fileLogBlockSize) {
+        this.fileLogBlockSize = fileLogBlockSize;
+    }
+
+    /**
+     * @return patterns reported on the status update channel as soon as they appear in the output
+     */
+    public List<String> getOutputPatterns() {
+        return outputPatterns;
+    }
+
+    public void setOutputPatterns(List<String> outputPatterns) {
+        this.outputPatterns = outputPatterns;
+    }
+
+    /**
+     * @return sinks which get only the final state of progress lines rewritten with a carriage return
+     */
+    public Set<IoLoggerName> getCollapseProgressLines() {
+        return collapseProgressLines;
+    }
+
+    public void setCollapseProgressLines(Set<IoLoggerName> collapseProgressLines) {
+        this.collapseProgressLines = collapseProgressLines;
+    }
+
+    /**
+     * @return sinks which get the output without ANSI escape sequences
+     */
+    public Set<IoLoggerName> getStripAnsi() {
+        return stripAnsi;
+    }
+
+    public void setStripAnsi(Set<IoLoggerName> stripAnsi) {
+        this.stripAnsi = stripAnsi;
+    }
+
+    /**
+     * @return sinks to which the output limits apply
+     */
+    public Set<IoLoggerName> getLimitOutput() {
+        return limitOutput;
+    }
+
+    public void setLimitOutput(Set<IoLoggerName> limitOutput) {
+        this.limitOutput = limitOutput;
+    }
+
+    /**
+     * @return maximum number of output bytes of a command session, 0 for no limit
+     */
+    public long getOutputMaxBytes() {
+        return outputMaxBytes;
+    }
+
+    public void setOutputMaxBytes(long outputMaxBytes) {
+        this.outputMaxBytes = outputMaxBytes;
+    }
+
+    /**
+     * @return maximum number of output lines of a command session, 0 for no limit
+     */
+    public long getOutputMaxLines() {
+        return outputMaxLines;
+    }
+
+    public void setOutputMaxLines(long outputMaxLines) {
+        this.outputMaxLines = outputMaxLines;
+    }
+
+    /**
+     * @return bytes per second written to a sink, 0 for no limit
+     */
+    public long getOutputRateLimit() {
+        return outputRateLimit;
+    }
+
+    public void setOutputRateLimit(long outputRateLimit) {
+        this.outputRateLimit = outputRateLimit;
+    }
+
+    public long getOutputRateBurst() {
+        return outputRateBurst;
+    }
+
+    public void setOutputRateBurst(long outputRateBurst) {
+        this.outputRateBurst = outputRateBurst;
+    }
+
+    public OutputLimitPolicy getOutputLimitPolicy() {
+        return outputLimitPolicy;
+    }
+
+    public void setOutputLimitPolicy(OutputLimitPolicy outputLimitPolicy) {
+        this.outputLimitPolicy = outputLimitPolicy;
+    }
+
+    /**
+     * @return output stages of the sinks, a configured sink ignores the per feature options (stripAnsi, ...)
+     */
+    public Map<IoLoggerName, List<StageConfig>> getOutputStages() {
+        return outputStages;
+    }
+
+    public void setOutputStages(Map<IoLoggerName, List<StageConfig>> outputStages) {
+        this.outputStages = outputStages;
+    }
 }
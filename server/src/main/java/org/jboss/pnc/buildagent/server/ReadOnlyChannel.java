@@ -20,6 +20,7 @@ package org.jboss.pnc.buildagent.server;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * @author <a href="mailto:matejonnet@gmail.com">Matej Lazar</a>
@@ -27,10 +28,74 @@ import java.io.IOException;
 public interface ReadOnlyChannel extends Closeable {
     void writeOutput(byte[] buffer);
 
+    /**
+     * Writes the bytes between the buffer position and limit. The buffer is shared with the other channels and is
+     * recycled after the call returns, implementations must not keep a reference to it.
+     */
+    default void writeOutput(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        writeOutput(bytes);
+    }
+
+    /**
+     * Writes a captured chunk together with its capture stamp, see
+     * {@link org.jboss.pnc.buildagent.server.output.OutputSequencer}. Stages pass the stamp on to the next channel,
+     * channels which have no use for it write just the bytes.
+     *
+     * @param sequence number of lines captured in the session before the chunk
+     * @param timestamp capture time of the chunk in milliseconds
+     */
+    default void writeOutput(ByteBuffer buffer, long sequence, long timestamp) {
+        writeOutput(buffer);
+    }
+
     /**
      * @return true if the channel must contain all the output
      */
     boolean isPrimary();
 
     void flush() throws IOException;
+
+    /**
+     * Creates the channel used by a single command session. A session channel keeps its own state (line buffers,
+     * delivery errors, log context) and shares the underlying file or queue with this channel, so several sessions can
+     * write concurrently. Session channels are closed when their session ends and release only their own state, shared
+     * resources are closed with this channel.
+     */
+    default ReadOnlyChannel forSession(String sessionId) {
+        return this;
+    }
+
+    /**
+     * Creates the channel used by a term. It keeps its own state like a session channel, but the terminal output is
+     * not a command session: the output of a term without a sub-session goes to the shared output and the session
+     * quotas do not apply.
+     *
+     * @param sessionId name of a term with a sub-session, null for a term without one
+     */
+    default ReadOnlyChannel forTerm(String sessionId) {
+        return sessionId == null ? this : forSession(sessionId);
+    }
+
+    /**
+     * @return name used in the output statistics
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * @return number of output bytes the channel did not write because of an output limit
+     */
+    default long getSuppressedBytes() {
+        return 0;
+    }
+
+    /**
+     * @return number of output lines the channel did not write because of an output limit
+     */
+    default long getSuppressedLines() {
+        return 0;
+    }
 }
@@ -0,0 +1,21 @@
+package org.jboss.pnc.buildagent.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Log context of the output written by a command session.
+ */
+class SessionMdc {
+
+    static final String SESSION_ID_KEY = "sessionId";
+
+    private SessionMdc() {
+    }
+
+    static Map<String, String> of(Map<String, String> logMDC, String sessionId) {
+        Map<String, String> sessionMDC = new HashMap<>(logMDC);
+        sessionMDC.put(SESSION_ID_KEY, sessionId);
+        return sessionMDC;
+    }
+}
@@ -0,0 +1,90 @@
+package org.jboss.pnc.buildagent.server.httpinvoker;
+
+import io.termd.core.pty.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Completes a cacheable command from a {@link CommandCache} entry instead of executing it. The declared output files
+ * are restored first, then the stored output is passed on the same way as the output of a {@link PipeProcess} and
+ * the statuses are reported the same way as well.
+ */
+public class CacheReplay extends Thread {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheReplay.class);
+
+    private final CommandCache.Entry entry;
+
+    private final List<String> outputs;
+
+    private final Consumer<ByteBuffer> stdout;
+
+    private final int bufferSize;
+
+    private volatile BiConsumer<Status, Status> changeHandler = (oldStatus, newStatus) -> {};
+
+    private volatile Status status = Status.NEW;
+
+    private volatile boolean interrupted;
+
+    /**
+     * @param outputs declared output files of the command
+     * @param stdout receives the output read into a reused buffer, it must not keep a reference to the buffer
+     * @param bufferSize maximum size of the output passed at once
+     */
+    public CacheReplay(CommandCache.Entry entry, List<String> outputs, Consumer<ByteBuffer> stdout, int bufferSize) {
+        super("cache-replay");
+        this.entry = entry;
+        this.outputs = outputs;
+        this.stdout = stdout;
+        this.bufferSize = bufferSize;
+    }
+
+    public void setChangeHandler(BiConsumer<Status, Status> changeHandler) {
+        this.changeHandler = changeHandler;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    @Override
+    public void run() {
+        setStatus(Status.RUNNING);
+        try {
+            entry.restoreOutputs(outputs);
+            if (entry.replayOutput(stdout, bufferSize, () -> interrupted)) {
+                setStatus(Status.COMPLETED);
+            } else {
+                setStatus(Status.INTERRUPTED);
+            }
+        } catch (IOException e) {
+            log.error("Cannot restore the cached result.", e);
+            String message = "Cannot restore the cached result: " + e.getMessage() + "\r\n";
+            stdout.accept(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+            setStatus(Status.FAILED);
+        } finally {
+            entry.close();
+        }
+    }
+
+    /**
+     * Stops the output replay, the status changes to {@link Status#INTERRUPTED} unless the replay is already done.
+     */
+    public void interruptProcess() {
+        interrupted = true;
+    }
+
+    private void setStatus(Status newStatus) {
+        Status oldStatus = status;
+        status = newStatus;
+        changeHandler.accept(oldStatus, newStatus);
+    }
+}
@@ -0,0 +1,514 @@
+package org.jboss.pnc.buildagent.server.httpinvoker;
+
+import org.jboss.pnc.buildagent.api.httpinvoke.CacheConfig;
+import org.jboss.pnc.buildagent.api.httpinvoke.ExecutionMode;
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Results of the cacheable commands kept on the local disk. A result is keyed by the command line, the execution mode,
+ * the working directory and the environment of the commands, the declared outputs and the content of the declared
+ * inputs, it consists of the captured output and a copy of the declared output files. Relative inputs and outputs are
+ * resolved against the working directory of the commands.
+ *
+ * Only the results of the successful runs are stored, a failure is not reused. An entry is written into a temporary
+ * directory and moved in place, so a partially written entry is never used. The least recently used entries are
+ * removed when the cache grows over its size limit, an entry being read is not removed.
+ */
+public class CommandCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CommandCache.class);
+
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+    private static final String OUTPUT = "output";
+
+    private static final String FILES = "files";
+
+    private static final String TMP = "tmp";
+
+    private static final String RESTORED = "restored";
+
+    private static final String PREVIOUS = "previous";
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+
+    private final Path tmpDirectory;
+
+    private final long maxBytes;
+
+    private final Path workingDirectory;
+
+    private final Map<String, String> environment;
+
+    /**
+     * Number of readers of an entry, guarded by itself. The entries are removed under the same lock.
+     */
+    private final Map<Path, Integer> pins = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * The commands run in the working directory and with the environment of the agent.
+     *
+     * @param maxBytes size of the cache above which the least recently used entries are removed
+     */
+    public CommandCache(Path directory, long maxBytes) throws IOException {
+        this(directory, maxBytes, Paths.get("").toAbsolutePath(), System.getenv());
+    }
+
+    /**
+     * @param workingDirectory directory the commands run in
+     * @param environment environment variables of the commands
+     */
+    public CommandCache(Path directory, long maxBytes, Path workingDirectory, Map<String, String> environment)
+            throws IOException {
+        this.directory = directory;
+        this.tmpDirectory = directory.resolve(TMP);
+        this.maxBytes = maxBytes;
+        this.workingDirectory = workingDirectory.toAbsolutePath().normalize();
+        this.environment = new TreeMap<>(environment);
+        if (Files.exists(tmpDirectory)) {
+            //left over by a previous run
+            deleteRecursively(tmpDirectory);
+        }
+        Files.createDirectories(tmpDirectory);
+    }
+
+    /**
+     * Reads all the declared inputs, the cost of the lookup grows with their size.
+     *
+     * @return SHA-256 of the command, the execution mode, the working directory, the environment, the declared outputs
+     *         and the content of the declared inputs
+     */
+    public String getKey(String command, ExecutionMode executionMode, CacheConfig cacheConfig) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Cannot create cache key digest.", e);
+        }
+        update(digest, "command", command);
+        update(digest, "mode", executionMode == null ? ExecutionMode.PTY.name() : executionMode.name());
+        update(digest, "directory", workingDirectory.toString());
+        for (Map.Entry<String, String> variable : environment.entrySet()) {
+            update(digest, "env", variable.getKey() + "=" + variable.getValue());
+        }
+        for (String output : cacheConfig.getOutputs()) {
+            update(digest, "output", output);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        List<String> inputs = new ArrayList<>(cacheConfig.getInputs());
+        inputs.sort(Comparator.naturalOrder());
+        for (String input : inputs) {
+            update(digest, "input", input);
+            Path inputPath = resolve(input);
+            if (!Files.exists(inputPath)) {
+                update(digest, "missing", "");
+                continue;
+            }
+            for (Path file : listFiles(inputPath)) {
+                update(digest, "file", inputPath.relativize(file).toString());
+                update(digest, "size", Long.toString(Files.size(file)));
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    while (channel.read(buffer) >= 0) {
+                        ((Buffer) buffer).flip();
+                        digest.update(buffer);
+                        ((Buffer) buffer).clear();
+                    }
+                }
+            }
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    private Path resolve(String path) {
+        return workingDirectory.resolve(path);
+    }
+
+    private static void update(MessageDigest digest, String field, String value) {
+        digest.update(field.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * @return regular files of the path in a stable order
+     */
+    private static List<Path> listFiles(Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * The entry is not removed until it is closed. It is counted as a hit and marked as used once its outputs are
+     * restored.
+     */
+    public Optional<Entry> get(String key) {
+        Path entry = directory.resolve(key);
+        synchronized (pins) {
+            if (!Files.isDirectory(entry)) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            pins.merge(entry, 1, Integer::sum);
+        }
+        return Optional.of(new Entry(entry));
+    }
+
+    private void unpin(Path entry) {
+        synchronized (pins) {
+            pins.computeIfPresent(entry, (path, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * @return a primary channel which records the output of a command run, the output and the declared output files
+     *         are stored with {@link Recording#store()}
+     */
+    public Recording record(String key, List<String> outputs) throws IOException {
+        Path outputFile = Files.createTempFile(tmpDirectory, key, "." + OUTPUT);
+        return new Recording(key, outputs, outputFile);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getStored() {
+        return stored.get();
+    }
+
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * The removed entries are moved aside under the pins lock and deleted afterwards, so a reader never gets an entry
+     * being deleted.
+     */
+    private synchronized void evict() throws IOException {
+        List<Path> entries;
+        try (Stream<Path> list = Files.list(directory)) {
+            entries = list.filter(p -> !p.equals(tmpDirectory)).collect(Collectors.toList());
+        }
+        List<EntrySize> sizes = new ArrayList<>();
+        long total = 0;
+        for (Path entry : entries) {
+            long size = 0;
+            for (Path file : listFiles(entry)) {
+                size += Files.size(file);
+            }
+            total += size;
+            sizes.add(new EntrySize(entry, Files.getLastModifiedTime(entry).toMillis(), size));
+        }
+        sizes.sort(Comparator.comparingLong(e -> e.lastUsed));
+        for (EntrySize entry : sizes) {
+            if (total <= maxBytes) {
+                break;
+            }
+            Path removed = tmpDirectory.resolve(entry.path.getFileName() + "." + UUID.randomUUID());
+            synchronized (pins) {
+                if (pins.containsKey(entry.path)) {
+                    continue;
+                }
+                Files.move(entry.path, removed, StandardCopyOption.ATOMIC_MOVE);
+            }
+            log.debug("Removing cache entry {}.", entry.path.getFileName());
+            deleteRecursively(removed);
+            total -= entry.size;
+            evicted.incrementAndGet();
+        }
+    }
+
+    private static void copyRecursively(Path source, Path target) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(source)) {
+            paths = walk.sorted().collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            Path targetPath = target.resolve(source.relativize(path).toString());
+            if (Files.isDirectory(path)) {
+                Files.createDirectories(targetPath);
+            } else {
+                Files.createDirectories(targetPath.toAbsolutePath().getParent());
+                Files.copy(path, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(path)) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path p : paths) {
+            Files.deleteIfExists(p);
+        }
+    }
+
+    private static class EntrySize {
+        private final Path path;
+        private final long lastUsed;
+        private final long size;
+
+        private EntrySize(Path path, long lastUsed, long size) {
+            this.path = path;
+            this.lastUsed = lastUsed;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Stored result of a command run, it is not removed from the cache until it is closed.
+     */
+    public class Entry implements Closeable {
+
+        private final Path path;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Entry(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Replaces the declared outputs with the stored ones. All the stored outputs are copied next to their targets
+         * first and then moved in place, a failed copy leaves the existing outputs untouched.
+         */
+        public void restoreOutputs(List<String> outputs) throws IOException {
+            List<Path> stagings = new ArrayList<>();
+            List<Path> targets = new ArrayList<>();
+            try {
+                for (int i = 0; i < outputs.size(); i++) {
+                    Path stored = path.resolve(FILES).resolve(Integer.toString(i));
+                    if (Files.exists(stored)) {
+                        Path target = resolve(outputs.get(i));
+                        Path parent = target.getParent();
+                        Files.createDirectories(parent);
+                        Path staging = Files.createTempDirectory(parent, "." + target.getFileName() + ".");
+                        stagings.add(staging);
+                        targets.add(target);
+                        copyRecursively(stored, staging.resolve(RESTORED));
+                    }
+                }
+                for (int i = 0; i < targets.size(); i++) {
+                    replace(stagings.get(i), targets.get(i));
+                }
+            } finally {
+                for (Path staging : stagings) {
+                    deleteRecursively(staging);
+                }
+            }
+            hits.incrementAndGet();
+            try {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException e) {
+                log.warn("Cannot mark cache entry {} as used.", path.getFileName(), e);
+            }
+        }
+
+        /**
+         * Moves the existing target into the staging directory and the restored output in its place, the existing
+         * target is moved back when the restored output cannot be moved.
+         */
+        private void replace(Path staging, Path target) throws IOException {
+            Path previous = staging.resolve(PREVIOUS);
+            boolean existed = Files.exists(target, LinkOption.NOFOLLOW_LINKS);
+            if (existed) {
+                Files.move(target, previous, StandardCopyOption.ATOMIC_MOVE);
+            }
+            try {
+                Files.move(staging.resolve(RESTORED), target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                if (existed) {
+                    Files.move(previous, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * @param output receives the stored output read into a reused buffer, it must not keep a reference to it
+         * @param interrupted stops the replay when it returns true
+         * @return false when the replay was interrupted
+         */
+        public boolean replayOutput(Consumer<ByteBuffer> output, int bufferSize, BooleanSupplier interrupted)
+                throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+            try (FileChannel channel = FileChannel.open(path.resolve(OUTPUT), StandardOpenOption.READ)) {
+                while (channel.read(buffer) >= 0) {
+                    if (interrupted.getAsBoolean()) {
+                        return false;
+                    }
+                    ((Buffer) buffer).flip();
+                    if (buffer.hasRemaining()) {
+                        output.accept(buffer);
+                    }
+                    ((Buffer) buffer).clear();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                unpin(path);
+            }
+        }
+    }
+
+    /**
+     * Records the output of a command run. The recording is a primary channel, so it gets all the output, and it
+     * is used by a single session only.
+     */
+    public class Recording implements ReadOnlyChannel {
+
+        private final String key;
+
+        private final List<String> outputs;
+
+        private final Path outputFile;
+
+        private final FileChannel channel;
+
+        private volatile boolean failed;
+
+        private Recording(String key, List<String> outputs, Path outputFile) throws IOException {
+            this.key = key;
+            this.outputs = outputs;
+            this.outputFile = outputFile;
+            this.channel = FileChannel.open(outputFile, StandardOpenOption.WRITE);
+        }
+
+        @Override
+        public void writeOutput(byte[] buffer) {
+            writeOutput(ByteBuffer.wrap(buffer));
+        }
+
+        @Override
+        public void writeOutput(ByteBuffer buffer) {
+            if (failed) {
+                return;
+            }
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                log.warn("Cannot record output, the result of {} will not be cached.", key, e);
+                failed = true;
+            }
+        }
+
+        @Override
+        public boolean isPrimary() {
+            return true;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public String getName() {
+            return "command-cache";
+        }
+
+        /**
+         * Stores the recorded output and the declared output files. Must be called once the output is flushed, the
+         * recording is closed.
+         */
+        public void store() throws IOException {
+            close();
+            if (failed) {
+                Files.deleteIfExists(outputFile);
+                return;
+            }
+            Path entry = Files.createTempDirectory(tmpDirectory, key);
+            try {
+                Files.move(outputFile, entry.resolve(OUTPUT));
+                for (int i = 0; i < outputs.size(); i++) {
+                    Path output = resolve(outputs.get(i));
+                    if (Files.exists(output)) {
+                        copyRecursively(output, entry.resolve(FILES).resolve(Integer.toString(i)));
+                    }
+                }
+                Files.move(entry, directory.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+                stored.incrementAndGet();
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                log.debug("Result of {} was already stored by a concurrent run.", key);
+            } finally {
+                deleteRecursively(entry);
+            }
+            evict();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel.isOpen()) {
+                channel.close();
+            }
+        }
+
+        /**
+         * Closes the recording without storing it.
+         */
+        public void discard() throws IOException {
+            close();
+            Files.deleteIfExists(outputFile);
+        }
+    }
+}
@@ -1,16 +1,32 @@
 package org.jboss.pnc.buildagent.server.httpinvoker;
 
 import io.termd.core.pty.PtyMaster;
+import org.jboss.pnc.buildagent.api.BuildPhase;
+import org.jboss.pnc.buildagent.api.OutputSegments;
+import org.jboss.pnc.buildagent.common.buffer.PooledByteBuffer;
 import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+import org.jboss.pnc.buildagent.server.output.BuildPhaseAnalyzer;
+import org.jboss.pnc.buildagent.server.output.DigestChannel;
+import org.jboss.pnc.buildagent.server.output.OutputCoalescer;
+import org.jboss.pnc.buildagent.server.output.OutputFanOut;
+import org.jboss.pnc.buildagent.server.output.OutputFanOutFactory;
+import org.jboss.pnc.buildagent.server.output.OutputSequencer;
+import org.jboss.pnc.buildagent.server.output.SegmentDigestChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
 /**
+ * Output of a single command invocation. Each session has its own instances of the output channels and its own
+ * checksum, so several commands can run concurrently.
+ *
  * @author <a href="mailto:matejonnet@gmail.com">Matej Lazar</a>
  */
 public class CommandSession {
@@ -18,13 +34,60 @@ public class CommandSession {
     private static final Logger LOGGER = LoggerFactory.getLogger(CommandSession.class);
 
     private final String sessionId;
-    private final Set<ReadOnlyChannel> readOnlyChannels;
+    private final OutputFanOut outputFanOut;
+    private final OutputCoalescer outputCoalescer;
+    private final OutputSequencer outputSequencer = new OutputSequencer();
+    /**
+     * Null when the build phase timing is disabled.
+     */
+    private final BuildPhaseAnalyzer buildPhaseAnalyzer;
+    private final DigestChannel stdoutChecksum;
+    /**
+     * Null when the segment checksums are disabled.
+     */
+    private final SegmentDigestChannel segmentChecksums;
     private PtyMaster ptyMaster;
+    private PipeProcess pipeProcess;
+    private CacheReplay cacheReplay;
+    private CommandCache.Recording cacheRecording;
+    private final List<ReadOnlyChannel> sessionChannels = new ArrayList<>();
+    /**
+     * Session channels created for this session only, closed with the session.
+     */
+    private final List<ReadOnlyChannel> ownChannels = new ArrayList<>();
 
 
-    public CommandSession(Set<ReadOnlyChannel> readOnlyChannels) {
+    public CommandSession(Set<ReadOnlyChannel> readOnlyChannels, OutputFanOutFactory outputFanOutFactory) {
+        this(readOnlyChannels, outputFanOutFactory, null);
+    }
+
+    /**
+     * @param checksumAlgorithm algorithm of the output checksum, null for the agent default
+     * @throws IllegalArgumentException when the checksum algorithm is not supported
+     */
+    public CommandSession(
+            Set<ReadOnlyChannel> readOnlyChannels,
+            OutputFanOutFactory outputFanOutFactory,
+            String checksumAlgorithm) {
         this.sessionId = UUID.randomUUID().toString();
-        this.readOnlyChannels = readOnlyChannels;
+        this.stdoutChecksum = outputFanOutFactory.createDigestChannel(checksumAlgorithm);
+        this.outputFanOut = outputFanOutFactory.create("session-" + sessionId);
+        this.outputFanOut.addChannel(stdoutChecksum);
+        this.segmentChecksums = outputFanOutFactory.createSegmentDigestChannel(stdoutChecksum.getAlgorithm())
+                .orElse(null);
+        if (segmentChecksums != null) {
+            outputFanOut.addChannel(segmentChecksums);
+        }
+        this.outputCoalescer = outputFanOutFactory.createCoalescer(outputFanOut, this::writeToChannels);
+        this.buildPhaseAnalyzer = outputFanOutFactory.createBuildPhaseAnalyzer(phase -> {}).orElse(null);
+        for (ReadOnlyChannel channel : readOnlyChannels) {
+            ReadOnlyChannel sessionChannel = channel.forSession(sessionId);
+            sessionChannels.add(sessionChannel);
+            if (sessionChannel != channel) {
+                ownChannels.add(sessionChannel);
+            }
+            outputFanOut.addChannel(sessionChannel);
+        }
     }
 
     public String getSessionId() {
@@ -39,18 +102,184 @@ public class CommandSession {
         return ptyMaster;
     }
 
+    public void setPipeProcess(PipeProcess pipeProcess) {
+        this.pipeProcess = pipeProcess;
+    }
+
+    public PipeProcess getPipeProcess() {
+        return pipeProcess;
+    }
+
+    public void setCacheReplay(CacheReplay cacheReplay) {
+        this.cacheReplay = cacheReplay;
+    }
+
+    /**
+     * @return null unless the command is completed from the cache
+     */
+    public CacheReplay getCacheReplay() {
+        return cacheReplay;
+    }
+
+    /**
+     * Adds the recording to the output channels, must be set before the process starts.
+     */
+    public void setCacheRecording(CommandCache.Recording cacheRecording) {
+        this.cacheRecording = cacheRecording;
+        outputFanOut.addChannel(cacheRecording);
+    }
+
+    /**
+     * @return null unless the output of the command is recorded for the cache
+     */
+    public CommandCache.Recording getCacheRecording() {
+        return cacheRecording;
+    }
+
+    /**
+     * @return the started process, null when there is none (yet)
+     */
+    public Process getProcess() {
+        if (ptyMaster != null) {
+            return ptyMaster.getProcess();
+        }
+        if (pipeProcess != null) {
+            return pipeProcess.getProcess();
+        }
+        return null;
+    }
+
+    /**
+     * Interrupts the running process, completion is reported by the process status change handler.
+     */
+    public void interruptProcess() {
+        if (ptyMaster != null) {
+            ptyMaster.interruptProcess();
+        }
+        if (pipeProcess != null) {
+            pipeProcess.interruptProcess();
+        }
+        if (cacheReplay != null) {
+            cacheReplay.interruptProcess();
+        }
+    }
+
+    public OutputFanOut getOutputFanOut() {
+        return outputFanOut;
+    }
+
+    /**
+     * Delivers the remaining output, flushes the primary channels, stops the output delivery and closes the session
+     * channels.
+     */
     public void close() throws IOException {
-        for (ReadOnlyChannel readOnlyChannel : readOnlyChannels) {
-            if (readOnlyChannel.isPrimary()) {
-                readOnlyChannel.flush();
+        outputCoalescer.close();
+        try {
+            outputFanOut.flushPrimaryChannels();
+        } finally {
+            outputFanOut.close();
+            closeOwnChannels();
+        }
+    }
+
+    private void closeOwnChannels() {
+        for (ReadOnlyChannel channel : ownChannels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Cannot close the channel {} of the session {}.", channel.getName(), sessionId, e);
             }
         }
     }
 
-    public void handleOutput(byte[] buffer) {
-        for (ReadOnlyChannel readOnlyChannel : readOnlyChannels) {
-            LOGGER.trace("Writing to chanel {}; stdout: {}", readOnlyChannel, new String(buffer, StandardCharsets.UTF_8));
-            readOnlyChannel.writeOutput(buffer);
+    /**
+     * Called from the process output thread only.
+     */
+    public void handleOutput(int[] codePoints) {
+        outputCoalescer.write(codePoints);
+    }
+
+    /**
+     * Called from the process output thread only, with the raw output of a {@link PipeProcess}.
+     */
+    public void handleOutput(ByteBuffer bytes) {
+        outputCoalescer.write(bytes);
+    }
+
+    private void writeToChannels(PooledByteBuffer buffer) {
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Writing stdout: {}", StandardCharsets.UTF_8.decode(buffer.view()));
+        }
+        outputSequencer.stamp(buffer);
+        if (buildPhaseAnalyzer != null) {
+            buildPhaseAnalyzer.analyze(buffer.view(), buffer.getTimestamp());
+        }
+        outputFanOut.write(buffer);
+    }
+
+    /**
+     * @return the highest number of output bytes suppressed by any of the session channels
+     */
+    public long getSuppressedOutputBytes() {
+        return sessionChannels.stream().mapToLong(ReadOnlyChannel::getSuppressedBytes).max().orElse(0);
+    }
+
+    /**
+     * @return the highest number of output lines suppressed by any of the session channels
+     */
+    public long getSuppressedOutputLines() {
+        return sessionChannels.stream().mapToLong(ReadOnlyChannel::getSuppressedLines).max().orElse(0);
+    }
+
+    /**
+     * Must be called once after the output was flushed, see {@link #getStdoutChecksum()}.
+     *
+     * @return timeline of the build run by the command, null when the build phase timing is disabled
+     */
+    public List<BuildPhase> getBuildPhases() {
+        if (buildPhaseAnalyzer == null) {
+            return null;
+        }
+        return buildPhaseAnalyzer.finish(System.currentTimeMillis());
+    }
+
+    /**
+     * Flushes the coalesced output and waits until the checksum channel has digested it.
+     *
+     * @return checksum of the output, must be called once after the process completed
+     */
+    public String getStdoutChecksum() throws IOException {
+        outputCoalescer.flush();
+        outputFanOut.awaitDelivered();
+        return stdoutChecksum.digest();
+    }
+
+    /**
+     * Must be called once after {@link #getStdoutChecksum()}.
+     *
+     * @return checksums of the output segments, null when they are disabled
+     */
+    public OutputSegments getOutputSegments() {
+        if (segmentChecksums == null) {
+            return null;
+        }
+        return segmentChecksums.finish();
+    }
+
+    /**
+     * @return checksums of the output segments completed so far, null when they are disabled
+     */
+    public OutputSegments getOutputSegmentsSnapshot() {
+        if (segmentChecksums == null) {
+            return null;
         }
+        return segmentChecksums.snapshot();
+    }
+
+    /**
+     * @return name of the algorithm of the output checksum
+     */
+    public String getStdoutChecksumAlgorithm() {
+        return stdoutChecksum.getAlgorithm().getName();
     }
 }
@@ -0,0 +1,141 @@
+package org.jboss.pnc.buildagent.server.httpinvoker;
+
+import io.termd.core.pty.PtyMaster;
+import io.termd.core.pty.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Runs a command as a plain process connected with pipes instead of a pseudo terminal. The output (stdout and stderr
+ * merged) is passed on as raw bytes, without decoding.
+ *
+ * The command line is split and the statuses are reported the same way as by the {@link PtyMaster}.
+ */
+public class PipeProcess extends Thread {
+
+    private static final Logger log = LoggerFactory.getLogger(PipeProcess.class);
+
+    private final String command;
+
+    private final Consumer<ByteBuffer> stdout;
+
+    private final int bufferSize;
+
+    private final ShellPool shellPool;
+
+    private volatile BiConsumer<Status, Status> changeHandler = (oldStatus, newStatus) -> {};
+
+    private volatile Status status = Status.NEW;
+
+    private volatile Process process;
+
+    private volatile boolean interrupted;
+
+    /**
+     * @param stdout receives the output read into a reused buffer, it must not keep a reference to the buffer
+     * @param bufferSize maximum size of the output passed at once
+     * @param shellPool starts the process, in a pooled shell when one is available
+     */
+    public PipeProcess(String command, Consumer<ByteBuffer> stdout, int bufferSize, ShellPool shellPool) {
+        super("pipe-process");
+        this.command = command;
+        this.stdout = stdout;
+        this.bufferSize = bufferSize;
+        this.shellPool = shellPool;
+    }
+
+    public void setChangeHandler(BiConsumer<Status, Status> changeHandler) {
+        this.changeHandler = changeHandler;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Process getProcess() {
+        return process;
+    }
+
+    @Override
+    public void run() {
+        try {
+            process = shellPool.start(command);
+        } catch (IOException e) {
+            log.warn("Cannot start process [{}].", command, e);
+            stdout.accept(ByteBuffer.wrap((e.getMessage() + "\r\n").getBytes(StandardCharsets.UTF_8)));
+            setStatus(Status.FAILED);
+            return;
+        }
+        if (interrupted) {
+            process.destroy();
+        }
+        setStatus(Status.RUNNING);
+
+        readOutput();
+
+        try {
+            int exitCode = process.waitFor();
+            log.debug("Process [{}] exited with code {}.", command, exitCode);
+            if (exitCode == 0) {
+                setStatus(Status.COMPLETED);
+            } else if (interrupted) {
+                setStatus(Status.INTERRUPTED);
+            } else {
+                setStatus(Status.FAILED);
+            }
+        } catch (InterruptedException e) {
+            setStatus(Status.INTERRUPTED);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads the pipe straight into a heap array, the stream copies from the native read into the array anyway, a direct
+     * buffer would add a copy.
+     */
+    private void readOutput() {
+        byte[] bytes = new byte[bufferSize];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try (InputStream output = process.getInputStream()) {
+            int read;
+            while ((read = output.read(bytes)) >= 0) {
+                if (read > 0) {
+                    ((Buffer) buffer).clear();
+                    ((Buffer) buffer).limit(read);
+                    stdout.accept(buffer);
+                }
+            }
+        } catch (IOException e) {
+            if (interrupted) {
+                log.debug("Output of the interrupted process closed.", e);
+            } else {
+                log.error("Cannot read process output.", e);
+            }
+        }
+    }
+
+    /**
+     * Destroys the process, the status changes to {@link Status#INTERRUPTED} unless the process exits normally.
+     */
+    public void interruptProcess() {
+        interrupted = true;
+        Process process = this.process;
+        if (process != null) {
+            process.destroy();
+        }
+    }
+
+    private void setStatus(Status newStatus) {
+        Status oldStatus = status;
+        status = newStatus;
+        changeHandler.accept(oldStatus, newStatus);
+    }
+}
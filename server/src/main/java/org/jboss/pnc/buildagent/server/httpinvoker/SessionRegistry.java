@@ -2,6 +2,7 @@ package org.jboss.pnc.buildagent.server.httpinvoker;
 
 import io.undertow.util.CopyOnWriteMap;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 
@@ -18,4 +19,12 @@ public class SessionRegistry {
     public Optional<CommandSession> get(String sessionId) {
         return Optional.ofNullable(sessions.get(sessionId));
     }
+
+    public void remove(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    public Collection<CommandSession> getAll() {
+        return sessions.values();
+    }
 }
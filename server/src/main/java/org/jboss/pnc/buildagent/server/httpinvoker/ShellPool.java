@@ -0,0 +1,257 @@
+package org.jboss.pnc.buildagent.server.httpinvoker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps idle shells started ahead of time, so a command does not pay for the process spawn. A claimed shell is
+ * replaced by the command using exec, the command keeps the pid, the pipes and the exit code of the shell. Used shells
+ * are never returned to the pool, the pool is refilled in the background.
+ *
+ * The command line is split on white space and every token is quoted, so the shell does not interpret it and the
+ * command receives the same arguments as when it is started directly.
+ *
+ * Idle shells older than the max age or no longer alive are discarded. When the pool is empty or disabled (size 0)
+ * the command is started directly.
+ */
+public class ShellPool implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShellPool.class);
+
+    public static final int DEFAULT_SIZE = 0;
+
+    public static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final long HEALTH_CHECK_PERIOD_MILLIS = 5000;
+
+    private static final String SHELL = "/bin/sh";
+
+    private final int size;
+
+    private final long maxAgeNanos;
+
+    private final Deque<IdleShell> idle = new ArrayDeque<>();
+
+    private int starting;
+
+    private boolean closed;
+
+    private final ScheduledExecutorService executor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong spawned = new AtomicLong();
+    private final AtomicLong spawnNanos = new AtomicLong();
+    private final AtomicLong savedNanos = new AtomicLong();
+
+    public ShellPool(int size, long maxAgeMillis) {
+        this.size = size;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        if (size > 0) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "shell-pool");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1, Math.min(HEALTH_CHECK_PERIOD_MILLIS, maxAgeMillis / 2));
+            executor.scheduleWithFixedDelay(this::checkHealth, 0, period, TimeUnit.MILLISECONDS);
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Starts the command in a pooled shell when one is available, otherwise directly. Stderr is redirected to stdout.
+     */
+    public Process start(String command) throws IOException {
+        String[] commandLine = command.split("\\s+");
+        long claimStarted = System.nanoTime();
+        IdleShell shell;
+        while ((shell = claim()) != null) {
+            try {
+                OutputStream stdin = shell.process.getOutputStream();
+                stdin.write(execLine(commandLine).getBytes(StandardCharsets.UTF_8));
+                stdin.flush();
+            } catch (IOException e) {
+                log.debug("Discarding pooled shell which cannot take a command.", e);
+                discard(shell);
+                continue;
+            }
+            hits.incrementAndGet();
+            savedNanos.addAndGet(Math.max(0, getAverageSpawnNanos() - (System.nanoTime() - claimStarted)));
+            scheduleFill();
+            return shell.process;
+        }
+        if (size > 0) {
+            misses.incrementAndGet();
+            scheduleFill();
+        }
+        return spawn(commandLine);
+    }
+
+    private synchronized IdleShell claim() {
+        IdleShell shell;
+        while ((shell = idle.pollFirst()) != null) {
+            if (isHealthy(shell, System.nanoTime())) {
+                return shell;
+            }
+            discard(shell);
+        }
+        return null;
+    }
+
+    private boolean isHealthy(IdleShell shell, long now) {
+        return shell.process.isAlive() && now - shell.started < maxAgeNanos;
+    }
+
+    private void discard(IdleShell shell) {
+        discarded.incrementAndGet();
+        shell.process.destroy();
+    }
+
+    private void checkHealth() {
+        synchronized (this) {
+            long now = System.nanoTime();
+            Iterator<IdleShell> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                IdleShell shell = iterator.next();
+                if (!isHealthy(shell, now)) {
+                    iterator.remove();
+                    discard(shell);
+                }
+            }
+        }
+        fill();
+    }
+
+    private void scheduleFill() {
+        try {
+            executor.execute(this::fill);
+        } catch (RejectedExecutionException e) {
+            log.debug("Shell pool is closed, not refilling.");
+        }
+    }
+
+    private void fill() {
+        while (true) {
+            synchronized (this) {
+                if (closed || idle.size() + starting >= size) {
+                    return;
+                }
+                starting++;
+            }
+            IdleShell shell = null;
+            try {
+                shell = new IdleShell(spawn(new String[]{SHELL}), System.nanoTime());
+            } catch (IOException e) {
+                log.error("Cannot start a pooled shell.", e);
+            }
+            synchronized (this) {
+                starting--;
+                if (shell == null) {
+                    return; //retried on the next health check
+                }
+                if (closed) {
+                    shell.process.destroy();
+                    return;
+                }
+                idle.addLast(shell);
+            }
+        }
+    }
+
+    private Process spawn(String[] commandLine) throws IOException {
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(commandLine).redirectErrorStream(true).start();
+        spawnNanos.addAndGet(System.nanoTime() - started);
+        spawned.incrementAndGet();
+        return process;
+    }
+
+    static String execLine(String[] commandLine) {
+        StringBuilder line = new StringBuilder("exec");
+        for (String token : commandLine) {
+            line.append(" '").append(token.replace("'", "'\\''")).append('\'');
+        }
+        return line.append('\n').toString();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public synchronized int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * @return number of commands started in a pooled shell
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of commands started directly because no pooled shell was available
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of idle shells discarded because they were too old or not alive
+     */
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    public long getAverageSpawnNanos() {
+        long count = spawned.get();
+        return count == 0 ? 0 : spawnNanos.get() / count;
+    }
+
+    /**
+     * @return estimated command start time saved by the pooled shells, based on the average spawn time
+     */
+    public long getTimeSavedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(savedNanos.get());
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for (IdleShell shell : idle) {
+                shell.process.destroy();
+            }
+            idle.clear();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class IdleShell {
+        private final Process process;
+        private final long started;
+
+        private IdleShell(Process process, long started) {
+            this.process = process;
+            this.started = started;
+        }
+    }
+}
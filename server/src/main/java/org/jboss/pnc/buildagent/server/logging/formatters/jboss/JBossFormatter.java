@@ -65,4 +65,13 @@ public class JBossFormatter implements LogFormatter {
         record.setMillis(System.currentTimeMillis());
         return formatter.format(record);
     }
+
+    @Override
+    public String format(String message, long sequence, long timestamp) {
+        LogRecord record = new LogRecord(Level.INFO, message);
+        record.setLoggerName("org.jboss.pnc._userlog_.build-log");
+        record.setMillis(timestamp);
+        record.setSequenceNumber(sequence);
+        return formatter.format(record);
+    }
 }
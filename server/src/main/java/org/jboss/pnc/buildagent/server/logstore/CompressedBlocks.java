@@ -0,0 +1,78 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Whole compressed blocks of a {@link CompressedLogFile} covering a range of the output, joined into a single gzip
+ * stream: the header, the data of the blocks in the log file and the end, which holds the output not stored in a block
+ * yet compressed on its own.
+ */
+public class CompressedBlocks implements Closeable {
+
+    private final long startOffset;
+
+    private final long endOffset;
+
+    private final ByteBuffer header;
+
+    private final List<LogRegion> regions;
+
+    private final ByteBuffer end;
+
+    CompressedBlocks(long startOffset, long endOffset, ByteBuffer header, List<LogRegion> regions, ByteBuffer end) {
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.header = header;
+        this.regions = regions;
+        this.end = end;
+    }
+
+    /**
+     * @return offset of the first uncompressed byte, it is the start of the first block
+     */
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * @return offset after the last uncompressed byte
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    public ByteBuffer getHeader() {
+        return header;
+    }
+
+    /**
+     * @return the data of the blocks in the log file, the regions share a single channel
+     */
+    public List<LogRegion> getRegions() {
+        return regions;
+    }
+
+    /**
+     * @return the compressed output following the blocks and the end of the stream
+     */
+    public ByteBuffer getEnd() {
+        return end;
+    }
+
+    /**
+     * @return compressed bytes of the stream
+     */
+    public long getLength() {
+        return header.remaining() + regions.stream().mapToLong(LogRegion::getLength).sum() + end.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (LogRegion region : regions) {
+            region.close();
+        }
+    }
+}
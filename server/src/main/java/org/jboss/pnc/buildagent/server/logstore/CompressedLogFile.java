@@ -0,0 +1,426 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import org.jboss.pnc.buildagent.server.FsyncPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Log file stored in blocks compressed on their own by the {@link LogCodec}, so any block is decompressed without the
+ * blocks before it. The output is collected in memory until the block is full or the log is flushed, then the block is
+ * compressed and appended to the file. The ends of the blocks, uncompressed and compressed, and the line count at the
+ * end of each block are appended to a side index file and kept in memory, so an offset or a line is found with a
+ * binary search and a single block is decompressed.
+ *
+ * On start the blocks listed in the index are kept and the bytes of the file beyond the last one are cut, the output
+ * not stored in a block when the agent stopped is lost.
+ */
+public class CompressedLogFile implements LogFileWriter, LineReadableLog {
+
+    private static final Logger log = LoggerFactory.getLogger(CompressedLogFile.class);
+
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+    public static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * Uncompressed end, compressed end and the line count at the end of a block.
+     */
+    private static final int INDEX_ENTRY_SIZE = 3 * Long.BYTES;
+
+    private static final int INITIAL_BLOCKS = 64;
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    private final FileChannel indexChannel;
+
+    private final LogCodec codec;
+
+    private final boolean forceOnFlush;
+
+    /**
+     * Output not stored in a block yet.
+     */
+    private final ByteBuffer pending;
+
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+
+    private long[] blockEnds = new long[INITIAL_BLOCKS];
+
+    private long[] compressedEnds = new long[INITIAL_BLOCKS];
+
+    private long[] lineEnds = new long[INITIAL_BLOCKS];
+
+    private int blocks;
+
+    private long pendingLines;
+
+    private long lastLineStart;
+
+    /**
+     * @param blockSize uncompressed bytes in a block, a flush ends the block earlier
+     * @param fsyncPolicy the file and the index are forced on flush unless {@link FsyncPolicy#NONE}, periodic syncs
+     *         are not supported
+     */
+    public CompressedLogFile(Path file, int blockSize, LogCodec codec, FsyncPolicy fsyncPolicy) throws IOException {
+        this.file = file;
+        this.codec = codec;
+        this.forceOnFlush = fsyncPolicy != FsyncPolicy.NONE;
+        this.pending = ByteBuffer.allocate(blockSize);
+        this.channel = FileChannel.open(
+                file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.indexChannel = FileChannel.open(
+                file.resolveSibling(file.getFileName() + INDEX_SUFFIX),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        recover();
+    }
+
+    @Override
+    public synchronized void append(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            int start = bytes.position();
+            int length = Math.min(bytes.remaining(), pending.remaining());
+            long offset = getEndOffset();
+            for (int i = 0; i < length; i++) {
+                if (bytes.get(start + i) == '\n') {
+                    pendingLines++;
+                    lastLineStart = offset + i + 1;
+                }
+            }
+            ByteBuffer part = bytes.duplicate();
+            ((Buffer) part).limit(start + length);
+            pending.put(part);
+            ((Buffer) bytes).position(start + length);
+            if (!pending.hasRemaining()) {
+                writeBlock();
+            }
+        }
+    }
+
+    /**
+     * Ends the current block, so the output is stored in the file.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        writeBlock();
+        if (forceOnFlush) {
+            channel.force(false);
+            indexChannel.force(false);
+        }
+    }
+
+    /**
+     * @return bytes of uncompressed output in the log, including the output not stored in a block yet
+     */
+    public synchronized long getEndOffset() {
+        return blockStart(blocks) + pending.position();
+    }
+
+    /**
+     * @return bytes of the compressed blocks in the file
+     */
+    public synchronized long getCompressedSize() {
+        return compressedStart(blocks);
+    }
+
+    public LogCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return lines in the log, the last one may not be terminated yet
+     */
+    public synchronized long getLineCount() {
+        return linesBefore(blocks) + pendingLines + (getEndOffset() > lastLineStart ? 1 : 0);
+    }
+
+    @Override
+    public synchronized LineRange getLines(long from, long to) throws IOException {
+        long lineCount = getLineCount();
+        long first = Math.min(Math.max(0, from), lineCount);
+        long end = Math.min(Math.max(first, to), lineCount);
+        return new LineRange(first, end, getLineStart(first), getLineStart(end), lineCount);
+    }
+
+    @Override
+    public synchronized LineRange tail(long lines) throws IOException {
+        long lineCount = getLineCount();
+        return getLines(lineCount - lines, lineCount);
+    }
+
+    @Override
+    public ByteBuffer read(LineRange range) throws IOException {
+        return read(range.getStartOffset(), range.getLength());
+    }
+
+    /**
+     * Decompresses the blocks overlapping the range.
+     *
+     * @return the uncompressed bytes of the range
+     */
+    public synchronized ByteBuffer read(long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cannot read " + length + " bytes at once.");
+        }
+        ByteBuffer bytes = ByteBuffer.allocate((int) length);
+        long end = offset + length;
+        for (int i = findBlock(offset); i < blocks && blockStart(i) < end; i++) {
+            byte[] block = readBlock(i);
+            long start = blockStart(i);
+            int from = (int) Math.max(0, offset - start);
+            int to = (int) Math.min(block.length, end - start);
+            bytes.put(block, from, to - from);
+        }
+        long blocked = blockStart(blocks);
+        if (end > blocked) {
+            int from = (int) Math.max(0, offset - blocked);
+            bytes.put(pending.array(), from, (int) (end - blocked) - from);
+        }
+        ((Buffer) bytes).flip();
+        return bytes;
+    }
+
+    /**
+     * Opens the whole gzip blocks overlapping the range and joins them into a single gzip stream, so they are sent
+     * without decompressing them. The range is extended to the start of the first block and to the end of the last one,
+     * the output not stored in a block yet is compressed on its own.
+     *
+     * @param limit uncompressed bytes requested from the offset
+     */
+    public synchronized CompressedBlocks openBlocks(long offset, long limit) throws IOException {
+        if (codec != LogCodec.GZIP) {
+            throw new IllegalStateException("Only the " + LogCodec.GZIP + " blocks can be joined.");
+        }
+        long size = getEndOffset();
+        long end = limit >= size - offset ? size : offset + limit;
+        long blocked = blockStart(blocks);
+        int first = findBlock(offset);
+        boolean withBlocks = end > offset && first < blocks;
+        long start = withBlocks ? blockStart(first) : offset;
+        long streamEnd = start;
+        long crc = 0;
+        List<LogRegion> regions = new ArrayList<>();
+        if (withBlocks) {
+            int last = Math.min(findBlock(end - 1), blocks - 1);
+            FileChannel blocksChannel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                ByteBuffer blockCrc = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = first; i <= last; i++) {
+                    long position = compressedStart(i) + GzipBlocks.HEADER_SIZE;
+                    long dataEnd = compressedEnds[i] - GzipBlocks.END_SIZE;
+                    regions.add(new LogRegion(blocksChannel, position, dataEnd - position));
+                    ((Buffer) blockCrc).clear();
+                    readFully(blocksChannel, blockCrc, dataEnd + GzipBlocks.CRC_POSITION);
+                    ((Buffer) blockCrc).flip();
+                    long blockLength = blockEnds[i] - blockStart(i);
+                    crc = GzipBlocks.combineCrc(crc, Integer.toUnsignedLong(blockCrc.getInt()), blockLength);
+                }
+            } catch (IOException e) {
+                blocksChannel.close();
+                throw e;
+            }
+            streamEnd = blockEnds[last];
+        }
+        byte[] pendingData = new byte[0];
+        if (end > streamEnd) {
+            int from = (int) (streamEnd - blocked);
+            int length = (int) (end - streamEnd);
+            byte[] member = GzipBlocks.compress(pending.array(), from, length);
+            pendingData = Arrays.copyOfRange(member, GzipBlocks.HEADER_SIZE, member.length - GzipBlocks.END_SIZE);
+            int crcPosition = member.length - GzipBlocks.END_SIZE + GzipBlocks.CRC_POSITION;
+            int pendingCrc = ByteBuffer.wrap(member, crcPosition, Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            crc = GzipBlocks.combineCrc(crc, Integer.toUnsignedLong(pendingCrc), length);
+            streamEnd = end;
+        }
+        ByteBuffer streamEndBytes = GzipBlocks.end(crc, streamEnd - start);
+        ByteBuffer endBytes = ByteBuffer.allocate(pendingData.length + streamEndBytes.remaining());
+        endBytes.put(pendingData).put(streamEndBytes);
+        ((Buffer) endBytes).flip();
+        return new CompressedBlocks(start, streamEnd, GzipBlocks.header(), regions, endBytes);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            try {
+                indexChannel.close();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private long getLineStart(long line) throws IOException {
+        if (line == 0) {
+            return 0;
+        }
+        long blockedLines = linesBefore(blocks);
+        if (line > blockedLines + pendingLines) {
+            return getEndOffset();
+        }
+        if (line > blockedLines) {
+            return blockStart(blocks) + lineEnd(pending.array(), pending.position(), line - blockedLines);
+        }
+        int block = lowerBound(lineEnds, blocks, line);
+        byte[] bytes = readBlock(block);
+        return blockStart(block) + lineEnd(bytes, bytes.length, line - linesBefore(block));
+    }
+
+    /**
+     * @return index after the n-th line end
+     */
+    private static int lineEnd(byte[] bytes, int length, long n) {
+        long found = 0;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == '\n' && ++found == n) {
+                return i + 1;
+            }
+        }
+        throw new IllegalStateException("The line index does not match the output.");
+    }
+
+    private long blockStart(int block) {
+        return block == 0 ? 0 : blockEnds[block - 1];
+    }
+
+    private long compressedStart(int block) {
+        return block == 0 ? 0 : compressedEnds[block - 1];
+    }
+
+    private long linesBefore(int block) {
+        return block == 0 ? 0 : lineEnds[block - 1];
+    }
+
+    /**
+     * @return the block holding the offset, the number of blocks when it is not stored in a block yet
+     */
+    private int findBlock(long offset) {
+        return lowerBound(blockEnds, blocks, offset + 1);
+    }
+
+    /**
+     * @return first index of the sorted values not less than the key
+     */
+    private static int lowerBound(long[] values, int size, long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private byte[] readBlock(int block) throws IOException {
+        long position = compressedStart(block);
+        ByteBuffer compressed = ByteBuffer.allocate((int) (compressedEnds[block] - position));
+        readFully(channel, compressed, position);
+        byte[] bytes = new byte[(int) (blockEnds[block] - blockStart(block))];
+        try (DataInputStream in = new DataInputStream(codec.decompressor(new ByteArrayInputStream(compressed.array())))) {
+            in.readFully(bytes);
+        }
+        return bytes;
+    }
+
+    private void writeBlock() throws IOException {
+        if (pending.position() == 0) {
+            return;
+        }
+        byte[] compressed = codec.compress(pending.array(), 0, pending.position());
+        long position = compressedStart(blocks);
+        writeFully(channel, ByteBuffer.wrap(compressed), position);
+
+        long blockEnd = blockStart(blocks) + pending.position();
+        long compressedEnd = position + compressed.length;
+        long lineEnd = linesBefore(blocks) + pendingLines;
+        ((Buffer) indexEntry).clear();
+        indexEntry.putLong(blockEnd).putLong(compressedEnd).putLong(lineEnd);
+        ((Buffer) indexEntry).flip();
+        writeFully(indexChannel, indexEntry, (long) blocks * INDEX_ENTRY_SIZE);
+        addBlock(blockEnd, compressedEnd, lineEnd);
+
+        ((Buffer) pending).clear();
+        pendingLines = 0;
+    }
+
+    private void addBlock(long blockEnd, long compressedEnd, long lineEnd) {
+        if (blocks == blockEnds.length) {
+            blockEnds = Arrays.copyOf(blockEnds, blocks * 2);
+            compressedEnds = Arrays.copyOf(compressedEnds, blocks * 2);
+            lineEnds = Arrays.copyOf(lineEnds, blocks * 2);
+        }
+        blockEnds[blocks] = blockEnd;
+        compressedEnds[blocks] = compressedEnd;
+        lineEnds[blocks] = lineEnd;
+        blocks++;
+    }
+
+    /**
+     * Loads the index of the blocks written before and cuts what is not listed in it.
+     */
+    private void recover() throws IOException {
+        long fileSize = channel.size();
+        long entries = indexChannel.size() / INDEX_ENTRY_SIZE;
+        for (long i = 0; i < entries; i++) {
+            ((Buffer) indexEntry).clear();
+            readFully(indexChannel, indexEntry, i * INDEX_ENTRY_SIZE);
+            ((Buffer) indexEntry).flip();
+            long blockEnd = indexEntry.getLong();
+            long compressedEnd = indexEntry.getLong();
+            long lineEnd = indexEntry.getLong();
+            if (compressedEnd > fileSize) {
+                break;
+            }
+            addBlock(blockEnd, compressedEnd, lineEnd);
+        }
+        long compressedSize = compressedStart(blocks);
+        if (compressedSize < fileSize) {
+            log.info("Cutting {} bytes of the compressed log not listed in the index.", fileSize - compressedSize);
+            channel.truncate(compressedSize);
+        }
+        indexChannel.truncate((long) blocks * INDEX_ENTRY_SIZE);
+        if (blocks > 0) {
+            log.info("Found {} compressed blocks of {} bytes of output in {}.", blocks, blockStart(blocks), file);
+        }
+        lastLineStart = getLineStart(linesBefore(blocks));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the compressed log.");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
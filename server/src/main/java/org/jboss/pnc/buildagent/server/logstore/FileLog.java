@@ -0,0 +1,31 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Log file written by the stream or the {@link org.jboss.pnc.buildagent.server.AsyncFileAppender}, the bytes in the
+ * file can be read.
+ */
+public class FileLog implements ReadableLog {
+
+    private final Path file;
+
+    public FileLog(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public long getEndOffset() {
+        return file.toFile().length();
+    }
+
+    @Override
+    public List<LogRegion> open(long offset, long length) throws IOException {
+        return Collections.singletonList(new LogRegion(FileChannel.open(file, StandardOpenOption.READ), offset, length));
+    }
+}
@@ -0,0 +1,132 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip members of the {@link LogCodec#GZIP} blocks. The deflate data of a member ends with a full flush, on a byte
+ * boundary with the dictionary reset, and the member is closed with an empty final block. So the data of consecutive
+ * members is joined into a single gzip stream by writing one header, the data of the members without their header and
+ * end, and an end with the CRC combined from the CRCs of the members. Many HTTP clients decode only the first member of
+ * a gzip body, the single stream is decoded by all of them.
+ */
+final class GzipBlocks {
+
+    static final int HEADER_SIZE = 10;
+
+    /**
+     * The empty final block and the trailer with the CRC and the size.
+     */
+    static final int END_SIZE = 10;
+
+    /**
+     * Position of the CRC in the end.
+     */
+    static final int CRC_POSITION = 2;
+
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    /**
+     * Empty final block with the fixed Huffman codes.
+     */
+    private static final byte[] FINAL_BLOCK = { 0x03, 0x00 };
+
+    private static final long CRC32_POLYNOMIAL = 0xedb88320L;
+
+    private GzipBlocks() {
+    }
+
+    static byte[] compress(byte[] bytes, int offset, int length) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length / 4 + HEADER_SIZE + END_SIZE);
+        out.write(HEADER, 0, HEADER.length);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(bytes, offset, length);
+            byte[] buffer = new byte[8192];
+            int compressed;
+            do {
+                compressed = deflater.deflate(buffer, 0, buffer.length, Deflater.FULL_FLUSH);
+                out.write(buffer, 0, compressed);
+            } while (compressed == buffer.length);
+        } finally {
+            deflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        ByteBuffer end = end(crc.getValue(), length);
+        out.write(end.array(), 0, end.remaining());
+        return out.toByteArray();
+    }
+
+    static ByteBuffer header() {
+        return ByteBuffer.wrap(HEADER.clone());
+    }
+
+    /**
+     * @param size uncompressed bytes of the stream, the trailer keeps them modulo 2^32
+     */
+    static ByteBuffer end(long crc, long size) {
+        ByteBuffer end = ByteBuffer.allocate(END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        end.put(FINAL_BLOCK).putInt((int) crc).putInt((int) size);
+        ((Buffer) end).flip();
+        return end;
+    }
+
+    /**
+     * @return CRC32 of two byte sequences joined, from their CRCs and the length of the second one
+     */
+    static long combineCrc(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        odd[0] = CRC32_POLYNOMIAL;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // operators for two and four zero bits
+        square(even, odd);
+        square(odd, even);
+        long crc = crc1;
+        long length = length2;
+        do {
+            square(even, odd);
+            if ((length & 1) != 0) {
+                crc = times(even, crc);
+            }
+            length >>= 1;
+            if (length == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((length & 1) != 0) {
+                crc = times(odd, crc);
+            }
+            length >>= 1;
+        } while (length != 0);
+        return crc ^ crc2;
+    }
+
+    private static long times(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+}
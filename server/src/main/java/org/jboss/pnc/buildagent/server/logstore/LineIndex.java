@@ -0,0 +1,100 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Side index of a log file holding the offsets of the line starts as fixed size entries, so the start of a line is
+ * found with a single lookup. The entries are appended through a mapped window of the index file and looked up in the
+ * window or with a positional read of the file, the index takes no heap.
+ *
+ * The index is not thread safe, the {@link MappedLogFile} serializes the calls.
+ */
+class LineIndex implements Closeable {
+
+    private static final int ENTRY_SIZE = Long.BYTES;
+
+    private final FileChannel channel;
+
+    private final int windowEntries;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(ENTRY_SIZE);
+
+    private MappedByteBuffer window;
+
+    private long windowStart;
+
+    private long size;
+
+    /**
+     * Opens an empty index, the previous content of the file is dropped.
+     *
+     * @param windowEntries number of entries mapped at once
+     */
+    LineIndex(Path file, int windowEntries) throws IOException {
+        this.channel = FileChannel.open(
+                file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.windowEntries = windowEntries;
+        this.window = map(0);
+    }
+
+    void add(long offset) throws IOException {
+        if (!window.hasRemaining()) {
+            windowStart = size;
+            window = map(size);
+        }
+        window.putLong(offset);
+        size++;
+    }
+
+    long get(long entry) throws IOException {
+        if (entry < 0 || entry >= size) {
+            throw new IndexOutOfBoundsException("Entry " + entry + " of " + size + ".");
+        }
+        if (entry >= windowStart) {
+            return window.getLong((int) (entry - windowStart) * ENTRY_SIZE);
+        }
+        ((Buffer) readBuffer).clear();
+        long position = entry * ENTRY_SIZE;
+        while (readBuffer.hasRemaining()) {
+            if (channel.read(readBuffer, position + readBuffer.position()) < 0) {
+                throw new IOException("Line index is shorter than " + size + " entries.");
+            }
+        }
+        return readBuffer.getLong(0);
+    }
+
+    long size() {
+        return size;
+    }
+
+    void force() {
+        window.force();
+    }
+
+    /**
+     * Cuts the file to the stored entries.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.truncate(size * ENTRY_SIZE);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private MappedByteBuffer map(long entry) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, entry * ENTRY_SIZE, (long) windowEntries * ENTRY_SIZE);
+    }
+}
@@ -0,0 +1,62 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+/**
+ * Lines of a log file and the bytes they take, resolved by the {@link LineReadableLog} at once so the line numbers
+ * and offsets are consistent while the log grows.
+ */
+public class LineRange {
+
+    private final long firstLine;
+
+    private final long endLine;
+
+    private final long startOffset;
+
+    private final long endOffset;
+
+    private final long totalLines;
+
+    LineRange(long firstLine, long endLine, long startOffset, long endOffset, long totalLines) {
+        this.firstLine = firstLine;
+        this.endLine = endLine;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.totalLines = totalLines;
+    }
+
+    /**
+     * @return 0 based number of the first line
+     */
+    public long getFirstLine() {
+        return firstLine;
+    }
+
+    /**
+     * @return number of the line after the range
+     */
+    public long getEndLine() {
+        return endLine;
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * @return offset after the last byte of the range
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    public long getLength() {
+        return endOffset - startOffset;
+    }
+
+    /**
+     * @return lines in the log when the range was resolved, the last one may not be terminated yet
+     */
+    public long getTotalLines() {
+        return totalLines;
+    }
+}
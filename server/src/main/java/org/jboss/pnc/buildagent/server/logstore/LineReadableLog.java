@@ -0,0 +1,26 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Log with its lines indexed, a range of lines or the tail is found without reading the whole log.
+ */
+public interface LineReadableLog {
+
+    /**
+     * @param from 0 based number of the first line
+     * @param to number of the line after the range, it is limited to the line count
+     */
+    LineRange getLines(long from, long to) throws IOException;
+
+    /**
+     * @return the last lines of the log
+     */
+    LineRange tail(long lines) throws IOException;
+
+    /**
+     * @return the bytes of the range
+     */
+    ByteBuffer read(LineRange range) throws IOException;
+}
@@ -0,0 +1,79 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of the blocks of a {@link CompressedLogFile}, each block is compressed on its own.
+ */
+public enum LogCodec {
+
+    /**
+     * Each block is a gzip member, the file is a valid gzip file. The blocks are joined into a single gzip stream for
+     * the clients accepting the gzip content encoding without decompressing them, see {@link GzipBlocks}.
+     */
+    GZIP(".gz", "gzip") {
+        @Override
+        byte[] compress(byte[] bytes, int offset, int length) {
+            return GzipBlocks.compress(bytes, offset, length);
+        }
+
+        @Override
+        InputStream decompressor(InputStream in) throws IOException {
+            return new GZIPInputStream(in);
+        }
+    },
+
+    /**
+     * Each block is a zlib stream, the blocks are decompressed for the clients.
+     */
+    DEFLATE(".zz", null) {
+        @Override
+        byte[] compress(byte[] bytes, int offset, int length) throws IOException {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(compressed)) {
+                out.write(bytes, offset, length);
+            }
+            return compressed.toByteArray();
+        }
+
+        @Override
+        InputStream decompressor(InputStream in) {
+            return new InflaterInputStream(in);
+        }
+    };
+
+    private final String extension;
+
+    private final String contentEncoding;
+
+    LogCodec(String extension, String contentEncoding) {
+        this.extension = extension;
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * @return suffix of the compressed log file
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return HTTP content encoding of the joined blocks, null when they cannot be sent without decompressing them
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @return the block compressed on its own
+     */
+    abstract byte[] compress(byte[] bytes, int offset, int length) throws IOException;
+
+    abstract InputStream decompressor(InputStream in) throws IOException;
+}
@@ -0,0 +1,22 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Storage of the file log used instead of the plain stream, see {@link org.jboss.pnc.buildagent.server.IoFileLogger}.
+ * The file logger serializes the calls.
+ */
+public interface LogFileWriter extends Closeable {
+
+    /**
+     * Writes the bytes between the buffer position and limit, the position is moved to the limit.
+     */
+    void append(ByteBuffer bytes) throws IOException;
+
+    /**
+     * Blocks until the appended output is stored as configured.
+     */
+    void flush() throws IOException;
+}
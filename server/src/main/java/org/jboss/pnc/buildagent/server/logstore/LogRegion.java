@@ -0,0 +1,43 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Part of a log stored in a single file, opened for reading.
+ */
+public class LogRegion implements Closeable {
+
+    private final FileChannel channel;
+
+    private final long position;
+
+    private final long length;
+
+    LogRegion(FileChannel channel, long position, long length) {
+        this.channel = channel;
+        this.position = position;
+        this.length = length;
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * @return position of the region in the file
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,90 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Readers waiting for a log to grow beyond an offset, so a client can wait for the new output instead of polling.
+ * {@link #appended()} is called by the writer after each append, it is cheap when nobody waits.
+ */
+public class LogWaiters {
+
+    private final ScheduledExecutorService executor;
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param executor schedules the timeouts
+     */
+    public LogWaiters(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Calls the callback once, when the log grows beyond the offset or after the timeout. The callback runs on the
+     * writing or the timeout thread and must not block.
+     *
+     * @param endOffset current end of the log
+     */
+    public void await(LongSupplier endOffset, long offset, long timeoutMillis, Runnable callback) {
+        Waiter waiter = new Waiter(endOffset, offset, callback);
+        waiters.add(waiter);
+        waiter.timeout = executor.schedule(() -> complete(waiter), timeoutMillis, TimeUnit.MILLISECONDS);
+        if (endOffset.getAsLong() > offset) {
+            complete(waiter);
+        }
+    }
+
+    public void appended() {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        for (Waiter waiter : waiters) {
+            if (waiter.endOffset.getAsLong() > waiter.offset) {
+                complete(waiter);
+            }
+        }
+    }
+
+    /**
+     * @return number of readers waiting
+     */
+    public int getWaiting() {
+        return waiters.size();
+    }
+
+    private void complete(Waiter waiter) {
+        if (waiter.completed.compareAndSet(false, true)) {
+            waiters.remove(waiter);
+            ScheduledFuture<?> timeout = waiter.timeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            waiter.callback.run();
+        }
+    }
+
+    private static class Waiter {
+
+        private final LongSupplier endOffset;
+
+        private final long offset;
+
+        private final Runnable callback;
+
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private volatile ScheduledFuture<?> timeout;
+
+        private Waiter(LongSupplier endOffset, long offset, Runnable callback) {
+            this.endOffset = endOffset;
+            this.offset = offset;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import org.jboss.pnc.buildagent.server.FsyncPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Log file appended through a mapped window of the file, the output is copied to the page cache without a system call
+ * per chunk. The starts of the lines are recorded in a {@link LineIndex} as the bytes arrive, so a range of lines or
+ * the tail of the log is resolved to the file offsets with a few lookups instead of scanning the file.
+ *
+ * The window is mapped beyond the written output, the file is cut to the output on close. When the agent was not
+ * stopped cleanly the trailing zero bytes are cut when the file is opened again and the index is rebuilt by scanning
+ * the existing output once.
+ */
+public class MappedLogFile implements LogFileWriter, ReadableLog, LineReadableLog {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedLogFile.class);
+
+    public static final int DEFAULT_MAP_SIZE = 64 * 1024 * 1024;
+
+    public static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * The index window is sized for lines of this many bytes on average, so both files are remapped about as often.
+     */
+    private static final int AVERAGE_LINE_LENGTH = 64;
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    private final LineIndex lineIndex;
+
+    private final int mapSize;
+
+    private final boolean forceOnFlush;
+
+    private MappedByteBuffer window;
+
+    private long size;
+
+    private long lastLineStart;
+
+    /**
+     * @param mapSize bytes mapped at once
+     * @param fsyncPolicy the mapped pages are forced on flush unless {@link FsyncPolicy#NONE}, periodic syncs are not
+     *         supported
+     */
+    public MappedLogFile(Path file, int mapSize, FsyncPolicy fsyncPolicy) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(
+                file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.mapSize = mapSize;
+        this.forceOnFlush = fsyncPolicy != FsyncPolicy.NONE;
+        Path indexFile = file.resolveSibling(file.getFileName() + INDEX_SUFFIX);
+        this.lineIndex = new LineIndex(indexFile, Math.max(1, mapSize / AVERAGE_LINE_LENGTH));
+        recover();
+        this.window = map();
+    }
+
+    @Override
+    public synchronized void append(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (!window.hasRemaining()) {
+                if (forceOnFlush) {
+                    window.force();
+                }
+                window = map();
+            }
+            int start = bytes.position();
+            int length = Math.min(bytes.remaining(), window.remaining());
+            indexLines(bytes, start, length, size);
+            ByteBuffer part = bytes.duplicate();
+            ((Buffer) part).limit(start + length);
+            window.put(part);
+            ((Buffer) bytes).position(start + length);
+            size += length;
+        }
+    }
+
+    /**
+     * The output is visible to the readers once appended, flush only forces it to the disk when configured.
+     */
+    @Override
+    public synchronized void flush() {
+        if (forceOnFlush) {
+            window.force();
+        }
+    }
+
+    /**
+     * @return bytes of output in the log
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    @Override
+    public long getEndOffset() {
+        return getSize();
+    }
+
+    /**
+     * The window beyond the output is not included.
+     */
+    @Override
+    public List<LogRegion> open(long offset, long length) throws IOException {
+        return Collections.singletonList(new LogRegion(FileChannel.open(file, StandardOpenOption.READ), offset, length));
+    }
+
+    /**
+     * @return lines in the log, the last one may not be terminated yet
+     */
+    public synchronized long getLineCount() {
+        return lineIndex.size() + (size > lastLineStart ? 1 : 0);
+    }
+
+    @Override
+    public synchronized LineRange getLines(long from, long to) throws IOException {
+        long lineCount = getLineCount();
+        long first = Math.min(Math.max(0, from), lineCount);
+        long end = Math.min(Math.max(first, to), lineCount);
+        return new LineRange(first, end, getLineStart(first), getLineStart(end), lineCount);
+    }
+
+    @Override
+    public synchronized LineRange tail(long lines) throws IOException {
+        long lineCount = getLineCount();
+        return getLines(lineCount - lines, lineCount);
+    }
+
+    /**
+     * @return read only view of the bytes of the range, mapped from the file
+     */
+    @Override
+    public ByteBuffer read(LineRange range) throws IOException {
+        if (range.getLength() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cannot map " + range.getLength() + " bytes at once.");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, range.getStartOffset(), range.getLength());
+    }
+
+    /**
+     * Cuts the file to the output, the mapped windows are released by the garbage collector.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        try {
+            lineIndex.close();
+            channel.truncate(size);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private long getLineStart(long line) throws IOException {
+        if (line == 0) {
+            return 0;
+        }
+        if (line > lineIndex.size()) {
+            return size;
+        }
+        return lineIndex.get(line - 1);
+    }
+
+    private void indexLines(ByteBuffer bytes, int start, int length, long offset) throws IOException {
+        for (int i = 0; i < length; i++) {
+            if (bytes.get(start + i) == '\n') {
+                lastLineStart = offset + i + 1;
+                lineIndex.add(lastLineStart);
+            }
+        }
+    }
+
+    private MappedByteBuffer map() throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, size, mapSize);
+    }
+
+    /**
+     * Finds the end of the output written before and indexes it.
+     */
+    private void recover() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long end = channel.size();
+        long fileSize = end;
+        while (end > 0) {
+            long start = Math.max(0, end - SCAN_BUFFER_SIZE);
+            readFully(buffer, start, (int) (end - start));
+            int last = buffer.limit() - 1;
+            while (last >= 0 && buffer.get(last) == 0) {
+                last--;
+            }
+            if (last >= 0) {
+                end = start + last + 1;
+                break;
+            }
+            end = start;
+        }
+        if (end < fileSize) {
+            log.info("Cutting {} unused bytes of the mapped log.", fileSize - end);
+            channel.truncate(end);
+        }
+
+        long position = 0;
+        while (position < end) {
+            int length = (int) Math.min(SCAN_BUFFER_SIZE, end - position);
+            readFully(buffer, position, length);
+            indexLines(buffer, 0, length, position);
+            position += length;
+        }
+        size = end;
+    }
+
+    private void readFully(ByteBuffer buffer, long position, int length) throws IOException {
+        ((Buffer) buffer).clear();
+        ((Buffer) buffer).limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the log file.");
+            }
+        }
+        ((Buffer) buffer).flip();
+    }
+}
@@ -0,0 +1,28 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Log read by offset, the offsets count the bytes of output since the log was started.
+ */
+public interface ReadableLog {
+
+    /**
+     * @return offset of the first byte still stored, the older output may have been evicted
+     */
+    default long getStartOffset() {
+        return 0;
+    }
+
+    /**
+     * @return offset after the last byte which can be read
+     */
+    long getEndOffset();
+
+    /**
+     * Opens the files holding the bytes [offset, offset + length), the regions stay readable when the files are
+     * evicted meanwhile. The caller closes the regions.
+     */
+    List<LogRegion> open(long offset, long length) throws IOException;
+}
@@ -0,0 +1,667 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import org.jboss.pnc.buildagent.api.LogSegment;
+import org.jboss.pnc.buildagent.api.SessionLogLayout;
+import org.jboss.pnc.buildagent.server.FsyncPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the output of each session to its own directory of segment files. A session starts a new segment when the
+ * current one reaches the segment size. When the segments of all the sessions exceed the disk budget, the oldest
+ * closed segments are deleted, the segment being written by an open session is kept. The segments left by a previous
+ * run are counted in the budget and evicted first.
+ *
+ * Each session serializes its own writes and flushes, the store lock covers only the segment list, the byte
+ * accounting and the eviction. The files are forced and deleted outside of the store lock. A session is open from its
+ * first append until it is closed, the store keeps only the recently written segments open.
+ *
+ * Without a budget the closed sessions are not kept in the memory, they are read from their directories again.
+ */
+public class SegmentedLogStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentedLogStore.class);
+
+    public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Session of the output written to the shared file logger, by the terms without a sub-session.
+     */
+    public static final String SHARED_SESSION = "console";
+
+    static final int DEFAULT_MAX_OPEN_SEGMENTS = 64;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{8})\\.log");
+
+    private static final Pattern UNSAFE_CHARACTERS = Pattern.compile("[^A-Za-z0-9._-]");
+
+    private final Path root;
+
+    private final long segmentSize;
+
+    private final long maxBytes;
+
+    private final boolean forceOnFlush;
+
+    private final int maxOpenSegments;
+
+    private final Object lock = new Object();
+
+    private final Map<String, SessionLog> sessions = new LinkedHashMap<>();
+
+    /**
+     * Segments on the disk from the oldest one, tracked only when there is a budget.
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    /**
+     * Sessions with an open segment file from the least recently written one.
+     */
+    private final Set<SessionLog> openSegments = new LinkedHashSet<>();
+
+    private long totalBytes;
+
+    private long evictedSegments;
+
+    /**
+     * @param maxBytes disk budget of all the segments, 0 for no limit
+     * @param fsyncPolicy the segment being written is forced on flush unless {@link FsyncPolicy#NONE}, periodic syncs
+     *         are not supported
+     */
+    public SegmentedLogStore(Path root, long segmentSize, long maxBytes, FsyncPolicy fsyncPolicy) throws IOException {
+        this(root, segmentSize, maxBytes, fsyncPolicy, DEFAULT_MAX_OPEN_SEGMENTS);
+    }
+
+    SegmentedLogStore(Path root, long segmentSize, long maxBytes, FsyncPolicy fsyncPolicy, int maxOpenSegments)
+            throws IOException {
+        this.root = root;
+        this.segmentSize = segmentSize;
+        this.maxBytes = maxBytes;
+        this.forceOnFlush = fsyncPolicy != FsyncPolicy.NONE;
+        this.maxOpenSegments = maxOpenSegments;
+        Files.createDirectories(root);
+        recover();
+        List<Segment> evicted;
+        synchronized (lock) {
+            evicted = selectEvicted();
+        }
+        delete(evicted);
+    }
+
+    /**
+     * @return the log of the session, the output is appended to the segments left by a previous run of the session
+     * @throws IllegalArgumentException when the session id is empty
+     */
+    public SessionLog open(String sessionId) {
+        if (sessionId.isEmpty()) {
+            throw new IllegalArgumentException("The session id must not be empty.");
+        }
+        String directoryName = toDirectoryName(sessionId);
+        synchronized (lock) {
+            SessionLog sessionLog = sessions.get(sessionId);
+            if (sessionLog == null && maxBytes > 0) {
+                sessionLog = sessions.remove(directoryName);
+                if (sessionLog != null) {
+                    sessionLog.sessionId = sessionId;
+                } else {
+                    sessionLog = new SessionLog(sessionId, root.resolve(directoryName));
+                }
+                sessions.put(sessionId, sessionLog);
+            }
+            if (sessionLog != null) {
+                return sessionLog;
+            }
+        }
+        SessionLog loaded = loadQuietly(sessionId).orElseGet(() -> new SessionLog(sessionId, root.resolve(directoryName)));
+        synchronized (lock) {
+            SessionLog sessionLog = sessions.putIfAbsent(sessionId, loaded);
+            return sessionLog == null ? loaded : sessionLog;
+        }
+    }
+
+    /**
+     * @return the log of a session with segments on the disk, empty for the ids which are not a session, see
+     *         {@link #isPathSegment(String)}
+     */
+    public Optional<SessionLog> get(String sessionId) {
+        if (isPathSegment(sessionId)) {
+            return Optional.empty();
+        }
+        synchronized (lock) {
+            SessionLog sessionLog = sessions.get(sessionId);
+            if (sessionLog != null || maxBytes > 0) {
+                return Optional.ofNullable(sessionLog);
+            }
+        }
+        return loadQuietly(sessionId);
+    }
+
+    public Optional<SessionLogLayout> getLayout(String sessionId) {
+        Optional<SessionLog> sessionLog = get(sessionId);
+        if (!sessionLog.isPresent()) {
+            return Optional.empty();
+        }
+        synchronized (lock) {
+            List<LogSegment> layout = sessionLog.get().segments.stream()
+                    .map(segment -> LogSegment.newBuilder()
+                            .index(segment.index)
+                            .offset(segment.offset)
+                            .length(segment.length)
+                            .path(segment.path.toAbsolutePath().toString())
+                            .build())
+                    .collect(Collectors.toList());
+            return Optional.of(SessionLogLayout.newBuilder()
+                    .sessionId(sessionId)
+                    .size(sessionLog.get().size)
+                    .segments(layout)
+                    .build());
+        }
+    }
+
+    /**
+     * @return ids of the open sessions and of the closed sessions with segments in the budget, from the oldest one
+     */
+    public List<String> getSessionIds() {
+        synchronized (lock) {
+            return new ArrayList<>(sessions.keySet());
+        }
+    }
+
+    /**
+     * @return bytes of all the segments on the disk
+     */
+    public long getTotalBytes() {
+        synchronized (lock) {
+            return totalBytes;
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getEvictedSegments() {
+        synchronized (lock) {
+            return evictedSegments;
+        }
+    }
+
+    @Override
+    public void close() {
+        Set<SessionLog> open;
+        synchronized (lock) {
+            open = new LinkedHashSet<>(openSegments);
+            open.addAll(sessions.values());
+            openSegments.clear();
+        }
+        for (SessionLog sessionLog : open) {
+            sessionLog.lock.lock();
+            try {
+                sessionLog.closeChannel();
+            } finally {
+                sessionLog.lock.unlock();
+            }
+        }
+    }
+
+    private void append(SessionLog sessionLog, ByteBuffer bytes) throws IOException {
+        long written = 0;
+        sessionLog.lock.lock();
+        try {
+            if (sessionLog.closed) {
+                reopen(sessionLog);
+            }
+            while (bytes.hasRemaining()) {
+                if (sessionLog.current == null || sessionLog.current.length >= segmentSize) {
+                    startSegment(sessionLog);
+                }
+                Segment segment = sessionLog.current;
+                int start = bytes.position();
+                int length = (int) Math.min(bytes.remaining(), segmentSize - segment.length);
+                ByteBuffer part = bytes.duplicate();
+                ((Buffer) part).limit(start + length);
+                FileChannel channel = sessionLog.getChannel();
+                while (part.hasRemaining()) {
+                    channel.write(part);
+                }
+                ((Buffer) bytes).position(start + length);
+                segment.length += length;
+                sessionLog.size += length;
+                written += length;
+            }
+        } finally {
+            sessionLog.lock.unlock();
+        }
+        List<SessionLog> idle = Collections.emptyList();
+        List<Segment> evicted;
+        synchronized (lock) {
+            totalBytes += written;
+            openSegments.remove(sessionLog);
+            if (!sessionLog.closed) {
+                openSegments.add(sessionLog);
+                idle = selectIdle();
+            }
+            evicted = selectEvicted();
+        }
+        closeIdle(idle);
+        delete(evicted);
+    }
+
+    private void flush(SessionLog sessionLog) throws IOException {
+        if (!forceOnFlush) {
+            return;
+        }
+        sessionLog.lock.lock();
+        try {
+            if (sessionLog.channel != null) {
+                sessionLog.channel.force(false);
+            }
+        } finally {
+            sessionLog.lock.unlock();
+        }
+    }
+
+    private void close(SessionLog sessionLog) {
+        List<Segment> evicted;
+        sessionLog.lock.lock();
+        try {
+            sessionLog.closeChannel();
+            synchronized (lock) {
+                sessionLog.closed = true;
+                openSegments.remove(sessionLog);
+                if (maxBytes <= 0 || sessionLog.segments.isEmpty()) {
+                    sessions.remove(sessionLog.sessionId, sessionLog);
+                }
+                evicted = selectEvicted();
+            }
+        } finally {
+            sessionLog.lock.unlock();
+        }
+        delete(evicted);
+    }
+
+    private long getStartOffset(SessionLog sessionLog) {
+        synchronized (lock) {
+            return sessionLog.segments.isEmpty() ? sessionLog.size : sessionLog.segments.get(0).offset;
+        }
+    }
+
+    private List<LogRegion> open(SessionLog sessionLog, long offset, long length) throws IOException {
+        List<Segment> sessionSegments;
+        synchronized (lock) {
+            sessionSegments = new ArrayList<>(sessionLog.segments);
+        }
+        List<LogRegion> regions = new ArrayList<>();
+        long end = offset + length;
+        try {
+            for (Segment segment : sessionSegments) {
+                long segmentEnd = segment.offset + segment.length;
+                if (segmentEnd <= offset || segment.offset >= end) {
+                    continue;
+                }
+                long from = Math.max(offset, segment.offset);
+                long to = Math.min(end, segmentEnd);
+                FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ);
+                regions.add(new LogRegion(channel, from - segment.offset, to - from));
+            }
+        } catch (IOException e) {
+            for (LogRegion region : regions) {
+                region.close();
+            }
+            throw e;
+        }
+        return regions;
+    }
+
+    /**
+     * Called with the session lock held. The current segment of a closed session may have been evicted meanwhile.
+     */
+    private void reopen(SessionLog sessionLog) {
+        synchronized (lock) {
+            sessionLog.closed = false;
+            sessions.putIfAbsent(sessionLog.sessionId, sessionLog);
+            if (sessionLog.current != null && sessionLog.current.evicted) {
+                sessionLog.current = null;
+            }
+        }
+    }
+
+    /**
+     * Called with the session lock held.
+     */
+    private void startSegment(SessionLog sessionLog) throws IOException {
+        sessionLog.closeChannel();
+        Files.createDirectories(sessionLog.directory);
+        int index = sessionLog.nextIndex++;
+        Segment segment = new Segment(sessionLog, index, sessionLog.directory.resolve(segmentName(index)), sessionLog.size);
+        synchronized (lock) {
+            sessionLog.segments.add(segment);
+            sessionLog.current = segment;
+            if (maxBytes > 0) {
+                segments.addLast(segment);
+            }
+        }
+    }
+
+    /**
+     * Called with the store lock held.
+     *
+     * @return sessions above the limit of open segment files, their files are closed unless they are being written
+     */
+    private List<SessionLog> selectIdle() {
+        List<SessionLog> idle = new ArrayList<>();
+        Iterator<SessionLog> iterator = openSegments.iterator();
+        while (openSegments.size() > maxOpenSegments && iterator.hasNext()) {
+            idle.add(iterator.next());
+            iterator.remove();
+        }
+        return idle;
+    }
+
+    private void closeIdle(List<SessionLog> idle) {
+        for (SessionLog sessionLog : idle) {
+            if (sessionLog.lock.tryLock()) {
+                try {
+                    sessionLog.closeChannel();
+                } finally {
+                    sessionLog.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Called with the store lock held, the selected segments are deleted after the lock is released.
+     *
+     * @return the oldest segments above the budget, except the ones being written by the open sessions
+     */
+    private List<Segment> selectEvicted() {
+        if (maxBytes <= 0 || totalBytes <= maxBytes) {
+            return Collections.emptyList();
+        }
+        List<Segment> evicted = new ArrayList<>();
+        Iterator<Segment> iterator = segments.iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Segment segment = iterator.next();
+            SessionLog sessionLog = segment.sessionLog;
+            if (!sessionLog.closed && sessionLog.current == segment) {
+                continue;
+            }
+            iterator.remove();
+            segment.evicted = true;
+            totalBytes -= segment.length;
+            evictedSegments++;
+            sessionLog.segments.remove(segment);
+            if (sessionLog.closed && sessionLog.segments.isEmpty()) {
+                sessions.remove(sessionLog.sessionId, sessionLog);
+            }
+            evicted.add(segment);
+        }
+        return evicted;
+    }
+
+    private void delete(List<Segment> evicted) {
+        for (Segment segment : evicted) {
+            try {
+                Files.deleteIfExists(segment.path);
+                log.debug("Evicted log segment {}.", segment.path);
+            } catch (IOException e) {
+                log.warn("Cannot delete log segment {}.", segment.path, e);
+            }
+        }
+    }
+
+    /**
+     * Registers the segments left by a previous run from the oldest one. The session ids of the previous run are not
+     * known, the sessions are identified by the directory names. Without a budget only their size is counted.
+     */
+    private void recover() throws IOException {
+        List<Segment> recovered = new ArrayList<>();
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path directory : directories) {
+                String sessionId = directory.getFileName().toString();
+                SessionLog sessionLog = load(sessionId, directory);
+                if (sessionLog.segments.isEmpty()) {
+                    continue;
+                }
+                totalBytes += sessionLog.size;
+                if (maxBytes > 0) {
+                    sessions.put(sessionId, sessionLog);
+                }
+                recovered.addAll(sessionLog.segments);
+            }
+        }
+        if (maxBytes > 0) {
+            recovered.sort(Comparator.comparingLong((Segment segment) -> segment.modified)
+                    .thenComparingInt(segment -> segment.index));
+            segments.addAll(recovered);
+        }
+        if (!recovered.isEmpty()) {
+            log.info("Found {} log segments of {} bytes in {}.", recovered.size(), totalBytes, root);
+        }
+    }
+
+    /**
+     * Reads a closed session from its directory, used when the closed sessions are not kept in the memory.
+     */
+    private Optional<SessionLog> loadQuietly(String sessionId) {
+        Path directory = root.resolve(toDirectoryName(sessionId));
+        if (!Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        try {
+            SessionLog sessionLog = load(sessionId, directory);
+            return sessionLog.segments.isEmpty() ? Optional.empty() : Optional.of(sessionLog);
+        } catch (IOException e) {
+            log.warn("Cannot read the log segments in {}.", directory, e);
+            return Optional.empty();
+        }
+    }
+
+    private SessionLog load(String sessionId, Path directory) throws IOException {
+        SessionLog sessionLog = new SessionLog(sessionId, directory);
+        List<Segment> sessionSegments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    Segment segment = new Segment(sessionLog, Integer.parseInt(matcher.group(1)), file, 0);
+                    segment.length = Files.size(file);
+                    segment.modified = Files.getLastModifiedTime(file).toMillis();
+                    sessionSegments.add(segment);
+                }
+            }
+        }
+        if (sessionSegments.isEmpty()) {
+            return sessionLog;
+        }
+        sessionSegments.sort(Comparator.comparingInt(segment -> segment.index));
+        for (Segment segment : sessionSegments) {
+            segment.offset = sessionLog.size;
+            sessionLog.size += segment.length;
+            sessionLog.segments.add(segment);
+        }
+        Segment last = sessionSegments.get(sessionSegments.size() - 1);
+        sessionLog.current = last;
+        sessionLog.nextIndex = last.index + 1;
+        return sessionLog;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Cannot close log segment.", e);
+        }
+    }
+
+    private static String segmentName(int index) {
+        return String.format("%08d.log", index);
+    }
+
+    /**
+     * Term sub-sessions contain a separator, the names changed to be safe are suffixed to keep them distinct. The names
+     * which are path segments by themselves are changed as well, so a session directory is always under the root.
+     */
+    static String toDirectoryName(String sessionId) {
+        String safe = UNSAFE_CHARACTERS.matcher(sessionId).replaceAll("_");
+        if (safe.equals(sessionId) && !isPathSegment(sessionId)) {
+            return safe;
+        }
+        return safe + "-" + Integer.toHexString(sessionId.hashCode());
+    }
+
+    /**
+     * @return true for the empty, current and parent directory names, they are never session ids
+     */
+    static boolean isPathSegment(String sessionId) {
+        return sessionId.isEmpty() || sessionId.equals(".") || sessionId.equals("..");
+    }
+
+    /**
+     * Output of a single session. The writes and flushes hold the session lock, the fields read by the eviction are
+     * changed with the store lock held as well.
+     */
+    public class SessionLog implements LogFileWriter, ReadableLog {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * The directory name until a recovered session is opened again.
+         */
+        private String sessionId;
+
+        private final Path directory;
+
+        /**
+         * Guarded by the store lock.
+         */
+        private final List<Segment> segments = new ArrayList<>();
+
+        private Segment current;
+
+        /**
+         * True until the first append and after the session is closed, the current segment can be evicted then.
+         */
+        private boolean closed = true;
+
+        private FileChannel channel;
+
+        private int nextIndex;
+
+        private volatile long size;
+
+        private SessionLog(String sessionId, Path directory) {
+            this.sessionId = sessionId;
+            this.directory = directory;
+        }
+
+        @Override
+        public void append(ByteBuffer bytes) throws IOException {
+            SegmentedLogStore.this.append(this, bytes);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            SegmentedLogStore.this.flush(this);
+        }
+
+        @Override
+        public long getStartOffset() {
+            return SegmentedLogStore.this.getStartOffset(this);
+        }
+
+        @Override
+        public long getEndOffset() {
+            return size;
+        }
+
+        @Override
+        public List<LogRegion> open(long offset, long length) throws IOException {
+            return SegmentedLogStore.this.open(this, offset, length);
+        }
+
+        /**
+         * Closes the segment file, the segments can be evicted until the next append opens the session again.
+         */
+        @Override
+        public void close() {
+            SegmentedLogStore.this.close(this);
+        }
+
+        private FileChannel getChannel() throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(
+                        current.path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            return channel;
+        }
+
+        private void closeChannel() {
+            closeQuietly(channel);
+            channel = null;
+        }
+    }
+
+    private static class Segment {
+
+        private final SessionLog sessionLog;
+
+        private final int index;
+
+        private final Path path;
+
+        private long offset;
+
+        /**
+         * Grows with the session lock held, read by the eviction and the readers.
+         */
+        private volatile long length;
+
+        private long modified;
+
+        /**
+         * Guarded by the store lock.
+         */
+        private boolean evicted;
+
+        private Segment(SessionLog sessionLog, int index, Path path, long offset) {
+            this.sessionLog = sessionLog;
+            this.index = index;
+            this.path = path;
+            this.offset = offset;
+        }
+    }
+}
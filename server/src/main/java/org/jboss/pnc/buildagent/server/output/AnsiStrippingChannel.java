@@ -0,0 +1,187 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Removes ANSI escape sequences (colors, cursor movement, window titles) from the output before it reaches a sink.
+ * Text between the sequences is passed on as slices of the written buffer, nothing is copied nor allocated. The parser
+ * state is kept between writes, a sequence split across chunks is removed as well.
+ *
+ * Recognized are CSI sequences (ESC [ ... final byte), OSC sequences (ESC ] ... terminated by BEL or ESC \), DCS, SOS,
+ * PM and APC strings (terminated by ESC \) and other two or three byte ESC sequences. 8-bit C1 controls are not
+ * recognized as they are continuation bytes in UTF-8. A string sequence missing its terminator ends at a line feed, so
+ * a broken sequence does not swallow the rest of the output.
+ *
+ * The state follows a single stream, each session gets its own stage.
+ */
+public class AnsiStrippingChannel implements ReadOnlyChannel {
+
+    private static final byte ESC = 0x1b;
+    private static final byte BEL = 0x07;
+    private static final byte CAN = 0x18;
+    private static final byte SUB = 0x1a;
+    private static final byte LF = '\n';
+
+    private enum State {
+        TEXT, ESCAPE, ESCAPE_INTERMEDIATE, CSI, STRING, STRING_ESCAPE
+    }
+
+    private final ReadOnlyChannel delegate;
+
+    /**
+     * Stamp of the chunk being written, passed on with the output.
+     */
+    private long sequence;
+    private long timestamp;
+
+    private State state = State.TEXT;
+
+    /**
+     * The current string sequence is an OSC, which can be terminated by BEL too.
+     */
+    private boolean osc;
+
+    public AnsiStrippingChannel(ReadOnlyChannel delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void writeOutput(byte[] buffer) {
+        writeOutput(ByteBuffer.wrap(buffer));
+    }
+
+    @Override
+    public synchronized void writeOutput(ByteBuffer buffer, long sequence, long timestamp) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        writeOutput(buffer);
+    }
+
+    @Override
+    public synchronized void writeOutput(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int textStart = buffer.position();
+        for (int i = buffer.position(); i < limit; i++) {
+            byte b = buffer.get(i);
+            boolean inText = state == State.TEXT;
+            switch (state) {
+                case TEXT:
+                    if (b == ESC) {
+                        pass(buffer, textStart, i, limit);
+                        state = State.ESCAPE;
+                    }
+                    break;
+                case ESCAPE:
+                    if (b == '[') {
+                        state = State.CSI;
+                    } else if (b == ']') {
+                        osc = true;
+                        state = State.STRING;
+                    } else if (b == 'P' || b == 'X' || b == '^' || b == '_') {
+                        osc = false;
+                        state = State.STRING;
+                    } else if (b >= 0x20 && b <= 0x2f) {
+                        state = State.ESCAPE_INTERMEDIATE;
+                    } else if (b != ESC) {
+                        state = State.TEXT; //final byte or an invalid sequence, dropped
+                    }
+                    break;
+                case ESCAPE_INTERMEDIATE:
+                    if (b == ESC) {
+                        state = State.ESCAPE;
+                    } else if (b < 0x20 || b > 0x2f) {
+                        state = State.TEXT;
+                    }
+                    break;
+                case CSI:
+                    if (b == ESC) {
+                        state = State.ESCAPE;
+                    } else if ((b >= 0x40 && b <= 0x7e) || b == CAN || b == SUB) {
+                        state = State.TEXT;
+                    } else if (b < 0x20) {
+                        pass(buffer, i, i + 1, limit); //controls within a sequence are executed by terminals
+                    }
+                    break;
+                case STRING:
+                    if (b == ESC) {
+                        state = State.STRING_ESCAPE;
+                    } else if ((osc && b == BEL) || b == CAN || b == SUB) {
+                        state = State.TEXT;
+                    } else if (b == LF) {
+                        state = State.TEXT;
+                        textStart = i;
+                        continue;
+                    }
+                    break;
+                case STRING_ESCAPE:
+                    if (b == '\\') {
+                        state = State.TEXT;
+                    } else if (b == ESC) {
+                        state = State.STRING_ESCAPE;
+                    } else {
+                        state = State.STRING;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown state " + state);
+            }
+            if (!inText || state != State.TEXT) {
+                textStart = i + 1; //part of a sequence
+            }
+        }
+        pass(buffer, textStart, limit, limit);
+    }
+
+    private void pass(ByteBuffer buffer, int start, int end, int limit) {
+        if (start < end) {
+            ((Buffer) buffer).limit(end);
+            ((Buffer) buffer).position(start);
+            delegate.writeOutput(buffer, sequence, timestamp);
+            ((Buffer) buffer).limit(limit);
+        }
+    }
+
+    @Override
+    public boolean isPrimary() {
+        return delegate.isPrimary();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public ReadOnlyChannel forSession(String sessionId) {
+        return new AnsiStrippingChannel(delegate.forSession(sessionId));
+    }
+
+    @Override
+    public ReadOnlyChannel forTerm(String sessionId) {
+        return new AnsiStrippingChannel(delegate.forTerm(sessionId));
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public long getSuppressedBytes() {
+        return delegate.getSuppressedBytes();
+    }
+
+    @Override
+    public long getSuppressedLines() {
+        return delegate.getSuppressedLines();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
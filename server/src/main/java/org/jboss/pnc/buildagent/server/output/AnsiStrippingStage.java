@@ -0,0 +1,21 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+
+import java.util.Map;
+
+public class AnsiStrippingStage implements OutputStage {
+
+    public static final String NAME = "strip-ansi";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ReadOnlyChannel create(ReadOnlyChannel next, Map<String, String> parameters) {
+        StageParameters.requireKnown(NAME, parameters);
+        return new AnsiStrippingChannel(next);
+    }
+}
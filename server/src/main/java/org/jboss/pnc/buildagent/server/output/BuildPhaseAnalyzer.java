@@ -0,0 +1,178 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.api.BuildPhase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the timeline of a Maven or Gradle build from its output as it passes. The output is scanned line by line, only
+ * the current line is kept (up to {@link #MAX_LINE_LENGTH} bytes), the colors are ignored.
+ *
+ * Recognized are the Maven reactor module headers and goal execution headers and the Gradle task lines, a phase ends
+ * when the next phase of the same type starts or when the build ends. The phases are timed with the capture time of the
+ * output, see {@link OutputSequencer}.
+ */
+public class BuildPhaseAnalyzer {
+
+    static final int MAX_LINE_LENGTH = 1024;
+
+    /**
+     * Phases after this number are reported to the listener but not kept for the timeline.
+     */
+    static final int MAX_PHASES = 10000;
+
+    private static final Pattern ANSI_ESCAPE = Pattern.compile("\u001B\\[[0-9;?]*[A-Za-z]");
+
+    private static final Pattern MAVEN_ARTIFACT = Pattern.compile("^\\[INFO\\] -+< [^:\\s]+:(\\S+) >-+\\s*$");
+
+    /**
+     * Excludes "Building jar: ..." and similar lines of the packaging plugins.
+     */
+    private static final Pattern MAVEN_MODULE = Pattern.compile("^\\[INFO\\] Building ([^:]+?)(?:\\s+\\[\\d+/\\d+\\])?\\s*$");
+
+    private static final Pattern MAVEN_GOAL = Pattern.compile("^\\[INFO\\] --- (.+?) @ (\\S+) ---\\s*$");
+
+    private static final Pattern MAVEN_END = Pattern.compile("^\\[INFO\\] (Reactor Summary|BUILD SUCCESS|BUILD FAILURE)");
+
+    private static final Pattern GRADLE_TASK = Pattern.compile("^> Task (:\\S+)");
+
+    private static final Pattern GRADLE_END = Pattern.compile("^BUILD (SUCCESSFUL|FAILED)");
+
+    private final Consumer<BuildPhase> onPhase;
+
+    private final byte[] line = new byte[MAX_LINE_LENGTH];
+
+    private int lineLength;
+
+    /**
+     * Capture time of the output the current line was last appended from.
+     */
+    private long lineTimestamp;
+
+    private final List<BuildPhase> phases = new ArrayList<>();
+
+    private String artifactId;
+
+    private OpenPhase module;
+
+    private OpenPhase step;
+
+    /**
+     * @param onPhase receives every completed phase
+     */
+    public BuildPhaseAnalyzer(Consumer<BuildPhase> onPhase) {
+        this.onPhase = onPhase;
+    }
+
+    /**
+     * Scans the bytes between the buffer position and limit, the position is not moved.
+     *
+     * @param timestamp capture time of the output
+     */
+    public synchronized void analyze(ByteBuffer buffer, long timestamp) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                if (lineLength > 0) {
+                    analyzeLine(new String(line, 0, lineLength, StandardCharsets.UTF_8), timestamp);
+                    lineLength = 0;
+                }
+            } else if (lineLength < MAX_LINE_LENGTH) {
+                line[lineLength++] = b;
+                lineTimestamp = timestamp;
+            }
+        }
+    }
+
+    private void analyzeLine(String rawLine, long timestamp) {
+        String text = rawLine.indexOf('\u001B') >= 0 ? ANSI_ESCAPE.matcher(rawLine).replaceAll("") : rawLine;
+        Matcher matcher;
+        if ((matcher = MAVEN_GOAL.matcher(text)).matches()) {
+            closeStep(timestamp);
+            step = new OpenPhase(BuildPhase.Type.GOAL, matcher.group(1), matcher.group(2), timestamp);
+        } else if ((matcher = MAVEN_ARTIFACT.matcher(text)).matches()) {
+            artifactId = matcher.group(1);
+        } else if ((matcher = MAVEN_MODULE.matcher(text)).matches()) {
+            closeStep(timestamp);
+            closeModule(timestamp);
+            module = new OpenPhase(BuildPhase.Type.MODULE, matcher.group(1), artifactId, timestamp);
+            artifactId = null;
+        } else if ((matcher = GRADLE_TASK.matcher(text)).find()) {
+            closeStep(timestamp);
+            String path = matcher.group(1);
+            int projectEnd = path.lastIndexOf(':');
+            String project = projectEnd == 0 ? ":" : path.substring(0, projectEnd);
+            step = new OpenPhase(BuildPhase.Type.TASK, path, project, timestamp);
+        } else if (MAVEN_END.matcher(text).find() || GRADLE_END.matcher(text).find()) {
+            closeStep(timestamp);
+            closeModule(timestamp);
+        }
+    }
+
+    private void closeStep(long timestamp) {
+        if (step != null) {
+            complete(step, timestamp);
+            step = null;
+        }
+    }
+
+    private void closeModule(long timestamp) {
+        if (module != null) {
+            complete(module, timestamp);
+            module = null;
+        }
+    }
+
+    private void complete(OpenPhase open, long timestamp) {
+        BuildPhase phase = BuildPhase.newBuilder()
+                .type(open.type)
+                .name(open.name)
+                .module(open.module)
+                .startTimestamp(open.start)
+                .durationMillis(Math.max(0, timestamp - open.start))
+                .build();
+        if (phases.size() < MAX_PHASES) {
+            phases.add(phase);
+        }
+        onPhase.accept(phase);
+    }
+
+    /**
+     * Completes the phases still open, eg. when the build was interrupted, and starts a new timeline.
+     *
+     * @param timestamp end of the output
+     * @return the completed phases in the order they ended
+     */
+    public synchronized List<BuildPhase> finish(long timestamp) {
+        if (lineLength > 0) {
+            analyzeLine(new String(line, 0, lineLength, StandardCharsets.UTF_8), lineTimestamp);
+            lineLength = 0;
+        }
+        closeStep(timestamp);
+        closeModule(timestamp);
+        artifactId = null;
+        List<BuildPhase> timeline = new ArrayList<>(phases);
+        phases.clear();
+        return timeline;
+    }
+
+    private static class OpenPhase {
+        private final BuildPhase.Type type;
+        private final String name;
+        private final String module;
+        private final long start;
+
+        private OpenPhase(BuildPhase.Type type, String name, String module, long start) {
+            this.type = type;
+            this.name = name;
+            this.module = module;
+            this.start = start;
+        }
+    }
+}
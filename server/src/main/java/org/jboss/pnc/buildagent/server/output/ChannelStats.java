@@ -0,0 +1,50 @@
+package org.jboss.pnc.buildagent.server.output;
+
+/**
+ * Delivery counters of a single {@link org.jboss.pnc.buildagent.server.ReadOnlyChannel} in an {@link OutputFanOut}.
+ */
+public class ChannelStats {
+
+    private final String channel;
+    private final boolean primary;
+    private final long delivered;
+    private final long lag;
+    private final long overflow;
+
+    public ChannelStats(String channel, boolean primary, long delivered, long lag, long overflow) {
+        this.channel = channel;
+        this.primary = primary;
+        this.delivered = delivered;
+        this.lag = lag;
+        this.overflow = overflow;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public boolean isPrimary() {
+        return primary;
+    }
+
+    /**
+     * @return number of chunks written to the channel
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return number of chunks captured but not yet written to the channel
+     */
+    public long getLag() {
+        return lag;
+    }
+
+    /**
+     * @return number of chunks the channel missed because it was too slow
+     */
+    public long getOverflow() {
+        return overflow;
+    }
+}
@@ -0,0 +1,60 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.common.security.DigestAlgorithm;
+import org.jboss.pnc.buildagent.common.security.OutputDigest;
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Computes the output checksum on its own fan-out consumer instead of the capture thread. The channel is primary so
+ * the checksum covers all the output, the output must be delivered before the checksum is read, see
+ * {@link OutputFanOut#awaitDelivered()}.
+ */
+public class DigestChannel implements ReadOnlyChannel {
+
+    private final OutputDigest digest;
+
+    public DigestChannel(DigestAlgorithm algorithm) {
+        this.digest = algorithm.newDigest();
+    }
+
+    @Override
+    public synchronized void writeOutput(byte[] buffer) {
+        digest.add(ByteBuffer.wrap(buffer));
+    }
+
+    @Override
+    public synchronized void writeOutput(ByteBuffer buffer) {
+        digest.add(buffer);
+    }
+
+    /**
+     * Completes the checksum of the output delivered so far and starts a new one.
+     */
+    public synchronized String digest() {
+        return digest.digest();
+    }
+
+    public DigestAlgorithm getAlgorithm() {
+        return digest.getAlgorithm();
+    }
+
+    @Override
+    public boolean isPrimary() {
+        return true;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public String getName() {
+        return "digest-" + digest.getAlgorithm().getName();
+    }
+
+    @Override
+    public void close() {
+    }
+}
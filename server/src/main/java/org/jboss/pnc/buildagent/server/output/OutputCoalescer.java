@@ -0,0 +1,224 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.common.Utf8Encoder;
+import org.jboss.pnc.buildagent.common.buffer.ByteBufferPool;
+import org.jboss.pnc.buildagent.common.buffer.PooledByteBuffer;
+
+import java.io.Closeable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces the small chunks delivered by the process into larger batches before they are checksummed and written to
+ * the channels. A batch is passed downstream when it reaches the size limit, when a chunk ending a line is appended
+ * (if enabled) or when the oldest pending byte is older than the delay, whichever comes first.
+ *
+ * Batches are limited by the pool buffer size, larger chunks are passed as a single batch.
+ *
+ * The delayed flushes of all the coalescers share one scheduler thread, so a delayed flush never blocks: when the
+ * writing thread holds the coalescer or the downstream is not ready to take the batch without waiting, the flush is
+ * retried after the delay and the next write passes the batch downstream on the writing thread.
+ */
+public class OutputCoalescer implements Closeable {
+
+    private final ByteBufferPool bufferPool;
+    private final int maxBytes;
+    private final long maxDelayMillis;
+    private final boolean flushOnNewLine;
+    private final ScheduledExecutorService scheduler;
+    private final BooleanSupplier downstreamReady;
+    private final Consumer<PooledByteBuffer> downstream;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private PooledByteBuffer pending;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean overdue;
+    private boolean closed;
+
+    /**
+     * @param maxDelayMillis when not positive, every chunk is passed downstream immediately
+     * @param downstream receives the flipped batches together with their reference
+     */
+    public OutputCoalescer(
+            ByteBufferPool bufferPool,
+            int maxBytes,
+            long maxDelayMillis,
+            boolean flushOnNewLine,
+            ScheduledExecutorService scheduler,
+            Consumer<PooledByteBuffer> downstream) {
+        this(bufferPool, maxBytes, maxDelayMillis, flushOnNewLine, scheduler, () -> true, downstream);
+    }
+
+    /**
+     * @param downstreamReady tells whether the downstream takes a batch without blocking, checked by the delayed
+     *         flushes
+     */
+    public OutputCoalescer(
+            ByteBufferPool bufferPool,
+            int maxBytes,
+            long maxDelayMillis,
+            boolean flushOnNewLine,
+            ScheduledExecutorService scheduler,
+            BooleanSupplier downstreamReady,
+            Consumer<PooledByteBuffer> downstream) {
+        this.bufferPool = bufferPool;
+        this.maxBytes = maxBytes;
+        this.maxDelayMillis = maxDelayMillis;
+        this.flushOnNewLine = flushOnNewLine;
+        this.scheduler = scheduler;
+        this.downstreamReady = downstreamReady;
+        this.downstream = downstream;
+    }
+
+    public void write(int[] codePoints) {
+        lock.lock();
+        try {
+            ByteBuffer buffer = reserve(Utf8Encoder.encodedLength(codePoints, 0, codePoints.length));
+            int start = buffer.position();
+            Utf8Encoder.encode(codePoints, 0, codePoints.length, buffer);
+            appended(buffer, start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void write(byte[] bytes) {
+        lock.lock();
+        try {
+            ByteBuffer buffer = reserve(bytes.length);
+            int start = buffer.position();
+            buffer.put(bytes);
+            appended(buffer, start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies the bytes between the buffer position and limit.
+     */
+    public void write(ByteBuffer bytes) {
+        lock.lock();
+        try {
+            ByteBuffer buffer = reserve(bytes.remaining());
+            int start = buffer.position();
+            buffer.put(bytes);
+            appended(buffer, start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ByteBuffer reserve(int length) {
+        if (pending != null && pending.buffer().remaining() < length) {
+            flushPending();
+        }
+        if (pending == null) {
+            pending = bufferPool.acquire(length);
+            pending.stamp(0, System.currentTimeMillis());
+        }
+        return pending.buffer();
+    }
+
+    private void appended(ByteBuffer buffer, int start) {
+        if (closed
+                || overdue
+                || maxDelayMillis <= 0
+                || buffer.position() >= maxBytes
+                || (flushOnNewLine && containsNewLine(buffer, start))) {
+            flushPending();
+        } else if (scheduledFlush == null) {
+            scheduleFlush();
+        }
+    }
+
+    private boolean containsNewLine(ByteBuffer buffer, int start) {
+        for (int i = buffer.position() - 1; i >= start; i--) {
+            if (buffer.get(i) == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleFlush() {
+        scheduledFlush = scheduler.schedule(this::delayedFlush, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs on the shared scheduler thread, it must not wait for the writing thread nor for the downstream.
+     */
+    private void delayedFlush() {
+        if (!lock.tryLock()) {
+            //the writing thread flushes the batch itself if it is passing it downstream, an extra run finds it empty
+            scheduler.schedule(this::delayedFlush, maxDelayMillis, TimeUnit.MILLISECONDS);
+            return;
+        }
+        try {
+            scheduledFlush = null;
+            if (pending == null) {
+                return;
+            }
+            if (downstreamReady.getAsBoolean()) {
+                flushPending();
+            } else {
+                overdue = true;
+                scheduleFlush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passes the pending output downstream.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            flushPending();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushPending() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        overdue = false;
+        if (pending == null) {
+            return;
+        }
+        PooledByteBuffer batch = pending;
+        pending = null;
+        ((Buffer) batch.buffer()).flip();
+        if (batch.remaining() > 0) {
+            downstream.accept(batch);
+        } else {
+            batch.release();
+        }
+    }
+
+    /**
+     * Flushes the pending output, following writes are passed downstream immediately.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            flushPending();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
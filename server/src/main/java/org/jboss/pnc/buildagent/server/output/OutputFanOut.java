@@ -0,0 +1,221 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.common.buffer.ByteBufferPool;
+import org.jboss.pnc.buildagent.common.buffer.PooledByteBuffer;
+import org.jboss.pnc.buildagent.common.concurrent.FanOutRingBuffer;
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Delivers the captured output to the {@link ReadOnlyChannel}s asynchronously, so a slow channel does not stall the
+ * process output. Every channel is served from its own cursor of a shared ring buffer.
+ *
+ * Primary channels must contain all the output, when one of them falls a whole buffer behind the capture waits for it.
+ * Other channels skip the output they were not able to keep up with.
+ *
+ * The output chunks are pooled buffers shared by all the channels, every channel reads the same buffer through its
+ * own read-only view and the buffer returns to the pool once all the channels are done with it.
+ *
+ * Optionally the recent output is kept, a channel added while the output is being written can be primed with it
+ * before it gets the live output.
+ */
+public class OutputFanOut implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(OutputFanOut.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    public static final int DEFAULT_RECENT_OUTPUT_BYTES = 64 * 1024;
+
+    private static final long FLUSH_TIMEOUT_MILLIS = 30000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final FanOutRingBuffer<PooledByteBuffer> ringBuffer;
+
+    private final ByteBufferPool bufferPool;
+
+    private final Map<ReadOnlyChannel, FanOutRingBuffer<PooledByteBuffer>.Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Recent output, null when it is not kept. Writes and snapshots are synchronized on it but the publishing is not,
+     * a primed channel starts after the ring buffer sequence of the last chunk in its snapshot, so it gets neither a gap
+     * nor a duplicate between the replayed and the live output.
+     */
+    private final RecentOutputBuffer recentOutput;
+
+    /**
+     * Ring buffer sequence of the last chunk written to the recent output, guarded by the recent output.
+     */
+    private long recentSequence = -1;
+
+    /**
+     * @param bufferSize number of output chunks kept for the channels, must be a power of 2
+     */
+    public OutputFanOut(String name, int bufferSize, ByteBufferPool bufferPool) {
+        this(name, bufferSize, bufferPool, 0);
+    }
+
+    /**
+     * @param recentOutputBytes number of recent output bytes kept for the new channels, 0 to keep none
+     */
+    public OutputFanOut(String name, int bufferSize, ByteBufferPool bufferPool, int recentOutputBytes) {
+        this.ringBuffer = new FanOutRingBuffer<>("output-" + name, bufferSize);
+        this.bufferPool = bufferPool;
+        this.recentOutput = recentOutputBytes > 0 ? new RecentOutputBuffer(recentOutputBytes) : null;
+    }
+
+    public void addChannel(ReadOnlyChannel channel) {
+        addChannel(channel, null);
+    }
+
+    /**
+     * @param first output delivered to the channel before the live output, null for none
+     */
+    private void addChannel(ReadOnlyChannel channel, PooledByteBuffer first) {
+        addChannel(channel, -1, first);
+    }
+
+    /**
+     * @param startAfter ring buffer sequence of the last chunk the channel does not get
+     */
+    private void addChannel(ReadOnlyChannel channel, long startAfter, PooledByteBuffer first) {
+        String channelName = channel.getName();
+        FanOutRingBuffer<PooledByteBuffer>.Subscription subscription = subscriptions.computeIfAbsent(
+                channel,
+                ch -> ringBuffer.subscribe(
+                        channelName,
+                        ch.isPrimary(),
+                        startAfter,
+                        first,
+                        buffer -> ch.writeOutput(buffer.view(), buffer.getSequence(), buffer.getTimestamp())));
+        if (first != null && !subscription.owns(first)) {
+            //the channel was added before, the first output is not delivered
+            first.release();
+        }
+    }
+
+    /**
+     * Adds the channel and writes the recent output to it before the live output, both on the delivery thread of the
+     * channel, so a slow channel does not stall the output capture. Waits only for a chunk being copied to the recent
+     * output, never for the channels. Without recent output it is the same as {@link #addChannel(ReadOnlyChannel)}.
+     */
+    public void addChannelWithRecentOutput(ReadOnlyChannel channel) {
+        if (recentOutput == null) {
+            addChannel(channel);
+            return;
+        }
+        synchronized (recentOutput) {
+            byte[] recent = recentOutput.snapshot();
+            //subscribed before the next chunk gets to the recent output, so the cursor has not passed recentSequence
+            addChannel(channel, recentSequence, recent.length > 0 ? bufferPool.copyOf(recent) : null);
+        }
+    }
+
+    public void removeChannel(ReadOnlyChannel channel) {
+        FanOutRingBuffer<PooledByteBuffer>.Subscription subscription = subscriptions.remove(channel);
+        if (subscription != null) {
+            subscription.close();
+        }
+    }
+
+    public Set<ReadOnlyChannel> getChannels() {
+        return subscriptions.keySet();
+    }
+
+    public void write(byte[] bytes) {
+        write(bufferPool.copyOf(bytes));
+    }
+
+    /**
+     * Publishes a flipped buffer to the channels. The reference held by the caller is handed over, the caller must
+     * not modify nor release the buffer afterwards.
+     */
+    public void write(PooledByteBuffer buffer) {
+        if (recentOutput == null) {
+            ringBuffer.publish(buffer);
+            return;
+        }
+        synchronized (recentOutput) {
+            recentOutput.write(buffer.view());
+            recentSequence = ringBuffer.getCursor() + 1;
+        }
+        ringBuffer.publish(buffer);
+    }
+
+    /**
+     * @return true when a write does not wait for a primary channel
+     */
+    public boolean canWrite() {
+        return ringBuffer.hasCapacity();
+    }
+
+    public ByteBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Waits until the output written so far is delivered and flushes the primary channels.
+     */
+    public void flushPrimaryChannels() throws IOException {
+        awaitDelivered(FLUSH_TIMEOUT_MILLIS);
+        for (ReadOnlyChannel channel : subscriptions.keySet()) {
+            if (channel.isPrimary()) {
+                channel.flush();
+            }
+        }
+    }
+
+    /**
+     * Waits until the output written so far is delivered to all the channels.
+     */
+    public void awaitDelivered() throws IOException {
+        awaitDelivered(FLUSH_TIMEOUT_MILLIS);
+    }
+
+    private void awaitDelivered(long timeoutMillis) throws IOException {
+        try {
+            if (!ringBuffer.awaitDrained(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Output was not delivered to all channels within " + timeoutMillis + "ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for output delivery.", e);
+        }
+    }
+
+    public List<ChannelStats> getStats() {
+        return subscriptions.entrySet().stream()
+                .map(e -> new ChannelStats(
+                        e.getValue().getName(),
+                        e.getKey().isPrimary(),
+                        e.getValue().getDelivered(),
+                        e.getValue().getLag(),
+                        e.getValue().getOverflow()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Delivers the pending output (waits up to a few seconds) and stops the delivery threads. Channels are not closed.
+     */
+    @Override
+    public void close() {
+        try {
+            awaitDelivered(CLOSE_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            log.warn("Closing {} with undelivered output.", ringBuffer.getName(), e);
+        }
+        ringBuffer.close();
+        subscriptions.clear();
+    }
+}
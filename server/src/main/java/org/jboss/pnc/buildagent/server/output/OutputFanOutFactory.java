@@ -0,0 +1,126 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.api.BuildPhase;
+import org.jboss.pnc.buildagent.common.buffer.ByteBufferPool;
+import org.jboss.pnc.buildagent.common.buffer.PooledByteBuffer;
+import org.jboss.pnc.buildagent.common.security.DigestAlgorithm;
+import org.jboss.pnc.buildagent.server.Options;
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+
+import java.io.Closeable;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Creates the output pipeline pieces of terms and command sessions, all of them sharing one buffer pool and one
+ * scheduler for delayed flushes.
+ */
+public class OutputFanOutFactory implements Closeable {
+
+    /**
+     * Size of a pooled output chunk, large enough for a chunk read from the process.
+     */
+    public static final int CHUNK_SIZE = 4096;
+
+    public static final int DEFAULT_POOL_SIZE = 1024;
+
+    public static final int DEFAULT_COALESCE_BYTES = CHUNK_SIZE;
+
+    public static final long DEFAULT_COALESCE_MILLIS = 20;
+
+    private final Options options;
+
+    private final ByteBufferPool bufferPool;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final OutputSegmentsRegistry outputSegments = new OutputSegmentsRegistry(OutputSegmentsRegistry.DEFAULT_CAPACITY);
+
+    public OutputFanOutFactory(Options options) {
+        this.options = options;
+        this.bufferPool = new ByteBufferPool(CHUNK_SIZE, options.getOutputPoolSize());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "output-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public OutputFanOut create(String name) {
+        return new OutputFanOut(name, options.getOutputBufferSize(), bufferPool);
+    }
+
+    /**
+     * Creates a fan-out keeping the recent output for the channels added later, see
+     * {@link OutputFanOut#addChannelWithRecentOutput(ReadOnlyChannel)}.
+     */
+    public OutputFanOut createWithRecentOutput(String name) {
+        return new OutputFanOut(name, options.getOutputBufferSize(), bufferPool, options.getRecentOutputBytes());
+    }
+
+    /**
+     * @param target fan-out the downstream writes to, the delayed flushes are deferred while writing to it would block
+     * @param downstream receives the coalesced output
+     */
+    public OutputCoalescer createCoalescer(OutputFanOut target, Consumer<PooledByteBuffer> downstream) {
+        return new OutputCoalescer(
+                bufferPool,
+                options.getOutputCoalesceBytes(),
+                options.getOutputCoalesceMillis(),
+                options.isOutputCoalesceOnNewLine(),
+                scheduler,
+                target::canWrite,
+                downstream);
+    }
+
+    /**
+     * @param onPhase receives every completed build phase
+     * @return empty when the build phase timing is disabled
+     */
+    public Optional<BuildPhaseAnalyzer> createBuildPhaseAnalyzer(Consumer<BuildPhase> onPhase) {
+        if (!options.isBuildPhaseTiming()) {
+            return Optional.empty();
+        }
+        return Optional.of(new BuildPhaseAnalyzer(onPhase));
+    }
+
+    /**
+     * @param algorithmName null for the default algorithm of the agent
+     * @throws IllegalArgumentException when the algorithm is not supported
+     */
+    public DigestChannel createDigestChannel(String algorithmName) {
+        if (algorithmName == null) {
+            return new DigestChannel(options.getOutputChecksumAlgorithm());
+        }
+        return new DigestChannel(DigestAlgorithm.fromName(algorithmName));
+    }
+
+    /**
+     * @param algorithm same as of the whole output checksum
+     * @return empty when the segment checksums are disabled
+     */
+    public Optional<SegmentDigestChannel> createSegmentDigestChannel(DigestAlgorithm algorithm) {
+        if (options.getOutputSegmentSize() <= 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new SegmentDigestChannel(algorithm, options.getOutputSegmentSize()));
+    }
+
+    /**
+     * @return segments of the recently completed tasks
+     */
+    public OutputSegmentsRegistry getOutputSegments() {
+        return outputSegments;
+    }
+
+    public ByteBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,19 @@
+package org.jboss.pnc.buildagent.server.output;
+
+/**
+ * What happens to the output lines over an output limit.
+ */
+public enum OutputLimitPolicy {
+    /**
+     * Lines are dropped.
+     */
+    DROP,
+    /**
+     * One line out of {@link OutputLimitingChannel#SAMPLE_EVERY} is written, the others are dropped.
+     */
+    SAMPLE,
+    /**
+     * Only the beginning of each line (up to {@link OutputLimitingChannel#TRUNCATED_LINE_LENGTH} bytes) is written.
+     */
+    TRUNCATE;
+}
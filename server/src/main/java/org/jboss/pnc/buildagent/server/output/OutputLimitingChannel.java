@@ -0,0 +1,338 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Limits the output written to a sink, so a runaway process cannot flood a shared log storage. The byte and line
+ * quotas apply to a single command session, the rate limit is shared by all the sessions writing to the sink.
+ * Terminal output is not a session, only the rate limit applies to it.
+ *
+ * Limits are checked when a line starts, so the lines are either written whole or handled by the
+ * {@link OutputLimitPolicy}. Only a line exceeding the byte quota is cut. The suppressed output is reported by a
+ * marker line when a quota is reached and by a summary line when the output is written again, the channel is flushed
+ * or closed.
+ *
+ * The state follows a single stream, each session and each term gets its own stage.
+ */
+public class OutputLimitingChannel implements ReadOnlyChannel {
+
+    public static final int SAMPLE_EVERY = 100;
+
+    public static final int TRUNCATED_LINE_LENGTH = 200;
+
+    private static final byte LF = '\n';
+
+    private static final byte[] TRUNCATED = " [...]\r\n".getBytes(StandardCharsets.UTF_8);
+
+    private enum Mode {
+        /**
+         * The line is within the limits.
+         */
+        PASS,
+        /**
+         * The line is over a limit and written because of the policy.
+         */
+        SAMPLED,
+        TRUNCATE,
+        SUPPRESS
+    }
+
+    private final ReadOnlyChannel delegate;
+
+    /**
+     * Stamp of the chunk being written, passed on with the output.
+     */
+    private long sequence;
+    private long timestamp;
+
+    private final long maxBytes;
+
+    private final long maxLines;
+
+    private final TokenBucket tokenBucket;
+
+    private final OutputLimitPolicy policy;
+
+    private final boolean session;
+
+    private Mode mode;
+
+    private boolean lineStart = true;
+
+    private boolean lineEndWritten = true;
+
+    private int truncateRemaining;
+
+    private long writtenBytes;
+
+    private long writtenLines;
+
+    private long overLimitLines;
+
+    private volatile long suppressedBytes;
+
+    private volatile long suppressedLines;
+
+    /**
+     * Limit suppressing the output since the last summary.
+     */
+    private String runReason;
+
+    private long runBytes;
+
+    private long runLines;
+
+    /**
+     * @param maxBytes bytes per session, 0 for no limit
+     * @param maxLines lines per session, 0 for no limit
+     * @param bytesPerSecond rate limit of the sink, 0 for no limit
+     * @param burst bytes which can be written at once above the rate limit
+     */
+    public OutputLimitingChannel(
+            ReadOnlyChannel delegate,
+            long maxBytes,
+            long maxLines,
+            long bytesPerSecond,
+            long burst,
+            OutputLimitPolicy policy) {
+        this(delegate, maxBytes, maxLines, bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond, burst) : null, policy, false);
+    }
+
+    private OutputLimitingChannel(
+            ReadOnlyChannel delegate,
+            long maxBytes,
+            long maxLines,
+            TokenBucket tokenBucket,
+            OutputLimitPolicy policy,
+            boolean session) {
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+        this.maxLines = maxLines;
+        this.tokenBucket = tokenBucket;
+        this.policy = policy;
+        this.session = session;
+    }
+
+    @Override
+    public void writeOutput(byte[] buffer) {
+        writeOutput(ByteBuffer.wrap(buffer));
+    }
+
+    @Override
+    public synchronized void writeOutput(ByteBuffer buffer, long sequence, long timestamp) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        writeOutput(buffer);
+    }
+
+    @Override
+    public synchronized void writeOutput(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int passStart = buffer.position();
+        int i = buffer.position();
+        while (i < limit) {
+            if (lineStart) {
+                pass(buffer, passStart, i, limit);
+                passStart = i;
+                startLine();
+                lineStart = false;
+            }
+            int end = lineEnd(buffer, i, limit);
+            int length = end - i;
+            switch (mode) {
+                case PASS:
+                    int allowed = length;
+                    if (maxBytes > 0 && session) {
+                        allowed = (int) Math.min(length, maxBytes - writtenBytes);
+                    }
+                    writtenBytes += allowed;
+                    consumeTokens(allowed);
+                    if (allowed < length) {
+                        pass(buffer, passStart, i + allowed, limit);
+                        passStart = end;
+                        mode = Mode.SUPPRESS;
+                        suppressBytes(length - allowed);
+                        startRun("session byte quota");
+                    }
+                    break;
+                case SAMPLED:
+                    consumeTokens(length);
+                    break;
+                case TRUNCATE:
+                    int keep = Math.min(length, truncateRemaining);
+                    truncateRemaining -= keep;
+                    consumeTokens(keep);
+                    pass(buffer, passStart, i + keep, limit);
+                    passStart = end;
+                    suppressBytes(length - keep);
+                    if (keep < length && buffer.get(end - 1) == LF) {
+                        delegate.writeOutput(ByteBuffer.wrap(TRUNCATED), sequence, timestamp);
+                        lineEndWritten = true;
+                    }
+                    break;
+                case SUPPRESS:
+                    pass(buffer, passStart, i, limit);
+                    passStart = end;
+                    suppressBytes(length);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown mode " + mode);
+            }
+            lineStart = buffer.get(end - 1) == LF;
+            i = end;
+        }
+        pass(buffer, passStart, limit, limit);
+    }
+
+    private static int lineEnd(ByteBuffer buffer, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == LF) {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+
+    private void startLine() {
+        String reason = null;
+        if (session && maxLines > 0 && writtenLines >= maxLines) {
+            reason = "session line quota";
+        } else if (session && maxBytes > 0 && writtenBytes >= maxBytes) {
+            reason = "session byte quota";
+        } else if (tokenBucket != null && !tokenBucket.hasTokens()) {
+            reason = "rate limit";
+        }
+        if (reason == null) {
+            writeSummary();
+            writtenLines++;
+            mode = Mode.PASS;
+            return;
+        }
+        if (!reason.equals(runReason)) {
+            writeSummary();
+            startRun(reason);
+        }
+        switch (policy) {
+            case SAMPLE:
+                if (overLimitLines++ % SAMPLE_EVERY == 0) {
+                    mode = Mode.SAMPLED;
+                } else {
+                    mode = Mode.SUPPRESS;
+                    suppressedLines++;
+                    runLines++;
+                }
+                break;
+            case TRUNCATE:
+                mode = Mode.TRUNCATE;
+                truncateRemaining = TRUNCATED_LINE_LENGTH;
+                break;
+            default:
+                mode = Mode.SUPPRESS;
+                suppressedLines++;
+                runLines++;
+        }
+    }
+
+    private void startRun(String reason) {
+        runReason = reason;
+        if (!reason.equals("rate limit")) { //quotas are not reset, announce them right away
+            String policyName = policy.name().toLowerCase(Locale.ROOT);
+            writeMarker(("% # Output limit reached (" + reason + "), further output is handled by policy: " + policyName + "\r\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeSummary() {
+        if (runReason != null && (runLines > 0 || runBytes > 0)) {
+            writeMarker(("% # Output limited (" + runReason + "): suppressed " + runLines + " lines, " + runBytes + " bytes\r\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        runReason = null;
+        runLines = 0;
+        runBytes = 0;
+    }
+
+    private void suppressBytes(long bytes) {
+        suppressedBytes += bytes;
+        runBytes += bytes;
+    }
+
+    private void consumeTokens(long bytes) {
+        if (tokenBucket != null) {
+            tokenBucket.consume(bytes);
+        }
+    }
+
+    private void writeMarker(byte[] marker) {
+        if (!lineEndWritten) {
+            delegate.writeOutput(ByteBuffer.wrap(new byte[] {'\r', LF}), sequence, timestamp);
+        }
+        delegate.writeOutput(ByteBuffer.wrap(marker), sequence, timestamp);
+        lineEndWritten = true;
+    }
+
+    private void pass(ByteBuffer buffer, int start, int end, int limit) {
+        if (start < end) {
+            lineEndWritten = buffer.get(end - 1) == LF;
+            ((Buffer) buffer).limit(end);
+            ((Buffer) buffer).position(start);
+            delegate.writeOutput(buffer, sequence, timestamp);
+            ((Buffer) buffer).limit(limit);
+        }
+    }
+
+    @Override
+    public long getSuppressedBytes() {
+        return suppressedBytes;
+    }
+
+    @Override
+    public long getSuppressedLines() {
+        return suppressedLines;
+    }
+
+    @Override
+    public boolean isPrimary() {
+        return delegate.isPrimary();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (this) {
+            writeSummary();
+        }
+        delegate.flush();
+    }
+
+    @Override
+    public ReadOnlyChannel forSession(String sessionId) {
+        return new OutputLimitingChannel(delegate.forSession(sessionId), maxBytes, maxLines, tokenBucket, policy, true);
+    }
+
+    /**
+     * The term output gets its own stage with the shared rate limit only.
+     */
+    @Override
+    public ReadOnlyChannel forTerm(String sessionId) {
+        return new OutputLimitingChannel(delegate.forTerm(sessionId), maxBytes, maxLines, tokenBucket, policy, false);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            writeSummary();
+        }
+        delegate.close();
+    }
+}
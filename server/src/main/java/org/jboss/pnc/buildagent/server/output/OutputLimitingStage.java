@@ -0,0 +1,38 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+
+import java.util.Map;
+
+/**
+ * Parameters: maxBytes, maxLines (session quotas), rateLimit, rateBurst (bytes per second of the sink, the burst
+ * defaults to the rate) and policy (DROP, SAMPLE or TRUNCATE).
+ */
+public class OutputLimitingStage implements OutputStage {
+
+    public static final String NAME = "limit";
+
+    public static final String MAX_BYTES = "maxBytes";
+    public static final String MAX_LINES = "maxLines";
+    public static final String RATE_LIMIT = "rateLimit";
+    public static final String RATE_BURST = "rateBurst";
+    public static final String POLICY = "policy";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ReadOnlyChannel create(ReadOnlyChannel next, Map<String, String> parameters) {
+        StageParameters.requireKnown(NAME, parameters, MAX_BYTES, MAX_LINES, RATE_LIMIT, RATE_BURST, POLICY);
+        long rateLimit = StageParameters.getLong(parameters, RATE_LIMIT, 0);
+        return new OutputLimitingChannel(
+                next,
+                StageParameters.getLong(parameters, MAX_BYTES, 0),
+                StageParameters.getLong(parameters, MAX_LINES, 0),
+                rateLimit,
+                StageParameters.getLong(parameters, RATE_BURST, rateLimit),
+                OutputLimitPolicy.valueOf(parameters.getOrDefault(POLICY, OutputLimitPolicy.DROP.name()).toUpperCase()));
+    }
+}
@@ -0,0 +1,45 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.api.OutputSegments;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps the output segments of the recently completed tasks for the clients verifying the output after the
+ * completion event. The oldest entries are dropped above the capacity.
+ */
+public class OutputSegmentsRegistry {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final Map<String, OutputSegments> completed;
+
+    public OutputSegmentsRegistry(int capacity) {
+        this.completed = new LinkedHashMap<String, OutputSegments>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OutputSegments> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param taskId id of the http invoker session, or the term context and the task id, see {@link #termKey}
+     */
+    public synchronized void put(String taskId, OutputSegments segments) {
+        completed.put(taskId, segments);
+    }
+
+    public synchronized Optional<OutputSegments> get(String taskId) {
+        return Optional.ofNullable(completed.get(taskId));
+    }
+
+    /**
+     * Task ids of the terms are unique only within the term.
+     */
+    public static String termKey(String context, String taskId) {
+        return context + "/" + taskId;
+    }
+}
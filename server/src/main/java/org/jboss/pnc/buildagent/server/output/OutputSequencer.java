@@ -0,0 +1,47 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.common.buffer.PooledByteBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stamps the captured chunks of a session before they are delivered to the channels. The sequence of a chunk is the
+ * number of lines captured before it, so line oriented sinks can number the lines the same way and the lines dropped
+ * by a stage show up as a gap. The timestamp is the time the first byte of the chunk was captured, it never goes back
+ * within a session.
+ *
+ * Used from the capture thread only.
+ */
+public class OutputSequencer {
+
+    private static final byte LF = '\n';
+
+    private long lines;
+
+    private long lastTimestamp;
+
+    public void stamp(PooledByteBuffer chunk) {
+        long captured = chunk.getTimestamp() > 0 ? chunk.getTimestamp() : System.currentTimeMillis();
+        lastTimestamp = Math.max(lastTimestamp, captured);
+        chunk.stamp(lines, lastTimestamp);
+        lines += countLines(chunk.buffer());
+    }
+
+    /**
+     * @return number of lines completed so far
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    private static int countLines(ByteBuffer buffer) {
+        int count = 0;
+        int limit = buffer.limit();
+        for (int i = buffer.position(); i < limit; i++) {
+            if (buffer.get(i) == LF) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
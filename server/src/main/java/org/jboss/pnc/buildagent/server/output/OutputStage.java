@@ -0,0 +1,27 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+
+import java.util.Map;
+
+/**
+ * Transformation of the output placed in front of a sink. Stages are discovered with the {@link java.util.ServiceLoader}
+ * and referenced by name in the stage configuration of a sink, see {@link StageConfig}.
+ *
+ * A stage is a {@link ReadOnlyChannel} decorator writing the transformed output to the next channel. It must delegate
+ * {@link ReadOnlyChannel#forSession(String)} to the next channel, so every command session gets its own chain.
+ */
+public interface OutputStage {
+
+    /**
+     * @return name of the stage used in the configuration
+     */
+    String getName();
+
+    /**
+     * @param next channel receiving the output of the stage
+     * @param parameters stage parameters from the configuration, empty when there are none
+     * @throws IllegalArgumentException if a parameter is unknown or invalid
+     */
+    ReadOnlyChannel create(ReadOnlyChannel next, Map<String, String> parameters);
+}
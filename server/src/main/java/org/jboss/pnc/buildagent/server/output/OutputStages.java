@@ -0,0 +1,77 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Builds the stage chains in front of the sinks from the {@link OutputStage}s available on the class path. Every stage
+ * and the sink itself is measured, the counters are available from {@link #getStats()}.
+ */
+public class OutputStages {
+
+    private static final Logger log = LoggerFactory.getLogger(OutputStages.class);
+
+    private final Map<String, OutputStage> stages = new HashMap<>();
+
+    private final List<StageStats> stats = new CopyOnWriteArrayList<>();
+
+    public OutputStages() {
+        this(ServiceLoader.load(OutputStage.class));
+    }
+
+    public OutputStages(Iterable<OutputStage> availableStages) {
+        for (OutputStage stage : availableStages) {
+            OutputStage previous = stages.putIfAbsent(stage.getName(), stage);
+            if (previous != null) {
+                log.warn("Multiple output stages named {} found, using: {}", stage.getName(), previous.getClass());
+            }
+        }
+    }
+
+    /**
+     * @param stageConfigs stages in the order the output goes through them
+     * @return the first stage of the chain, the sink itself if there are no stages
+     * @throws IllegalArgumentException if a stage is unknown or its parameters are invalid
+     */
+    public ReadOnlyChannel wrap(String sinkName, ReadOnlyChannel sink, List<StageConfig> stageConfigs) {
+        if (stageConfigs.isEmpty()) {
+            return sink;
+        }
+        List<StageStats> sinkStats = new ArrayList<>();
+        StageStats next = new StageStats(sinkName, "sink", null);
+        sinkStats.add(next);
+        ReadOnlyChannel channel = new TimedChannel(sink, next);
+
+        for (int i = stageConfigs.size() - 1; i >= 0; i--) {
+            StageConfig config = stageConfigs.get(i);
+            OutputStage stage = stages.get(config.getName());
+            if (stage == null) {
+                throw new IllegalArgumentException("Unknown output stage " + config.getName() + ", available stages: " + stages.keySet());
+            }
+            channel = stage.create(channel, config.getParameters());
+            next = new StageStats(sinkName, config.getName(), next);
+            sinkStats.add(next);
+            channel = new TimedChannel(channel, next);
+        }
+        Collections.reverse(sinkStats);
+        stats.addAll(sinkStats);
+        log.info("Output of {} goes through stages {}.", sinkName, stageConfigs);
+        return channel;
+    }
+
+    /**
+     * @return counters of all the stages, grouped by sink in the order of the output flow
+     */
+    public List<StageStats> getStats() {
+        return stats;
+    }
+}
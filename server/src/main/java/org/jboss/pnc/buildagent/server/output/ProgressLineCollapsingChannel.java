@@ -0,0 +1,206 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Drops the intermediate states of terminal progress lines before the output reaches a sink. Progress bars (eg. Maven
+ * and Gradle downloads) rewrite a line many times by returning the cursor with a carriage return, a sink storing the
+ * output line by line would get a copy of every state.
+ *
+ * The output is passed on as it comes up to a carriage return which is not part of a line end. The text after such a
+ * carriage return is held until it is either overwritten by the next one or completed by a line feed, only the
+ * completed text is passed on. A line "10%\r20%\r30%\n" is written as "10%\r30%\n".
+ *
+ * A held text is written out as it is when it exceeds the size limit and when the channel is flushed or closed. The
+ * state follows a single stream, each session gets its own stage.
+ */
+public class ProgressLineCollapsingChannel implements ReadOnlyChannel {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private static final int MAX_HELD_BYTES = 8192;
+
+    private final ReadOnlyChannel delegate;
+
+    /**
+     * Stamp of the chunk being written, passed on with the output.
+     */
+    private long sequence;
+    private long timestamp;
+
+    /**
+     * Text following an overwriting carriage return, including the carriage return.
+     */
+    private final ByteBuffer held = ByteBuffer.allocate(MAX_HELD_BYTES);
+
+    private boolean holding;
+
+    /**
+     * The previous chunk ended with a carriage return, it is not known yet if it is a line end.
+     */
+    private boolean carriageReturnPending;
+
+    public ProgressLineCollapsingChannel(ReadOnlyChannel delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void writeOutput(byte[] buffer) {
+        writeOutput(ByteBuffer.wrap(buffer));
+    }
+
+    @Override
+    public synchronized void writeOutput(ByteBuffer buffer, long sequence, long timestamp) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        writeOutput(buffer);
+    }
+
+    @Override
+    public synchronized void writeOutput(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int passStart = buffer.position();
+        int i = buffer.position();
+        if (carriageReturnPending) {
+            carriageReturnPending = false;
+            i = skipCarriageReturns(buffer, i, limit);
+            if (i == limit) {
+                carriageReturnPending = true;
+                return;
+            }
+            if (buffer.get(i) == LF) {
+                if (holding) {
+                    hold(CR);
+                } else {
+                    delegate.writeOutput(ByteBuffer.wrap(new byte[] {CR}), sequence, timestamp);
+                }
+            } else {
+                startHolding();
+            }
+            passStart = i;
+        }
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == CR) {
+                int next = skipCarriageReturns(buffer, i, limit);
+                if (next == limit) {
+                    pass(buffer, passStart, i, limit);
+                    passStart = limit;
+                    carriageReturnPending = true;
+                    i = limit;
+                } else if (buffer.get(next) == LF) {
+                    if (holding) {
+                        hold(CR);
+                        passStart = next;
+                    }
+                    i = next;
+                } else {
+                    pass(buffer, passStart, i, limit);
+                    passStart = next;
+                    startHolding();
+                    i = next;
+                }
+                continue;
+            }
+            if (holding) {
+                hold(b);
+                passStart = i + 1;
+            }
+            i++;
+        }
+        pass(buffer, passStart, limit, limit);
+    }
+
+    private static int skipCarriageReturns(ByteBuffer buffer, int index, int limit) {
+        while (index < limit && buffer.get(index) == CR) {
+            index++;
+        }
+        return index;
+    }
+
+    private void pass(ByteBuffer buffer, int start, int end, int limit) {
+        if (start < end) {
+            ((Buffer) buffer).limit(end);
+            ((Buffer) buffer).position(start);
+            delegate.writeOutput(buffer, sequence, timestamp);
+            ((Buffer) buffer).limit(limit);
+        }
+    }
+
+    private void startHolding() {
+        ((Buffer) held).clear();
+        held.put(CR);
+        holding = true;
+    }
+
+    private void hold(byte b) {
+        held.put(b);
+        if (b == LF || !held.hasRemaining()) { //completed or too long to be a progress line
+            writeHeld();
+        }
+    }
+
+    private void writeHeld() {
+        ((Buffer) held).flip();
+        delegate.writeOutput(held, sequence, timestamp);
+        ((Buffer) held).clear();
+        holding = false;
+    }
+
+    private synchronized void writePending() {
+        if (holding) {
+            writeHeld();
+        }
+        if (carriageReturnPending) {
+            carriageReturnPending = false;
+            delegate.writeOutput(ByteBuffer.wrap(new byte[] {CR}), sequence, timestamp);
+        }
+    }
+
+    @Override
+    public boolean isPrimary() {
+        return delegate.isPrimary();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writePending();
+        delegate.flush();
+    }
+
+    @Override
+    public ReadOnlyChannel forSession(String sessionId) {
+        return new ProgressLineCollapsingChannel(delegate.forSession(sessionId));
+    }
+
+    @Override
+    public ReadOnlyChannel forTerm(String sessionId) {
+        return new ProgressLineCollapsingChannel(delegate.forTerm(sessionId));
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public long getSuppressedBytes() {
+        return delegate.getSuppressedBytes();
+    }
+
+    @Override
+    public long getSuppressedLines() {
+        return delegate.getSuppressedLines();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writePending();
+        delegate.close();
+    }
+}
@@ -0,0 +1,21 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+
+import java.util.Map;
+
+public class ProgressLineCollapsingStage implements OutputStage {
+
+    public static final String NAME = "collapse-progress";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ReadOnlyChannel create(ReadOnlyChannel next, Map<String, String> parameters) {
+        StageParameters.requireKnown(NAME, parameters);
+        return new ProgressLineCollapsingChannel(next);
+    }
+}
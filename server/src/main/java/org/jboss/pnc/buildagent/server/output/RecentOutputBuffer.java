@@ -0,0 +1,92 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Keeps the last bytes of the output, so a viewer connecting while a command is running first gets the recent output
+ * instead of an empty screen.
+ *
+ * When older output has been dropped the snapshot starts at a line boundary if there is one near the beginning, at a
+ * character boundary otherwise, so text viewers do not get a broken first line.
+ */
+public class RecentOutputBuffer {
+
+    private static final byte LF = '\n';
+
+    private final byte[] ring;
+
+    /**
+     * Number of bytes written so far, the write index is written modulo the capacity.
+     */
+    private long written;
+
+    public RecentOutputBuffer(int capacity) {
+        this.ring = new byte[capacity];
+    }
+
+    /**
+     * Copies the bytes between the buffer position and limit, the buffer position does not change.
+     */
+    public synchronized void write(ByteBuffer buffer) {
+        ByteBuffer source = buffer.duplicate();
+        int length = source.remaining();
+        if (length > ring.length) {
+            ((Buffer) source).position(source.position() + length - ring.length);
+            written += length - ring.length;
+            length = ring.length;
+        }
+        int start = (int) (written % ring.length);
+        int first = Math.min(length, ring.length - start);
+        source.get(ring, start, first);
+        source.get(ring, 0, length - first);
+        written += length;
+    }
+
+    /**
+     * @return copy of the recent output
+     */
+    public synchronized byte[] snapshot() {
+        int size = (int) Math.min(written, ring.length);
+        byte[] copy = new byte[size];
+        int start = (int) ((written - size) % ring.length);
+        int first = Math.min(size, ring.length - start);
+        System.arraycopy(ring, start, copy, 0, first);
+        System.arraycopy(ring, 0, copy, first, size - first);
+        if (written <= ring.length) {
+            return copy;
+        }
+        int from = lineStart(copy);
+        return from == 0 ? copy : Arrays.copyOfRange(copy, from, size);
+    }
+
+    /**
+     * @return index after the first line feed in the first quarter of the output, or of the first byte which is not a
+     * UTF-8 continuation byte
+     */
+    private static int lineStart(byte[] output) {
+        int searchLimit = output.length / 4;
+        for (int i = 0; i < searchLimit; i++) {
+            if (output[i] == LF) {
+                return i + 1;
+            }
+        }
+        int i = 0;
+        while (i < output.length && (output[i] & 0xC0) == 0x80) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return number of bytes written since the buffer was created
+     */
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+}
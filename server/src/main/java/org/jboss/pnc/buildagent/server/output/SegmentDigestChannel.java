@@ -0,0 +1,110 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.api.OutputSegments;
+import org.jboss.pnc.buildagent.common.security.DigestAlgorithm;
+import org.jboss.pnc.buildagent.common.security.MerkleTree;
+import org.jboss.pnc.buildagent.common.security.OutputDigest;
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Digests the output in fixed size segments on its own fan-out consumer, see {@link OutputSegments}. Like the
+ * {@link DigestChannel} it is primary and the output must be delivered before the segments are completed.
+ */
+public class SegmentDigestChannel implements ReadOnlyChannel {
+
+    private final DigestAlgorithm algorithm;
+
+    private final long segmentSize;
+
+    private final OutputDigest segmentDigest;
+
+    private final List<String> segments = new ArrayList<>();
+
+    private long segmentBytes;
+
+    private long outputBytes;
+
+    public SegmentDigestChannel(DigestAlgorithm algorithm, long segmentSize) {
+        this.algorithm = algorithm;
+        this.segmentSize = segmentSize;
+        this.segmentDigest = algorithm.newDigest();
+    }
+
+    @Override
+    public void writeOutput(byte[] buffer) {
+        writeOutput(ByteBuffer.wrap(buffer));
+    }
+
+    @Override
+    public synchronized void writeOutput(ByteBuffer buffer) {
+        outputBytes += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            int length = (int) Math.min(buffer.remaining(), segmentSize - segmentBytes);
+            ByteBuffer part = buffer.duplicate();
+            ((Buffer) part).limit(part.position() + length);
+            segmentDigest.add(part);
+            ((Buffer) buffer).position(buffer.position() + length);
+            segmentBytes += length;
+            if (segmentBytes == segmentSize) {
+                segments.add(segmentDigest.digest());
+                segmentBytes = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the segments completed so far, the last partial segment is not included
+     */
+    public synchronized OutputSegments snapshot() {
+        List<String> completed = new ArrayList<>(segments);
+        return build(completed, outputBytes - segmentBytes, false);
+    }
+
+    /**
+     * Completes the last partial segment and starts the segments of the next output.
+     */
+    public synchronized OutputSegments finish() {
+        if (segmentBytes > 0) {
+            segments.add(segmentDigest.digest());
+        }
+        OutputSegments completed = build(new ArrayList<>(segments), outputBytes, true);
+        segments.clear();
+        segmentBytes = 0;
+        outputBytes = 0;
+        return completed;
+    }
+
+    private OutputSegments build(List<String> segments, long outputBytes, boolean complete) {
+        return OutputSegments.newBuilder()
+                .algorithm(algorithm.getName())
+                .segmentSize(segmentSize)
+                .outputBytes(outputBytes)
+                .segments(segments)
+                .root(MerkleTree.root(algorithm, segments))
+                .complete(complete)
+                .build();
+    }
+
+    @Override
+    public boolean isPrimary() {
+        return true;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public String getName() {
+        return "segment-digest-" + algorithm.getName();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,117 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference to an {@link OutputStage} with its parameters.
+ *
+ * The configuration of all the sinks is a semicolon separated list of sinks, each with a comma separated list of stages
+ * in the order the output goes through them. Parameters of a stage are listed in parentheses:
+ * <pre>
+ * FILE=strip-ansi,limit(maxLines=10000,policy=TRUNCATE);KAFKA=collapse-progress
+ * </pre>
+ */
+public class StageConfig {
+
+    private final String name;
+
+    private final Map<String, String> parameters;
+
+    public StageConfig(String name) {
+        this(name, Collections.emptyMap());
+    }
+
+    public StageConfig(String name, Map<String, String> parameters) {
+        this.name = name;
+        this.parameters = parameters;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return stage lists by sink name, in the configured order
+     * @throws IllegalArgumentException if the configuration is malformed
+     */
+    public static Map<String, List<StageConfig>> parseSinks(String configuration) {
+        Map<String, List<StageConfig>> sinks = new LinkedHashMap<>();
+        for (String sink : configuration.split(";")) {
+            if (sink.trim().isEmpty()) {
+                continue;
+            }
+            int separator = sink.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Missing sink name in stage configuration: " + sink);
+            }
+            sinks.put(sink.substring(0, separator).trim(), parseStages(sink.substring(separator + 1)));
+        }
+        return sinks;
+    }
+
+    /**
+     * @param stages comma separated list of stages, eg. strip-ansi,limit(maxLines=100)
+     * @throws IllegalArgumentException if the list is malformed
+     */
+    public static List<StageConfig> parseStages(String stages) {
+        List<StageConfig> configs = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i <= stages.length(); i++) {
+            char c = i < stages.length() ? stages.charAt(i) : ',';
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                String stage = stages.substring(start, i).trim();
+                if (!stage.isEmpty()) {
+                    configs.add(parseStage(stage));
+                }
+                start = i + 1;
+            }
+            if (depth < 0 || depth > 1) {
+                throw new IllegalArgumentException("Unbalanced parentheses in stage list: " + stages);
+            }
+        }
+        if (depth != 0) {
+            throw new IllegalArgumentException("Unbalanced parentheses in stage list: " + stages);
+        }
+        return configs;
+    }
+
+    private static StageConfig parseStage(String stage) {
+        int open = stage.indexOf('(');
+        if (open < 0) {
+            return new StageConfig(stage);
+        }
+        if (!stage.endsWith(")")) {
+            throw new IllegalArgumentException("Unexpected text after stage parameters: " + stage);
+        }
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (String parameter : stage.substring(open + 1, stage.length() - 1).split(",")) {
+            if (parameter.trim().isEmpty()) {
+                continue;
+            }
+            int separator = parameter.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Stage parameter must be in form key=value: " + parameter);
+            }
+            parameters.put(parameter.substring(0, separator).trim(), parameter.substring(separator + 1).trim());
+        }
+        return new StageConfig(stage.substring(0, open).trim(), parameters);
+    }
+
+    @Override
+    public String toString() {
+        return parameters.isEmpty() ? name : name + parameters;
+    }
+}
@@ -0,0 +1,39 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Helpers for reading the {@link OutputStage} parameters.
+ */
+public class StageParameters {
+
+    private StageParameters() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is a parameter not listed in known
+     */
+    public static void requireKnown(String stage, Map<String, String> parameters, String... known) {
+        for (String parameter : parameters.keySet()) {
+            if (!Arrays.asList(known).contains(parameter)) {
+                throw new IllegalArgumentException("Unknown parameter " + parameter + " of stage " + stage + ".");
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    public static long getLong(Map<String, String> parameters, String name, long defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " must be a number: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a single stage of a sink, shared by all the command sessions. The time of a stage includes the time of
+ * the following stages and the sink, the self time is the difference to the next measured channel.
+ */
+public class StageStats {
+
+    private final String sink;
+    private final String stage;
+    private final StageStats next;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    StageStats(String sink, String stage, StageStats next) {
+        this.sink = sink;
+        this.stage = stage;
+        this.next = next;
+    }
+
+    void record(long writtenBytes, long elapsedNanos) {
+        writes.increment();
+        bytes.add(writtenBytes);
+        nanos.add(elapsedNanos);
+    }
+
+    public String getSink() {
+        return sink;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    /**
+     * @return bytes written to the stage
+     */
+    public long getBytesIn() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return bytes the stage wrote to the next stage or the sink
+     */
+    public long getBytesOut() {
+        return next == null ? getBytesIn() : next.getBytesIn();
+    }
+
+    public long getTotalMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(nanos.sum());
+    }
+
+    public long getSelfMicros() {
+        long selfNanos = nanos.sum() - (next == null ? 0 : next.nanos.sum());
+        return TimeUnit.NANOSECONDS.toMicros(Math.max(0, selfNanos));
+    }
+
+    /**
+     * @return bytes processed per second of the self time
+     */
+    public long getBytesPerSecond() {
+        long selfNanos = nanos.sum() - (next == null ? 0 : next.nanos.sum());
+        return selfNanos <= 0 ? 0 : getBytesIn() * TimeUnit.SECONDS.toNanos(1) / selfNanos;
+    }
+}
@@ -0,0 +1,95 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Records the writes to a stage in its {@link StageStats}.
+ */
+class TimedChannel implements ReadOnlyChannel {
+
+    private final ReadOnlyChannel delegate;
+
+    private final StageStats stats;
+
+    TimedChannel(ReadOnlyChannel delegate, StageStats stats) {
+        this.delegate = delegate;
+        this.stats = stats;
+    }
+
+    @Override
+    public void writeOutput(byte[] buffer) {
+        long start = System.nanoTime();
+        try {
+            delegate.writeOutput(buffer);
+        } finally {
+            stats.record(buffer.length, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void writeOutput(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        long start = System.nanoTime();
+        try {
+            delegate.writeOutput(buffer);
+        } finally {
+            stats.record(length, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void writeOutput(ByteBuffer buffer, long sequence, long timestamp) {
+        int length = buffer.remaining();
+        long start = System.nanoTime();
+        try {
+            delegate.writeOutput(buffer, sequence, timestamp);
+        } finally {
+            stats.record(length, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean isPrimary() {
+        return delegate.isPrimary();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public ReadOnlyChannel forSession(String sessionId) {
+        ReadOnlyChannel sessionDelegate = delegate.forSession(sessionId);
+        return sessionDelegate == delegate ? this : new TimedChannel(sessionDelegate, stats);
+    }
+
+    @Override
+    public ReadOnlyChannel forTerm(String sessionId) {
+        ReadOnlyChannel termDelegate = delegate.forTerm(sessionId);
+        return termDelegate == delegate ? this : new TimedChannel(termDelegate, stats);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public long getSuppressedBytes() {
+        return delegate.getSuppressedBytes();
+    }
+
+    @Override
+    public long getSuppressedLines() {
+        return delegate.getSuppressedLines();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
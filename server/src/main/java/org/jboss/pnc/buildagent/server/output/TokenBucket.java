@@ -0,0 +1,41 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Byte rate limit, tokens are refilled continuously up to the burst size. Consuming more tokens than available is
+ * allowed, the debt is paid off before new tokens become available.
+ */
+public class TokenBucket {
+
+    private final long bytesPerSecond;
+
+    private final long burst;
+
+    private double tokens;
+
+    private long refilledNanos;
+
+    public TokenBucket(long bytesPerSecond, long burst) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledNanos = System.nanoTime();
+    }
+
+    public synchronized boolean hasTokens() {
+        refill();
+        return tokens > 0;
+    }
+
+    public synchronized void consume(long bytes) {
+        refill();
+        tokens -= bytes;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledNanos) * bytesPerSecond / (double) TimeUnit.SECONDS.toNanos(1));
+        refilledNanos = now;
+    }
+}
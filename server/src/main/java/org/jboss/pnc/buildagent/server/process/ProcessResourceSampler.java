@@ -0,0 +1,294 @@
+package org.jboss.pnc.buildagent.server.process;
+
+import org.jboss.pnc.buildagent.api.ResourceUsage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Samples the resources used by a process and all its descendants from the proc file system. A sample reads the stat
+ * file of every process to find the tree, then the status and io files of the processes in the tree.
+ *
+ * The CPU time of a process includes its waited for children, so the CPU time of the processes which exited is not
+ * lost as long as their parent is in the tree. The storage IO is accounted per process, the last sampled value of
+ * every process seen is kept. The peaks are the highest values of the whole tree among the samples.
+ *
+ * Not thread safe, samples are taken by a single thread.
+ */
+public class ProcessResourceSampler {
+
+    /**
+     * USER_HZ, the unit of the CPU times in the stat files, it is 100 on all the supported architectures.
+     */
+    static final long CLOCK_TICKS_PER_SECOND = 100;
+
+    private final Path procRoot;
+
+    private final long rootPid;
+
+    /**
+     * Last IO of every process seen in the tree, keyed by the pid and the start time so a reused pid is not mixed up.
+     */
+    private final Map<String, long[]> processIo = new HashMap<>();
+
+    private long cpuTimeMillis;
+    private long peakRssBytes;
+    private int peakThreads;
+    private int samples;
+
+    public ProcessResourceSampler(Path procRoot, long rootPid) {
+        this.procRoot = procRoot;
+        this.rootPid = rootPid;
+    }
+
+    /**
+     * @return the current usage of the process tree, no processes when the root process is gone
+     */
+    public Sample sample() {
+        Map<Long, ProcessStat> stats = readStats();
+        Map<Long, List<Long>> children = new HashMap<>();
+        for (ProcessStat stat : stats.values()) {
+            children.computeIfAbsent(stat.ppid, ppid -> new ArrayList<>()).add(stat.pid);
+        }
+
+        long cpuTicks = 0;
+        long rssBytes = 0;
+        int threads = 0;
+        int processes = 0;
+        Deque<Long> pending = new ArrayDeque<>();
+        if (stats.containsKey(rootPid)) {
+            pending.add(rootPid);
+        }
+        while (!pending.isEmpty()) {
+            ProcessStat stat = stats.get(pending.poll());
+            pending.addAll(children.getOrDefault(stat.pid, new ArrayList<>()));
+            processes++;
+            cpuTicks += stat.cpuTicks;
+            threads += stat.threads;
+            rssBytes += readRssBytes(stat.pid);
+            long[] processIo = readIo(stat.pid);
+            if (processIo != null) {
+                this.processIo.put(stat.pid + ":" + stat.startTime, processIo);
+            }
+        }
+
+        long[] io = getTotalIo();
+        if (processes > 0) {
+            samples++;
+            //the CPU time of a child is lost between its exit and the wait of its parent
+            cpuTimeMillis = Math.max(cpuTimeMillis, cpuTicks * 1000 / CLOCK_TICKS_PER_SECOND);
+            peakRssBytes = Math.max(peakRssBytes, rssBytes);
+            peakThreads = Math.max(peakThreads, threads);
+        }
+        return new Sample(System.currentTimeMillis(), cpuTimeMillis, rssBytes, threads, processes, io[0], io[1]);
+    }
+
+    public ResourceUsage getUsage() {
+        long[] io = getTotalIo();
+        return ResourceUsage.newBuilder()
+                .cpuTimeMillis(cpuTimeMillis)
+                .peakRssBytes(peakRssBytes)
+                .peakThreads(peakThreads)
+                .readBytes(io[0])
+                .writeBytes(io[1])
+                .samples(samples)
+                .build();
+    }
+
+    private long[] getTotalIo() {
+        long[] total = new long[2];
+        for (long[] io : processIo.values()) {
+            total[0] += io[0];
+            total[1] += io[1];
+        }
+        return total;
+    }
+
+    private Map<Long, ProcessStat> readStats() {
+        Map<Long, ProcessStat> stats = new HashMap<>();
+        try (DirectoryStream<Path> processes = Files.newDirectoryStream(procRoot, ProcessResourceSampler::isPid)) {
+            for (Path process : processes) {
+                String stat = read(process.resolve("stat"));
+                if (stat != null) {
+                    ProcessStat parsed = ProcessStat.parse(stat);
+                    if (parsed != null) {
+                        stats.put(parsed.pid, parsed);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            //the proc file system is not available, there is nothing to sample
+        }
+        return stats;
+    }
+
+    private static boolean isPid(Path path) {
+        String name = path.getFileName().toString();
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long readRssBytes(long pid) {
+        String status = read(procRoot.resolve(Long.toString(pid)).resolve("status"));
+        if (status == null) {
+            return 0;
+        }
+        for (String line : status.split("\n")) {
+            if (line.startsWith("VmRSS:")) {
+                //the value is in kB
+                return parseLong(line.substring("VmRSS:".length()).replace("kB", "").trim()) * 1024;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return read and written storage bytes, null when the io file cannot be read
+     */
+    private long[] readIo(long pid) {
+        String io = read(procRoot.resolve(Long.toString(pid)).resolve("io"));
+        if (io == null) {
+            return null;
+        }
+        long[] readWrite = new long[2];
+        for (String line : io.split("\n")) {
+            if (line.startsWith("read_bytes:")) {
+                readWrite[0] = parseLong(line.substring("read_bytes:".length()).trim());
+            } else if (line.startsWith("write_bytes:")) {
+                readWrite[1] = parseLong(line.substring("write_bytes:".length()).trim());
+            }
+        }
+        return readWrite;
+    }
+
+    /**
+     * @return null when the process exited or the file is not accessible
+     */
+    private static String read(Path path) {
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static class ProcessStat {
+        final long pid;
+        final long ppid;
+        final long cpuTicks;
+        final int threads;
+        final long startTime;
+
+        private ProcessStat(long pid, long ppid, long cpuTicks, int threads, long startTime) {
+            this.pid = pid;
+            this.ppid = ppid;
+            this.cpuTicks = cpuTicks;
+            this.threads = threads;
+            this.startTime = startTime;
+        }
+
+        /**
+         * The command name in the parentheses may contain spaces and parentheses, the fields are counted from the
+         * last closing one.
+         *
+         * @return null when the line cannot be parsed
+         */
+        static ProcessStat parse(String stat) {
+            int commandEnd = stat.lastIndexOf(')');
+            if (commandEnd < 0) {
+                return null;
+            }
+            String[] fields = stat.substring(commandEnd + 1).trim().split(" ");
+            if (fields.length < 20) {
+                return null;
+            }
+            try {
+                long pid = Long.parseLong(stat.substring(0, stat.indexOf(' ')));
+                //fields 3 (state) and further, see proc(5)
+                long ppid = Long.parseLong(fields[1]);
+                long cpuTicks = Long.parseLong(fields[11]) + Long.parseLong(fields[12])
+                        + Long.parseLong(fields[13]) + Long.parseLong(fields[14]);
+                int threads = Integer.parseInt(fields[17]);
+                long startTime = Long.parseLong(fields[19]);
+                return new ProcessStat(pid, ppid, cpuTicks, threads, startTime);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Usage of the process tree at the sample time.
+     */
+    public static class Sample {
+        private final long timestamp;
+        private final long cpuTimeMillis;
+        private final long rssBytes;
+        private final int threads;
+        private final int processes;
+        private final long readBytes;
+        private final long writeBytes;
+
+        Sample(long timestamp, long cpuTimeMillis, long rssBytes, int threads, int processes, long readBytes, long writeBytes) {
+            this.timestamp = timestamp;
+            this.cpuTimeMillis = cpuTimeMillis;
+            this.rssBytes = rssBytes;
+            this.threads = threads;
+            this.processes = processes;
+            this.readBytes = readBytes;
+            this.writeBytes = writeBytes;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public long getCpuTimeMillis() {
+            return cpuTimeMillis;
+        }
+
+        public long getRssBytes() {
+            return rssBytes;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public int getProcesses() {
+            return processes;
+        }
+
+        public long getReadBytes() {
+            return readBytes;
+        }
+
+        public long getWriteBytes() {
+            return writeBytes;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.jboss.pnc.buildagent.server.process;
+
+import org.jboss.pnc.buildagent.api.ResourceUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.OptionalLong;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Samples the resources of a single task process periodically, from the start of the process until the task is
+ * completed. A process is monitored once, a monitor is created for every task.
+ */
+public class ResourceMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ResourceMonitor.class);
+
+    private final ScheduledExecutorService executor;
+
+    private final Path procRoot;
+
+    private final long intervalMillis;
+
+    private final Consumer<ProcessResourceSampler.Sample> sampleListener;
+
+    private ProcessResourceSampler sampler;
+
+    private ScheduledFuture<?> sampling;
+
+    /**
+     * @param intervalMillis time between two samples, 0 disables the sampling
+     * @param sampleListener receives every sample taken while the process is running, on the executor thread
+     */
+    ResourceMonitor(
+            ScheduledExecutorService executor,
+            Path procRoot,
+            long intervalMillis,
+            Consumer<ProcessResourceSampler.Sample> sampleListener) {
+        this.executor = executor;
+        this.procRoot = procRoot;
+        this.intervalMillis = intervalMillis;
+        this.sampleListener = sampleListener;
+    }
+
+    /**
+     * Starts the sampling of the process and its descendants, nothing is sampled when the pid of the process is not
+     * available.
+     */
+    public synchronized void start(Process process) {
+        if (intervalMillis <= 0 || process == null || sampler != null) {
+            return;
+        }
+        OptionalLong pid = getPid(process);
+        if (!pid.isPresent()) {
+            return;
+        }
+        sampler = new ProcessResourceSampler(procRoot, pid.getAsLong());
+        sampling = executor.scheduleAtFixedRate(this::sample, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void sample() {
+        if (sampler == null) {
+            return;
+        }
+        ProcessResourceSampler.Sample sample = sampler.sample();
+        if (sample.getProcesses() > 0) {
+            sampleListener.accept(sample);
+        }
+    }
+
+    /**
+     * Stops the sampling, the usage covers the samples taken until the process exited.
+     *
+     * @return null when the process was not sampled
+     */
+    public synchronized ResourceUsage stop() {
+        if (sampler == null) {
+            return null;
+        }
+        sampling.cancel(false);
+        ResourceUsage usage = sampler.getUsage();
+        sampler = null;
+        return usage;
+    }
+
+    /**
+     * Process#pid() is not available on Java 8, the pid field of the process implementation is read instead.
+     */
+    static OptionalLong getPid(Process process) {
+        try {
+            Method pid = Process.class.getMethod("pid");
+            return OptionalLong.of((Long) pid.invoke(process));
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            //Java 8
+        }
+        try {
+            Field pid = process.getClass().getDeclaredField("pid");
+            pid.setAccessible(true);
+            return OptionalLong.of(pid.getInt(process));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Cannot get the pid of {}.", process, e);
+            return OptionalLong.empty();
+        }
+    }
+}
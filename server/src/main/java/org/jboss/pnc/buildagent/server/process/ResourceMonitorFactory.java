@@ -0,0 +1,54 @@
+package org.jboss.pnc.buildagent.server.process;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Creates the {@link ResourceMonitor}s of the tasks, all the monitors take the samples on a shared executor.
+ */
+public class ResourceMonitorFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(ResourceMonitorFactory.class);
+
+    public static final long DEFAULT_SAMPLE_INTERVAL_MILLIS = 1000;
+
+    private static final Path PROC_ROOT = Paths.get("/proc");
+
+    private final ScheduledExecutorService executor;
+
+    private final long intervalMillis;
+
+    private final boolean streamSamples;
+
+    /**
+     * @param intervalMillis time between two samples, 0 disables the sampling
+     * @param streamSamples true to send the samples to the status update listeners
+     */
+    public ResourceMonitorFactory(ScheduledExecutorService executor, long intervalMillis, boolean streamSamples) {
+        this.executor = executor;
+        this.streamSamples = streamSamples;
+        if (intervalMillis > 0 && !Files.isDirectory(PROC_ROOT)) {
+            log.info("Process resources are not sampled, {} is not available.", PROC_ROOT);
+            this.intervalMillis = 0;
+        } else {
+            this.intervalMillis = intervalMillis;
+        }
+    }
+
+    public ResourceMonitor create() {
+        return new ResourceMonitor(executor, PROC_ROOT, intervalMillis, sample -> {});
+    }
+
+    /**
+     * @param sampleListener receives the samples when the streaming is enabled
+     */
+    public ResourceMonitor create(Consumer<ProcessResourceSampler.Sample> sampleListener) {
+        return new ResourceMonitor(executor, PROC_ROOT, intervalMillis, streamSamples ? sampleListener : sample -> {});
+    }
+}
@@ -0,0 +1,37 @@
+package org.jboss.pnc.buildagent.server.servlet;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import org.jboss.pnc.buildagent.server.httpinvoker.CommandCache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counters of the {@link CommandCache}, an empty object when the cache is disabled.
+ */
+public class CommandCacheStatsHandler implements HttpHandler {
+
+    private final CommandCache commandCache;
+
+    /**
+     * @param commandCache null when the cache is disabled
+     */
+    public CommandCacheStatsHandler(CommandCache commandCache) {
+        this.commandCache = commandCache;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        Map<String, Object> stats = new HashMap<>();
+        if (commandCache != null) {
+            stats.put("hits", commandCache.getHits());
+            stats.put("misses", commandCache.getMisses());
+            long lookups = commandCache.getHits() + commandCache.getMisses();
+            stats.put("hitRate", lookups == 0 ? 0.0 : (double) commandCache.getHits() / lookups);
+            stats.put("stored", commandCache.getStored());
+            stats.put("evicted", commandCache.getEvicted());
+        }
+        HandlerSupport.sendJson(exchange, stats);
+    }
+}
@@ -0,0 +1,44 @@
+package org.jboss.pnc.buildagent.server.servlet;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.undertow.server.HttpServerExchange;
+
+import java.util.Deque;
+
+/**
+ * Request parsing and JSON responses shared by the http handlers of the agent.
+ */
+public final class HandlerSupport {
+
+    /**
+     * Shared by all the handlers, the mapper is thread safe once configured.
+     */
+    public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private HandlerSupport() {
+    }
+
+    public static void sendJson(HttpServerExchange exchange, Object value) throws JsonProcessingException {
+        exchange.getResponseSender().send(OBJECT_MAPPER.writeValueAsString(value));
+    }
+
+    /**
+     * @return the first value of the parameter, null when it is missing or empty
+     */
+    public static String getQueryParameter(HttpServerExchange exchange, String name) {
+        Deque<String> values = exchange.getQueryParameters().get(name);
+        if (values == null || values.isEmpty() || values.getFirst().isEmpty()) {
+            return null;
+        }
+        return values.getFirst();
+    }
+
+    /**
+     * @throws NumberFormatException when the value is not a number
+     */
+    public static long getLongQueryParameter(HttpServerExchange exchange, String name, long defaultValue) {
+        String value = getQueryParameter(exchange, name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+}
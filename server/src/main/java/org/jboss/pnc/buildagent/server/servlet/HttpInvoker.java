@@ -7,19 +7,28 @@ import io.termd.core.pty.Status;
 import org.jboss.pnc.api.constants.HttpHeaders;
 import org.jboss.pnc.api.dto.HeartbeatConfig;
 import org.jboss.pnc.api.dto.Request;
+import org.jboss.pnc.buildagent.api.OutputSegments;
+import org.jboss.pnc.buildagent.api.ResourceUsage;
 import org.jboss.pnc.buildagent.api.TaskStatusUpdateEvent;
+import org.jboss.pnc.buildagent.api.httpinvoke.CacheConfig;
 import org.jboss.pnc.buildagent.api.httpinvoke.Cancel;
+import org.jboss.pnc.buildagent.api.httpinvoke.ExecutionMode;
 import org.jboss.pnc.buildagent.api.httpinvoke.InvokeRequest;
 import org.jboss.pnc.buildagent.api.httpinvoke.InvokeResponse;
 import org.jboss.pnc.buildagent.api.httpinvoke.RetryConfig;
-import org.jboss.pnc.buildagent.common.Arrays;
 import org.jboss.pnc.buildagent.common.http.HeartbeatSender;
 import org.jboss.pnc.buildagent.common.http.HttpClient;
 import org.jboss.pnc.buildagent.common.security.KeycloakClient;
-import org.jboss.pnc.buildagent.common.security.Md5;
 import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+import org.jboss.pnc.buildagent.server.httpinvoker.CacheReplay;
+import org.jboss.pnc.buildagent.server.httpinvoker.CommandCache;
 import org.jboss.pnc.buildagent.server.httpinvoker.CommandSession;
+import org.jboss.pnc.buildagent.server.httpinvoker.PipeProcess;
 import org.jboss.pnc.buildagent.server.httpinvoker.SessionRegistry;
+import org.jboss.pnc.buildagent.server.httpinvoker.ShellPool;
+import org.jboss.pnc.buildagent.server.output.OutputFanOutFactory;
+import org.jboss.pnc.buildagent.server.process.ResourceMonitor;
+import org.jboss.pnc.buildagent.server.process.ResourceMonitorFactory;
 import org.jboss.pnc.buildagent.server.termserver.StatusConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,11 +38,10 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.security.NoSuchAlgorithmException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -56,10 +64,18 @@ public class HttpInvoker extends HttpServlet {
     private final RetryConfig retryConfig;
     private final HeartbeatSender heartbeat;
 
-    private final Md5 stdoutChecksum;
-
     private final KeycloakClient keycloakClient;
 
+    private final OutputFanOutFactory outputFanOutFactory;
+
+    private final ShellPool shellPool;
+
+    /**
+     * Null when the command cache is disabled.
+     */
+    private final CommandCache commandCache;
+
+    private final ResourceMonitorFactory resourceMonitorFactory;
 
     public HttpInvoker(
             Set<ReadOnlyChannel> readOnlyChannels,
@@ -67,15 +83,21 @@ public class HttpInvoker extends HttpServlet {
             HttpClient httpClient,
             RetryConfig retryConfig,
             HeartbeatSender heartbeat,
-            KeycloakClient keycloakClient)
-            throws NoSuchAlgorithmException {
+            KeycloakClient keycloakClient,
+            OutputFanOutFactory outputFanOutFactory,
+            ShellPool shellPool,
+            CommandCache commandCache,
+            ResourceMonitorFactory resourceMonitorFactory) {
         this.readOnlyChannels = readOnlyChannels;
         this.sessionRegistry = sessionRegistry;
         this.httpClient = httpClient;
         this.retryConfig = retryConfig;
         this.heartbeat = heartbeat;
-        this.stdoutChecksum = new Md5();
         this.keycloakClient = keycloakClient;
+        this.outputFanOutFactory = outputFanOutFactory;
+        this.shellPool = shellPool;
+        this.commandCache = commandCache;
+        this.resourceMonitorFactory = resourceMonitorFactory;
     }
 
     @Override
@@ -84,8 +106,7 @@ public class HttpInvoker extends HttpServlet {
         Optional<CommandSession> commandSession = sessionRegistry.get(cancelRequest.getSessionId());
 
         if (commandSession.isPresent()) {
-            PtyMaster ptyMaster = commandSession.get().getPtyMaster();
-            ptyMaster.interruptProcess(); //onComplete is called when the process is interrupted
+            commandSession.get().interruptProcess(); //onComplete is called when the process is interrupted
             response.setStatus(200);
         } else {
             response.setStatus(204);
@@ -99,8 +120,23 @@ public class HttpInvoker extends HttpServlet {
         InvokeRequest invokeRequest = objectMapper.readValue(requestString, InvokeRequest.class);
 
         String command = invokeRequest.getCommand();
+        CacheConfig cacheConfig = invokeRequest.getCacheConfig();
+        Optional<String> cacheKey = getCacheKey(invokeRequest);
+        Optional<CommandCache.Entry> cached = cacheKey.flatMap(key -> commandCache.get(key));
 
-        CommandSession commandSession = new CommandSession(readOnlyChannels);
+        CommandSession commandSession;
+        try {
+            commandSession = new CommandSession(
+                    readOnlyChannels,
+                    outputFanOutFactory,
+                    invokeRequest.getOutputChecksumAlgorithm());
+        } catch (IllegalArgumentException e) {
+            cached.ifPresent(CommandCache.Entry::close);
+            logger.warn("Rejecting the request: {}", e.getMessage());
+            response.setStatus(400);
+            response.getWriter().write(e.getMessage());
+            return;
+        }
         String sessionId = commandSession.getSessionId();
 
         HeartbeatConfig heartbeatConfig = invokeRequest.getHeartbeatConfig();
@@ -111,45 +147,134 @@ public class HttpInvoker extends HttpServlet {
             heartbeatFuture = Optional.empty();
         }
 
-        PtyMaster ptyMaster = new PtyMaster(command, stdOut -> handleOutput(commandSession, stdOut), (nul) -> {});
-        ptyMaster.setChangeHandler((oldStatus, newStatus) -> {
+        ResourceMonitor resourceMonitor = resourceMonitorFactory.create();
+        BiConsumer<Status, Status> onStatusChange = (oldStatus, newStatus) -> {
+            if (Status.RUNNING.equals(newStatus)) {
+                resourceMonitor.start(commandSession.getProcess());
+            }
             if (newStatus.isFinal()) {
-                onComplete(commandSession, newStatus, invokeRequest.getCallback());
+                onComplete(commandSession, newStatus, invokeRequest.getCallback(), resourceMonitor.stop());
                 heartbeatFuture.ifPresent(heartbeat::stop);
             }
-        });
-        commandSession.setPtyMaster(ptyMaster);
-        sessionRegistry.put(commandSession);
+        };
+        if (cached.isPresent()) {
+            logger.info("Completing session {} from the command cache.", sessionId);
+            CacheReplay cacheReplay = new CacheReplay(
+                    cached.get(),
+                    cacheConfig.getOutputs(),
+                    commandSession::handleOutput,
+                    OutputFanOutFactory.CHUNK_SIZE);
+            cacheReplay.setChangeHandler(onStatusChange);
+            commandSession.setCacheReplay(cacheReplay);
+            sessionRegistry.put(commandSession);
 
-        ptyMaster.start();
+            cacheReplay.start();
+        } else if (ExecutionMode.PROCESS.equals(invokeRequest.getExecutionMode())) {
+            cacheKey.ifPresent(key -> recordForCache(commandSession, key, cacheConfig));
+            PipeProcess pipeProcess = new PipeProcess(
+                    command,
+                    commandSession::handleOutput,
+                    OutputFanOutFactory.CHUNK_SIZE,
+                    shellPool);
+            pipeProcess.setChangeHandler(onStatusChange);
+            commandSession.setPipeProcess(pipeProcess);
+            sessionRegistry.put(commandSession);
+
+            pipeProcess.start();
+        } else {
+            cacheKey.ifPresent(key -> recordForCache(commandSession, key, cacheConfig));
+            PtyMaster ptyMaster = new PtyMaster(command, commandSession::handleOutput, (nul) -> {});
+            ptyMaster.setChangeHandler(onStatusChange);
+            commandSession.setPtyMaster(ptyMaster);
+            sessionRegistry.put(commandSession);
+
+            ptyMaster.start();
+        }
 
         //write response
         InvokeResponse invokeResponse = new InvokeResponse(sessionId);
         response.getWriter().write(objectMapper.writeValueAsString(invokeResponse));
     }
 
-    private void handleOutput(CommandSession commandSession, int[] stdOut) {
-        byte[] buffer = Arrays.charIntstoBytes(stdOut, StandardCharsets.UTF_8);
-        stdoutChecksum.add(buffer);
-        commandSession.handleOutput(buffer);
+    /**
+     * @return empty when the command is not cacheable or the inputs cannot be read
+     */
+    private Optional<String> getCacheKey(InvokeRequest invokeRequest) {
+        if (commandCache == null || invokeRequest.getCacheConfig() == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(commandCache.getKey(
+                    invokeRequest.getCommand(),
+                    invokeRequest.getExecutionMode(),
+                    invokeRequest.getCacheConfig()));
+        } catch (IOException e) {
+            logger.warn("Cannot fingerprint the command inputs, the command is executed without the cache.", e);
+            return Optional.empty();
+        }
+    }
+
+    private void recordForCache(CommandSession commandSession, String cacheKey, CacheConfig cacheConfig) {
+        try {
+            commandSession.setCacheRecording(commandCache.record(cacheKey, cacheConfig.getOutputs()));
+        } catch (IOException e) {
+            logger.warn("Cannot record the output, the result will not be cached.", e);
+        }
+    }
+
+    private void storeCacheResult(CommandSession commandSession, Status status) {
+        CommandCache.Recording recording = commandSession.getCacheRecording();
+        if (recording == null) {
+            return;
+        }
+        try {
+            if (Status.COMPLETED.equals(status)) {
+                recording.store();
+            } else {
+                recording.discard();
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot store the result in the command cache.", e);
+        }
     }
 
-    private void onComplete(CommandSession commandSession, Status newStatus, Request callback) {
+    /**
+     * @param resourceUsage null when the resources of the process were not sampled
+     */
+    private void onComplete(
+            CommandSession commandSession,
+            Status newStatus,
+            Request callback,
+            ResourceUsage resourceUsage) {
         TaskStatusUpdateEvent.Builder updateEventBuilder = TaskStatusUpdateEvent.newBuilder();
         updateEventBuilder.context(callback.getAttachment());
         try {
-            String digest = stdoutChecksum.digest();
+            String digest = commandSession.getStdoutChecksum();
+            OutputSegments outputSegments = commandSession.getOutputSegments();
+            if (outputSegments != null) {
+                outputFanOutFactory.getOutputSegments().put(commandSession.getSessionId(), outputSegments);
+            }
             commandSession.close();
+            storeCacheResult(commandSession, newStatus);
             updateEventBuilder
                     .taskId(commandSession.getSessionId())
                     .newStatus(StatusConverter.fromTermdStatus(newStatus))
-                    .outputChecksum(digest);
+                    .outputChecksum(digest)
+                    .outputChecksumAlgorithm(commandSession.getStdoutChecksumAlgorithm())
+                    .outputSegments(outputSegments)
+                    .suppressedOutputBytes(commandSession.getSuppressedOutputBytes())
+                    .suppressedOutputLines(commandSession.getSuppressedOutputLines())
+                    .cacheHit(commandSession.getCacheReplay() != null)
+                    .resourceUsage(resourceUsage)
+                    .buildPhases(commandSession.getBuildPhases());
         } catch (IOException e) {
+            storeCacheResult(commandSession, Status.FAILED);
             updateEventBuilder
                     .taskId(commandSession.getSessionId())
                     .newStatus(org.jboss.pnc.buildagent.api.Status.SYSTEM_ERROR)
                     .message("Unable to flush stdout: " + e.getMessage());
         }
+        sessionRegistry.remove(commandSession.getSessionId());
 
         //notify completion via callback
         try {
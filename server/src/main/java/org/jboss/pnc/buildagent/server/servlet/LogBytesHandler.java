@@ -0,0 +1,241 @@
+package org.jboss.pnc.buildagent.server.servlet;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.SameThreadExecutor;
+import org.jboss.pnc.buildagent.server.IoFileLogger;
+import org.jboss.pnc.buildagent.server.logstore.CompressedBlocks;
+import org.jboss.pnc.buildagent.server.logstore.CompressedLogFile;
+import org.jboss.pnc.buildagent.server.logstore.LogRegion;
+import org.jboss.pnc.buildagent.server.logstore.LogWaiters;
+import org.jboss.pnc.buildagent.server.logstore.ReadableLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.channels.Channels;
+import org.xnio.channels.StreamSinkChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+import static org.jboss.pnc.buildagent.api.Constants.LOG_END_OFFSET_HEADER;
+import static org.jboss.pnc.buildagent.api.Constants.LOG_START_OFFSET_HEADER;
+
+/**
+ * Bytes of the file log by offset. The bytes are transferred from the files on a worker thread, the response channel
+ * uses sendfile when it can. A waiting request does not hold a thread, it is completed by the writer of the log or by
+ * the timeout. The blocks of a compressed log are sent as they are when the client accepts their content encoding,
+ * otherwise the range is decompressed.
+ */
+public class LogBytesHandler implements HttpHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(LogBytesHandler.class);
+
+    /**
+     * Longest wait of a log read for new output, the client repeats the request to wait longer.
+     */
+    static final long MAX_LOG_WAIT_MILLIS = 60000;
+
+    /**
+     * Most bytes of a compressed log decompressed for a single read, the client continues from the end offset.
+     */
+    static final long MAX_DECOMPRESSED_LOG_READ = 16 * 1024 * 1024;
+
+    private final Optional<IoFileLogger> fileLogger;
+
+    private final LogWaiters logWaiters;
+
+    /**
+     * @param fileLogger empty when the file log is not enabled
+     * @param logWaiters completes the waiting requests, notified by the file logger
+     */
+    public LogBytesHandler(Optional<IoFileLogger> fileLogger, LogWaiters logWaiters) {
+        this.fileLogger = fileLogger;
+        this.logWaiters = logWaiters;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!fileLogger.isPresent()) {
+            exchange.setStatusCode(404);
+            exchange.getResponseSender().send("The file log is not enabled.");
+            return;
+        }
+        long offset;
+        long limit;
+        long waitMillis;
+        try {
+            offset = HandlerSupport.getLongQueryParameter(exchange, "offset", 0);
+            limit = HandlerSupport.getLongQueryParameter(exchange, "limit", Long.MAX_VALUE);
+            waitMillis = Math.min(HandlerSupport.getLongQueryParameter(exchange, "wait", 0), MAX_LOG_WAIT_MILLIS);
+        } catch (NumberFormatException e) {
+            exchange.setStatusCode(400);
+            exchange.getResponseSender().send("Invalid number: " + e.getMessage());
+            return;
+        }
+        if (offset < 0 || limit < 0 || waitMillis < 0) {
+            exchange.setStatusCode(400);
+            exchange.getResponseSender().send("The offset, limit and wait must not be negative.");
+            return;
+        }
+        String sessionId = HandlerSupport.getQueryParameter(exchange, "sessionId");
+        Optional<CompressedLogFile> compressedLog = fileLogger.get().getCompressedLog();
+        LongSupplier endOffset;
+        Runnable send;
+        if (sessionId == null && compressedLog.isPresent()) {
+            CompressedLogFile logFile = compressedLog.get();
+            endOffset = logFile::getEndOffset;
+            send = () -> sendCompressedLog(exchange, logFile, offset, limit);
+        } else {
+            Optional<ReadableLog> readableLog = fileLogger.get().getReadableLog(sessionId);
+            if (!readableLog.isPresent()) {
+                ResponseCodeHandler.HANDLE_404.handleRequest(exchange);
+                return;
+            }
+            ReadableLog logFile = readableLog.get();
+            endOffset = logFile::getEndOffset;
+            send = () -> sendLogBytes(exchange, logFile, offset, limit);
+        }
+        if (waitMillis > 0 && endOffset.getAsLong() <= offset) {
+            exchange.dispatch(SameThreadExecutor.INSTANCE, () -> logWaiters.await(
+                    endOffset,
+                    offset,
+                    waitMillis,
+                    () -> exchange.dispatch(send)));
+        } else {
+            exchange.dispatch(send);
+        }
+    }
+
+    private void sendCompressedLog(HttpServerExchange exchange, CompressedLogFile logFile, long offset, long limit) {
+        long end = logFile.getEndOffset();
+        if (offset > end) {
+            sendOffsetNotSatisfiable(exchange, end);
+            return;
+        }
+        String contentEncoding = logFile.getCodec().getContentEncoding();
+        try {
+            if (contentEncoding != null && acceptsEncoding(exchange, contentEncoding)) {
+                try (CompressedBlocks blocks = logFile.openBlocks(offset, limit)) {
+                    exchange.getResponseHeaders().put(Headers.CONTENT_ENCODING, contentEncoding);
+                    writeLogResponse(
+                            exchange,
+                            blocks.getStartOffset(),
+                            blocks.getEndOffset(),
+                            blocks.getLength(),
+                            blocks.getHeader(),
+                            blocks.getRegions(),
+                            blocks.getEnd());
+                }
+            } else {
+                long length = Math.min(Math.min(end - offset, limit), MAX_DECOMPRESSED_LOG_READ);
+                ByteBuffer bytes = logFile.read(offset, length);
+                writeLogResponse(exchange, offset, offset + length, length, null, Collections.emptyList(), bytes);
+            }
+        } catch (IOException e) {
+            log.error("Cannot send the compressed log.", e);
+            if (!exchange.isResponseStarted()) {
+                exchange.setStatusCode(500);
+            }
+        } finally {
+            exchange.endExchange();
+        }
+    }
+
+    private boolean acceptsEncoding(HttpServerExchange exchange, String encoding) {
+        HeaderValues accepted = exchange.getRequestHeaders().get(Headers.ACCEPT_ENCODING);
+        if (accepted == null) {
+            return false;
+        }
+        for (String header : accepted) {
+            for (String value : header.split(",")) {
+                String[] parts = value.trim().split(";");
+                if (parts[0].trim().equalsIgnoreCase(encoding)) {
+                    return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+                }
+            }
+        }
+        return false;
+    }
+
+    private void sendOffsetNotSatisfiable(HttpServerExchange exchange, long end) {
+        exchange.setStatusCode(416);
+        exchange.getResponseHeaders().put(new HttpString(LOG_END_OFFSET_HEADER), end);
+        exchange.endExchange();
+    }
+
+    private void sendLogBytes(HttpServerExchange exchange, ReadableLog logFile, long offset, long limit) {
+        long start = Math.max(offset, logFile.getStartOffset());
+        long end = logFile.getEndOffset();
+        if (offset > end) {
+            sendOffsetNotSatisfiable(exchange, end);
+            return;
+        }
+        long length = Math.min(end - start, limit);
+        List<LogRegion> regions = Collections.emptyList();
+        try {
+            regions = logFile.open(start, length);
+            long available = regions.stream().mapToLong(LogRegion::getLength).sum();
+            // the oldest segments may be evicted meanwhile, the bytes missing are at the start
+            start += length - available;
+            writeLogResponse(exchange, start, start + available, available, null, regions, null);
+        } catch (IOException e) {
+            log.error("Cannot send the log bytes.", e);
+            if (!exchange.isResponseStarted()) {
+                exchange.setStatusCode(500);
+            }
+        } finally {
+            for (LogRegion region : regions) {
+                try {
+                    region.close();
+                } catch (IOException e) {
+                    log.warn("Cannot close the log file.", e);
+                }
+            }
+            exchange.endExchange();
+        }
+    }
+
+    /**
+     * @param startOffset offset of the first uncompressed byte
+     * @param endOffset offset after the last uncompressed byte
+     * @param length bytes of the body
+     * @param header sent before the regions, may be null
+     * @param bytes sent after the regions, may be null
+     */
+    private void writeLogResponse(
+            HttpServerExchange exchange,
+            long startOffset,
+            long endOffset,
+            long length,
+            ByteBuffer header,
+            List<LogRegion> regions,
+            ByteBuffer bytes) throws IOException {
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
+        exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, length);
+        exchange.getResponseHeaders().put(new HttpString(LOG_START_OFFSET_HEADER), startOffset);
+        exchange.getResponseHeaders().put(new HttpString(LOG_END_OFFSET_HEADER), endOffset);
+        StreamSinkChannel responseChannel = exchange.getResponseChannel();
+        if (header != null) {
+            Channels.writeBlocking(responseChannel, header);
+        }
+        // the headers are written first, with them pending the response copies the file through a buffer
+        // ignoring the position and the count
+        Channels.flushBlocking(responseChannel);
+        for (LogRegion region : regions) {
+            Channels.transferBlocking(responseChannel, region.getChannel(), region.getPosition(), region.getLength());
+        }
+        if (bytes != null) {
+            Channels.writeBlocking(responseChannel, bytes);
+        }
+        Channels.shutdownWritesBlocking(responseChannel);
+        Channels.flushBlocking(responseChannel);
+    }
+}
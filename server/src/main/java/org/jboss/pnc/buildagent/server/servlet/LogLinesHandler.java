@@ -0,0 +1,76 @@
+package org.jboss.pnc.buildagent.server.servlet;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import org.jboss.pnc.buildagent.server.logstore.CompressedLogFile;
+import org.jboss.pnc.buildagent.server.logstore.LineRange;
+import org.jboss.pnc.buildagent.server.logstore.LineReadableLog;
+
+import java.util.Optional;
+
+import static org.jboss.pnc.buildagent.api.Constants.LOG_FIRST_LINE_HEADER;
+import static org.jboss.pnc.buildagent.api.Constants.LOG_LINE_COUNT_HEADER;
+
+/**
+ * Lines of the file log. The lines are resolved with the line index and sent from a read only mapping of the file, or
+ * decompressed from the blocks holding them. A compressed log decompresses at most
+ * {@link LogBytesHandler#MAX_DECOMPRESSED_LOG_READ} bytes per request. The lines are read on a worker thread.
+ */
+public class LogLinesHandler implements HttpHandler {
+
+    private final Optional<LineReadableLog> lineLog;
+
+    /**
+     * @param lineLog empty when the lines of the file log are not indexed
+     */
+    public LogLinesHandler(Optional<LineReadableLog> lineLog) {
+        this.lineLog = lineLog;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!lineLog.isPresent()) {
+            exchange.setStatusCode(404);
+            exchange.getResponseSender().send("The lines of the file log are not indexed, it is neither mapped nor compressed.");
+            return;
+        }
+        if (exchange.isInIoThread()) {
+            //the line index and the log are read from the disk, compressed blocks are decompressed
+            exchange.dispatch(this);
+            return;
+        }
+        String tail = HandlerSupport.getQueryParameter(exchange, "tail");
+        String from = HandlerSupport.getQueryParameter(exchange, "from");
+        String to = HandlerSupport.getQueryParameter(exchange, "to");
+        LineRange range;
+        try {
+            if (tail != null) {
+                range = lineLog.get().tail(Long.parseLong(tail));
+            } else if (from != null) {
+                range = lineLog.get().getLines(Long.parseLong(from), to == null ? Long.MAX_VALUE : Long.parseLong(to));
+            } else {
+                exchange.setStatusCode(400);
+                exchange.getResponseSender().send("Missing tail or from parameter.");
+                return;
+            }
+        } catch (NumberFormatException e) {
+            exchange.setStatusCode(400);
+            exchange.getResponseSender().send("Invalid line number: " + e.getMessage());
+            return;
+        }
+        long maxLength = lineLog.get() instanceof CompressedLogFile
+                ? LogBytesHandler.MAX_DECOMPRESSED_LOG_READ
+                : Integer.MAX_VALUE;
+        if (range.getLength() > maxLength) {
+            exchange.setStatusCode(413);
+            exchange.getResponseSender().send("Requested lines take " + range.getLength() + " bytes, at most " + maxLength + " bytes can be read, request fewer lines.");
+            return;
+        }
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
+        exchange.getResponseHeaders().put(new HttpString(LOG_FIRST_LINE_HEADER), range.getFirstLine());
+        exchange.getResponseHeaders().put(new HttpString(LOG_LINE_COUNT_HEADER), range.getTotalLines());
+        exchange.getResponseSender().send(lineLog.get().read(range));
+    }
+}
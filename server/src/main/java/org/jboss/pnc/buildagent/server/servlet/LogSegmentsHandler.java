@@ -0,0 +1,53 @@
+package org.jboss.pnc.buildagent.server.servlet;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import org.jboss.pnc.buildagent.api.SessionLogLayout;
+import org.jboss.pnc.buildagent.server.logstore.SegmentedLogStore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Layout of the per session file log, the segments of a single session or the sessions and the disk usage of the
+ * store.
+ */
+public class LogSegmentsHandler implements HttpHandler {
+
+    private final Optional<SegmentedLogStore> sessionLogs;
+
+    /**
+     * @param sessionLogs empty when the file log is not per session
+     */
+    public LogSegmentsHandler(Optional<SegmentedLogStore> sessionLogs) {
+        this.sessionLogs = sessionLogs;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (!sessionLogs.isPresent()) {
+            exchange.setStatusCode(404);
+            exchange.getResponseSender().send("The file log is not per session.");
+            return;
+        }
+        SegmentedLogStore store = sessionLogs.get();
+        String sessionId = HandlerSupport.getQueryParameter(exchange, "sessionId");
+        if (sessionId == null) {
+            Map<String, Object> sessions = new HashMap<>();
+            sessions.put("sessions", store.getSessionIds());
+            sessions.put("totalBytes", store.getTotalBytes());
+            sessions.put("maxBytes", store.getMaxBytes());
+            sessions.put("evictedSegments", store.getEvictedSegments());
+            HandlerSupport.sendJson(exchange, sessions);
+            return;
+        }
+        Optional<SessionLogLayout> layout = store.getLayout(sessionId);
+        if (!layout.isPresent()) {
+            ResponseCodeHandler.HANDLE_404.handleRequest(exchange);
+            return;
+        }
+        HandlerSupport.sendJson(exchange, layout.get());
+    }
+}
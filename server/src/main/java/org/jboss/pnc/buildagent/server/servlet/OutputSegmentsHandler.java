@@ -0,0 +1,71 @@
+package org.jboss.pnc.buildagent.server.servlet;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import org.jboss.pnc.buildagent.api.Constants;
+import org.jboss.pnc.buildagent.api.OutputSegments;
+import org.jboss.pnc.buildagent.server.httpinvoker.CommandSession;
+import org.jboss.pnc.buildagent.server.httpinvoker.SessionRegistry;
+import org.jboss.pnc.buildagent.server.output.OutputSegmentsRegistry;
+import org.jboss.pnc.buildagent.server.termserver.Term;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Checksums of the output segments of a task. Completed tasks are looked up among the recently completed ones, running
+ * tasks return the segments completed so far.
+ */
+public class OutputSegmentsHandler implements HttpHandler {
+
+    private final Map<String, Term> terms;
+
+    private final SessionRegistry sessionRegistry;
+
+    private final OutputSegmentsRegistry outputSegments;
+
+    /**
+     * @param terms the running terms by their key, read on each request
+     */
+    public OutputSegmentsHandler(
+            Map<String, Term> terms,
+            SessionRegistry sessionRegistry,
+            OutputSegmentsRegistry outputSegments) {
+        this.terms = terms;
+        this.sessionRegistry = sessionRegistry;
+        this.outputSegments = outputSegments;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        String taskId = HandlerSupport.getQueryParameter(exchange, "taskId");
+        if (taskId == null) {
+            exchange.setStatusCode(400);
+            exchange.getResponseSender().send("Missing taskId parameter.");
+            return;
+        }
+        String context = HandlerSupport.getQueryParameter(exchange, "context");
+        Optional<OutputSegments> segments;
+        if (context == null) {
+            segments = outputSegments.get(taskId);
+            if (!segments.isPresent()) {
+                segments = sessionRegistry.get(taskId).map(CommandSession::getOutputSegmentsSnapshot);
+            }
+        } else {
+            String subSession = HandlerSupport.getQueryParameter(exchange, Constants.SUB_SESSION_PARAMETER);
+            String termKey = subSession == null ? context : context + Term.SUB_SESSION_SEPARATOR + subSession;
+            segments = outputSegments.get(OutputSegmentsRegistry.termKey(termKey, taskId));
+            if (!segments.isPresent()) {
+                segments = Optional.ofNullable(terms.get(termKey))
+                        .filter(term -> taskId.equals(term.getRunningTaskId()))
+                        .map(Term::getOutputSegmentsSnapshot);
+            }
+        }
+        if (!segments.isPresent()) {
+            ResponseCodeHandler.HANDLE_404.handleRequest(exchange);
+            return;
+        }
+        HandlerSupport.sendJson(exchange, segments.get());
+    }
+}
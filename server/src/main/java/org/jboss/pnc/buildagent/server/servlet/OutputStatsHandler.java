@@ -0,0 +1,68 @@
+package org.jboss.pnc.buildagent.server.servlet;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import org.jboss.pnc.buildagent.common.buffer.ByteBufferPool;
+import org.jboss.pnc.buildagent.server.httpinvoker.CommandSession;
+import org.jboss.pnc.buildagent.server.httpinvoker.SessionRegistry;
+import org.jboss.pnc.buildagent.server.output.ChannelStats;
+import org.jboss.pnc.buildagent.server.output.OutputFanOutFactory;
+import org.jboss.pnc.buildagent.server.output.OutputStages;
+import org.jboss.pnc.buildagent.server.termserver.Term;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delivery statistics of the output channels of the terms and the command sessions, of the shared buffer pool and of
+ * the output stages.
+ */
+public class OutputStatsHandler implements HttpHandler {
+
+    private final Map<String, Term> terms;
+
+    private final SessionRegistry sessionRegistry;
+
+    private final OutputFanOutFactory outputFanOutFactory;
+
+    private final OutputStages outputStages;
+
+    /**
+     * @param terms the running terms by their key, read on each request
+     */
+    public OutputStatsHandler(
+            Map<String, Term> terms,
+            SessionRegistry sessionRegistry,
+            OutputFanOutFactory outputFanOutFactory,
+            OutputStages outputStages) {
+        this.terms = terms;
+        this.sessionRegistry = sessionRegistry;
+        this.outputFanOutFactory = outputFanOutFactory;
+        this.outputStages = outputStages;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        Map<String, Object> stats = new HashMap<>();
+        Map<String, List<ChannelStats>> termStats = new HashMap<>();
+        terms.forEach((context, term) -> termStats.put(context, term.getOutputFanOut().getStats()));
+        stats.put("terms", termStats);
+        Map<String, List<ChannelStats>> sessionStats = new HashMap<>();
+        for (CommandSession session : sessionRegistry.getAll()) {
+            sessionStats.put(session.getSessionId(), session.getOutputFanOut().getStats());
+        }
+        stats.put("sessions", sessionStats);
+        ByteBufferPool bufferPool = outputFanOutFactory.getBufferPool();
+        Map<String, Object> poolStats = new HashMap<>();
+        poolStats.put("bufferSize", bufferPool.getBufferSize());
+        poolStats.put("available", bufferPool.getAvailable());
+        poolStats.put("allocated", bufferPool.getAllocated());
+        poolStats.put("reused", bufferPool.getReused());
+        poolStats.put("unpooled", bufferPool.getUnpooled());
+        poolStats.put("fallbacks", bufferPool.getFallbacks());
+        stats.put("bufferPool", poolStats);
+        stats.put("stages", outputStages.getStats());
+        HandlerSupport.sendJson(exchange, stats);
+    }
+}
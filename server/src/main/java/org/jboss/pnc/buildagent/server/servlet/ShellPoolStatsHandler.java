@@ -0,0 +1,41 @@
+package org.jboss.pnc.buildagent.server.servlet;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import org.jboss.pnc.buildagent.server.httpinvoker.ShellPool;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counters of the {@link ShellPool}, an empty object when the http invoker is disabled.
+ */
+public class ShellPoolStatsHandler implements HttpHandler {
+
+    private final ShellPool shellPool;
+
+    /**
+     * @param shellPool null when the http invoker is disabled
+     */
+    public ShellPoolStatsHandler(ShellPool shellPool) {
+        this.shellPool = shellPool;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        Map<String, Object> stats = new HashMap<>();
+        if (shellPool != null) {
+            stats.put("size", shellPool.getSize());
+            stats.put("idle", shellPool.getIdle());
+            stats.put("hits", shellPool.getHits());
+            stats.put("misses", shellPool.getMisses());
+            long claims = shellPool.getHits() + shellPool.getMisses();
+            stats.put("hitRate", claims == 0 ? 0.0 : (double) shellPool.getHits() / claims);
+            stats.put("discarded", shellPool.getDiscarded());
+            stats.put("averageSpawnMicros", TimeUnit.NANOSECONDS.toMicros(shellPool.getAverageSpawnNanos()));
+            stats.put("timeSavedMillis", shellPool.getTimeSavedMillis());
+        }
+        HandlerSupport.sendJson(exchange, stats);
+    }
+}
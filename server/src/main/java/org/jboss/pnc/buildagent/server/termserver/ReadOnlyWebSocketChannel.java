@@ -23,6 +23,7 @@ import io.undertow.websockets.core.WebSockets;
 import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
 
 import java.io.IOException;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
 /**
@@ -41,6 +42,17 @@ public class ReadOnlyWebSocketChannel implements ReadOnlyChannel {
         WebSockets.sendBinary(ByteBuffer.wrap(buffer), webSocketChannel, null);
     }
 
+    /**
+     * The message is sent asynchronously, the shared buffer is copied once so it can be recycled.
+     */
+    @Override
+    public void writeOutput(ByteBuffer buffer) {
+        ByteBuffer message = ByteBuffer.allocate(buffer.remaining());
+        message.put(buffer);
+        ((Buffer) message).flip();
+        WebSockets.sendBinary(message, webSocketChannel, null);
+    }
+
     @Override
     public boolean isPrimary() {
         return false;
@@ -27,6 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -47,6 +48,17 @@ public class ReadOnlyWebSocketTextChannel implements ReadOnlyChannel {
     public void writeOutput(byte[] buffer) {
         String string = new String(buffer, StandardCharsets.UTF_8);
         log.trace("Appending to message [{}], raw [{}]", string, buffer);
+        appendAndSend(string);
+    }
+
+    @Override
+    public void writeOutput(ByteBuffer buffer) {
+        String string = StandardCharsets.UTF_8.decode(buffer).toString();
+        log.trace("Appending to message [{}]", string);
+        appendAndSend(string);
+    }
+
+    private void appendAndSend(String string) {
         stringLiner.append(string);
         String line;
         while ((line = stringLiner.nextLine()) != null) {
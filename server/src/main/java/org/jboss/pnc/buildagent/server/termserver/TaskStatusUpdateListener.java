@@ -1,6 +1,9 @@
 package org.jboss.pnc.buildagent.server.termserver;
 
 import io.undertow.websockets.core.WebSocketChannel;
+import org.jboss.pnc.buildagent.api.BuildPhaseEvent;
+import org.jboss.pnc.buildagent.api.OutputMatchEvent;
+import org.jboss.pnc.buildagent.api.ResourceSampleEvent;
 import org.jboss.pnc.buildagent.api.TaskStatusUpdateEvent;
 
 import java.util.function.Consumer; /**
@@ -10,10 +13,35 @@ public class TaskStatusUpdateListener {
 
     private final Consumer<TaskStatusUpdateEvent> eventConsumer;
 
+    private final Consumer<OutputMatchEvent> outputMatchConsumer;
+
+    private final Consumer<ResourceSampleEvent> resourceSampleConsumer;
+
+    private final Consumer<BuildPhaseEvent> buildPhaseConsumer;
+
     private final WebSocketChannel webSocketChannel;
 
     public TaskStatusUpdateListener(Consumer<TaskStatusUpdateEvent> eventConsumer, WebSocketChannel webSocketChannel) {
+        this(eventConsumer, event -> {}, webSocketChannel);
+    }
+
+    public TaskStatusUpdateListener(
+            Consumer<TaskStatusUpdateEvent> eventConsumer,
+            Consumer<OutputMatchEvent> outputMatchConsumer,
+            WebSocketChannel webSocketChannel) {
+        this(eventConsumer, outputMatchConsumer, event -> {}, event -> {}, webSocketChannel);
+    }
+
+    public TaskStatusUpdateListener(
+            Consumer<TaskStatusUpdateEvent> eventConsumer,
+            Consumer<OutputMatchEvent> outputMatchConsumer,
+            Consumer<ResourceSampleEvent> resourceSampleConsumer,
+            Consumer<BuildPhaseEvent> buildPhaseConsumer,
+            WebSocketChannel webSocketChannel) {
         this.eventConsumer = eventConsumer;
+        this.outputMatchConsumer = outputMatchConsumer;
+        this.resourceSampleConsumer = resourceSampleConsumer;
+        this.buildPhaseConsumer = buildPhaseConsumer;
         this.webSocketChannel = webSocketChannel;
     }
 
@@ -21,6 +49,18 @@ public class TaskStatusUpdateListener {
         return eventConsumer;
     }
 
+    public Consumer<OutputMatchEvent> getOutputMatchConsumer() {
+        return outputMatchConsumer;
+    }
+
+    public Consumer<ResourceSampleEvent> getResourceSampleConsumer() {
+        return resourceSampleConsumer;
+    }
+
+    public Consumer<BuildPhaseEvent> getBuildPhaseConsumer() {
+        return buildPhaseConsumer;
+    }
+
     public WebSocketChannel getWebSocketChannel() {
         return webSocketChannel;
     }
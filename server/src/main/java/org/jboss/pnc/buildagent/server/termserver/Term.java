@@ -29,20 +29,38 @@ import io.undertow.websockets.WebSocketProtocolHandshakeHandler;
 import io.undertow.websockets.core.CloseMessage;
 import io.undertow.websockets.core.WebSocketChannel;
 import io.undertow.websockets.core.WebSockets;
+import org.jboss.pnc.buildagent.api.BuildPhase;
+import org.jboss.pnc.buildagent.api.BuildPhaseEvent;
+import org.jboss.pnc.buildagent.api.OutputMatchEvent;
+import org.jboss.pnc.buildagent.api.OutputSegments;
+import org.jboss.pnc.buildagent.api.ResourceSampleEvent;
+import org.jboss.pnc.buildagent.api.ResourceUsage;
 import org.jboss.pnc.buildagent.api.ResponseMode;
 import org.jboss.pnc.buildagent.api.TaskStatusUpdateEvent;
-import org.jboss.pnc.buildagent.common.Arrays;
-import org.jboss.pnc.buildagent.common.function.ThrowingConsumer;
-import org.jboss.pnc.buildagent.common.security.Md5;
+import org.jboss.pnc.buildagent.common.BytePatternMatcher;
+import org.jboss.pnc.buildagent.common.buffer.PooledByteBuffer;
 import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+import org.jboss.pnc.buildagent.server.output.BuildPhaseAnalyzer;
+import org.jboss.pnc.buildagent.server.output.DigestChannel;
+import org.jboss.pnc.buildagent.server.output.OutputCoalescer;
+import org.jboss.pnc.buildagent.server.output.OutputFanOut;
+import org.jboss.pnc.buildagent.server.output.OutputFanOutFactory;
+import org.jboss.pnc.buildagent.server.output.OutputSegmentsRegistry;
+import org.jboss.pnc.buildagent.server.output.OutputSequencer;
+import org.jboss.pnc.buildagent.server.output.SegmentDigestChannel;
+import org.jboss.pnc.buildagent.server.process.ProcessResourceSampler;
+import org.jboss.pnc.buildagent.server.process.ResourceMonitor;
+import org.jboss.pnc.buildagent.server.process.ResourceMonitorFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ScheduledExecutorService;
@@ -54,34 +72,107 @@ import java.util.function.Consumer;
  */
 public class Term {
 
+    /**
+     * Separates the context and the sub-session name in the term names.
+     */
+    public static final String SUB_SESSION_SEPARATOR = "#";
+
     private Logger log = LoggerFactory.getLogger(Term.class);
 
     final String context;
+
+    /**
+     * Name of the sub-session, empty for the default term of the context.
+     */
+    private final Optional<String> subSession;
     private Runnable onDestroy;
     final Set<TaskStatusUpdateListener> statusUpdateListeners = new CopyOnWriteArraySet<>();
     private WebSocketTtyConnection webSocketTtyConnection;
     private boolean activeCommand;
 
     CompleteHandler completeHandle = new CompleteHandler();
-    private Md5 stdoutChecksum;
-
-
-    private final Set<ReadOnlyChannel> readOnlyChannels = new CopyOnWriteArraySet<>();
-
-    public Term(String context, Runnable onDestroy, ScheduledExecutorService executor, Set<ReadOnlyChannel> readOnlyChannels) {
+    private final DigestChannel stdoutChecksum;
+
+    /**
+     * Null when the segment checksums are disabled.
+     */
+    private final SegmentDigestChannel segmentChecksums;
+
+    private final OutputSegmentsRegistry completedOutputSegments;
+
+    /**
+     * Context, or context#sub-session, as the term is registered.
+     */
+    private final String name;
+
+
+    private final OutputFanOut outputFanOut;
+    /**
+     * Channels created for this term only, closed when the term is destroyed.
+     */
+    private final List<ReadOnlyChannel> sessionChannels = new ArrayList<>();
+    private final OutputCoalescer outputCoalescer;
+    private final OutputSequencer outputSequencer = new OutputSequencer();
+
+    /**
+     * Looks for the operator patterns in the output, null when there are no patterns.
+     */
+    private final BytePatternMatcher.Scanner outputScanner;
+
+    /**
+     * Times the build phases of the running task, null when the build phase timing is disabled.
+     */
+    private final BuildPhaseAnalyzer buildPhaseAnalyzer;
+
+    private volatile String runningTaskId;
+
+    private final ResourceMonitorFactory resourceMonitorFactory;
+
+    /**
+     * @param subSession name of a sub-session running its own commands in the context concurrently with the other
+     * sub-sessions. The output goes to the term channels of the shared sinks, which tag it with the term name, the
+     * context with the sub-session name. The output of a term without a sub-session goes to the shared output
+     */
+    public Term(
+            String context,
+            Optional<String> subSession,
+            Runnable onDestroy,
+            ScheduledExecutorService executor,
+            Set<ReadOnlyChannel> readOnlyChannels,
+            OutputFanOutFactory outputFanOutFactory,
+            Optional<BytePatternMatcher> outputMatcher,
+            ResourceMonitorFactory resourceMonitorFactory) {
         this.context = context;
+        this.subSession = subSession;
         this.onDestroy = onDestroy;
-        this.readOnlyChannels.addAll(readOnlyChannels);
+        this.resourceMonitorFactory = resourceMonitorFactory;
+        name = subSession.map(s -> context + SUB_SESSION_SEPARATOR + s).orElse(context);
+        outputFanOut = outputFanOutFactory.createWithRecentOutput("term" + name.replace('/', '-'));
+        //the term channels keep their own stage state, so concurrent terms do not share it
+        for (ReadOnlyChannel channel : readOnlyChannels) {
+            ReadOnlyChannel sessionChannel = channel.forTerm(subSession.isPresent() ? name : null);
+            if (sessionChannel != channel) {
+                sessionChannels.add(sessionChannel);
+            }
+            outputFanOut.addChannel(sessionChannel);
+        }
+        stdoutChecksum = outputFanOutFactory.createDigestChannel(null);
+        outputFanOut.addChannel(stdoutChecksum);
+        segmentChecksums = outputFanOutFactory.createSegmentDigestChannel(stdoutChecksum.getAlgorithm()).orElse(null);
+        if (segmentChecksums != null) {
+            outputFanOut.addChannel(segmentChecksums);
+        }
+        completedOutputSegments = outputFanOutFactory.getOutputSegments();
+        outputCoalescer = outputFanOutFactory.createCoalescer(outputFanOut, this::writeToChannels);
+        buildPhaseAnalyzer = outputFanOutFactory.createBuildPhaseAnalyzer(this::onBuildPhase).orElse(null);
+        outputScanner = outputMatcher
+                .map(matcher -> matcher.newScanner((pattern, end) -> onOutputMatch(matcher.getPattern(pattern), end)))
+                .orElse(null);
 
         Runnable onStdOutCompleted = () -> {
             completeHandle.setStdoutCompletedAndRun();
         };
         webSocketTtyConnection = new WebSocketTtyConnection(executor, onStdOutCompleted);
-        try {
-            stdoutChecksum = new Md5();
-        } catch (NoSuchAlgorithmException e) {
-            log.error("Cannot instantiate new Term.", e);
-        }
         log.debug("Created new Term: {}.", this);
     }
 
@@ -114,35 +205,72 @@ public class Term {
 
     public Consumer<PtyMaster> onTaskCreated() {
         return (ptyMaster) -> {
+            String taskId = "" + ptyMaster.getId();
+            runningTaskId = taskId;
+            ResourceMonitor resourceMonitor = resourceMonitorFactory.create(sample -> onResourceSample(taskId, sample));
             ptyMaster.setChangeHandler((oldStatus, newStatus) -> {
+                if (Status.RUNNING.equals(newStatus)) {
+                    resourceMonitor.start(ptyMaster.getProcess());
+                }
                 String logDigest;
+                ResourceUsage resourceUsage;
+                List<BuildPhase> buildPhases = null;
+                OutputSegments outputSegments = null;
                 if (newStatus.isFinal()) {
+                    resourceUsage = resourceMonitor.stop();
                     writeCompletedToReadonlyChannel(newStatus);
-                    logDigest = stdoutChecksum.digest();
+                    outputCoalescer.flush();
+                    logDigest = digestOutput();
+                    if (segmentChecksums != null) {
+                        outputSegments = segmentChecksums.finish();
+                        completedOutputSegments.put(OutputSegmentsRegistry.termKey(name, taskId), outputSegments);
+                    }
+                    if (buildPhaseAnalyzer != null) {
+                        buildPhases = buildPhaseAnalyzer.finish(System.currentTimeMillis());
+                    }
                 } else {
+                    resourceUsage = null;
                     logDigest = "";
                 }
                 notifyStatusUpdated(
-                        new TaskStatusUpdateEvent(
-                                "" + ptyMaster.getId(),
-                                StatusConverter.fromTermdStatus(oldStatus),
-                                StatusConverter.fromTermdStatus(newStatus),
-                                context,
-                                logDigest)
+                        TaskStatusUpdateEvent.newBuilder()
+                                .taskId(taskId)
+                                .oldStatus(StatusConverter.fromTermdStatus(oldStatus))
+                                .newStatus(StatusConverter.fromTermdStatus(newStatus))
+                                .context(context)
+                                .outputChecksum(logDigest)
+                                .outputChecksumAlgorithm(stdoutChecksum.getAlgorithm().getName())
+                                .message("")
+                                .resourceUsage(resourceUsage)
+                                .buildPhases(buildPhases)
+                                .outputSegments(outputSegments)
+                                .build()
                 );
             });
         };
     }
 
+    /**
+     * @return checksum of the task output, empty when the output was not delivered to the checksum channel
+     */
+    private String digestOutput() {
+        try {
+            outputFanOut.awaitDelivered();
+        } catch (IOException e) {
+            //reported as a system error when the primary channels are flushed
+            log.error("Cannot digest the output.", e);
+            return "";
+        }
+        return stdoutChecksum.digest();
+    }
+
     void notifyStatusUpdated(TaskStatusUpdateEvent event) {
         if (event.getNewStatus().isFinal()) {
             activeCommand = false;
             log.debug("Command [context:{} taskId:{}] execution completed with status {}.", event.getContext(), event.getTaskId(), event.getNewStatus());
 
             try {
-                readOnlyChannels.stream()
-                        .filter(ch -> ch.isPrimary())
-                        .forEach(ThrowingConsumer.wrap(ch -> ch.flush()));
+                outputFanOut.flushPrimaryChannels();
             } catch (Exception e) {
                 log.error("Cannot flush primary RO channel.", e);
                 event = TaskStatusUpdateEvent.newBuilder()
@@ -173,6 +301,47 @@ public class Term {
         }
     }
 
+    private void onOutputMatch(String pattern, long end) {
+        log.debug("Output of [context:{} taskId:{}] matched pattern [{}].", context, runningTaskId, pattern);
+        OutputMatchEvent event = OutputMatchEvent.newBuilder()
+                .taskId(runningTaskId)
+                .context(context)
+                .pattern(pattern)
+                .outputOffset(end)
+                .build();
+        for (TaskStatusUpdateListener statusUpdateListener : statusUpdateListeners) {
+            statusUpdateListener.getOutputMatchConsumer().accept(event);
+        }
+    }
+
+    private void onBuildPhase(BuildPhase phase) {
+        BuildPhaseEvent event = BuildPhaseEvent.newBuilder()
+                .taskId(runningTaskId)
+                .context(context)
+                .phase(phase)
+                .build();
+        for (TaskStatusUpdateListener statusUpdateListener : statusUpdateListeners) {
+            statusUpdateListener.getBuildPhaseConsumer().accept(event);
+        }
+    }
+
+    private void onResourceSample(String taskId, ProcessResourceSampler.Sample sample) {
+        ResourceSampleEvent event = ResourceSampleEvent.newBuilder()
+                .taskId(taskId)
+                .context(context)
+                .timestamp(sample.getTimestamp())
+                .cpuTimeMillis(sample.getCpuTimeMillis())
+                .rssBytes(sample.getRssBytes())
+                .threads(sample.getThreads())
+                .processes(sample.getProcesses())
+                .readBytes(sample.getReadBytes())
+                .writeBytes(sample.getWriteBytes())
+                .build();
+        for (TaskStatusUpdateListener statusUpdateListener : statusUpdateListeners) {
+            statusUpdateListener.getResourceSampleConsumer().accept(event);
+        }
+    }
+
     private void writeCompletedToReadonlyChannel(Status newStatus) {
         String completed = "% # Command finished with status: " + newStatus + "\n";
         writeToChannels(completed.getBytes(StandardCharsets.UTF_8));
@@ -181,6 +350,9 @@ public class Term {
     private void destroyIfInactiveAndDisconnected() {
         if (!activeCommand && !webSocketTtyConnection.isOpen()) {
             log.info("Destroying Term as there is no running command and no active connection.");
+            outputCoalescer.close();
+            outputFanOut.close();
+            closeSessionChannels();
             onDestroy.run();
         }
     }
@@ -209,10 +381,10 @@ public class Term {
                     log.info("Adding new readonly binary consumer connection from remote address {} to context [{}].", webSocketChannel.getSourceAddress().toString(), context);
                     readOnlyChannel = new ReadOnlyWebSocketChannel(webSocketChannel);
                 }
-                readOnlyChannels.add(readOnlyChannel);
+                outputFanOut.addChannelWithRecentOutput(readOnlyChannel);
                 webSocketChannel.addCloseTask((task) -> {
                     log.debug("Removing RO channel: {}.", readOnlyChannel);
-                    readOnlyChannels.remove(readOnlyChannel);
+                    outputFanOut.removeChannel(readOnlyChannel);
                     destroyIfInactiveAndDisconnected();
                 });
             }
@@ -222,22 +394,16 @@ public class Term {
 
     public HttpHandler webSocketStatusUpdateHandler() {
         WebSocketConnectionCallback webSocketConnectionCallback = (exchange, webSocketChannel) -> {
-            Consumer<TaskStatusUpdateEvent> eventConsumer = event -> {
-                Map<String, Object> statusUpdate = new HashMap<>();
-                statusUpdate.put("action", "status-update");
-                statusUpdate.put("event", event);
-
-                ObjectMapper objectMapper = new ObjectMapper();
-                try {
-                    String message = objectMapper.writeValueAsString(statusUpdate);
-                    WebSockets.sendText(message, webSocketChannel, null);
-                } catch (JsonProcessingException e) {
-                    log.error("Cannot write object to JSON", e);
-                    String errorMessage = "Cannot write object to JSON: " + e.getMessage();
-                    WebSockets.sendClose(CloseMessage.UNEXPECTED_ERROR, errorMessage, webSocketChannel, null);
-                }
-            };
-            TaskStatusUpdateListener statusUpdateListener = new TaskStatusUpdateListener(eventConsumer, webSocketChannel);
+            Consumer<TaskStatusUpdateEvent> eventConsumer = event -> sendEvent("status-update", event, webSocketChannel);
+            Consumer<OutputMatchEvent> outputMatchConsumer = event -> sendEvent("output-match", event, webSocketChannel);
+            Consumer<ResourceSampleEvent> resourceSampleConsumer = event -> sendEvent("resource-sample", event, webSocketChannel);
+            Consumer<BuildPhaseEvent> buildPhaseConsumer = event -> sendEvent("build-phase", event, webSocketChannel);
+            TaskStatusUpdateListener statusUpdateListener = new TaskStatusUpdateListener(
+                    eventConsumer,
+                    outputMatchConsumer,
+                    resourceSampleConsumer,
+                    buildPhaseConsumer,
+                    webSocketChannel);
             log.debug("Registering new status update listener {}.", statusUpdateListener);
             addStatusUpdateListener(statusUpdateListener);
             webSocketChannel.addCloseTask((task) -> removeStatusUpdateListener(statusUpdateListener));
@@ -246,6 +412,22 @@ public class Term {
         return new WebSocketProtocolHandshakeHandler(webSocketConnectionCallback);
     }
 
+    private void sendEvent(String action, Object event, WebSocketChannel webSocketChannel) {
+        Map<String, Object> statusUpdate = new HashMap<>();
+        statusUpdate.put("action", action);
+        statusUpdate.put("event", event);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        try {
+            String message = objectMapper.writeValueAsString(statusUpdate);
+            WebSockets.sendText(message, webSocketChannel, null);
+        } catch (JsonProcessingException e) {
+            log.error("Cannot write object to JSON", e);
+            String errorMessage = "Cannot write object to JSON: " + e.getMessage();
+            WebSockets.sendClose(CloseMessage.UNEXPECTED_ERROR, errorMessage, webSocketChannel, null);
+        }
+    }
+
     private void rejectDueToAlreadyActive(WebSocketChannel webSocketChannel) {
         log.info("Closing connection because there is already active master connection.");
         webSocketChannel.setCloseReason("Already active master connection.");
@@ -262,26 +444,68 @@ public class Term {
     }
 
     private void onStdOut(int[] stdOut) {
-        byte[] buffer = Arrays.charIntstoBytes(stdOut, StandardCharsets.UTF_8);
-        writeToChannels(buffer);
+        outputCoalescer.write(stdOut);
     }
 
     private void writeToChannels(byte[] bytes) {
-        stdoutChecksum.add(bytes);
+        outputCoalescer.write(bytes);
+    }
+
+    private void writeToChannels(PooledByteBuffer buffer) {
+        if (outputScanner != null) {
+            outputScanner.scan(buffer.buffer());
+        }
+        outputSequencer.stamp(buffer);
+        if (buildPhaseAnalyzer != null) {
+            buildPhaseAnalyzer.analyze(buffer.view(), buffer.getTimestamp());
+        }
         if (log.isTraceEnabled()) {
-            log.trace("Writing data: {}", new String(bytes, StandardCharsets.UTF_8));
+            log.trace("Writing data: {}", StandardCharsets.UTF_8.decode(buffer.view()));
         }
-        for (ReadOnlyChannel readOnlyChannel : readOnlyChannels) {
-            if (log.isTraceEnabled()) {
-                log.trace("   to chanel {}", readOnlyChannel);
-            }
-            readOnlyChannel.writeOutput(bytes);
+        outputFanOut.write(buffer);
+    }
+
+    /**
+     * @return id of the running or the last task, null before the first task
+     */
+    public String getRunningTaskId() {
+        return runningTaskId;
+    }
+
+    /**
+     * @return checksums of the output segments of the running task completed so far, null when they are disabled
+     */
+    public OutputSegments getOutputSegmentsSnapshot() {
+        if (segmentChecksums == null) {
+            return null;
         }
+        return segmentChecksums.snapshot();
+    }
+
+    public OutputFanOut getOutputFanOut() {
+        return outputFanOut;
+    }
+
+    public Optional<String> getSubSession() {
+        return subSession;
     }
 
     public void close() {
-        log.info("Closing Term {}.", context);
+        log.info("Closing Term {}{}.", context, subSession.map(s -> SUB_SESSION_SEPARATOR + s).orElse(""));
         webSocketTtyConnection.close();
+        outputCoalescer.close();
+        outputFanOut.close();
+        closeSessionChannels();
+    }
+
+    private void closeSessionChannels() {
+        for (ReadOnlyChannel channel : sessionChannels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Cannot close the channel {} of the term {}.", channel.getName(), name, e);
+            }
+        }
     }
 
     private class CompleteHandler {
@@ -27,6 +27,7 @@ import io.undertow.websockets.core.WebSocketChannel;
 import io.undertow.websockets.core.WebSockets;
 import org.jboss.pnc.buildagent.api.ResponseMode;
 import org.jboss.pnc.buildagent.common.BuildAgentException;
+import org.jboss.pnc.buildagent.common.BytePatternMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.ChannelListener;
@@ -35,6 +36,7 @@ import org.xnio.Pooled;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -46,6 +48,8 @@ public class WebSocketTtyConnection extends HttpTtyConnection implements TtyConn
 
     private static Logger log = LoggerFactory.getLogger(WebSocketTtyConnection.class);
 
+    private static final BytePatternMatcher PROMPT = BytePatternMatcher.of(Collections.singletonList("% "));
+
     private WebSocketChannel webSocketChannel;
     private ResponseMode responseMode;
     private final ScheduledExecutorService executor;
@@ -73,7 +77,7 @@ public class WebSocketTtyConnection extends HttpTtyConnection implements TtyConn
                 log.error("Invalid response mode.");
             }
         }
-        if (new String(buffer).equals("% ")) {
+        if (PROMPT.matchWhole(buffer) >= 0) {
             log.info("Prompt ready.");
             onStdOutCompleted.run();
         }
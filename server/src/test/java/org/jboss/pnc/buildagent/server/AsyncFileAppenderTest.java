@@ -0,0 +1,90 @@
+package org.jboss.pnc.buildagent.server;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class AsyncFileAppenderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldWriteAllOutputInOrderInBatches() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("console.log");
+        StringBuilder expected = new StringBuilder();
+        int lines = 10000;
+        try (AsyncFileAppender appender = new AsyncFileAppender(file, 4096, FsyncPolicy.NONE, 0, 0)) {
+            for (int i = 0; i < lines; i++) {
+                String line = "line " + i + "\n";
+                expected.append(line);
+                appender.append(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            }
+            appender.flush();
+
+            Assert.assertEquals(expected.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            Assert.assertTrue("Expected fewer writes than appends.", appender.getWrites() < lines);
+            Assert.assertEquals(0, appender.getForces());
+        }
+    }
+
+    @Test
+    public void shouldForceOnFlushAtCompletion() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("console.log");
+        try (AsyncFileAppender appender = new AsyncFileAppender(file, 4096, FsyncPolicy.COMPLETION, 0, 0)) {
+            appender.append(ByteBuffer.wrap("BUILD SUCCESS\n".getBytes(StandardCharsets.UTF_8)));
+            appender.flush();
+
+            Assert.assertEquals("BUILD SUCCESS\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            Assert.assertEquals(1, appender.getForces());
+
+            appender.flush();
+            Assert.assertEquals("Nothing new to force.", 1, appender.getForces());
+        }
+    }
+
+    @Test
+    public void shouldAppendToExistingFileAndRejectWritesWhenClosed() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("console.log");
+        Files.write(file, "previous\n".getBytes(StandardCharsets.UTF_8));
+
+        AsyncFileAppender appender = new AsyncFileAppender(file, 16, FsyncPolicy.PERIODIC, 1000, 8);
+        appender.append(ByteBuffer.wrap("next\n".getBytes(StandardCharsets.UTF_8)));
+        appender.close();
+
+        Assert.assertEquals("previous\nnext\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        try {
+            appender.append(ByteBuffer.wrap("late\n".getBytes(StandardCharsets.UTF_8)));
+            Assert.fail("Expected the closed appender to reject the output.");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void shouldWriteSessionLinesThroughAsyncFileLogger() throws IOException {
+        Options options = new Options("localhost", 0, "", false, false, 0, 0, null, null);
+        options.setFileLogAsync(true);
+        IoFileLogger fileLogger = new IoFileLogger(folder.getRoot().toPath(), true, options);
+        ReadOnlyChannel first = fileLogger.forSession("first");
+        ReadOnlyChannel second = fileLogger.forSession("second");
+
+        first.writeOutput("[INFO] Buil".getBytes(StandardCharsets.UTF_8));
+        second.writeOutput("Progress 1/2\n".getBytes(StandardCharsets.UTF_8));
+        first.writeOutput("ding core\n".getBytes(StandardCharsets.UTF_8));
+        first.flush();
+        second.flush();
+
+        Path log = folder.getRoot().toPath().resolve("console.log");
+        Assert.assertEquals(
+                "Progress 1/2\n[INFO] Building core\n",
+                new String(Files.readAllBytes(log), StandardCharsets.UTF_8));
+        fileLogger.close();
+    }
+}
@@ -0,0 +1,109 @@
+package org.jboss.pnc.buildagent.server;
+
+import org.jboss.pnc.buildagent.server.logstore.LogRegion;
+import org.jboss.pnc.buildagent.server.logstore.LogWaiters;
+import org.jboss.pnc.buildagent.server.logstore.ReadableLog;
+import org.jboss.pnc.buildagent.server.logstore.SegmentedLogStore;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+public class IoFileLoggerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldWriteDefaultTermToSharedSessionLog() throws IOException {
+        Options options = new Options("localhost", 0, "", false, false, 0, 0, null, null);
+        options.setFileLogPerSession(true);
+        IoFileLogger fileLogger = new IoFileLogger(folder.getRoot().toPath(), true, options);
+        ReadOnlyChannel term = fileLogger.forTerm(null);
+        ReadOnlyChannel subSession = fileLogger.forTerm("ctx#build");
+
+        fileLogger.writeOutput("% ls\n".getBytes(StandardCharsets.UTF_8));
+        term.writeOutput("pom.xml\nsrc".getBytes(StandardCharsets.UTF_8));
+        subSession.writeOutput("BUILD SUCCESS\n".getBytes(StandardCharsets.UTF_8));
+        term.flush();
+        subSession.close();
+
+        Assert.assertEquals("% ls\npom.xml\nsrc", read(fileLogger.getReadableLog(null).get()));
+        Assert.assertEquals("BUILD SUCCESS\n", read(fileLogger.getReadableLog("ctx#build").get()));
+        Path sessions = folder.getRoot().toPath().resolve("sessions");
+        try (Stream<Path> files = Files.list(sessions)) {
+            Assert.assertTrue(
+                    "Segments are written to the session directories only.",
+                    files.allMatch(Files::isDirectory));
+        }
+        Assert.assertTrue(fileLogger.getSessionStore().get().getSessionIds().contains(SegmentedLogStore.SHARED_SESSION));
+        fileLogger.close();
+    }
+
+    @Test
+    public void shouldWakeUpLongPollOnceAsyncWriterWroteTheOutput() throws Exception {
+        Options options = new Options("localhost", 0, "", false, false, 0, 0, null, null);
+        options.setFileLogAsync(true);
+        IoFileLogger fileLogger = new IoFileLogger(folder.getRoot().toPath(), true, options);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        LogWaiters logWaiters = new LogWaiters(executor);
+        fileLogger.setAppendListener(logWaiters::appended);
+        ReadableLog readableLog = fileLogger.getReadableLog(null).get();
+        CountDownLatch woken = new CountDownLatch(1);
+        AtomicLong endOffset = new AtomicLong();
+        try {
+            logWaiters.await(readableLog::getEndOffset, 0, TimeUnit.MINUTES.toMillis(1), () -> {
+                endOffset.set(readableLog.getEndOffset());
+                woken.countDown();
+            });
+
+            fileLogger.writeOutput("BUILD SUCCESS\n".getBytes(StandardCharsets.UTF_8));
+
+            Assert.assertTrue("Long poll should not wait for its timeout.", woken.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals("BUILD SUCCESS\n".length(), endOffset.get());
+        } finally {
+            executor.shutdownNow();
+            fileLogger.close();
+        }
+    }
+
+    @Test
+    public void shouldWritePendingLineOnClose() throws IOException {
+        IoFileLogger fileLogger = new IoFileLogger(folder.getRoot().toPath(), false, null);
+        ReadOnlyChannel term = fileLogger.forTerm(null);
+
+        term.writeOutput("Downloading 42%".getBytes(StandardCharsets.UTF_8));
+        term.close();
+        fileLogger.close();
+
+        Assert.assertEquals(
+                "Downloading 42%",
+                new String(Files.readAllBytes(folder.getRoot().toPath().resolve("console.log")), StandardCharsets.UTF_8));
+    }
+
+    private String read(ReadableLog log) throws IOException {
+        StringBuilder output = new StringBuilder();
+        for (LogRegion region : log.open(log.getStartOffset(), log.getEndOffset() - log.getStartOffset())) {
+            try (LogRegion opened = region) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) opened.getLength());
+                while (buffer.hasRemaining()) {
+                    opened.getChannel().read(buffer, opened.getPosition() + buffer.position());
+                }
+                output.append(new String(buffer.array(), StandardCharsets.UTF_8));
+            }
+        }
+        return output.toString();
+    }
+}
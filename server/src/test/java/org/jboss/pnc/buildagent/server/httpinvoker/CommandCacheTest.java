@@ -0,0 +1,206 @@
+package org.jboss.pnc.buildagent.server.httpinvoker;
+
+import org.jboss.pnc.buildagent.api.httpinvoke.CacheConfig;
+import org.jboss.pnc.buildagent.api.httpinvoke.ExecutionMode;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class CommandCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path input;
+
+    private Path output;
+
+    private CacheConfig cacheConfig;
+
+    @Before
+    public void setUp() throws IOException {
+        input = temporaryFolder.newFolder("input").toPath();
+        Files.write(input.resolve("pom.xml"), "<project/>".getBytes(StandardCharsets.UTF_8));
+        output = temporaryFolder.getRoot().toPath().resolve("target");
+        cacheConfig = CacheConfig.newBuilder()
+                .inputs(Collections.singletonList(input.toString()))
+                .outputs(Collections.singletonList(output.toString()))
+                .build();
+    }
+
+    @Test
+    public void shouldChangeKeyWhenInputChanges() throws IOException {
+        CommandCache cache = new CommandCache(temporaryFolder.newFolder("cache").toPath(), CommandCache.DEFAULT_MAX_BYTES);
+        String key = cache.getKey("mvn install", ExecutionMode.PROCESS, cacheConfig);
+
+        Assert.assertEquals(key, cache.getKey("mvn install", ExecutionMode.PROCESS, cacheConfig));
+        Assert.assertNotEquals(key, cache.getKey("mvn deploy", ExecutionMode.PROCESS, cacheConfig));
+        Assert.assertNotEquals(key, cache.getKey("mvn install", ExecutionMode.PTY, cacheConfig));
+
+        Files.write(input.resolve("pom.xml"), "<project></project>".getBytes(StandardCharsets.UTF_8));
+        Assert.assertNotEquals(key, cache.getKey("mvn install", ExecutionMode.PROCESS, cacheConfig));
+    }
+
+    @Test
+    public void shouldRestoreStoredResult() throws IOException {
+        CommandCache cache = new CommandCache(temporaryFolder.newFolder("cache").toPath(), CommandCache.DEFAULT_MAX_BYTES);
+        String key = cache.getKey("mvn install", ExecutionMode.PROCESS, cacheConfig);
+        Assert.assertFalse(cache.get(key).isPresent());
+
+        CommandCache.Recording recording = cache.record(key, cacheConfig.getOutputs());
+        recording.writeOutput("Building\n".getBytes(StandardCharsets.UTF_8));
+        recording.writeOutput(ByteBuffer.wrap("BUILD SUCCESS\n".getBytes(StandardCharsets.UTF_8)));
+        Files.createDirectories(output.resolve("classes"));
+        Files.write(output.resolve("classes/App.class"), new byte[] {1, 2, 3});
+        recording.store();
+
+        deleteOutput();
+        Optional<CommandCache.Entry> entry = cache.get(key);
+        Assert.assertTrue(entry.isPresent());
+        entry.get().restoreOutputs(cacheConfig.getOutputs());
+        ByteArrayOutputStream replayed = new ByteArrayOutputStream();
+        Assert.assertTrue(entry.get().replayOutput(buffer -> {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            replayed.write(bytes, 0, bytes.length);
+        }, 4, () -> false));
+
+        Assert.assertEquals("Building\nBUILD SUCCESS\n", new String(replayed.toByteArray(), StandardCharsets.UTF_8));
+        Assert.assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(output.resolve("classes/App.class")));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(1, cache.getStored());
+    }
+
+    @Test
+    public void shouldKeyByWorkingDirectoryAndEnvironment() throws IOException {
+        Path cacheDirectory = temporaryFolder.newFolder("cache").toPath();
+        Path workspace = temporaryFolder.newFolder("workspace").toPath();
+        Path otherWorkspace = temporaryFolder.newFolder("other-workspace").toPath();
+        Files.write(workspace.resolve("pom.xml"), "<project/>".getBytes(StandardCharsets.UTF_8));
+        Files.write(otherWorkspace.resolve("pom.xml"), "<project/>".getBytes(StandardCharsets.UTF_8));
+        CacheConfig relative = CacheConfig.newBuilder()
+                .inputs(Collections.singletonList("pom.xml"))
+                .outputs(Collections.singletonList("target"))
+                .build();
+        Map<String, String> environment = Collections.singletonMap("JAVA_HOME", "/opt/jdk8");
+
+        CommandCache cache = new CommandCache(cacheDirectory, CommandCache.DEFAULT_MAX_BYTES, workspace, environment);
+        String key = cache.getKey("mvn install", ExecutionMode.PROCESS, relative);
+        CommandCache otherCache = new CommandCache(cacheDirectory, CommandCache.DEFAULT_MAX_BYTES, otherWorkspace, environment);
+        Assert.assertNotEquals(key, otherCache.getKey("mvn install", ExecutionMode.PROCESS, relative));
+        CommandCache otherEnvironment = new CommandCache(
+                cacheDirectory,
+                CommandCache.DEFAULT_MAX_BYTES,
+                workspace,
+                Collections.singletonMap("JAVA_HOME", "/opt/jdk11"));
+        Assert.assertNotEquals(key, otherEnvironment.getKey("mvn install", ExecutionMode.PROCESS, relative));
+
+        Files.write(workspace.resolve("pom.xml"), "<project></project>".getBytes(StandardCharsets.UTF_8));
+        Assert.assertNotEquals("Relative input is read from the working directory.", key, cache.getKey("mvn install", ExecutionMode.PROCESS, relative));
+    }
+
+    @Test
+    public void shouldKeepExistingOutputsWhenRestoreFails() throws IOException {
+        CommandCache cache = new CommandCache(temporaryFolder.newFolder("cache").toPath(), CommandCache.DEFAULT_MAX_BYTES);
+        Path blocked = temporaryFolder.getRoot().toPath().resolve("blocked");
+        List<String> outputs = Arrays.asList(output.toString(), blocked.resolve("out").toString());
+        String key = cache.getKey("mvn install", ExecutionMode.PROCESS, cacheConfig);
+        CommandCache.Recording recording = cache.record(key, outputs);
+        Files.createDirectories(output);
+        Files.write(output.resolve("App.class"), new byte[] {1});
+        Files.createDirectories(blocked.resolve("out"));
+        recording.store();
+
+        Files.write(output.resolve("App.class"), new byte[] {2});
+        Files.delete(blocked.resolve("out"));
+        Files.delete(blocked);
+        Files.write(blocked, new byte[0]); //the parent of the second output cannot be created
+        try (CommandCache.Entry entry = cache.get(key).get()) {
+            entry.restoreOutputs(outputs);
+            Assert.fail("Restore should fail.");
+        } catch (IOException expected) {
+            Assert.assertArrayEquals(new byte[] {2}, Files.readAllBytes(output.resolve("App.class")));
+            Assert.assertEquals("Failed restore is not a hit.", 0, cache.getHits());
+        }
+    }
+
+    @Test
+    public void shouldNotEvictEntryBeingRead() throws IOException {
+        Path directory = temporaryFolder.newFolder("cache").toPath();
+        CommandCache cache = new CommandCache(directory, 150);
+        byte[] output = new byte[100];
+
+        String first = cache.getKey("first", ExecutionMode.PROCESS, cacheConfig);
+        CommandCache.Recording recording = cache.record(first, Collections.emptyList());
+        recording.writeOutput(output);
+        recording.store();
+        Files.setLastModifiedTime(directory.resolve(first), FileTime.fromMillis(0));
+
+        try (CommandCache.Entry entry = cache.get(first).get()) {
+            String second = cache.getKey("second", ExecutionMode.PROCESS, cacheConfig);
+            recording = cache.record(second, Collections.emptyList());
+            recording.writeOutput(output);
+            recording.store();
+
+            Assert.assertTrue("The entry being read is kept.", Files.isDirectory(directory.resolve(first)));
+            Assert.assertTrue(entry.replayOutput(buffer -> buffer.position(buffer.limit()), 16, () -> false));
+        }
+    }
+
+    @Test
+    public void shouldNotStoreDiscardedRecording() throws IOException {
+        CommandCache cache = new CommandCache(temporaryFolder.newFolder("cache").toPath(), CommandCache.DEFAULT_MAX_BYTES);
+        String key = cache.getKey("mvn install", ExecutionMode.PROCESS, cacheConfig);
+
+        CommandCache.Recording recording = cache.record(key, cacheConfig.getOutputs());
+        recording.writeOutput("BUILD FAILURE\n".getBytes(StandardCharsets.UTF_8));
+        recording.discard();
+
+        Assert.assertFalse(cache.get(key).isPresent());
+        Assert.assertEquals(0, cache.getStored());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntries() throws IOException {
+        Path directory = temporaryFolder.newFolder("cache").toPath();
+        CommandCache cache = new CommandCache(directory, 150);
+        byte[] output = new byte[100];
+
+        String first = cache.getKey("first", ExecutionMode.PROCESS, cacheConfig);
+        CommandCache.Recording recording = cache.record(first, Collections.emptyList());
+        recording.writeOutput(output);
+        recording.store();
+        Files.setLastModifiedTime(directory.resolve(first), FileTime.fromMillis(0));
+
+        String second = cache.getKey("second", ExecutionMode.PROCESS, cacheConfig);
+        recording = cache.record(second, Collections.emptyList());
+        recording.writeOutput(output);
+        recording.store();
+
+        Assert.assertEquals(1, cache.getEvicted());
+        Assert.assertFalse(cache.get(first).isPresent());
+        Assert.assertTrue(cache.get(second).isPresent());
+    }
+
+    private void deleteOutput() throws IOException {
+        Files.delete(output.resolve("classes/App.class"));
+        Files.delete(output.resolve("classes"));
+        Files.delete(output);
+    }
+}
@@ -0,0 +1,83 @@
+package org.jboss.pnc.buildagent.server.httpinvoker;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+public class ShellPoolTest {
+
+    @Test
+    public void shouldRunCommandInPooledShell() throws IOException, InterruptedException {
+        try (ShellPool shellPool = new ShellPool(2, TimeUnit.MINUTES.toMillis(1))) {
+            awaitIdle(shellPool, 2);
+
+            Process process = shellPool.start("echo it's  a $HOME \"test\"");
+
+            Assert.assertEquals("it's a $HOME \"test\"\n", readOutput(process));
+            Assert.assertEquals(0, process.waitFor());
+            Assert.assertEquals(1, shellPool.getHits());
+            Assert.assertEquals(0, shellPool.getMisses());
+            awaitIdle(shellPool, 2);
+        }
+    }
+
+    @Test
+    public void shouldReportExitCodeOfCommand() throws IOException, InterruptedException {
+        try (ShellPool shellPool = new ShellPool(1, TimeUnit.MINUTES.toMillis(1))) {
+            awaitIdle(shellPool, 1);
+
+            Process process = shellPool.start("false");
+
+            Assert.assertEquals(1, process.waitFor());
+            Assert.assertEquals(1, shellPool.getHits());
+        }
+    }
+
+    @Test
+    public void shouldDiscardExpiredShells() throws IOException, InterruptedException {
+        try (ShellPool shellPool = new ShellPool(1, 50)) {
+            awaitIdle(shellPool, 1);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (shellPool.getDiscarded() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue("Expired shell should be discarded.", shellPool.getDiscarded() > 0);
+        }
+    }
+
+    @Test
+    public void shouldStartCommandDirectlyWhenDisabled() throws IOException, InterruptedException {
+        try (ShellPool shellPool = new ShellPool(0, TimeUnit.MINUTES.toMillis(1))) {
+            Process process = shellPool.start("echo direct");
+
+            Assert.assertEquals("direct\n", readOutput(process));
+            Assert.assertEquals(0, process.waitFor());
+            Assert.assertEquals(0, shellPool.getHits());
+            Assert.assertEquals(0, shellPool.getMisses());
+        }
+    }
+
+    private void awaitIdle(ShellPool shellPool, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (shellPool.getIdle() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(expected, shellPool.getIdle());
+    }
+
+    private String readOutput(Process process) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        InputStream inputStream = process.getInputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
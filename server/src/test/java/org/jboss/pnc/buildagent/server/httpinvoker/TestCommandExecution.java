@@ -5,6 +5,7 @@ import org.jboss.pnc.api.dto.HeartbeatConfig;
 import org.jboss.pnc.api.dto.Request;
 import org.jboss.pnc.buildagent.api.Status;
 import org.jboss.pnc.buildagent.api.TaskStatusUpdateEvent;
+import org.jboss.pnc.buildagent.api.httpinvoke.ExecutionMode;
 import org.jboss.pnc.buildagent.client.BuildAgentClient;
 import org.jboss.pnc.buildagent.client.BuildAgentClientException;
 import org.jboss.pnc.buildagent.client.BuildAgentHttpClient;
@@ -23,10 +24,13 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -39,7 +43,7 @@ import java.util.function.Consumer;
 public class TestCommandExecution {
     private static final Logger log = LoggerFactory.getLogger(TestCommandExecution.class);
 
-    private static Set<Consumer<String>> responseConsumers = new HashSet<>();
+    private static Set<Consumer<String>> responseConsumers = new CopyOnWriteArraySet<>();
     private static AtomicInteger heartbeatCounter = new AtomicInteger();
 
     private final ObjectMapper objectMapper = new ObjectMapper();
@@ -103,6 +107,8 @@ public class TestCommandExecution {
 
         TaskStatusUpdateEvent callbackRequest = objectMapper.readValue(callback, TaskStatusUpdateEvent.class);
         Assert.assertEquals(Status.COMPLETED, callbackRequest.getNewStatus());
+        Assert.assertNotNull("Resources of the process were not sampled.", callbackRequest.getResourceUsage());
+        Assert.assertTrue(callbackRequest.getResourceUsage().getPeakRssBytes() > 0);
 
         Assert.assertTrue("Did not receive all heartbeats.", heartbeatCounter.get() > 20);
     }
@@ -130,4 +136,116 @@ public class TestCommandExecution {
         Assert.assertEquals(Status.INTERRUPTED, callbackRequest.getNewStatus());
 
     }
+
+    @Test
+    public void shouldExecuteRemoteCommandWithoutPty()
+            throws IOException, BuildAgentClientException, InterruptedException, ExecutionException, TimeoutException,
+            URISyntaxException {
+        TaskStatusUpdateEvent completed = executeWithoutPty(TEST_COMMAND_BASE + "10 10", false);
+
+        Assert.assertEquals(Status.COMPLETED, completed.getNewStatus());
+        Assert.assertNotNull(completed.getOutputChecksum());
+        Assert.assertEquals("MD5", completed.getOutputChecksumAlgorithm());
+    }
+
+    @Test
+    public void shouldUseRequestedChecksumAlgorithm()
+            throws IOException, BuildAgentClientException, InterruptedException, ExecutionException, TimeoutException,
+            URISyntaxException {
+        CompletableFuture<String> callbackFuture = new CompletableFuture<>();
+        Consumer<String> onResult = (s) -> callbackFuture.complete(s);
+        responseConsumers.add(onResult);
+
+        URI callbackUrl = new URI("http://" + HOST +":" + LOCAL_PORT+"/" + CallbackHandler.class.getSimpleName());
+        HttpClientConfiguration clientConfiguration = HttpClientConfiguration.newBuilder()
+                .callback(new Request(Request.Method.PUT, callbackUrl, Collections.emptyList(), null))
+                .termBaseUrl(terminalBaseUrl)
+                .executionMode(ExecutionMode.PROCESS)
+                .outputChecksumAlgorithm("xxHash64")
+                .build();
+        BuildAgentClient client = new BuildAgentHttpClient(clientConfiguration);
+        client.execute(TEST_COMMAND_BASE + "5 10");
+
+        String callback = callbackFuture.get(5, TimeUnit.SECONDS);
+        responseConsumers.remove(onResult);
+        TaskStatusUpdateEvent completed = objectMapper.readValue(callback, TaskStatusUpdateEvent.class);
+
+        Assert.assertEquals(Status.COMPLETED, completed.getNewStatus());
+        Assert.assertEquals("xxHash64", completed.getOutputChecksumAlgorithm());
+        Assert.assertEquals(16, completed.getOutputChecksum().length());
+    }
+
+    @Test
+    public void shouldCancelRemoteCommandWithoutPty()
+            throws IOException, BuildAgentClientException, InterruptedException, ExecutionException, TimeoutException,
+            URISyntaxException {
+        TaskStatusUpdateEvent completed = executeWithoutPty(TEST_COMMAND_BASE + "4 250", true);
+
+        Assert.assertEquals(Status.INTERRUPTED, completed.getNewStatus());
+    }
+
+    private TaskStatusUpdateEvent executeWithoutPty(String command, boolean cancel)
+            throws IOException, BuildAgentClientException, InterruptedException, ExecutionException, TimeoutException,
+            URISyntaxException {
+        CompletableFuture<String> callbackFuture = new CompletableFuture<>();
+        Consumer<String> onResult = (s) -> callbackFuture.complete(s);
+        responseConsumers.add(onResult);
+
+        URI callbackUrl = new URI("http://" + HOST +":" + LOCAL_PORT+"/" + CallbackHandler.class.getSimpleName());
+        HttpClientConfiguration clientConfiguration = HttpClientConfiguration.newBuilder()
+                .callback(new Request(Request.Method.PUT, callbackUrl, Collections.emptyList(), null))
+                .termBaseUrl(terminalBaseUrl)
+                .executionMode(ExecutionMode.PROCESS)
+                .build();
+        BuildAgentClient client = new BuildAgentHttpClient(clientConfiguration);
+        client.execute(command);
+        Assert.assertNotNull(client.getSessionId());
+
+        if (cancel) {
+            Thread.sleep(400);
+            client.cancel();
+        }
+
+        String callback = callbackFuture.get(5, TimeUnit.SECONDS);
+        responseConsumers.remove(onResult);
+        return objectMapper.readValue(callback, TaskStatusUpdateEvent.class);
+    }
+
+    @Test
+    public void shouldCalculateChecksumPerSessionWhenRunningConcurrently()
+            throws IOException, BuildAgentClientException, InterruptedException {
+        int sessions = 3;
+        Map<String, TaskStatusUpdateEvent> completed = new ConcurrentHashMap<>();
+        CountDownLatch allCompleted = new CountDownLatch(sessions);
+        Consumer<String> onResult = (s) -> {
+            try {
+                TaskStatusUpdateEvent event = objectMapper.readValue(s, TaskStatusUpdateEvent.class);
+                completed.put(event.getTaskId(), event);
+                allCompleted.countDown();
+            } catch (IOException e) {
+                log.error("Cannot read callback.", e);
+            }
+        };
+        responseConsumers.add(onResult);
+
+        URL callbackUrl = new URL("http://" + HOST +":" + LOCAL_PORT+"/" + CallbackHandler.class.getSimpleName());
+        for (int i = 0; i < sessions; i++) {
+            BuildAgentClient client = new BuildAgentHttpClient(terminalBaseUrl, callbackUrl, "PUT");
+            client.execute(TEST_COMMAND_BASE + "20 10");
+        }
+
+        Assert.assertTrue("Not all sessions completed.", allCompleted.await(10, TimeUnit.SECONDS));
+        responseConsumers.remove(onResult);
+
+        String expectedChecksum = null;
+        for (TaskStatusUpdateEvent event : completed.values()) {
+            Assert.assertEquals(Status.COMPLETED, event.getNewStatus());
+            Assert.assertNotNull(event.getOutputChecksum());
+            if (expectedChecksum == null) {
+                expectedChecksum = event.getOutputChecksum();
+            }
+            //all the sessions produced the same output
+            Assert.assertEquals(expectedChecksum, event.getOutputChecksum());
+        }
+    }
 }
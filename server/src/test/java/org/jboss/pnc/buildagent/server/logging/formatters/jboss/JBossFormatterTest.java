@@ -68,4 +68,19 @@ public class JBossFormatterTest {
         Assert.assertEquals(ctx, ((Map)map.get("mdc")).get("ctx"));
         Assert.assertEquals("localhost", map.get("hostName"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldUseCaptureStamp() throws IOException, InstantiationException {
+        Properties properties = new Properties();
+        properties.load(getClass().getClassLoader().getResourceAsStream("process-logging.properties"));
+        LogFormatter logFormatter = new JBossFormatter(properties);
+
+        String messageJson = logFormatter.format("captured line", 42, 1600000000000L);
+
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Object> map = mapper.readValue(messageJson, Map.class);
+
+        Assert.assertEquals(42, ((Number) map.get("sequence")).longValue());
+        Assert.assertTrue(map.get("@timestamp").toString(), map.get("@timestamp").toString().startsWith("2020-09-13"));
+    }
+}
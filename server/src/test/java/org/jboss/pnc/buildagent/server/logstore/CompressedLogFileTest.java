@@ -0,0 +1,157 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import org.jboss.pnc.buildagent.server.FsyncPolicy;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+public class CompressedLogFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReadOffsetsAndLinesAcrossBlocks() throws IOException, DataFormatException {
+        Path file = folder.getRoot().toPath().resolve("console.log.gz");
+        StringBuilder expected = new StringBuilder();
+        try (CompressedLogFile log = new CompressedLogFile(file, 16, LogCodec.GZIP, FsyncPolicy.NONE)) {
+            for (int i = 0; i < 100; i++) {
+                String line = "line " + i + "\n";
+                expected.append(line);
+                append(log, line);
+            }
+            append(log, "partial");
+            expected.append("partial");
+
+            Assert.assertEquals(expected.length(), log.getEndOffset());
+            Assert.assertEquals(101, log.getLineCount());
+            Assert.assertEquals("line 10\nline 11\n", read(log, log.getLines(10, 12)));
+            Assert.assertEquals("line 99\npartial", read(log, log.tail(2)));
+            Assert.assertEquals(expected.substring(30, 700), decode(log.read(30, 670)));
+
+            try (CompressedBlocks blocks = log.openBlocks(30, 20)) {
+                Assert.assertEquals(3, blocks.getRegions().size());
+                Assert.assertTrue(blocks.getStartOffset() <= 30);
+                Assert.assertTrue(blocks.getEndOffset() >= 50);
+                Assert.assertEquals(
+                        "The blocks are sent as they are.",
+                        expected.substring((int) blocks.getStartOffset(), (int) blocks.getEndOffset()),
+                        gunzip(blocks));
+            }
+            try (CompressedBlocks blocks = log.openBlocks(expected.length() - 10, Long.MAX_VALUE)) {
+                Assert.assertEquals(expected.length(), blocks.getEndOffset());
+                Assert.assertTrue("The pending output is compressed on its own.", blocks.getEnd().remaining() > 10);
+                Assert.assertEquals(expected.substring((int) blocks.getStartOffset()), gunzip(blocks));
+            }
+            log.flush();
+            Assert.assertEquals(Files.size(file), log.getCompressedSize());
+        }
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            Assert.assertEquals("The file is a valid gzip file.", expected.toString(), decode(in));
+        }
+    }
+
+    @Test
+    public void shouldRecoverBlocksAfterUncleanStop() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("console.log.zz");
+        CompressedLogFile crashed = new CompressedLogFile(file, 1024, LogCodec.DEFLATE, FsyncPolicy.NONE);
+        append(crashed, "first\nsecond\nthi");
+        crashed.flush();
+        append(crashed, "lost");
+        Files.write(file, new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        try (CompressedLogFile log = new CompressedLogFile(file, 1024, LogCodec.DEFLATE, FsyncPolicy.COMPLETION)) {
+            Assert.assertEquals(16, log.getEndOffset());
+            Assert.assertEquals(3, log.getLineCount());
+            append(log, "rd\n");
+            Assert.assertEquals("second\nthird\n", read(log, log.getLines(1, 3)));
+            log.flush();
+        }
+        try (CompressedLogFile log = new CompressedLogFile(file, 1024, LogCodec.DEFLATE, FsyncPolicy.NONE)) {
+            Assert.assertEquals(3, log.getLineCount());
+            Assert.assertEquals("first\nsecond\nthird\n", decode(log.read(0, log.getEndOffset())));
+        }
+    }
+
+    private void append(CompressedLogFile log, String output) throws IOException {
+        log.append(ByteBuffer.wrap(output.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String read(CompressedLogFile log, LineRange range) throws IOException {
+        return decode(log.read(range));
+    }
+
+    private String decode(ByteBuffer bytes) {
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    private String decode(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a single gzip member, the clients may not decode the following ones.
+     */
+    private String gunzip(CompressedBlocks blocks) throws IOException, DataFormatException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(bytes(blocks.getHeader()));
+        for (LogRegion region : blocks.getRegions()) {
+            ByteBuffer bytes = ByteBuffer.allocate((int) region.getLength());
+            while (bytes.hasRemaining()) {
+                region.getChannel().read(bytes, region.getPosition() + bytes.position());
+            }
+            compressed.write(bytes.array());
+        }
+        compressed.write(bytes(blocks.getEnd()));
+        byte[] stream = compressed.toByteArray();
+        Assert.assertEquals(blocks.getLength(), stream.length);
+
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(stream, 10, stream.length - 10);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        while (!inflater.finished()) {
+            int inflated = inflater.inflate(buffer);
+            Assert.assertTrue("Truncated stream.", inflated > 0 || !inflater.needsInput());
+            output.write(buffer, 0, inflated);
+        }
+        Assert.assertEquals("Only the trailer follows the data.", 8, inflater.getRemaining());
+        inflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(output.toByteArray());
+        ByteBuffer trailer = ByteBuffer.wrap(stream, stream.length - 8, 8).order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(crc.getValue(), Integer.toUnsignedLong(trailer.getInt()));
+        Assert.assertEquals(output.size(), trailer.getInt());
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(stream))) {
+            return decode(in);
+        }
+    }
+
+    private byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
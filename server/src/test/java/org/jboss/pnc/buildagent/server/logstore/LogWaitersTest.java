@@ -0,0 +1,107 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import org.jboss.pnc.buildagent.server.FsyncPolicy;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class LogWaitersTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void before() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldWakeUpReaderWhenLogGrows() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("console.log");
+        LogWaiters waiters = new LogWaiters(executor);
+        try (MappedLogFile log = new MappedLogFile(file, 1024, FsyncPolicy.NONE)) {
+            append(log, "first\n");
+            CountDownLatch woken = new CountDownLatch(1);
+            waiters.await(log::getEndOffset, 6, 60000, woken::countDown);
+            Assert.assertEquals(1, waiters.getWaiting());
+
+            waiters.appended();
+            Assert.assertEquals("Nothing new beyond the offset.", 1, woken.getCount());
+
+            append(log, "second\n");
+            waiters.appended();
+            Assert.assertTrue(woken.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, waiters.getWaiting());
+            Assert.assertEquals("second\n", read(log, 6, log.getEndOffset() - 6));
+        }
+    }
+
+    @Test
+    public void shouldCompleteReaderAfterTimeout() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("console.log");
+        LogWaiters waiters = new LogWaiters(executor);
+        try (MappedLogFile log = new MappedLogFile(file, 1024, FsyncPolicy.NONE)) {
+            CountDownLatch woken = new CountDownLatch(1);
+            waiters.await(log::getEndOffset, 0, 50, woken::countDown);
+            Assert.assertTrue(woken.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, waiters.getWaiting());
+
+            CountDownLatch immediate = new CountDownLatch(1);
+            append(log, "ready");
+            waiters.await(log::getEndOffset, 0, 60000, immediate::countDown);
+            Assert.assertEquals("The output beyond the offset is already there.", 0, immediate.getCount());
+        }
+    }
+
+    @Test
+    public void shouldReadSessionLogFromOffsetAcrossSegments() throws IOException {
+        try (SegmentedLogStore store = new SegmentedLogStore(folder.getRoot().toPath(), 4, 8, FsyncPolicy.NONE)) {
+            SegmentedLogStore.SessionLog session = store.open("session");
+            append(session, "aaaabbbbcc");
+
+            Assert.assertEquals("The first segment is evicted.", 4, session.getStartOffset());
+            Assert.assertEquals(10, session.getEndOffset());
+            Assert.assertEquals("bbbc", read(session, 5, 4));
+            Assert.assertEquals("bbbbcc", read(session, 4, 6));
+        }
+    }
+
+    private void append(LogFileWriter writer, String output) throws IOException {
+        writer.append(ByteBuffer.wrap(output.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String read(ReadableLog log, long offset, long length) throws IOException {
+        StringBuilder output = new StringBuilder();
+        for (LogRegion region : log.open(offset, length)) {
+            try (LogRegion opened = region) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) opened.getLength());
+                while (buffer.hasRemaining()) {
+                    opened.getChannel().read(buffer, opened.getPosition() + buffer.position());
+                }
+                ((Buffer) buffer).flip();
+                output.append(StandardCharsets.UTF_8.decode(buffer));
+            }
+        }
+        return output.toString();
+    }
+}
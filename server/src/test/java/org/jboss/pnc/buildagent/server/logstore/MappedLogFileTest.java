@@ -0,0 +1,74 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import org.jboss.pnc.buildagent.server.FsyncPolicy;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class MappedLogFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReadLineRangesAcrossMappedWindows() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("console.log");
+        StringBuilder expected = new StringBuilder();
+        try (MappedLogFile log = new MappedLogFile(file, 16, FsyncPolicy.NONE)) {
+            for (int i = 0; i < 100; i++) {
+                String line = "line " + i + "\n";
+                expected.append(line);
+                append(log, line);
+            }
+            append(log, "partial");
+
+            Assert.assertEquals(101, log.getLineCount());
+            Assert.assertEquals("line 10\nline 11\n", read(log, log.getLines(10, 12)));
+            Assert.assertEquals("line 99\npartial", read(log, log.tail(2)));
+
+            LineRange beyond = log.getLines(99, 1000);
+            Assert.assertEquals(99, beyond.getFirstLine());
+            Assert.assertEquals(101, beyond.getEndLine());
+            Assert.assertEquals(101, beyond.getTotalLines());
+
+            append(log, " line\n");
+            Assert.assertEquals(101, log.getLineCount());
+            Assert.assertEquals("partial line\n", read(log, log.tail(1)));
+            Assert.assertEquals(0, log.getLines(101, 200).getLength());
+        }
+        expected.append("partial line\n");
+        Assert.assertEquals(expected.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldRecoverOutputAfterUncleanStop() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("console.log");
+        MappedLogFile crashed = new MappedLogFile(file, 1024, FsyncPolicy.NONE);
+        append(crashed, "first\nsecond\nthi");
+        Assert.assertEquals(1024, Files.size(file));
+
+        try (MappedLogFile log = new MappedLogFile(file, 1024, FsyncPolicy.COMPLETION)) {
+            Assert.assertEquals(16, log.getSize());
+            Assert.assertEquals(3, log.getLineCount());
+            append(log, "rd\n");
+            log.flush();
+            Assert.assertEquals("second\nthird\n", read(log, log.getLines(1, 3)));
+        }
+        Assert.assertEquals("first\nsecond\nthird\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    private void append(MappedLogFile log, String output) throws IOException {
+        log.append(ByteBuffer.wrap(output.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String read(MappedLogFile log, LineRange range) throws IOException {
+        return StandardCharsets.UTF_8.decode(log.read(range)).toString();
+    }
+}
@@ -0,0 +1,160 @@
+package org.jboss.pnc.buildagent.server.logstore;
+
+import org.jboss.pnc.buildagent.api.LogSegment;
+import org.jboss.pnc.buildagent.api.SessionLogLayout;
+import org.jboss.pnc.buildagent.server.FsyncPolicy;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class SegmentedLogStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldRotateSessionOutputIntoSegments() throws IOException {
+        try (SegmentedLogStore store = new SegmentedLogStore(folder.getRoot().toPath(), 10, 0, FsyncPolicy.NONE, 1)) {
+            SegmentedLogStore.SessionLog first = store.open("first");
+            SegmentedLogStore.SessionLog second = store.open("ctx#sub");
+            append(first, "0123456789abcdef");
+            append(second, "other");
+            append(first, "ghijklmnopq");
+
+            SessionLogLayout layout = store.getLayout("first").get();
+            Assert.assertEquals(27, layout.getSize());
+            Assert.assertEquals(Arrays.asList(0L, 10L, 20L), offsets(layout));
+            Assert.assertEquals("0123456789abcdefghijklmnopq", read(layout));
+
+            SessionLogLayout sub = store.getLayout("ctx#sub").get();
+            Assert.assertEquals("other", read(sub));
+            Assert.assertNotEquals(
+                    "The separator must not be used in the directory name.",
+                    "ctx#sub",
+                    Paths.get(sub.getSegments().get(0).getPath()).getParent().getFileName().toString());
+            Assert.assertEquals(32, store.getTotalBytes());
+        }
+    }
+
+    @Test
+    public void shouldEvictOldestSegmentsAboveBudget() throws IOException {
+        try (SegmentedLogStore store = new SegmentedLogStore(folder.getRoot().toPath(), 4, 10, FsyncPolicy.NONE)) {
+            SegmentedLogStore.SessionLog old = store.open("old");
+            SegmentedLogStore.SessionLog current = store.open("current");
+            append(old, "aaaabb");
+            append(current, "ccccdddd");
+
+            Assert.assertEquals(10, store.getTotalBytes());
+            Assert.assertEquals(1, store.getEvictedSegments());
+            SessionLogLayout oldLayout = store.getLayout("old").get();
+            Assert.assertEquals(6, oldLayout.getSize());
+            Assert.assertEquals(Collections.singletonList(4L), offsets(oldLayout));
+
+            append(current, "eeeeeeeeee");
+            Assert.assertEquals(
+                    "The segment written by an open session is kept.",
+                    Collections.singletonList(4L),
+                    offsets(store.getLayout("old").get()));
+
+            old.close();
+            append(current, "ffff");
+            Assert.assertFalse("Fully evicted closed sessions are dropped.", store.getLayout("old").isPresent());
+            Assert.assertEquals(Collections.singletonList("current"), store.getSessionIds());
+            Assert.assertTrue(store.getTotalBytes() <= 10);
+            Assert.assertEquals("eeeeee", read(store.getLayout("current").get()).substring(0, 6));
+        }
+    }
+
+    @Test
+    public void shouldDropClosedSessionsWithoutBudget() throws IOException {
+        try (SegmentedLogStore store = new SegmentedLogStore(folder.getRoot().toPath(), 4, 0, FsyncPolicy.NONE)) {
+            SegmentedLogStore.SessionLog session = store.open("ctx#sub");
+            append(session, "abcdef");
+            session.close();
+
+            Assert.assertEquals(Collections.emptyList(), store.getSessionIds());
+            Assert.assertEquals("Closed sessions are read from the disk.", "abcdef", read(store.getLayout("ctx#sub").get()));
+
+            append(store.open("ctx#sub"), "gh");
+            Assert.assertEquals("abcdefgh", read(store.getLayout("ctx#sub").get()));
+            Assert.assertEquals(8, store.getTotalBytes());
+        }
+    }
+
+    @Test
+    public void shouldKeepSessionDirectoriesUnderRoot() throws IOException {
+        Path root = folder.newFolder("sessions").toPath();
+        Files.write(folder.getRoot().toPath().resolve("00000000.log"), "outside".getBytes(StandardCharsets.UTF_8));
+        for (String sessionId : Arrays.asList("", ".", "..")) {
+            Assert.assertEquals(root, root.resolve(SegmentedLogStore.toDirectoryName(sessionId)).getParent());
+        }
+
+        try (SegmentedLogStore store = new SegmentedLogStore(root, 4, 0, FsyncPolicy.NONE)) {
+            Assert.assertFalse(store.get("..").isPresent());
+            Assert.assertFalse(store.getLayout(".").isPresent());
+            append(store.open(".."), "inside");
+            Assert.assertFalse("Path segments are never sessions.", store.get("..").isPresent());
+        }
+        Assert.assertEquals("outside", new String(
+                Files.readAllBytes(folder.getRoot().toPath().resolve("00000000.log")),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldContinueSessionsOfPreviousRun() throws IOException {
+        try (SegmentedLogStore store = new SegmentedLogStore(folder.getRoot().toPath(), 4, 0, FsyncPolicy.NONE)) {
+            append(store.open("ctx#sub"), "abcdef");
+            append(store.open("console"), "% ls\n");
+            setModified(store.getLayout("ctx#sub").get(), 1000);
+            setModified(store.getLayout("console").get(), 3000);
+        }
+
+        try (SegmentedLogStore store = new SegmentedLogStore(folder.getRoot().toPath(), 4, 8, FsyncPolicy.COMPLETION)) {
+            Assert.assertEquals("The oldest segment must be evicted on start.", 7, store.getTotalBytes());
+            SegmentedLogStore.SessionLog session = store.open("ctx#sub");
+            append(session, "gh");
+            session.flush();
+
+            SessionLogLayout layout = store.getLayout("ctx#sub").get();
+            Assert.assertEquals("efgh", read(layout));
+            Assert.assertEquals(Collections.singletonList(1), layout.getSegments().stream()
+                    .map(LogSegment::getIndex)
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    private void append(SegmentedLogStore.SessionLog sessionLog, String output) throws IOException {
+        sessionLog.append(ByteBuffer.wrap(output.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void setModified(SessionLogLayout layout, long millis) throws IOException {
+        for (LogSegment segment : layout.getSegments()) {
+            Files.setLastModifiedTime(Paths.get(segment.getPath()), FileTime.fromMillis(millis + segment.getIndex()));
+        }
+    }
+
+    private List<Long> offsets(SessionLogLayout layout) {
+        return layout.getSegments().stream().map(LogSegment::getOffset).collect(Collectors.toList());
+    }
+
+    private String read(SessionLogLayout layout) throws IOException {
+        StringBuilder output = new StringBuilder();
+        for (LogSegment segment : layout.getSegments()) {
+            output.append(new String(Files.readAllBytes(Paths.get(segment.getPath())), StandardCharsets.UTF_8));
+        }
+        return output.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class AnsiStrippingChannelTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final ReadOnlyChannel sink = new ReadOnlyChannel() {
+        @Override
+        public void writeOutput(byte[] buffer) {
+            output.write(buffer, 0, buffer.length);
+        }
+
+        @Override
+        public void writeOutput(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                output.write(buffer.get());
+            }
+        }
+
+        @Override
+        public boolean isPrimary() {
+            return true;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    private final AnsiStrippingChannel channel = new AnsiStrippingChannel(sink);
+
+    @Test
+    public void shouldStripColors() {
+        write("\u001b[1;34m[INFO]\u001b[0m Building \u001b[1mmodule\u001b[m 😀\r\n");
+
+        Assert.assertEquals("[INFO] Building module 😀\r\n", output());
+    }
+
+    @Test
+    public void shouldStripSequenceSplitAcrossWrites() {
+        write("a\u001b");
+        write("[3");
+        write("8;5;2");
+        write("08mb\u001b");
+        write("[K");
+        write("c");
+
+        Assert.assertEquals("abc", output());
+    }
+
+    @Test
+    public void shouldStripOscAndOtherEscapeSequences() {
+        write("\u001b]0;window title\u0007a\u001b]8;;http://x\u001b\\b\u001b(Bc\u001b=d\u001bPq#0\u001b\\e");
+
+        Assert.assertEquals("abcde", output());
+    }
+
+    @Test
+    public void shouldEndUnterminatedStringAtLineFeed() {
+        write("\u001b]0;broken\nnext line\n");
+
+        Assert.assertEquals("\nnext line\n", output());
+    }
+
+    @Test
+    public void shouldPassTextWithoutSequencesUnchanged() {
+        String text = "[INFO] BUILD SUCCESS\r\n[INFO] Total time: 1.0 s\r\n";
+        write(text);
+
+        Assert.assertEquals(text, output());
+    }
+
+    private void write(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        channel.writeOutput(buffer.asReadOnlyBuffer());
+    }
+
+    private String output() {
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
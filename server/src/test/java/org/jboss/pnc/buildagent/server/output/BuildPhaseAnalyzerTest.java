@@ -0,0 +1,106 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.api.BuildPhase;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BuildPhaseAnalyzerTest {
+
+    @Test
+    public void shouldTimeMavenModulesAndGoals() {
+        List<BuildPhase> reported = new ArrayList<>();
+        BuildPhaseAnalyzer analyzer = new BuildPhaseAnalyzer(reported::add);
+
+        analyze(analyzer, "[INFO] Scanning for projects...\n", 1000);
+        analyze(analyzer, "[INFO] \u001B[1m------------------< \u001B[0;36morg.acme:core\u001B[0;1m >------------------\u001B[m\n", 1000);
+        analyze(analyzer, "[INFO] \u001B[1mBuilding Acme Core 1.0 [1/2]\u001B[m\n", 1100);
+        analyze(analyzer, "[INFO] \u001B[1m--- \u001B[0;32mmaven-compiler-plugin:3.8.1:compile\u001B[m \u001B[1m(default-compile)\u001B[m @ \u001B[36mcore\u001B[0;1m ---\u001B[m\n", 1200);
+        analyze(analyzer, "[INFO] Compiling 10 source files\n", 1300);
+        analyze(analyzer, "[INFO] --- maven-jar-plugin:3.2.0:jar (default-jar) @ core ---\n", 1500);
+        analyze(analyzer, "[INFO] Building jar: /tmp/core/target/core-1.0.jar\n", 1600);
+        analyze(analyzer, "[INFO] -----------------------< org.acme:cli >------------------------\n", 1700);
+        analyze(analyzer, "[INFO] Building Acme CLI 1.0 [2/2]\n", 1700);
+        analyze(analyzer, "[INFO] --- maven-jar-plugin:3.2.0:jar (default-jar) @ cli ---\n", 1800);
+        analyze(analyzer, "[INFO] Reactor Summary for Acme 1.0:\n", 2000);
+
+        List<BuildPhase> phases = analyzer.finish(2100);
+        Assert.assertEquals(5, phases.size());
+        Assert.assertEquals(phases.size(), reported.size());
+
+        assertPhase(phases.get(0), BuildPhase.Type.GOAL, "maven-compiler-plugin:3.8.1:compile (default-compile)", "core", 1200, 300);
+        assertPhase(phases.get(1), BuildPhase.Type.GOAL, "maven-jar-plugin:3.2.0:jar (default-jar)", "core", 1500, 200);
+        assertPhase(phases.get(2), BuildPhase.Type.MODULE, "Acme Core 1.0", "core", 1100, 600);
+        assertPhase(phases.get(3), BuildPhase.Type.GOAL, "maven-jar-plugin:3.2.0:jar (default-jar)", "cli", 1800, 200);
+        assertPhase(phases.get(4), BuildPhase.Type.MODULE, "Acme CLI 1.0", "cli", 1700, 300);
+    }
+
+    @Test
+    public void shouldTimeGradleTasks() {
+        BuildPhaseAnalyzer analyzer = new BuildPhaseAnalyzer(phase -> {});
+
+        analyze(analyzer, "> Task :compileJava\n", 1000);
+        analyze(analyzer, "> Task :core:compileJava UP-TO-DATE\n", 1400);
+        analyze(analyzer, "> Task :core:test\n", 1500);
+        analyze(analyzer, "BUILD SUCCESSFUL in 3s\n", 4500);
+
+        List<BuildPhase> phases = analyzer.finish(5000);
+        Assert.assertEquals(3, phases.size());
+        assertPhase(phases.get(0), BuildPhase.Type.TASK, ":compileJava", ":", 1000, 400);
+        assertPhase(phases.get(1), BuildPhase.Type.TASK, ":core:compileJava", ":core", 1400, 100);
+        assertPhase(phases.get(2), BuildPhase.Type.TASK, ":core:test", ":core", 1500, 3000);
+    }
+
+    @Test
+    public void shouldJoinLinesSplitAcrossChunks() {
+        BuildPhaseAnalyzer analyzer = new BuildPhaseAnalyzer(phase -> {});
+
+        analyze(analyzer, "> Ta", 1000);
+        analyze(analyzer, "sk :assemble\r\n> Task :bu", 1100);
+        analyze(analyzer, "ild\n", 1200);
+
+        List<BuildPhase> phases = analyzer.finish(1300);
+        Assert.assertEquals(2, phases.size());
+        assertPhase(phases.get(0), BuildPhase.Type.TASK, ":assemble", ":", 1100, 100);
+        assertPhase(phases.get(1), BuildPhase.Type.TASK, ":build", ":", 1200, 100);
+    }
+
+    @Test
+    public void shouldCloseOpenPhasesAndStartNewTimelineOnFinish() {
+        BuildPhaseAnalyzer analyzer = new BuildPhaseAnalyzer(phase -> {});
+
+        analyze(analyzer, "[INFO] Building Acme 1.0\n", 1000);
+        analyze(analyzer, "[INFO] --- maven-surefire-plugin:2.22.2:test (default-test) @ acme ---", 1200);
+
+        List<BuildPhase> phases = analyzer.finish(2000);
+        Assert.assertEquals(2, phases.size());
+        assertPhase(phases.get(0), BuildPhase.Type.GOAL, "maven-surefire-plugin:2.22.2:test (default-test)", "acme", 1200, 800);
+        assertPhase(phases.get(1), BuildPhase.Type.MODULE, "Acme 1.0", null, 1000, 1000);
+
+        Assert.assertTrue(analyzer.finish(3000).isEmpty());
+    }
+
+    private void analyze(BuildPhaseAnalyzer analyzer, String output, long timestamp) {
+        ByteBuffer buffer = ByteBuffer.wrap(output.getBytes(StandardCharsets.UTF_8));
+        analyzer.analyze(buffer, timestamp);
+        Assert.assertEquals(0, buffer.position());
+    }
+
+    private void assertPhase(
+            BuildPhase phase,
+            BuildPhase.Type type,
+            String name,
+            String module,
+            long startTimestamp,
+            long durationMillis) {
+        Assert.assertEquals(type, phase.getType());
+        Assert.assertEquals(name, phase.getName());
+        Assert.assertEquals(module, phase.getModule());
+        Assert.assertEquals(startTimestamp, phase.getStartTimestamp());
+        Assert.assertEquals(durationMillis, phase.getDurationMillis());
+    }
+}
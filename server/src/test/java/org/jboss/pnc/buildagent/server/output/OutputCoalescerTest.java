@@ -0,0 +1,110 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.common.buffer.ByteBufferPool;
+import org.jboss.pnc.buildagent.common.buffer.PooledByteBuffer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+public class OutputCoalescerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ByteBufferPool bufferPool = new ByteBufferPool(64, 4);
+    private final List<String> batches = new CopyOnWriteArrayList<>();
+    private final Consumer<PooledByteBuffer> downstream = buffer -> {
+        batches.add(StandardCharsets.UTF_8.decode(buffer.view()).toString());
+        buffer.release();
+    };
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void shouldFlushOnNewLine() {
+        OutputCoalescer coalescer = new OutputCoalescer(bufferPool, 64, 60000, true, scheduler, downstream);
+
+        coalescer.write(bytes("[INFO] Build"));
+        coalescer.write("ing 😀".codePoints().toArray());
+        Assert.assertTrue(batches.isEmpty());
+        coalescer.write(bytes(" module\n[INFO]"));
+
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals("[INFO] Building 😀 module\n[INFO]", batches.get(0));
+    }
+
+    @Test
+    public void shouldFlushWhenSizeIsReached() {
+        OutputCoalescer coalescer = new OutputCoalescer(bufferPool, 8, 60000, false, scheduler, downstream);
+
+        coalescer.write(bytes("12345"));
+        coalescer.write(bytes("6789\n"));
+        coalescer.write(bytes("abc"));
+        coalescer.close();
+
+        Assert.assertEquals(2, batches.size());
+        Assert.assertEquals("123456789\n", batches.get(0));
+        Assert.assertEquals("abc", batches.get(1));
+    }
+
+    @Test
+    public void shouldFlushAfterDelay() throws InterruptedException {
+        OutputCoalescer coalescer = new OutputCoalescer(bufferPool, 64, 20, true, scheduler, downstream);
+
+        coalescer.write(bytes("% "));
+        Assert.assertTrue(batches.isEmpty());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (batches.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals("% ", batches.get(0));
+    }
+
+    @Test
+    public void shouldDeferDelayedFlushWhileDownstreamIsNotReady() throws InterruptedException {
+        AtomicBoolean ready = new AtomicBoolean();
+        OutputCoalescer coalescer = new OutputCoalescer(bufferPool, 64, 10, false, scheduler, ready::get, downstream);
+
+        coalescer.write(bytes("a"));
+        Thread.sleep(100);
+        Assert.assertTrue("Delayed flush must not pass the batch to a blocked downstream.", batches.isEmpty());
+
+        coalescer.write(bytes("b"));
+        Assert.assertEquals("Overdue batch is passed by the next write.", 1, batches.size());
+        Assert.assertEquals("ab", batches.get(0));
+
+        ready.set(true);
+        coalescer.write(bytes("c"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (batches.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals("c", batches.get(1));
+    }
+
+    @Test
+    public void shouldPassChunksThroughWhenDisabled() {
+        OutputCoalescer coalescer = new OutputCoalescer(bufferPool, 64, 0, true, scheduler, downstream);
+
+        coalescer.write(bytes("a"));
+        coalescer.write(bytes("b"));
+
+        Assert.assertEquals(2, batches.size());
+        Assert.assertEquals("Released batch buffer should be reused.", 1, bufferPool.getAllocated());
+    }
+
+    private byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
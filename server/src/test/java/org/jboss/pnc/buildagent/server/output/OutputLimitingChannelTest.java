@@ -0,0 +1,157 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class OutputLimitingChannelTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final ReadOnlyChannel sink = new ReadOnlyChannel() {
+        @Override
+        public void writeOutput(byte[] buffer) {
+            output.write(buffer, 0, buffer.length);
+        }
+
+        @Override
+        public void writeOutput(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                output.write(buffer.get());
+            }
+        }
+
+        @Override
+        public boolean isPrimary() {
+            return true;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Test
+    public void shouldDropLinesOverSessionLineQuota() throws IOException {
+        ReadOnlyChannel channel = new OutputLimitingChannel(sink, 0, 2, 0, 0, OutputLimitPolicy.DROP).forSession("s");
+
+        write(channel, "line 1\nline 2\nli");
+        write(channel, "ne 3\nline 4\n");
+        channel.flush();
+
+        Assert.assertEquals(
+                "line 1\nline 2\n"
+                        + "% # Output limit reached (session line quota), further output is handled by policy: drop\r\n"
+                        + "% # Output limited (session line quota): suppressed 2 lines, 14 bytes\r\n",
+                output());
+        Assert.assertEquals(2, channel.getSuppressedLines());
+        Assert.assertEquals(14, channel.getSuppressedBytes());
+    }
+
+    @Test
+    public void shouldCutLineExceedingSessionByteQuota() throws IOException {
+        ReadOnlyChannel channel = new OutputLimitingChannel(sink, 10, 0, 0, 0, OutputLimitPolicy.DROP).forSession("s");
+
+        write(channel, "1234\n1234567890\n");
+        channel.flush();
+
+        Assert.assertEquals(
+                "1234\n12345\r\n"
+                        + "% # Output limit reached (session byte quota), further output is handled by policy: drop\r\n"
+                        + "% # Output limited (session byte quota): suppressed 0 lines, 6 bytes\r\n",
+                output());
+        Assert.assertEquals(6, channel.getSuppressedBytes());
+    }
+
+    @Test
+    public void shouldSampleLinesOverQuota() {
+        ReadOnlyChannel channel = new OutputLimitingChannel(sink, 0, 1, 0, 0, OutputLimitPolicy.SAMPLE).forSession("s");
+
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 201; i++) {
+            lines.append(i).append('\n');
+        }
+        write(channel, lines.toString());
+
+        Assert.assertEquals(
+                "0\n% # Output limit reached (session line quota), further output is handled by policy: sample\r\n"
+                        + "1\n101\n",
+                output());
+        Assert.assertEquals(198, channel.getSuppressedLines());
+    }
+
+    @Test
+    public void shouldTruncateLinesOverQuota() {
+        ReadOnlyChannel channel = new OutputLimitingChannel(sink, 0, 1, 0, 0, OutputLimitPolicy.TRUNCATE).forSession("s");
+
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longLine.append('x');
+        }
+        write(channel, "first\n" + longLine + "\nshort\n");
+
+        Assert.assertEquals(
+                "first\n% # Output limit reached (session line quota), further output is handled by policy: truncate\r\n"
+                        + longLine.substring(0, OutputLimitingChannel.TRUNCATED_LINE_LENGTH) + " [...]\r\n"
+                        + "short\n",
+                output());
+        Assert.assertEquals(0, channel.getSuppressedLines());
+        Assert.assertEquals(101, channel.getSuppressedBytes());
+    }
+
+    @Test
+    public void shouldSummarizeRateLimitedOutputWhenWritingAgain() throws InterruptedException {
+        OutputLimitingChannel channel = new OutputLimitingChannel(sink, 0, 0, 1000, 10, OutputLimitPolicy.DROP);
+
+        write(channel, "0123456789\nsuppressed\n");
+        Thread.sleep(100);
+        write(channel, "next\n");
+
+        Assert.assertEquals(
+                "0123456789\n% # Output limited (rate limit): suppressed 1 lines, 11 bytes\r\nnext\n",
+                output());
+    }
+
+    @Test
+    public void shouldApplyOnlyRateLimitOutsideSession() {
+        OutputLimitingChannel channel = new OutputLimitingChannel(sink, 1, 1, 0, 0, OutputLimitPolicy.DROP);
+
+        write(channel, "line 1\nline 2\n");
+
+        Assert.assertEquals("line 1\nline 2\n", output());
+    }
+
+    @Test
+    public void shouldNotApplySessionQuotasToTermCommands() {
+        OutputLimitingChannel limiting = new OutputLimitingChannel(sink, 20, 2, 0, 0, OutputLimitPolicy.DROP);
+        ReadOnlyChannel term = limiting.forTerm("ctx#sub");
+
+        write(term, "% mvn clean\nline 1\nline 2\n% # Command finished with status: COMPLETED\n");
+        write(term, "% mvn install\nline 3\nline 4\n% # Command finished with status: COMPLETED\n");
+
+        Assert.assertEquals(
+                "% mvn clean\nline 1\nline 2\n% # Command finished with status: COMPLETED\n"
+                        + "% mvn install\nline 3\nline 4\n% # Command finished with status: COMPLETED\n",
+                output());
+        Assert.assertEquals(0, term.getSuppressedLines());
+    }
+
+    private void write(ReadOnlyChannel channel, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        channel.writeOutput(buffer.asReadOnlyBuffer());
+    }
+
+    private String output() {
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
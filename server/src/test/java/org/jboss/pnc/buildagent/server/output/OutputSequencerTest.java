@@ -0,0 +1,60 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.common.buffer.ByteBufferPool;
+import org.jboss.pnc.buildagent.common.buffer.PooledByteBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class OutputSequencerTest {
+
+    private final ByteBufferPool bufferPool = new ByteBufferPool(64, 8);
+
+    @Test
+    public void shouldNumberChunksByCapturedLines() {
+        OutputSequencer sequencer = new OutputSequencer();
+
+        PooledByteBuffer first = chunk("line 1\nline 2\npart", 1000);
+        PooledByteBuffer second = chunk("ial\nline 4\n", 1001);
+        PooledByteBuffer third = chunk("line 5", 1002);
+        sequencer.stamp(first);
+        sequencer.stamp(second);
+        sequencer.stamp(third);
+
+        Assert.assertEquals(0, first.getSequence());
+        Assert.assertEquals(2, second.getSequence());
+        Assert.assertEquals(4, third.getSequence());
+        Assert.assertEquals(4, sequencer.getLines());
+        Assert.assertEquals(1002, third.getTimestamp());
+    }
+
+    @Test
+    public void shouldNotGoBackInTime() {
+        OutputSequencer sequencer = new OutputSequencer();
+
+        PooledByteBuffer first = chunk("a\n", 2000);
+        PooledByteBuffer second = chunk("b\n", 1500); //wall clock adjusted backwards
+        sequencer.stamp(first);
+        sequencer.stamp(second);
+
+        Assert.assertEquals(2000, second.getTimestamp());
+    }
+
+    @Test
+    public void shouldStampUntimedChunkWithCurrentTime() {
+        OutputSequencer sequencer = new OutputSequencer();
+        long before = System.currentTimeMillis();
+
+        PooledByteBuffer chunk = chunk("a\n", 0);
+        sequencer.stamp(chunk);
+
+        Assert.assertTrue(chunk.getTimestamp() >= before);
+    }
+
+    private PooledByteBuffer chunk(String text, long captureTime) {
+        PooledByteBuffer buffer = bufferPool.copyOf(text.getBytes(StandardCharsets.UTF_8));
+        buffer.stamp(0, captureTime);
+        return buffer;
+    }
+}
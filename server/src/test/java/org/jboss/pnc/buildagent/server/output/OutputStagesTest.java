@@ -0,0 +1,108 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class OutputStagesTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final ReadOnlyChannel sink = new ReadOnlyChannel() {
+        @Override
+        public void writeOutput(byte[] buffer) {
+            output.write(buffer, 0, buffer.length);
+        }
+
+        @Override
+        public boolean isPrimary() {
+            return true;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Test
+    public void shouldParseSinkConfiguration() {
+        Map<String, List<StageConfig>> sinks = StageConfig.parseSinks(
+                "FILE=strip-ansi, limit(maxLines=10,policy=TRUNCATE);KAFKA=collapse-progress");
+
+        Assert.assertEquals(2, sinks.size());
+        List<StageConfig> fileStages = sinks.get("FILE");
+        Assert.assertEquals(2, fileStages.size());
+        Assert.assertEquals("strip-ansi", fileStages.get(0).getName());
+        Assert.assertTrue(fileStages.get(0).getParameters().isEmpty());
+        Assert.assertEquals("limit", fileStages.get(1).getName());
+        Assert.assertEquals("10", fileStages.get(1).getParameters().get("maxLines"));
+        Assert.assertEquals("TRUNCATE", fileStages.get(1).getParameters().get("policy"));
+        Assert.assertEquals("collapse-progress", sinks.get("KAFKA").get(0).getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnbalancedParentheses() {
+        StageConfig.parseStages("limit(maxLines=10");
+    }
+
+    @Test
+    public void shouldChainStagesInConfiguredOrderAndCountWrites() {
+        OutputStages outputStages = new OutputStages();
+        ReadOnlyChannel channel = outputStages.wrap(
+                "FILE",
+                sink,
+                StageConfig.parseStages("strip-ansi,limit(maxLines=1)")).forSession("s");
+
+        write(channel, "\u001b[1mbold\u001b[0m\nsecond\n");
+
+        Assert.assertEquals(
+                "bold\n% # Output limit reached (session line quota), further output is handled by policy: drop\r\n",
+                new String(output.toByteArray(), StandardCharsets.UTF_8));
+        Assert.assertEquals(1, channel.getSuppressedLines());
+
+        List<StageStats> stats = outputStages.getStats();
+        Assert.assertEquals(3, stats.size());
+        Assert.assertEquals("strip-ansi", stats.get(0).getStage());
+        Assert.assertEquals("limit", stats.get(1).getStage());
+        Assert.assertEquals("sink", stats.get(2).getStage());
+        Assert.assertEquals(1, stats.get(0).getWrites());
+        Assert.assertEquals(20, stats.get(0).getBytesIn());
+        Assert.assertEquals(12, stats.get(0).getBytesOut());
+        Assert.assertEquals(output.size(), stats.get(1).getBytesOut());
+    }
+
+    @Test
+    public void shouldReturnSinkWithoutStages() {
+        OutputStages outputStages = new OutputStages();
+
+        Assert.assertSame(sink, outputStages.wrap("FILE", sink, Collections.emptyList()));
+        Assert.assertTrue(outputStages.getStats().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownStage() {
+        new OutputStages().wrap("FILE", sink, StageConfig.parseStages("unknown"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownParameter() {
+        new OutputStages().wrap("FILE", sink, StageConfig.parseStages("strip-ansi(level=1)"));
+    }
+
+    private void write(ReadOnlyChannel channel, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        channel.writeOutput(buffer.asReadOnlyBuffer());
+    }
+}
@@ -0,0 +1,139 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class ProgressLineCollapsingChannelTest {
+
+    private final CollectingChannel sink = new CollectingChannel();
+    private final ProgressLineCollapsingChannel channel = new ProgressLineCollapsingChannel(sink);
+
+    @Test
+    public void shouldKeepFinalStateOfProgressLine() {
+        write("[INFO] Building\r\nProgress (1): 10 kB\rProgress (1): 20 kB\rProgress (1): 30 kB\r");
+        write("                    \rDownloaded from central: a.jar (30 kB)\r\n[INFO] Done\r\n");
+
+        Assert.assertEquals(
+                "[INFO] Building\r\nProgress (1): 10 kB\rDownloaded from central: a.jar (30 kB)\r\n[INFO] Done\r\n",
+                sink.output());
+    }
+
+    @Test
+    public void shouldPassLinesWithoutOverwritesInSingleWrite() {
+        write("line 1\r\nline 2\r\nline 3");
+
+        Assert.assertEquals("line 1\r\nline 2\r\nline 3", sink.output());
+        Assert.assertEquals(1, sink.writes);
+    }
+
+    @Test
+    public void shouldHandleLineEndSplitAcrossWrites() {
+        write("line 1\r");
+        Assert.assertEquals("line 1", sink.output());
+        write("\nline 2\r");
+        write("\n");
+
+        Assert.assertEquals("line 1\r\nline 2\r\n", sink.output());
+    }
+
+    @Test
+    public void shouldCollapseProgressSplitAcrossWrites() {
+        write("0%");
+        write("\r1");
+        write("0%\r");
+        write("100%");
+        write("\r");
+        write("\n");
+
+        Assert.assertEquals("0%\r100%\r\n", sink.output());
+    }
+
+    @Test
+    public void shouldWriteHeldTextOnFlush() throws IOException {
+        write("0%\r50%");
+        Assert.assertEquals("0%", sink.output());
+
+        channel.flush();
+
+        Assert.assertEquals("0%\r50%", sink.output());
+    }
+
+    @Test
+    public void shouldWriteLongSegmentsAsTheyAre() {
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            longText.append('x');
+        }
+        write("a\r" + longText + "\n");
+
+        Assert.assertEquals("a\r" + longText + "\n", sink.output());
+    }
+
+    @Test
+    public void shouldKeepStateForEachSession() {
+        ReadOnlyChannel session1 = channel.forSession("1");
+        ReadOnlyChannel session2 = channel.forSession("2");
+
+        session1.writeOutput("1%\r2%".getBytes(StandardCharsets.UTF_8));
+        session2.writeOutput("done\n".getBytes(StandardCharsets.UTF_8));
+        session1.writeOutput("\r3%\n".getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertEquals("1%done\n\r3%\n", sink.output());
+    }
+
+    private void write(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 2);
+        buffer.put((byte) 'x').put(bytes).flip();
+        buffer.position(1);
+        channel.writeOutput(buffer.asReadOnlyBuffer());
+    }
+
+    private static class CollectingChannel implements ReadOnlyChannel {
+
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        private int writes;
+
+        @Override
+        public void writeOutput(byte[] buffer) {
+            writeOutput(ByteBuffer.wrap(buffer));
+        }
+
+        @Override
+        public void writeOutput(ByteBuffer buffer) {
+            writes++;
+            while (buffer.hasRemaining()) {
+                output.write(buffer.get());
+            }
+        }
+
+        @Override
+        public boolean isPrimary() {
+            return true;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public ReadOnlyChannel forSession(String sessionId) {
+            return this;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private String output() {
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
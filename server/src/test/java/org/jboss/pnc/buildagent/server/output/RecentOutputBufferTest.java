@@ -0,0 +1,144 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.common.buffer.ByteBufferPool;
+import org.jboss.pnc.buildagent.server.ReadOnlyChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class RecentOutputBufferTest {
+
+    @Test
+    public void shouldKeepAllOutputUntilFull() {
+        RecentOutputBuffer recentOutput = new RecentOutputBuffer(16);
+
+        write(recentOutput, "abc");
+        write(recentOutput, "def");
+
+        Assert.assertEquals("abcdef", snapshot(recentOutput));
+        Assert.assertEquals(6, recentOutput.getWritten());
+    }
+
+    @Test
+    public void shouldStartAtLineBoundaryWhenWrapped() {
+        RecentOutputBuffer recentOutput = new RecentOutputBuffer(16);
+
+        write(recentOutput, "first line\n");
+        write(recentOutput, "x\nsecond\nthird\n");
+
+        // the last 16 bytes start with the line feed ending the first line
+        Assert.assertEquals("x\nsecond\nthird\n", snapshot(recentOutput));
+    }
+
+    @Test
+    public void shouldKeepTailOfLargeWrite() {
+        RecentOutputBuffer recentOutput = new RecentOutputBuffer(8);
+
+        write(recentOutput, "0123456789abcdefghij");
+
+        Assert.assertEquals("cdefghij", snapshot(recentOutput));
+        Assert.assertEquals(20, recentOutput.getWritten());
+    }
+
+    @Test
+    public void shouldNotStartWithBrokenCharacter() {
+        RecentOutputBuffer recentOutput = new RecentOutputBuffer(4);
+
+        write(recentOutput, "abčcde"); // 2 byte character ends up split at the start
+
+        Assert.assertEquals("cde", snapshot(recentOutput));
+    }
+
+    @Test
+    public void shouldPrimeNewChannelWithRecentOutput() throws Exception {
+        OutputFanOut outputFanOut = new OutputFanOut("test", 8, new ByteBufferPool(64, 8), 1024);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        ReadOnlyChannel channel = new ReadOnlyChannel() {
+            @Override
+            public void writeOutput(byte[] buffer) {
+                received.write(buffer, 0, buffer.length);
+            }
+
+            @Override
+            public boolean isPrimary() {
+                return true;
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        outputFanOut.write("before\n".getBytes(StandardCharsets.UTF_8));
+        outputFanOut.addChannelWithRecentOutput(channel);
+        outputFanOut.write("after\n".getBytes(StandardCharsets.UTF_8));
+        outputFanOut.flushPrimaryChannels();
+        outputFanOut.close();
+
+        Assert.assertEquals("before\nafter\n", new String(received.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldPrimeChannelAddedWhileOutputIsWritten() throws Exception {
+        OutputFanOut outputFanOut = new OutputFanOut("test", 8, new ByteBufferPool(64, 8), 1024);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        ReadOnlyChannel channel = new ReadOnlyChannel() {
+            @Override
+            public void writeOutput(byte[] buffer) {
+                received.write(buffer, 0, buffer.length);
+            }
+
+            @Override
+            public boolean isPrimary() {
+                return true;
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        int lines = 2000;
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < lines; i++) {
+                outputFanOut.write((i + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        writer.start();
+        Thread.sleep(5);
+        outputFanOut.addChannelWithRecentOutput(channel);
+        writer.join();
+        outputFanOut.flushPrimaryChannels();
+        outputFanOut.close();
+
+        String[] output = new String(received.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        Assert.assertEquals(Integer.toString(lines - 1), output[output.length - 1]);
+        for (int i = 1; i < output.length; i++) {
+            Assert.assertEquals(
+                    "No gap nor duplicate expected.",
+                    Integer.parseInt(output[i - 1]) + 1,
+                    Integer.parseInt(output[i]));
+        }
+    }
+
+    private void write(RecentOutputBuffer recentOutput, String text) {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        recentOutput.write(buffer);
+        Assert.assertEquals(0, buffer.position());
+    }
+
+    private String snapshot(RecentOutputBuffer recentOutput) {
+        return new String(recentOutput.snapshot(), StandardCharsets.UTF_8);
+    }
+}
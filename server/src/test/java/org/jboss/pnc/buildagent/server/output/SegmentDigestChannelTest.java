@@ -0,0 +1,71 @@
+package org.jboss.pnc.buildagent.server.output;
+
+import org.jboss.pnc.buildagent.api.OutputSegments;
+import org.jboss.pnc.buildagent.common.security.DigestAlgorithm;
+import org.jboss.pnc.buildagent.common.security.OutputDigest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class SegmentDigestChannelTest {
+
+    @Test
+    public void shouldDigestSegmentsAcrossChunks() {
+        SegmentDigestChannel channel = new SegmentDigestChannel(DigestAlgorithm.SHA_256, 4);
+
+        channel.writeOutput("abcdef".getBytes(StandardCharsets.UTF_8));
+        channel.writeOutput(ByteBuffer.wrap("ghijklmno".getBytes(StandardCharsets.UTF_8)));
+
+        OutputSegments running = channel.snapshot();
+        Assert.assertFalse(running.isComplete());
+        Assert.assertEquals(12, running.getOutputBytes());
+        Assert.assertEquals(Arrays.asList(sha256("abcd"), sha256("efgh"), sha256("ijkl")), running.getSegments());
+
+        OutputSegments completed = channel.finish();
+        Assert.assertTrue(completed.isComplete());
+        Assert.assertEquals("SHA-256", completed.getAlgorithm());
+        Assert.assertEquals(4, completed.getSegmentSize());
+        Assert.assertEquals(15, completed.getOutputBytes());
+        Assert.assertEquals(
+                Arrays.asList(sha256("abcd"), sha256("efgh"), sha256("ijkl"), sha256("mno")),
+                completed.getSegments());
+
+        String left = sha256(sha256("abcd") + sha256("efgh"));
+        String right = sha256(sha256("ijkl") + sha256("mno"));
+        Assert.assertEquals(sha256(left + right), completed.getRoot());
+    }
+
+    @Test
+    public void shouldCarryOddNodeToNextLevel() {
+        SegmentDigestChannel channel = new SegmentDigestChannel(DigestAlgorithm.SHA_256, 2);
+        channel.writeOutput("aabbc".getBytes(StandardCharsets.UTF_8));
+
+        OutputSegments completed = channel.finish();
+        Assert.assertEquals(sha256(sha256(sha256("aa") + sha256("bb")) + sha256("c")), completed.getRoot());
+    }
+
+    @Test
+    public void shouldStartNewSegmentsAfterFinish() {
+        SegmentDigestChannel channel = new SegmentDigestChannel(DigestAlgorithm.SHA_256, 4);
+        channel.writeOutput("first output".getBytes(StandardCharsets.UTF_8));
+        channel.finish();
+
+        OutputSegments empty = channel.finish();
+        Assert.assertEquals(0, empty.getOutputBytes());
+        Assert.assertTrue(empty.getSegments().isEmpty());
+        Assert.assertEquals(sha256(""), empty.getRoot());
+
+        channel.writeOutput("abc".getBytes(StandardCharsets.UTF_8));
+        OutputSegments single = channel.finish();
+        Assert.assertEquals(sha256("abc"), single.getRoot());
+    }
+
+    private String sha256(String value) {
+        OutputDigest digest = DigestAlgorithm.SHA_256.newDigest();
+        digest.add(ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)));
+        return digest.digest();
+    }
+}
@@ -0,0 +1,155 @@
+package org.jboss.pnc.buildagent.server.performance;
+
+import org.jboss.pnc.buildagent.server.AsyncFileAppender;
+import org.jboss.pnc.buildagent.server.FsyncPolicy;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing the file log from the output thread, a write call per output chunk as the IoFileLogger does by
+ * default, with the {@link AsyncFileAppender}. Each operation writes 1 MiB in chunks of the size the PTY typically
+ * delivers and flushes it. Bytes per second are reported by the "bytes" counter and write and force calls per second
+ * by the "syscalls" counter, their ratio gives the syscalls per MB.
+ *
+ * Run with: mvn test -pl server -Dtest=FileLoggerBenchmark#runBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class FileLoggerBenchmark {
+
+    private static final int OUTPUT_SIZE = 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 512;
+
+    @Param({"stream", "async"})
+    public String writer;
+
+    @Param({"NONE", "COMPLETION"})
+    public FsyncPolicy fsync;
+
+    private Path file;
+
+    private FileOutputStream stream;
+
+    private AsyncFileAppender appender;
+
+    private long appenderSyscalls;
+
+    private ByteBuffer chunk;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long bytes;
+
+        public long syscalls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            syscalls = 0;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("file-logger-benchmark", ".log");
+        if ("async".equals(writer)) {
+            appender = new AsyncFileAppender(
+                    file,
+                    AsyncFileAppender.DEFAULT_BUFFER_SIZE,
+                    fsync,
+                    AsyncFileAppender.DEFAULT_FSYNC_INTERVAL_MILLIS,
+                    AsyncFileAppender.DEFAULT_FSYNC_INTERVAL_BYTES);
+            appenderSyscalls = 0;
+        } else {
+            stream = new FileOutputStream(file.toFile(), true);
+        }
+        byte[] line = "[INFO] Compiling 148 source files to /workspace/core/target/classes\n"
+                .getBytes(StandardCharsets.UTF_8);
+        chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        while (chunk.hasRemaining()) {
+            chunk.put(line, 0, Math.min(line.length, chunk.remaining()));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        if (appender != null) {
+            appender.close();
+            appender = null;
+        }
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public void writeOutput(Counters counters) throws IOException {
+        if (appender != null) {
+            for (int written = 0; written < OUTPUT_SIZE; written += CHUNK_SIZE) {
+                ((Buffer) chunk).clear();
+                appender.append(chunk);
+            }
+            appender.flush();
+            long syscalls = appender.getWrites() + appender.getForces();
+            counters.syscalls += syscalls - appenderSyscalls;
+            appenderSyscalls = syscalls;
+        } else {
+            FileChannel fileChannel = stream.getChannel();
+            for (int written = 0; written < OUTPUT_SIZE; written += CHUNK_SIZE) {
+                ((Buffer) chunk).clear();
+                while (chunk.hasRemaining()) {
+                    fileChannel.write(chunk);
+                    counters.syscalls++;
+                }
+            }
+            if (fsync != FsyncPolicy.NONE) {
+                fileChannel.force(false);
+                counters.syscalls++;
+            }
+        }
+        counters.bytes += OUTPUT_SIZE;
+    }
+
+    @Test
+    public void runBenchmark() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(FileLoggerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
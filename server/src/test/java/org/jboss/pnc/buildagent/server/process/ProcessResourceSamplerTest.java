@@ -0,0 +1,118 @@
+package org.jboss.pnc.buildagent.server.process;
+
+import org.jboss.pnc.buildagent.api.ResourceUsage;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.OptionalLong;
+
+public class ProcessResourceSamplerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldSumProcessTree() throws IOException {
+        Path proc = temporaryFolder.getRoot().toPath();
+        //utime, stime, cutime and cstime in clock ticks
+        writeProcess(proc, 10, 1, "sh", 100, 50, 0, 0, 1, 1024, 4096, 0);
+        writeProcess(proc, 11, 10, "java (main)", 300, 100, 50, 0, 20, 204800, 8192, 1024);
+        writeProcess(proc, 12, 11, "javac", 100, 0, 0, 0, 10, 102400, 0, 2048);
+        //not in the tree
+        writeProcess(proc, 20, 1, "other", 1000, 1000, 0, 0, 5, 1024, 1, 1);
+
+        ProcessResourceSampler sampler = new ProcessResourceSampler(proc, 10);
+        ProcessResourceSampler.Sample sample = sampler.sample();
+
+        Assert.assertEquals(3, sample.getProcesses());
+        Assert.assertEquals(31, sample.getThreads());
+        Assert.assertEquals((1024 + 204800 + 102400) * 1024L, sample.getRssBytes());
+        Assert.assertEquals(7000, sample.getCpuTimeMillis());
+        Assert.assertEquals(12288, sample.getReadBytes());
+        Assert.assertEquals(3072, sample.getWriteBytes());
+    }
+
+    @Test
+    public void shouldKeepPeaksAndIoOfExitedProcesses() throws IOException {
+        Path proc = temporaryFolder.getRoot().toPath();
+        writeProcess(proc, 10, 1, "sh", 100, 0, 0, 0, 1, 1024, 0, 0);
+        writeProcess(proc, 11, 10, "javac", 100, 0, 0, 0, 10, 102400, 4096, 8192);
+        ProcessResourceSampler sampler = new ProcessResourceSampler(proc, 10);
+        sampler.sample();
+
+        //javac exited and was waited for by sh
+        deleteProcess(proc, 11);
+        writeProcess(proc, 10, 1, "sh", 100, 0, 100, 0, 1, 1024, 0, 0);
+        ProcessResourceSampler.Sample sample = sampler.sample();
+        Assert.assertEquals(1, sample.getProcesses());
+
+        ResourceUsage usage = sampler.getUsage();
+        Assert.assertEquals(2000, usage.getCpuTimeMillis());
+        Assert.assertEquals((1024 + 102400) * 1024L, usage.getPeakRssBytes());
+        Assert.assertEquals(11, usage.getPeakThreads());
+        Assert.assertEquals(4096, usage.getReadBytes());
+        Assert.assertEquals(8192, usage.getWriteBytes());
+        Assert.assertEquals(2, usage.getSamples());
+    }
+
+    @Test
+    public void shouldSampleRunningProcess() throws IOException, InterruptedException {
+        Assume.assumeTrue(Files.isDirectory(Paths.get("/proc/self")));
+        Process process = new ProcessBuilder("sleep", "10").start();
+        try {
+            OptionalLong pid = ResourceMonitor.getPid(process);
+            Assert.assertTrue(pid.isPresent());
+
+            ProcessResourceSampler sampler = new ProcessResourceSampler(Paths.get("/proc"), pid.getAsLong());
+            ProcessResourceSampler.Sample sample = sampler.sample();
+
+            Assert.assertEquals(1, sample.getProcesses());
+            Assert.assertEquals(1, sample.getThreads());
+            Assert.assertTrue(sample.getRssBytes() > 0);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private void writeProcess(
+            Path proc,
+            long pid,
+            long ppid,
+            String command,
+            long utime,
+            long stime,
+            long cutime,
+            long cstime,
+            int threads,
+            long rssKb,
+            long readBytes,
+            long writeBytes) throws IOException {
+        Path process = Files.createDirectories(proc.resolve(Long.toString(pid)));
+        //fields 1 to 24, see proc(5)
+        String stat = pid + " (" + command + ") S " + ppid + " 1 1 0 -1 4194560 100 0 0 0 "
+                + utime + " " + stime + " " + cutime + " " + cstime + " 20 0 " + threads + " 0 12345 1000000 "
+                + rssKb / 4 + " 18446744073709551615\n";
+        Files.write(process.resolve("stat"), stat.getBytes(StandardCharsets.UTF_8));
+        String status = "Name:\t" + command + "\nVmRSS:\t" + rssKb + " kB\nThreads:\t" + threads + "\n";
+        Files.write(process.resolve("status"), status.getBytes(StandardCharsets.UTF_8));
+        String io = "rchar: 1\nwchar: 1\nread_bytes: " + readBytes + "\nwrite_bytes: " + writeBytes + "\n";
+        Files.write(process.resolve("io"), io.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void deleteProcess(Path proc, long pid) throws IOException {
+        Path process = proc.resolve(Long.toString(pid));
+        Files.delete(process.resolve("stat"));
+        Files.delete(process.resolve("status"));
+        Files.delete(process.resolve("io"));
+        Files.delete(process);
+    }
+}
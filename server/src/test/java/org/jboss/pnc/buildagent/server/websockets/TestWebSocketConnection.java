@@ -22,6 +22,7 @@ import org.jboss.pnc.buildagent.api.ResponseMode;
 import org.jboss.pnc.buildagent.api.Status;
 import org.jboss.pnc.buildagent.api.TaskStatusUpdateEvent;
 import org.jboss.pnc.buildagent.client.BuildAgentSocketClient;
+import org.jboss.pnc.buildagent.client.SocketClientConfiguration;
 import org.jboss.pnc.buildagent.common.ObjectWrapper;
 import org.jboss.pnc.buildagent.common.Wait;
 import org.jboss.pnc.buildagent.server.MockProcess;
@@ -189,6 +190,45 @@ public class TestWebSocketConnection {
         buildAgentClient.close();
     }
 
+    @Test
+    public void shouldRunCommandsInSubSessionsConcurrently() throws Throwable {
+        String context = this.getClass().getName() + ".shouldRunCommandsInSubSessionsConcurrently";
+
+        List<TaskStatusUpdateEvent> shardStatuses = new CopyOnWriteArrayList<>();
+        List<TaskStatusUpdateEvent> analysisStatuses = new CopyOnWriteArrayList<>();
+        BuildAgentSocketClient shardClient = new BuildAgentSocketClient(
+                Optional.empty(),
+                shardStatuses::add,
+                SocketClientConfiguration.newBuilder()
+                        .termBaseUrl(terminalBaseUrl)
+                        .commandContext(context)
+                        .subSession("test-shard")
+                        .build());
+        BuildAgentSocketClient analysisClient = new BuildAgentSocketClient(
+                Optional.empty(),
+                analysisStatuses::add,
+                SocketClientConfiguration.newBuilder()
+                        .termBaseUrl(terminalBaseUrl)
+                        .commandContext(context)
+                        .subSession("analysis")
+                        .build());
+
+        shardClient.execute(getTestCommand(20, 50, "shard."));
+        analysisClient.execute(getTestCommand(20, 50, "analysis."));
+
+        Wait.forCondition(() -> hasStatus(shardStatuses, Status.RUNNING) && hasStatus(analysisStatuses, Status.RUNNING), 10, ChronoUnit.SECONDS, "Commands did not start in given timeout.");
+        Assert.assertFalse("Commands should run at the same time.", hasStatus(shardStatuses, Status.COMPLETED) || hasStatus(analysisStatuses, Status.COMPLETED));
+        Wait.forCondition(() -> hasStatus(shardStatuses, Status.COMPLETED) && hasStatus(analysisStatuses, Status.COMPLETED), 10, ChronoUnit.SECONDS, "Commands did not complete in given timeout.");
+        Assert.assertNotEquals(shardStatuses.get(0).getTaskId(), analysisStatuses.get(0).getTaskId());
+
+        shardClient.close();
+        analysisClient.close();
+    }
+
+    private boolean hasStatus(List<TaskStatusUpdateEvent> statuses, Status status) {
+        return statuses.stream().anyMatch(event -> event.getNewStatus().equals(status));
+    }
+
     @Test
     public void shouldExecuteTwoTasksInSilentMode() throws Throwable {
 